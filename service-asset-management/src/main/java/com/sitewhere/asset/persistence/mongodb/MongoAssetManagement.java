@@ -7,12 +7,15 @@
  */
 package com.sitewhere.asset.persistence.mongodb;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import org.bson.Document;
 
 import com.mongodb.MongoClientException;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.model.IndexOptions;
 import com.sitewhere.asset.persistence.AssetManagementPersistence;
 import com.sitewhere.asset.spi.microservice.IAssetManagementMicroservice;
@@ -217,6 +220,29 @@ public class MongoAssetManagement extends MongoTenantComponent<AssetManagementMo
 	return null;
     }
 
+    /*
+     * @see com.sitewhere.spi.asset.IAssetManagement#getAssetsByIds(java.util.List)
+     */
+    @Override
+    public List<IAsset> getAssetsByIds(List<UUID> assetIds) throws SiteWhereException {
+	List<IAsset> results = new ArrayList<>();
+	if (assetIds.isEmpty()) {
+	    return results;
+	}
+	try {
+	    MongoCollection<Document> assets = getMongoClient().getAssetsCollection();
+	    Document query = new Document(MongoPersistentEntity.PROP_ID, new Document("$in", assetIds));
+	    try (MongoCursor<Document> cursor = assets.find(query).iterator()) {
+		while (cursor.hasNext()) {
+		    results.add(MongoAsset.fromDocument(cursor.next()));
+		}
+	    }
+	    return results;
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	}
+    }
+
     /*
      * @see
      * com.sitewhere.spi.asset.IAssetManagement#getAssetByToken(java.lang.String)
@@ -7,15 +7,24 @@
  */
 package com.sitewhere.batch;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.kafka.clients.producer.RecordMetadata;
+
 import com.sitewhere.batch.handler.BatchCommandInvocationHandler;
 import com.sitewhere.batch.spi.IBatchOperationHandler;
 import com.sitewhere.batch.spi.IBatchOperationManager;
@@ -63,6 +72,15 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
     /** Number of threads used for batch operation processing */
     private static final int BATCH_PROCESSOR_THREAD_COUNT = 10;
 
+    /** Number of batch elements created and dispatched together */
+    private static final int ELEMENT_CREATE_CHUNK_SIZE = 500;
+
+    /** Number of batch elements processed together by a single thread */
+    private static final int ELEMENT_PROCESS_CHUNK_SIZE = 50;
+
+    /** Time after which an element left processing may be claimed again */
+    private static final long ELEMENT_CLAIM_TIMEOUT_MS = 10 * 60 * 1000;
+
     /** Thread pool for processing events */
     private ExecutorService processorPool;
 
@@ -227,7 +245,24 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
      */
     @Override
     public void processBatchElement(IUnprocessedBatchElement element) throws SiteWhereException {
-	getProcessorPool().execute(new BatchElementProcessor(element));
+	List<IUnprocessedBatchElement> elements = new ArrayList<IUnprocessedBatchElement>();
+	elements.add(element);
+	processBatchElements(elements);
+    }
+
+    /*
+     * @see com.sitewhere.batch.spi.IBatchOperationManager#processBatchElements(java.
+     * util.List)
+     */
+    @Override
+    public void processBatchElements(List<IUnprocessedBatchElement> elements) throws SiteWhereException {
+	// Operations are shared by all chunks so each is only looked up once.
+	Map<UUID, IBatchOperation> operations = new ConcurrentHashMap<UUID, IBatchOperation>();
+	for (int start = 0; start < elements.size(); start += ELEMENT_PROCESS_CHUNK_SIZE) {
+	    List<IUnprocessedBatchElement> chunk = elements.subList(start,
+		    Math.min(start + ELEMENT_PROCESS_CHUNK_SIZE, elements.size()));
+	    getProcessorPool().execute(new BatchElementProcessor(chunk, operations));
+	}
     }
 
     /*
@@ -331,23 +366,11 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
 		getBatchManagement().updateBatchOperation(getUnprocessed().getBatchOperation().getId(), request);
 
 		int errorCount = 0;
-		for (String deviceToken : getUnprocessed().getDeviceTokens()) {
-		    BatchElementCreateRequest element = new BatchElementCreateRequest();
-		    element.setDeviceToken(deviceToken);
-		    element.setProcessingStatus(ElementProcessingStatus.Unprocessed);
-		    element.setProcessedDate(null);
-		    try {
-			IBatchElement created = getBatchManagement()
-				.createBatchElement(getUnprocessed().getBatchOperation().getId(), element);
-			sendUnprocessedBatchElement(created);
-		    } catch (SiteWhereException e) {
-			getLogger().error("Unable to create batch element.", e);
-			sendFailedBatchElementRequest(element);
-			errorCount++;
-		    }
-
-		    // Potentially pause or throttle batch element processing.
-		    handlePauseAndThrottle();
+		List<String> deviceTokens = getUnprocessed().getDeviceTokens();
+		for (int start = 0; start < deviceTokens.size(); start += ELEMENT_CREATE_CHUNK_SIZE) {
+		    List<String> chunk = deviceTokens.subList(start,
+			    Math.min(start + ELEMENT_CREATE_CHUNK_SIZE, deviceTokens.size()));
+		    errorCount += initializeBatchElements(chunk);
 		}
 
 		// Update operation to reflect processing results.
@@ -363,16 +386,75 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
 	    }
 	}
 
+	/**
+	 * Create batch elements for a chunk of device tokens and send them to Kafka.
+	 * Sends for the chunk are paced by the throttle delay, pipelined and
+	 * acknowledged together before the next chunk is started.
+	 * 
+	 * @param deviceTokens
+	 * @return number of elements that could not be created or sent
+	 * @throws SiteWhereException
+	 */
+	protected int initializeBatchElements(List<String> deviceTokens) throws SiteWhereException {
+	    List<IBatchElementCreateRequest> requests = new ArrayList<IBatchElementCreateRequest>();
+	    for (String deviceToken : deviceTokens) {
+		BatchElementCreateRequest element = new BatchElementCreateRequest();
+		element.setDeviceToken(deviceToken);
+		element.setProcessingStatus(ElementProcessingStatus.Unprocessed);
+		element.setProcessedDate(null);
+		requests.add(element);
+	    }
+
+	    List<IBatchElement> created;
+	    try {
+		created = getBatchManagement().createBatchElements(getUnprocessed().getBatchOperation().getId(),
+			requests);
+	    } catch (SiteWhereException e) {
+		getLogger().error("Unable to create batch elements.", e);
+		for (IBatchElementCreateRequest request : requests) {
+		    sendFailedBatchElementRequest(request);
+		}
+		return requests.size();
+	    }
+
+	    int errorCount = 0;
+	    List<Future<RecordMetadata>> sends = new ArrayList<Future<RecordMetadata>>();
+	    for (int i = 0; i < requests.size(); i++) {
+		IBatchElement element = created.get(i);
+		if (element != null) {
+		    // Potentially pause or throttle batch element processing.
+		    handlePauseAndThrottle();
+		    sends.add(sendUnprocessedBatchElement(element));
+		} else {
+		    getLogger().error("Unable to create batch element for device: " + requests.get(i).getDeviceToken());
+		    sendFailedBatchElementRequest(requests.get(i));
+		    errorCount++;
+		}
+	    }
+	    for (Future<RecordMetadata> send : sends) {
+		try {
+		    send.get();
+		} catch (ExecutionException e) {
+		    getLogger().error("Unable to send unprocessed batch element.", e.getCause());
+		    errorCount++;
+		} catch (InterruptedException e) {
+		    throw new SiteWhereException("Interrupted while sending unprocessed batch elements.", e);
+		}
+	    }
+	    return errorCount;
+	}
+
 	/**
 	 * Send unprocessed batch element to Kafka topic.
 	 * 
 	 * @param element
+	 * @return
 	 * @throws SiteWhereException
 	 */
-	protected void sendUnprocessedBatchElement(IBatchElement element) throws SiteWhereException {
+	protected Future<RecordMetadata> sendUnprocessedBatchElement(IBatchElement element) throws SiteWhereException {
 	    UnprocessedBatchElement unprocessedElement = new UnprocessedBatchElement();
 	    unprocessedElement.setBatchElement(element);
-	    getUnprocessedBatchElementsProducer().send(element.getDeviceId().toString(),
+	    return getUnprocessedBatchElementsProducer().send(element.getDeviceId().toString(),
 		    BatchModelMarshaler.buildUnprocessedBatchElementPayloadMessage(
 			    BatchModelConverter.asGrpcUnprocessedBatchElement(unprocessedElement)));
 	}
@@ -393,19 +475,24 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
     }
 
     /**
-     * Processes a batch element in a separate thread.
+     * Processes a chunk of batch elements in a separate thread. Element status
+     * changes for the chunk are written with bulk updates.
      * 
      * @author Derek
      */
     private class BatchElementProcessor extends SystemUserRunnable {
 
-	/** Element being processed */
-	private IUnprocessedBatchElement unprocessed;
+	/** Elements being processed */
+	private List<IUnprocessedBatchElement> unprocessed;
 
-	public BatchElementProcessor(IUnprocessedBatchElement unprocessed) {
+	/** Batch operations by id shared across chunks of a consumer batch */
+	private Map<UUID, IBatchOperation> operations;
+
+	public BatchElementProcessor(List<IUnprocessedBatchElement> unprocessed, Map<UUID, IBatchOperation> operations) {
 	    super(BatchOperationManager.this.getMicroservice(),
 		    BatchOperationManager.this.getTenantEngine().getTenant());
 	    this.unprocessed = unprocessed;
+	    this.operations = operations;
 	}
 
 	/*
@@ -413,49 +500,107 @@ public class BatchOperationManager extends TenantEngineLifecycleComponent implem
 	 */
 	@Override
 	public void runAsSystemUser() throws SiteWhereException {
-	    getLogger().info("Processing batch element: " + getUnprocessed().getBatchElement().getId().toString());
-
-	    // Check whether manager has been paused.
-	    handlePauseAndThrottle();
-
-	    // Only process unprocessed elements.
-	    IBatchElement element = getUnprocessed().getBatchElement();
-	    IBatchOperation operation = getBatchManagement().getBatchOperation(element.getBatchOperationId());
-	    if (element.getProcessingStatus() != ElementProcessingStatus.Unprocessed) {
-		return;
+	    getLogger().info("Processing " + getUnprocessed().size() + " batch elements.");
+
+	    // Only process unprocessed elements, grouped by operation.
+	    Map<UUID, List<IBatchElement>> elementsByOperation = new HashMap<UUID, List<IBatchElement>>();
+	    for (IUnprocessedBatchElement current : getUnprocessed()) {
+		IBatchElement element = current.getBatchElement();
+		if (element.getProcessingStatus() != ElementProcessingStatus.Unprocessed) {
+		    continue;
+		}
+		List<IBatchElement> elements = elementsByOperation.get(element.getBatchOperationId());
+		if (elements == null) {
+		    elements = new ArrayList<IBatchElement>();
+		    elementsByOperation.put(element.getBatchOperationId(), elements);
+		}
+		elements.add(element);
+	    }
+	    for (UUID operationId : elementsByOperation.keySet()) {
+		IBatchOperation operation = getOperations().get(operationId);
+		if (operation == null) {
+		    operation = getBatchManagement().getBatchOperation(operationId);
+		    if (operation == null) {
+			getLogger().warn("Skipping elements for unknown batch operation: " + operationId);
+			continue;
+		    }
+		    getOperations().put(operationId, operation);
+		}
+		processElements(operation, elementsByOperation.get(operationId));
 	    }
+	}
 
-	    // Indicate element is being processed.
-	    BatchElementCreateRequest request = new BatchElementCreateRequest();
-	    request.setProcessingStatus(ElementProcessingStatus.Processing);
-	    getBatchManagement().updateBatchElement(element.getId(), request);
+	/**
+	 * Process elements that belong to a single batch operation.
+	 * 
+	 * @param operation
+	 * @param elements
+	 * @throws SiteWhereException
+	 */
+	protected void processElements(IBatchOperation operation, List<IBatchElement> elements)
+		throws SiteWhereException {
+	    // Indicate elements are being processed (recovering stale claims).
+	    List<UUID> ids = new ArrayList<UUID>();
+	    for (IBatchElement element : elements) {
+		ids.add(element.getId());
+	    }
+	    Date staleBefore = new Date(System.currentTimeMillis() - getElementClaimTimeoutMs());
+	    Set<UUID> claimed = new HashSet<UUID>(
+		    getBatchManagement().claimBatchElements(operation.getId(), ids, staleBefore));
 
-	    request = new BatchElementCreateRequest();
-	    request.setMetadata(new HashMap<String, String>());
-	    ElementProcessingStatus status = ElementProcessingStatus.Succeeded;
+	    Map<UUID, IBatchElementCreateRequest> results = new HashMap<UUID, IBatchElementCreateRequest>();
+	    IBatchOperationHandler handler = getHandlersByOperationType().get(operation.getOperationType());
 	    try {
-		IBatchOperationHandler handler = getHandlersByOperationType().get(operation.getOperationType());
-		if (handler != null) {
-		    status = handler.process(operation, element, request);
-		} else {
-		    status = ElementProcessingStatus.Failed;
-		}
+		for (IBatchElement element : elements) {
+		    // Skip elements already claimed by an earlier delivery.
+		    if (!claimed.contains(element.getId())) {
+			continue;
+		    }
+
+		    // Potentially pause or throttle batch element processing.
+		    handlePauseAndThrottle();
 
-		// Indicate element succeeded in processing.
-		request.setProcessingStatus(status);
-		request.setProcessedDate(new Date());
-	    } catch (SiteWhereException t) {
-		// Indicate element failed in processing.
-		getLogger().error("Error processing batch invocation element.", t);
-		request.setProcessingStatus(ElementProcessingStatus.Failed);
+		    BatchElementCreateRequest request = new BatchElementCreateRequest();
+		    request.setMetadata(new HashMap<String, String>());
+		    try {
+			ElementProcessingStatus status = ElementProcessingStatus.Failed;
+			if (handler != null) {
+			    status = handler.process(operation, element, request);
+			}
+
+			// Indicate element succeeded in processing.
+			request.setProcessingStatus(status);
+			request.setProcessedDate(new Date());
+		    } catch (Throwable t) {
+			// Indicate element failed in processing.
+			getLogger().error("Error processing batch invocation element.", t);
+			request.setProcessingStatus(ElementProcessingStatus.Failed);
+		    }
+		    results.put(element.getId(), request);
+		}
 	    } finally {
-		getBatchManagement().updateBatchElement(element.getId(), request);
+		getBatchManagement().updateBatchElements(operation.getId(), ElementProcessingStatus.Processing,
+			results);
 	    }
 	}
 
-	protected IUnprocessedBatchElement getUnprocessed() {
+	protected List<IUnprocessedBatchElement> getUnprocessed() {
 	    return unprocessed;
 	}
+
+	protected Map<UUID, IBatchOperation> getOperations() {
+	    return operations;
+	}
+    }
+
+    /**
+     * Get time after which an element left in processing is considered stale.
+     * Allows for the throttling delay applied to each element in a chunk.
+     * 
+     * @return
+     */
+    protected long getElementClaimTimeoutMs() {
+	return ELEMENT_CLAIM_TIMEOUT_MS + (getThrottleDelayMs() * ELEMENT_PROCESS_CHUNK_SIZE);
     }
 
     /**
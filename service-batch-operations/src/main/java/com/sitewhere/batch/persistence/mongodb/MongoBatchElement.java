@@ -40,6 +40,9 @@ public class MongoBatchElement implements MongoConverter<IBatchElement> {
     /** Property for date element was processed */
     public static final String PROP_PROCESSED_DATE = "prdt";
 
+    /** Property for token of the last bulk update applied to element */
+    public static final String PROP_UPDATE_TOKEN = "uptk";
+
     /*
      * (non-Javadoc)
      * 
@@ -7,24 +7,38 @@
  */
 package com.sitewhere.batch.persistence.mongodb;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.bson.Document;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClientException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.sitewhere.batch.persistence.BatchManagementPersistence;
 import com.sitewhere.batch.spi.microservice.IBatchOperationsMicroservice;
 import com.sitewhere.mongodb.IMongoConverterLookup;
 import com.sitewhere.mongodb.MongoPersistence;
 import com.sitewhere.mongodb.MongoTenantComponent;
+import com.sitewhere.mongodb.common.MongoMetadataProvider;
 import com.sitewhere.mongodb.common.MongoPersistentEntity;
 import com.sitewhere.rest.model.batch.BatchElement;
 import com.sitewhere.rest.model.batch.BatchOperation;
 import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.batch.ElementProcessingStatus;
 import com.sitewhere.spi.batch.IBatchElement;
 import com.sitewhere.spi.batch.IBatchManagement;
 import com.sitewhere.spi.batch.IBatchOperation;
@@ -198,9 +212,66 @@ public class MongoBatchManagement extends MongoTenantComponent<BatchManagementMo
 	Document created = MongoBatchElement.toDocument(element);
 	MongoPersistence.insert(elements, created, ErrorCode.DuplicateBatchElement);
 
+	Map<ElementProcessingStatus, Integer> deltas = new HashMap<>();
+	deltas.put(element.getProcessingStatus(), 1);
+	updateElementCounts(batchOperationId, deltas);
+
 	return element;
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#createBatchElements(java.util.UUID,
+     * java.util.List)
+     */
+    @Override
+    public List<IBatchElement> createBatchElements(UUID batchOperationId, List<IBatchElementCreateRequest> requests)
+	    throws SiteWhereException {
+	MongoCollection<Document> elements = getMongoClient().getBatchOperationElementsCollection();
+	IBatchOperation operation = getBatchOperation(batchOperationId);
+
+	// Build documents for all requests that reference a valid device.
+	List<IBatchElement> results = new ArrayList<>();
+	List<Document> created = new ArrayList<>();
+	List<Integer> resultIndexes = new ArrayList<>();
+	for (IBatchElementCreateRequest request : requests) {
+	    IDevice device = getDeviceManagement().getDeviceByToken(request.getDeviceToken());
+	    if (device == null) {
+		results.add(null);
+		continue;
+	    }
+	    BatchElement element = BatchManagementPersistence.batchElementCreateLogic(operation, device);
+	    created.add(MongoBatchElement.toDocument(element));
+	    resultIndexes.add(results.size());
+	    results.add(element);
+	}
+	if (created.isEmpty()) {
+	    return results;
+	}
+
+	// Unordered insert so a failed element does not stop the rest of the chunk.
+	int inserted = created.size();
+	try {
+	    elements.insertMany(created, new InsertManyOptions().ordered(false));
+	} catch (MongoBulkWriteException e) {
+	    for (BulkWriteError error : e.getWriteErrors()) {
+		if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+		    getLogger().error("Unable to insert batch element: " + error.getMessage());
+		}
+		results.set(resultIndexes.get(error.getIndex()), null);
+		inserted--;
+	    }
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	}
+
+	Map<ElementProcessingStatus, Integer> deltas = new HashMap<>();
+	deltas.put(ElementProcessingStatus.Unprocessed, inserted);
+	updateElementCounts(batchOperationId, deltas);
+
+	return results;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.batch.IBatchManagement#updateBatchElement(java.util.UUID,
@@ -213,15 +284,157 @@ public class MongoBatchManagement extends MongoTenantComponent<BatchManagementMo
 	Document dbElement = assertBatchElement(elementId);
 
 	BatchElement element = MongoBatchElement.fromDocument(dbElement);
+	ElementProcessingStatus previous = element.getProcessingStatus();
 	BatchManagementPersistence.batchElementUpdateLogic(request, element);
 
 	Document updated = MongoBatchElement.toDocument(element);
 
 	Document query = new Document(MongoBatchElement.PROP_ID, elementId);
 	MongoPersistence.update(elements, query, updated);
+
+	if ((previous != null) && (previous != element.getProcessingStatus())) {
+	    Map<ElementProcessingStatus, Integer> deltas = new HashMap<>();
+	    deltas.put(previous, -1);
+	    deltas.put(element.getProcessingStatus(), 1);
+	    updateElementCounts(element.getBatchOperationId(), deltas);
+	}
 	return MongoBatchElement.fromDocument(updated);
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#updateBatchElements(java.util.UUID,
+     * com.sitewhere.spi.batch.ElementProcessingStatus, java.util.Map)
+     */
+    @Override
+    public List<UUID> updateBatchElements(UUID batchOperationId, ElementProcessingStatus expected,
+	    Map<UUID, IBatchElementCreateRequest> requestsByElementId) throws SiteWhereException {
+	MongoCollection<Document> elements = getMongoClient().getBatchOperationElementsCollection();
+
+	// Tag matched elements so the ids actually moved can be read back.
+	String updateToken = UUID.randomUUID().toString();
+
+	// Group updates by resulting status so matched counts can be attributed.
+	Map<ElementProcessingStatus, List<WriteModel<Document>>> updatesByStatus = new HashMap<>();
+	for (Map.Entry<UUID, IBatchElementCreateRequest> entry : requestsByElementId.entrySet()) {
+	    IBatchElementCreateRequest request = entry.getValue();
+	    ElementProcessingStatus status = (request.getProcessingStatus() != null) ? request.getProcessingStatus()
+		    : expected;
+	    Document query = new Document(MongoBatchElement.PROP_ID, entry.getKey())
+		    .append(MongoBatchElement.PROP_PROCESSING_STATUS, expected.name());
+	    Document fields = new Document(MongoBatchElement.PROP_PROCESSING_STATUS, status.name())
+		    .append(MongoBatchElement.PROP_UPDATE_TOKEN, updateToken);
+	    if (request.getProcessedDate() != null) {
+		fields.append(MongoBatchElement.PROP_PROCESSED_DATE, request.getProcessedDate());
+	    }
+	    if (request.getMetadata() != null) {
+		for (Map.Entry<String, String> metadata : request.getMetadata().entrySet()) {
+		    fields.append(MongoMetadataProvider.PROP_METADATA + "." + metadata.getKey(), metadata.getValue());
+		}
+	    }
+	    List<WriteModel<Document>> updates = updatesByStatus.get(status);
+	    if (updates == null) {
+		updates = new ArrayList<>();
+		updatesByStatus.put(status, updates);
+	    }
+	    updates.add(new UpdateOneModel<Document>(query, new Document("$set", fields)));
+	}
+
+	List<UUID> updated = new ArrayList<>();
+	Map<ElementProcessingStatus, Integer> deltas = new HashMap<>();
+	try {
+	    int matchedTotal = 0;
+	    for (ElementProcessingStatus status : updatesByStatus.keySet()) {
+		int matched = elements.bulkWrite(updatesByStatus.get(status), new BulkWriteOptions().ordered(false))
+			.getMatchedCount();
+		matchedTotal += matched;
+		if (status != expected) {
+		    Integer current = deltas.get(expected);
+		    deltas.put(expected, ((current != null) ? current : 0) - matched);
+		    deltas.put(status, matched);
+		}
+	    }
+	    if (matchedTotal > 0) {
+		List<UUID> ids = new ArrayList<>(requestsByElementId.keySet());
+		Document query = new Document(MongoBatchElement.PROP_ID, new Document("$in", ids))
+			.append(MongoBatchElement.PROP_UPDATE_TOKEN, updateToken);
+		Document projection = new Document(MongoBatchElement.PROP_ID, 1);
+		for (Document match : elements.find(query).projection(projection)) {
+		    updated.add((UUID) match.get(MongoBatchElement.PROP_ID));
+		}
+	    }
+	} catch (MongoBulkWriteException e) {
+	    throw new SiteWhereException("Error during MongoDB bulk update.", e);
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	} finally {
+	    updateElementCounts(batchOperationId, deltas);
+	}
+	return updated;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#claimBatchElements(java.util.UUID,
+     * java.util.List, java.util.Date)
+     */
+    @Override
+    public List<UUID> claimBatchElements(UUID batchOperationId, List<UUID> elementIds, Date staleBefore)
+	    throws SiteWhereException {
+	MongoCollection<Document> elements = getMongoClient().getBatchOperationElementsCollection();
+
+	// Tag claimed elements so the ids actually claimed can be read back.
+	String updateToken = UUID.randomUUID().toString();
+	Document update = new Document("$set",
+		new Document(MongoBatchElement.PROP_PROCESSING_STATUS, ElementProcessingStatus.Processing.name())
+			.append(MongoBatchElement.PROP_PROCESSED_DATE, new Date())
+			.append(MongoBatchElement.PROP_UPDATE_TOKEN, updateToken));
+
+	List<UUID> claimed = new ArrayList<>();
+	Map<ElementProcessingStatus, Integer> deltas = new HashMap<>();
+	try {
+	    // Reclaim elements left processing by a processor that failed.
+	    Document stale = new Document(MongoBatchElement.PROP_ID, new Document("$in", elementIds))
+		    .append(MongoBatchElement.PROP_PROCESSING_STATUS, ElementProcessingStatus.Processing.name())
+		    .append(MongoBatchElement.PROP_PROCESSED_DATE, new Document("$lt", staleBefore));
+	    elements.updateMany(stale, update);
+
+	    Document unprocessed = new Document(MongoBatchElement.PROP_ID, new Document("$in", elementIds))
+		    .append(MongoBatchElement.PROP_PROCESSING_STATUS, ElementProcessingStatus.Unprocessed.name());
+	    int moved = (int) elements.updateMany(unprocessed, update).getMatchedCount();
+	    deltas.put(ElementProcessingStatus.Unprocessed, -moved);
+	    deltas.put(ElementProcessingStatus.Processing, moved);
+
+	    Document query = new Document(MongoBatchElement.PROP_ID, new Document("$in", elementIds))
+		    .append(MongoBatchElement.PROP_UPDATE_TOKEN, updateToken);
+	    Document projection = new Document(MongoBatchElement.PROP_ID, 1);
+	    for (Document match : elements.find(query).projection(projection)) {
+		claimed.add((UUID) match.get(MongoBatchElement.PROP_ID));
+	    }
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	} finally {
+	    updateElementCounts(batchOperationId, deltas);
+	}
+	return claimed;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#getBatchElementCounts(java.util.UUID)
+     */
+    @Override
+    public Map<ElementProcessingStatus, Long> getBatchElementCounts(UUID batchOperationId) throws SiteWhereException {
+	Document operation = assertBatchOperation(batchOperationId);
+	Document dbCounts = (Document) operation.get(MongoBatchOperation.PROP_ELEMENT_COUNTS);
+	Map<ElementProcessingStatus, Long> counts = new HashMap<>();
+	for (ElementProcessingStatus status : ElementProcessingStatus.values()) {
+	    Number count = (dbCounts != null) ? (Number) dbCounts.get(status.name()) : null;
+	    counts.put(status, (count != null) ? count.longValue() : 0L);
+	}
+	return counts;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -238,6 +451,34 @@ public class MongoBatchManagement extends MongoTenantComponent<BatchManagementMo
 	return createBatchOperation(generic);
     }
 
+    /**
+     * Atomically adjust element counts by processing status on the batch
+     * operation document.
+     * 
+     * @param batchOperationId
+     * @param deltas
+     * @throws SiteWhereException
+     */
+    protected void updateElementCounts(UUID batchOperationId, Map<ElementProcessingStatus, Integer> deltas)
+	    throws SiteWhereException {
+	Document increments = new Document();
+	for (ElementProcessingStatus status : deltas.keySet()) {
+	    if (deltas.get(status) != 0) {
+		increments.append(MongoBatchOperation.PROP_ELEMENT_COUNTS + "." + status.name(), deltas.get(status));
+	    }
+	}
+	if (increments.isEmpty()) {
+	    return;
+	}
+	try {
+	    MongoCollection<Document> ops = getMongoClient().getBatchOperationsCollection();
+	    Document query = new Document(MongoPersistentEntity.PROP_ID, batchOperationId);
+	    ops.updateOne(query, new Document("$inc", increments));
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	}
+    }
+
     /**
      * Returns the {@link Document} for the batch operation with the given token.
      * Returns null if not found.
@@ -39,6 +39,9 @@ public class MongoBatchOperation implements MongoConverter<IBatchOperation> {
     /** Property for processing end date */
     public static final String PROP_PROC_END_DATE = "processingEndDate";
 
+    /** Property for element counts by processing status */
+    public static final String PROP_ELEMENT_COUNTS = "elementCounts";
+
     /*
      * (non-Javadoc)
      * 
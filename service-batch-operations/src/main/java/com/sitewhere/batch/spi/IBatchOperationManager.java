@@ -50,6 +50,15 @@ public interface IBatchOperationManager extends ITenantEngineLifecycleComponent
      */
     public void processBatchElement(IUnprocessedBatchElement element) throws SiteWhereException;
 
+    /**
+     * Process a group of unprocessed batch elements, such as those delivered by a
+     * single consumer poll.
+     * 
+     * @param elements
+     * @throws SiteWhereException
+     */
+    public void processBatchElements(List<IUnprocessedBatchElement> elements) throws SiteWhereException;
+
     /**
      * Get consumer for unprocessed batch operations.
      * 
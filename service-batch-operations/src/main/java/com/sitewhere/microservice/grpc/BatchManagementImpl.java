@@ -7,6 +7,9 @@
  */
 package com.sitewhere.microservice.grpc;
 
+import java.util.Map;
+import java.util.UUID;
+
 import com.sitewhere.batch.spi.microservice.IBatchOperationsMicroservice;
 import com.sitewhere.common.MarshalUtils;
 import com.sitewhere.grpc.client.GrpcUtils;
@@ -36,6 +39,7 @@ import com.sitewhere.grpc.service.GUpdateBatchElementRequest;
 import com.sitewhere.grpc.service.GUpdateBatchElementResponse;
 import com.sitewhere.grpc.service.GUpdateBatchOperationRequest;
 import com.sitewhere.grpc.service.GUpdateBatchOperationResponse;
+import com.sitewhere.spi.batch.ElementProcessingStatus;
 import com.sitewhere.spi.batch.IBatchElement;
 import com.sitewhere.spi.batch.IBatchManagement;
 import com.sitewhere.spi.batch.IBatchOperation;
@@ -151,7 +155,23 @@ public class BatchManagementImpl extends BatchManagementGrpc.BatchManagementImpl
     @Override
     public void getBatchOperation(GGetBatchOperationRequest request,
 	    StreamObserver<GGetBatchOperationResponse> responseObserver) {
-	throw new RuntimeException("Implement getBatchOperation()");
+	try {
+	    GrpcUtils.handleServerMethodEntry(this, BatchManagementGrpc.getGetBatchOperationMethod());
+	    UUID batchOperationId = CommonModelConverter.asApiUuid(request.getBatchOperationId());
+	    IBatchOperation apiResult = getBatchManagement().getBatchOperation(batchOperationId);
+	    GGetBatchOperationResponse.Builder response = GGetBatchOperationResponse.newBuilder();
+	    if (apiResult != null) {
+		// Element counts ride along so clients need not scan elements per status.
+		Map<ElementProcessingStatus, Long> counts = getBatchManagement().getBatchElementCounts(batchOperationId);
+		response.setBatchOperation(BatchModelConverter.asGrpcBatchOperation(apiResult, counts));
+	    }
+	    responseObserver.onNext(response.build());
+	    responseObserver.onCompleted();
+	} catch (Throwable e) {
+	    GrpcUtils.handleServerMethodException(BatchManagementGrpc.getGetBatchOperationMethod(), e, responseObserver);
+	} finally {
+	    GrpcUtils.handleServerMethodExit(BatchManagementGrpc.getGetBatchOperationMethod());
+	}
     }
 
     /*
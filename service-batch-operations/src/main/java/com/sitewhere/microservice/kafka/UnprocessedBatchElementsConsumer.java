@@ -24,6 +24,7 @@ import com.sitewhere.grpc.model.BatchModel.GUnprocessedBatchElement;
 import com.sitewhere.microservice.kafka.DirectKafkaConsumer;
 import com.sitewhere.rest.model.batch.kafka.UnprocessedBatchElement;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.batch.kafka.IUnprocessedBatchElement;
 
 /**
  * Listens on Kafka topic for unprocessed batch elements.
@@ -74,19 +75,27 @@ public class UnprocessedBatchElementsConsumer extends DirectKafkaConsumer implem
     @Override
     public void attemptToProcess(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records)
 	    throws SiteWhereException {
+	List<IUnprocessedBatchElement> elements = new ArrayList<IUnprocessedBatchElement>();
 	for (ConsumerRecord<String, byte[]> record : records) {
-	    received(record.key(), record.value());
+	    IUnprocessedBatchElement element = received(record.key(), record.value());
+	    if (element != null) {
+		elements.add(element);
+	    }
+	}
+	if (!elements.isEmpty()) {
+	    getBatchOperationManager().processBatchElements(elements);
 	}
     }
 
     /**
-     * Handle processing of a single record.
+     * Decode a single record.
      * 
      * @param key
      * @param message
+     * @return element or null if payload could not be parsed
      * @throws SiteWhereException
      */
-    public void received(String key, byte[] message) throws SiteWhereException {
+    public IUnprocessedBatchElement received(String key, byte[] message) throws SiteWhereException {
 	try {
 	    GUnprocessedBatchElement grpc = BatchModelMarshaler.parseUnprocessedBatchElementPayloadMessage(message);
 	    UnprocessedBatchElement unprocessed = BatchModelConverter.asApiUnprocessedBatchElement(grpc);
@@ -94,9 +103,10 @@ public class UnprocessedBatchElementsConsumer extends DirectKafkaConsumer implem
 		getLogger().debug("Received unprocessed batch element payload:\n\n"
 			+ MarshalUtils.marshalJsonAsPrettyString(unprocessed));
 	    }
-	    getBatchOperationManager().processBatchElement(unprocessed);
+	    return unprocessed;
 	} catch (SiteWhereException e) {
 	    getLogger().error("Unable to parse batch operation payload.", e);
+	    return null;
 	}
     }
 
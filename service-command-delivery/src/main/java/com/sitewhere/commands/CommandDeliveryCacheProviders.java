@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.commands;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.sitewhere.grpc.client.cache.CacheIdentifier;
+import com.sitewhere.grpc.client.cache.CacheProvider;
+import com.sitewhere.grpc.client.spi.cache.ICacheConfiguration;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.command.IDeviceCommand;
+
+/**
+ * Cache providers for entities needed to deliver commands.
+ */
+public class CommandDeliveryCacheProviders {
+
+    /**
+     * Cache for device commands by id.
+     * 
+     * @author Derek
+     */
+    public static class DeviceCommandByIdCache extends CacheProvider<UUID, IDeviceCommand> {
+
+	public DeviceCommandByIdCache(ICacheConfiguration configuration) {
+	    super(CacheIdentifier.DeviceCommandById, UUID.class, IDeviceCommand.class, configuration);
+	}
+    }
+
+    /**
+     * Cache for active assignments by device id.
+     * 
+     * @author Derek
+     */
+    public static class ActiveAssignmentsCache extends CacheProvider<UUID, ActiveAssignments> {
+
+	public ActiveAssignmentsCache(ICacheConfiguration configuration) {
+	    super(CacheIdentifier.ActiveDeviceAssignments, UUID.class, ActiveAssignments.class, configuration);
+	}
+    }
+
+    /**
+     * Immutable snapshot of the active assignments for a device.
+     * 
+     * @author Derek
+     */
+    public static class ActiveAssignments {
+
+	/** Active assignments */
+	private final List<IDeviceAssignment> assignments;
+
+	public ActiveAssignments(List<IDeviceAssignment> assignments) {
+	    this.assignments = (assignments != null) ? Collections.unmodifiableList(assignments)
+		    : Collections.emptyList();
+	}
+
+	/**
+	 * Indicates whether an assignment is among the active assignments.
+	 * 
+	 * @param assignmentId
+	 * @return
+	 */
+	public boolean contains(UUID assignmentId) {
+	    for (IDeviceAssignment assignment : assignments) {
+		if (assignment.getId().equals(assignmentId)) {
+		    return true;
+		}
+	    }
+	    return false;
+	}
+
+	public List<IDeviceAssignment> getAssignments() {
+	    return assignments;
+	}
+    }
+}
@@ -7,9 +7,15 @@
  */
 package com.sitewhere.commands;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
+import com.sitewhere.commands.CommandDeliveryCacheProviders.ActiveAssignments;
+import com.sitewhere.commands.routing.CommandDelivery;
 import com.sitewhere.commands.routing.CommandRoutingLogic;
+import com.sitewhere.commands.spi.ICommandDelivery;
+import com.sitewhere.commands.spi.ICommandDestinationsManager;
 import com.sitewhere.commands.spi.ICommandExecutionBuilder;
 import com.sitewhere.commands.spi.ICommandProcessingStrategy;
 import com.sitewhere.commands.spi.ICommandTargetResolver;
@@ -17,18 +23,23 @@ import com.sitewhere.commands.spi.IOutboundCommandRouter;
 import com.sitewhere.commands.spi.kafka.IUndeliveredCommandInvocationsProducer;
 import com.sitewhere.commands.spi.microservice.ICommandDeliveryMicroservice;
 import com.sitewhere.commands.spi.microservice.ICommandDeliveryTenantEngine;
+import com.sitewhere.grpc.client.cache.CacheConfiguration;
+import com.sitewhere.grpc.client.spi.cache.ICacheProvider;
 import com.sitewhere.grpc.client.spi.client.IDeviceManagementApiChannel;
+import com.sitewhere.rest.model.device.event.kafka.EnrichedEventPayload;
 import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.IDeviceNestingContext;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.command.IDeviceCommandExecution;
 import com.sitewhere.spi.device.command.ISystemCommand;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.device.event.IDeviceEventContext;
+import com.sitewhere.spi.device.event.kafka.IEnrichedEventPayload;
 import com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
@@ -45,6 +56,24 @@ public class DefaultCommandProcessingStrategy extends TenantEngineLifecycleCompo
     /** Configured command execution builder */
     private ICommandExecutionBuilder commandExecutionBuilder = new DefaultCommandExecutionBuilder();
 
+    /** Maximum number of entries in each cache */
+    private static final int CACHE_MAX_SIZE = 10000;
+
+    /**
+     * Time device commands remain cached. Changes to device commands are not
+     * signalled to this service, so entries expire quickly.
+     */
+    private static final int COMMAND_CACHE_TTL_IN_SECONDS = 30;
+
+    /** Time active assignments remain cached (matches device cache) */
+    private static final int ASSIGNMENT_CACHE_TTL_IN_SECONDS = 60;
+
+    /** Cache of device commands by id */
+    private ICacheProvider<UUID, IDeviceCommand> commandCache;
+
+    /** Cache of active assignments by device id */
+    private ICacheProvider<UUID, ActiveAssignments> activeAssignmentsCache;
+
     public DefaultCommandProcessingStrategy() {
 	super(LifecycleComponentType.CommandProcessingStrategy);
     }
@@ -58,27 +87,121 @@ public class DefaultCommandProcessingStrategy extends TenantEngineLifecycleCompo
     @Override
     public void deliverCommand(IDeviceEventContext context, IDeviceCommandInvocation invocation)
 	    throws SiteWhereException {
-	getLogger().debug("Command processing strategy handling invocation.");
-	IDeviceCommand command = getDeviceManagementApiChannel().getDeviceCommand(invocation.getDeviceCommandId());
-	if (command != null) {
-	    IDeviceCommandExecution execution = getCommandExecutionBuilder().createExecution(command, invocation);
-	    List<IDeviceAssignment> assignments = getCommandTargetResolver().resolveTargets(invocation);
-	    for (IDeviceAssignment assignment : assignments) {
-		IDevice device = getDeviceManagementApiChannel().getDevice(assignment.getDeviceId());
-		if (device == null) {
-		    throw new SiteWhereException("Targeted assignment references device that does not exist.");
-		}
+	EnrichedEventPayload payload = new EnrichedEventPayload();
+	payload.setEventContext(context);
+	payload.setEvent(invocation);
+	List<IEnrichedEventPayload> payloads = new ArrayList<IEnrichedEventPayload>();
+	payloads.add(payload);
+	deliverCommands(payloads);
+    }
 
-		List<IDeviceAssignment> active = getDeviceManagementApiChannel()
-			.getActiveDeviceAssignments(device.getId());
-		IDeviceNestingContext nesting = NestedDeviceSupport.calculateNestedDeviceInformation(device,
-			getTenantEngine().getTenant());
-		CommandRoutingLogic.routeCommand(getOutboundCommandRouter(), getUndeliveredCommandInvocationsProducer(),
-			context, execution, nesting, active);
+    /*
+     * @see
+     * com.sitewhere.commands.spi.ICommandProcessingStrategy#deliverCommands(java.
+     * util.List)
+     */
+    @Override
+    public void deliverCommands(List<IEnrichedEventPayload> payloads) throws SiteWhereException {
+	getLogger().debug("Command processing strategy handling " + payloads.size() + " invocations.");
+	List<ICommandDelivery> deliveries = new ArrayList<ICommandDelivery>();
+	for (IEnrichedEventPayload payload : payloads) {
+	    IDeviceCommandInvocation invocation = (IDeviceCommandInvocation) payload.getEvent();
+	    try {
+		IDeviceCommand command = getDeviceCommand(invocation.getDeviceCommandId());
+		if (command == null) {
+		    throw new SiteWhereException("Invalid command referenced from invocation.");
+		}
+		IDeviceCommandExecution execution = getCommandExecutionBuilder().createExecution(command, invocation);
+		List<IDeviceAssignment> assignments = getCommandTargetResolver().resolveTargets(invocation);
+		for (IDeviceAssignment assignment : assignments) {
+		    deliveries.add(createDelivery(payload.getEventContext(), execution, assignment));
+		}
+	    } catch (Throwable e) {
+		getLogger().error("Unable to process command invocation.", e);
 	    }
-	} else {
-	    throw new SiteWhereException("Invalid command referenced from invocation.");
 	}
+	CommandRoutingLogic.routeCommands(getOutboundCommandRouter(), getCommandDestinationsManager(),
+		getUndeliveredCommandInvocationsProducer(), deliveries);
+    }
+
+    /**
+     * Get device command from cache or load it if not cached.
+     * 
+     * @param commandId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDeviceCommand getDeviceCommand(UUID commandId) throws SiteWhereException {
+	IDeviceCommand command = getCommandCache().getCacheEntry(getTenantEngine().getTenant(), commandId);
+	if (command == null) {
+	    command = getDeviceManagementApiChannel().getDeviceCommand(commandId);
+	    getCommandCache().setCacheEntry(getTenantEngine().getTenant(), commandId, command);
+	}
+	return command;
+    }
+
+    /**
+     * Create delivery for a targeted assignment. The device and its parent are
+     * resolved through the cached device management API, so nesting is always
+     * calculated from the current parent of the device. A device whose cached
+     * parent does not match the event context is reloaded.
+     * 
+     * @param context
+     * @param execution
+     * @param assignment
+     * @return
+     * @throws SiteWhereException
+     */
+    protected ICommandDelivery createDelivery(IDeviceEventContext context, IDeviceCommandExecution execution,
+	    IDeviceAssignment assignment) throws SiteWhereException {
+	IDevice device = getCachedDeviceManagement().getDevice(assignment.getDeviceId());
+	if ((device != null) && hasMovedParent(device, context)) {
+	    device = getDeviceManagementApiChannel().getDevice(assignment.getDeviceId());
+	}
+	if (device == null) {
+	    throw new SiteWhereException("Targeted assignment references device that does not exist.");
+	}
+	IDeviceNestingContext nesting = NestedDeviceSupport.calculateNestedDeviceInformation(device,
+		getCachedDeviceManagement());
+	return new CommandDelivery(context, execution, nesting, getActiveAssignments(device, assignment));
+    }
+
+    /**
+     * Get active assignments for a device from cache or load them if not cached.
+     * Cached assignments are reloaded if they do not include the targeted
+     * assignment.
+     * 
+     * @param device
+     * @param assignment
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<IDeviceAssignment> getActiveAssignments(IDevice device, IDeviceAssignment assignment)
+	    throws SiteWhereException {
+	ActiveAssignments active = getActiveAssignmentsCache().getCacheEntry(getTenantEngine().getTenant(),
+		device.getId());
+	if ((active == null) || !active.contains(assignment.getId())) {
+	    active = new ActiveAssignments(getDeviceManagementApiChannel().getActiveDeviceAssignments(device.getId()));
+	    getActiveAssignmentsCache().setCacheEntry(getTenantEngine().getTenant(), device.getId(), active);
+	}
+	return active.getAssignments();
+    }
+
+    /**
+     * Indicates whether the event context shows the device has moved to a
+     * different parent than the one cached.
+     * 
+     * @param device
+     * @param context
+     * @return
+     */
+    protected boolean hasMovedParent(IDevice device, IDeviceEventContext context) {
+	if ((context != null) && device.getId().equals(context.getDeviceId())) {
+	    UUID parentId = device.getParentDeviceId();
+	    UUID contextParentId = context.getParentDeviceId();
+	    return (parentId == null) ? (contextParentId != null) : !parentId.equals(contextParentId);
+	}
+	return false;
     }
 
     /*
@@ -99,7 +222,7 @@ public class DefaultCommandProcessingStrategy extends TenantEngineLifecycleCompo
 	List<IDeviceAssignment> assignments = getDeviceManagementApiChannel()
 		.getActiveDeviceAssignments(device.getId());
 	IDeviceNestingContext nesting = NestedDeviceSupport.calculateNestedDeviceInformation(device,
-		getTenantEngine().getTenant());
+		getDeviceManagementApiChannel());
 	CommandRoutingLogic.routeSystemCommand(getOutboundCommandRouter(), command, nesting, assignments);
     }
 
@@ -110,9 +233,18 @@ public class DefaultCommandProcessingStrategy extends TenantEngineLifecycleCompo
      */
     @Override
     public void initialize(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.commandCache = new CommandDeliveryCacheProviders.DeviceCommandByIdCache(
+		new CacheConfiguration(CACHE_MAX_SIZE, COMMAND_CACHE_TTL_IN_SECONDS));
+	this.activeAssignmentsCache = new CommandDeliveryCacheProviders.ActiveAssignmentsCache(
+		new CacheConfiguration(CACHE_MAX_SIZE, ASSIGNMENT_CACHE_TTL_IN_SECONDS));
+
 	// Composite step for initializing processing strategy.
 	ICompositeLifecycleStep init = new CompositeLifecycleStep("Initialize " + getComponentName());
 
+	// Initialize caches.
+	init.addInitializeStep(this, getCommandCache(), true);
+	init.addInitializeStep(this, getActiveAssignmentsCache(), true);
+
 	// Initialize command execution builder.
 	init.addInitializeStep(this, getCommandExecutionBuilder(), true);
 
@@ -134,6 +266,10 @@ public class DefaultCommandProcessingStrategy extends TenantEngineLifecycleCompo
 	// Composite step for starting processing strategy.
 	ICompositeLifecycleStep start = new CompositeLifecycleStep("Start " + getComponentName());
 
+	// Start caches.
+	start.addStartStep(this, getCommandCache(), true);
+	start.addStartStep(this, getActiveAssignmentsCache(), true);
+
 	// Start command execution builder.
 	start.addStartStep(this, getCommandExecutionBuilder(), true);
 
@@ -162,6 +298,10 @@ public class DefaultCommandProcessingStrategy extends TenantEngineLifecycleCompo
 	// Stop command execution builder.
 	stop.addStopStep(this, getCommandExecutionBuilder());
 
+	// Stop caches.
+	stop.addStopStep(this, getActiveAssignmentsCache());
+	stop.addStopStep(this, getCommandCache());
+
 	// Execute shutdown steps.
 	stop.execute(monitor);
     }
@@ -174,6 +314,14 @@ public class DefaultCommandProcessingStrategy extends TenantEngineLifecycleCompo
 	this.commandTargetResolver = commandTargetResolver;
     }
 
+    public ICacheProvider<UUID, IDeviceCommand> getCommandCache() {
+	return commandCache;
+    }
+
+    public ICacheProvider<UUID, ActiveAssignments> getActiveAssignmentsCache() {
+	return activeAssignmentsCache;
+    }
+
     public ICommandExecutionBuilder getCommandExecutionBuilder() {
 	return commandExecutionBuilder;
     }
@@ -186,6 +334,14 @@ public class DefaultCommandProcessingStrategy extends TenantEngineLifecycleCompo
 	return ((ICommandDeliveryMicroservice) getMicroservice()).getDeviceManagementApiChannel();
     }
 
+    private IDeviceManagement getCachedDeviceManagement() {
+	return ((ICommandDeliveryMicroservice) getMicroservice()).getCachedDeviceManagement();
+    }
+
+    private ICommandDestinationsManager getCommandDestinationsManager() {
+	return ((ICommandDeliveryTenantEngine) getTenantEngine()).getCommandDestinationsManager();
+    }
+
     private IOutboundCommandRouter getOutboundCommandRouter() {
 	return ((ICommandDeliveryTenantEngine) getTenantEngine()).getOutboundCommandRouter();
     }
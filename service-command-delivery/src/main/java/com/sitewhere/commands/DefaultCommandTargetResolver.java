@@ -12,10 +12,10 @@ import java.util.List;
 
 import com.sitewhere.commands.spi.ICommandTargetResolver;
 import com.sitewhere.commands.spi.microservice.ICommandDeliveryMicroservice;
-import com.sitewhere.grpc.client.spi.client.IDeviceManagementApiChannel;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
@@ -40,14 +40,21 @@ public class DefaultCommandTargetResolver extends TenantEngineLifecycleComponent
      */
     @Override
     public List<IDeviceAssignment> resolveTargets(IDeviceCommandInvocation invocation) throws SiteWhereException {
-	IDeviceAssignment assignment = getDeviceManagementApiChannel()
-		.getDeviceAssignment(invocation.getDeviceAssignmentId());
+	IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignment(invocation.getDeviceAssignmentId());
 	List<IDeviceAssignment> results = new ArrayList<IDeviceAssignment>();
-	results.add(assignment);
+	if (assignment != null) {
+	    results.add(assignment);
+	}
 	return results;
     }
 
-    private IDeviceManagementApiChannel<?> getDeviceManagementApiChannel() {
-	return ((ICommandDeliveryMicroservice) getMicroservice()).getDeviceManagementApiChannel();
+    /**
+     * Assignments are looked up through the cached device management API since
+     * many invocations target the same assignments.
+     * 
+     * @return
+     */
+    private IDeviceManagement getDeviceManagement() {
+	return ((ICommandDeliveryMicroservice) getMicroservice()).getCachedDeviceManagement();
     }
 }
\ No newline at end of file
@@ -13,7 +13,6 @@ import com.sitewhere.spi.device.IDeviceElementMapping;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.IDeviceNestingContext;
 import com.sitewhere.spi.device.util.DeviceUtils;
-import com.sitewhere.spi.tenant.ITenant;
 
 /**
  * Provides support logic for handling interactions with nested devices.
@@ -26,11 +25,12 @@ public class NestedDeviceSupport {
      * Perform common logic for locating device nesting information.
      * 
      * @param target
+     * @param deviceManagement
      * @return
      * @throws SiteWhereException
      */
-    public static NestedDeviceInformation calculateNestedDeviceInformation(IDevice target, ITenant tenant)
-	    throws SiteWhereException {
+    public static NestedDeviceInformation calculateNestedDeviceInformation(IDevice target,
+	    IDeviceManagement deviceManagement) throws SiteWhereException {
 	NestedDeviceInformation nested = new NestedDeviceInformation();
 
 	// No parent set. Treat target device as gateway.
@@ -40,7 +40,7 @@ public class NestedDeviceSupport {
 	}
 
 	// Resolve parent and verify it exists.
-	IDevice parent = getDeviceManagement(tenant).getDevice(target.getParentDeviceId());
+	IDevice parent = deviceManagement.getDevice(target.getParentDeviceId());
 	if (parent == null) {
 	    throw new SiteWhereException("Parent device reference points to device that does not exist.");
 	}
@@ -116,8 +116,4 @@ public class NestedDeviceSupport {
 	    this.path = path;
 	}
     }
-
-    private static IDeviceManagement getDeviceManagement(ITenant tenant) {
-	return null;
-    }
 }
\ No newline at end of file
@@ -215,6 +215,16 @@ public class CommandDeliveryModelProvider extends ConfigurationModelProvider {
 	CommonConnectorModel.addMqttCommonAttributes(builder, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY,
 		ConfigurationModelProvider.ATTR_GROUP_AUTHENTICATION);
 
+	builder.attribute((new AttributeNode.Builder("Connection pool size", "connectionPoolSize",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY)
+			.description("Number of connections opened to the broker for publishing commands.")
+			.defaultValue("4").build()));
+	builder.attribute((new AttributeNode.Builder("Max in-flight publishes", "maxInflightPublishes",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY)
+			.description("Number of unacknowledged command publishes allowed on each connection "
+				+ "before delivery waits.")
+			.defaultValue("100").build()));
+
 	return builder.build();
     }
 
@@ -7,15 +7,29 @@
  */
 package com.sitewhere.commands.destination;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.sitewhere.commands.routing.CommandRoutingLogic;
+import com.sitewhere.commands.spi.ICommandDelivery;
 import com.sitewhere.commands.spi.ICommandDestination;
 import com.sitewhere.commands.spi.ICommandDestinationsManager;
+import com.sitewhere.microservice.security.SystemUserCallable;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
 
 /**
  * Default {@link ICommandDestinationsManager} implementation.
@@ -24,9 +38,15 @@ import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
  */
 public class CommandDestinationsManager extends TenantEngineLifecycleComponent implements ICommandDestinationsManager {
 
+    /** Number of threads delivering to destinations in parallel */
+    private static final int DELIVERY_THREAD_COUNT = 10;
+
     /** Map of command destinations indexed by destination id */
     private Map<String, ICommandDestination<?, ?>> commandDestinations = new HashMap<>();
 
+    /** Executor for parallel delivery to destinations */
+    private ExecutorService deliveryExecutor;
+
     /*
      * @see
      * com.sitewhere.server.lifecycle.LifecycleComponent#initialize(com.sitewhere.
@@ -50,6 +70,7 @@ public class CommandDestinationsManager extends TenantEngineLifecycleComponent i
      */
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.deliveryExecutor = Executors.newFixedThreadPool(DELIVERY_THREAD_COUNT, new DeliveryThreadFactory());
 	for (ICommandDestination<?, ?> destination : getCommandDestinations().values()) {
 	    try {
 		startNestedComponent(destination, monitor, true);
@@ -73,6 +94,37 @@ public class CommandDestinationsManager extends TenantEngineLifecycleComponent i
 		getLogger().error("Error stopping command destination.", e);
 	    }
 	}
+	if (getDeliveryExecutor() != null) {
+	    getDeliveryExecutor().shutdown();
+	}
+    }
+
+    /*
+     * @see
+     * com.sitewhere.commands.spi.ICommandDestinationsManager#deliverCommands(java.
+     * util.Map)
+     */
+    @Override
+    public List<ICommandDelivery> deliverCommands(
+	    Map<ICommandDestination<?, ?>, List<ICommandDelivery>> deliveriesByDestination) throws SiteWhereException {
+	Map<Future<List<ICommandDelivery>>, List<ICommandDelivery>> pending = new LinkedHashMap<>();
+	for (Map.Entry<ICommandDestination<?, ?>, List<ICommandDelivery>> entry : deliveriesByDestination.entrySet()) {
+	    pending.put(getDeliveryExecutor().submit(new DestinationDelivery(entry.getKey(), entry.getValue())),
+		    entry.getValue());
+	}
+	Set<ICommandDelivery> failed = new LinkedHashSet<>();
+	for (Map.Entry<Future<List<ICommandDelivery>>, List<ICommandDelivery>> entry : pending.entrySet()) {
+	    try {
+		failed.addAll(entry.getKey().get());
+	    } catch (ExecutionException e) {
+		// Keep collecting so failures from other destinations are still reported.
+		getLogger().error("Unhandled exception delivering commands.", e.getCause());
+		failed.addAll(entry.getValue());
+	    } catch (InterruptedException e) {
+		throw new SiteWhereException("Interrupted while delivering commands.", e);
+	    }
+	}
+	return new ArrayList<>(failed);
     }
 
     /*
@@ -91,4 +143,62 @@ public class CommandDestinationsManager extends TenantEngineLifecycleComponent i
 	    getCommandDestinations().put(destination.getDestinationId(), destination);
 	}
     }
+
+    protected ExecutorService getDeliveryExecutor() {
+	return deliveryExecutor;
+    }
+
+    /**
+     * Delivers commands to a single destination in order and reports the ones
+     * that failed.
+     * 
+     * @author Derek
+     */
+    private class DestinationDelivery extends SystemUserCallable<List<ICommandDelivery>> {
+
+	/** Destination */
+	private ICommandDestination<?, ?> destination;
+
+	/** Commands to deliver */
+	private List<ICommandDelivery> deliveries;
+
+	public DestinationDelivery(ICommandDestination<?, ?> destination, List<ICommandDelivery> deliveries) {
+	    super(CommandDestinationsManager.this.getMicroservice(),
+		    CommandDestinationsManager.this.getTenantEngine().getTenant());
+	    this.destination = destination;
+	    this.deliveries = deliveries;
+	}
+
+	/*
+	 * @see com.sitewhere.microservice.security.SystemUserCallable#runAsSystemUser()
+	 */
+	@Override
+	public List<ICommandDelivery> runAsSystemUser() throws SiteWhereException {
+	    if (destination.getLifecycleStatus() != LifecycleStatus.Started) {
+		return deliveries;
+	    }
+	    List<ICommandDelivery> failed = new ArrayList<>();
+	    for (ICommandDelivery delivery : deliveries) {
+		try {
+		    CommandRoutingLogic.deliverCommand(destination, delivery.getExecution(), delivery.getNesting(),
+			    delivery.getAssignments());
+		} catch (Throwable t) {
+		    getLogger().error("Unable to deliver command to destination.", t);
+		    failed.add(delivery);
+		}
+	    }
+	    return failed;
+	}
+    }
+
+    /** Used for naming command delivery threads */
+    private class DeliveryThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Command Delivery " + counter.incrementAndGet());
+	}
+    }
 }
\ No newline at end of file
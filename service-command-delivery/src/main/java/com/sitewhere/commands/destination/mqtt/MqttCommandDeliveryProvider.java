@@ -7,15 +7,33 @@
  */
 package com.sitewhere.commands.destination.mqtt;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.fusesource.hawtdispatch.ShutdownException;
+import org.fusesource.mqtt.client.Callback;
 import org.fusesource.mqtt.client.FutureConnection;
 import org.fusesource.mqtt.client.QoS;
 
+import com.sitewhere.commands.routing.CommandRoutingLogic;
 import com.sitewhere.commands.spi.ICommandDeliveryProvider;
+import com.sitewhere.commands.spi.microservice.ICommandDeliveryTenantEngine;
 import com.sitewhere.communication.mqtt.MqttLifecycleComponent;
+import com.sitewhere.rest.model.device.event.DeviceEventContext;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.IDeviceNestingContext;
 import com.sitewhere.spi.device.command.IDeviceCommandExecution;
@@ -26,12 +44,59 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
  * Implementation of {@link ICommandDeliveryProvider} that publishes commands to
  * an MQTT topic so that they can be processed asynchronously by a device
  * listening on the topic.
+ * 
+ * Commands are published over a pool of broker connections. Each connection
+ * allows a window of unacknowledged QoS 1 publishes, so delivery does not wait
+ * on a broker round trip per command. Completion is handled asynchronously and
+ * commands that fail to publish are sent to the undelivered commands topic from
+ * a separate thread so the MQTT dispatch queue is never blocked on Kafka.
+ * 
+ * Publishing fails fast when no connection is available. A connection is
+ * skipped while it is disconnected from the broker or for a short period after
+ * a publish to it times out, and commands fail immediately (and are sent to the
+ * undelivered topic by the caller) if every connection is skipped. A publish
+ * that times out is treated as failed and sent to the undelivered topic even
+ * though the broker may still receive it later, so a device may occasionally
+ * see a command that is also marked undelivered.
  */
 public class MqttCommandDeliveryProvider extends MqttLifecycleComponent
 	implements ICommandDeliveryProvider<byte[], MqttParameters> {
 
-    /** Shared MQTT connection */
-    private FutureConnection connection;
+    /** Default number of broker connections */
+    public static final int DEFAULT_CONNECTION_POOL_SIZE = 4;
+
+    /** Default number of unacknowledged publishes allowed per connection */
+    public static final int DEFAULT_MAX_INFLIGHT_PUBLISHES = 100;
+
+    /** Max time to wait for a publish window to open */
+    private static final long PUBLISH_WINDOW_TIMEOUT_SECS = 30;
+
+    /** Max time to wait for the broker to acknowledge a publish */
+    private static final long PUBLISH_ACK_TIMEOUT_SECS = 30;
+
+    /** Time a connection is skipped after a publish to it times out */
+    private static final long CIRCUIT_OPEN_MS = 10 * 1000;
+
+    /** Max time to wait for in-flight publishes on shutdown */
+    private static final long SHUTDOWN_DRAIN_TIMEOUT_SECS = 10;
+
+    /** Number of broker connections */
+    private int connectionPoolSize = DEFAULT_CONNECTION_POOL_SIZE;
+
+    /** Number of unacknowledged publishes allowed per connection */
+    private int maxInflightPublishes = DEFAULT_MAX_INFLIGHT_PUBLISHES;
+
+    /** Pooled MQTT connections (immutable snapshot replaced on start and stop) */
+    private volatile List<PooledConnection> connections = Collections.emptyList();
+
+    /** Sends commands that failed to publish to the undelivered topic */
+    private ExecutorService undeliveredExecutor;
+
+    /** Fails publishes that are not acknowledged in time */
+    private ScheduledExecutorService timeoutExecutor;
+
+    /** Index used to spread publishes across connections */
+    private AtomicInteger nextConnection = new AtomicInteger();
 
     public MqttCommandDeliveryProvider() {
 	super(LifecycleComponentType.CommandDeliveryProvider);
@@ -47,9 +112,20 @@ public class MqttCommandDeliveryProvider extends MqttLifecycleComponent
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	super.start(monitor);
+	this.undeliveredExecutor = Executors.newSingleThreadExecutor(new UndeliveredCommandsThreadFactory());
+	this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(new PublishTimeoutThreadFactory());
 
-	getLogger().info("Connecting to MQTT broker at '" + getHostname() + ":" + getPort() + "'...");
-	connection = getConnection();
+	int poolSize = Math.max(1, getConnectionPoolSize());
+	getLogger().info("Opening " + poolSize + " connections to MQTT broker at '" + getHostname() + ":" + getPort()
+		+ "'...");
+	List<PooledConnection> opened = new ArrayList<PooledConnection>();
+	for (int i = 0; i < poolSize; i++) {
+	    FutureConnection connection = ((getClientId() != null) && (poolSize > 1))
+		    ? getConnection(getClientId() + "-" + i)
+		    : getConnection();
+	    opened.add(new PooledConnection(connection, Math.max(1, getMaxInflightPublishes())));
+	}
+	this.connections = Collections.unmodifiableList(opened);
 	getLogger().info("Connected to MQTT broker.");
     }
 
@@ -61,14 +137,30 @@ public class MqttCommandDeliveryProvider extends MqttLifecycleComponent
      */
     @Override
     public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	if (connection != null) {
+	List<PooledConnection> closing = connections;
+	this.connections = Collections.emptyList();
+	for (PooledConnection pooled : closing) {
+	    pooled.drain();
 	    try {
-		connection.disconnect().await();
-		connection.kill().await();
+		pooled.getConnection().disconnect().await();
+		pooled.getConnection().kill().await();
 	    } catch (ShutdownException e) {
 		getLogger().info("Dispatcher has already been shut down.");
 	    } catch (Exception e) {
-		getLogger().error("Error shutting down MQTT device event receiver.", e);
+		getLogger().error("Error shutting down MQTT command delivery provider.", e);
+	    }
+	}
+	if (timeoutExecutor != null) {
+	    timeoutExecutor.shutdownNow();
+	}
+	if (undeliveredExecutor != null) {
+	    undeliveredExecutor.shutdown();
+	    try {
+		if (!undeliveredExecutor.awaitTermination(SHUTDOWN_DRAIN_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+		    getLogger().warn("Failed commands still waiting for undelivered topic at shutdown.");
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
 	    }
 	}
 	super.stop(monitor);
@@ -84,13 +176,7 @@ public class MqttCommandDeliveryProvider extends MqttLifecycleComponent
     @Override
     public void deliver(IDeviceNestingContext nested, List<IDeviceAssignment> assignments,
 	    IDeviceCommandExecution execution, byte[] encoded, MqttParameters params) throws SiteWhereException {
-	try {
-	    getLogger().info("About to publish command message to topic: " + params.getCommandTopic());
-	    connection.publish(params.getCommandTopic(), encoded, QoS.AT_LEAST_ONCE, false);
-	    getLogger().info("Command published.");
-	} catch (Exception e) {
-	    throw new SiteWhereException("Unable to publish command to MQTT topic.", e);
-	}
+	publish(params.getCommandTopic(), encoded, new CommandPublishCallback(nested, assignments, execution));
     }
 
     /*
@@ -102,12 +188,416 @@ public class MqttCommandDeliveryProvider extends MqttLifecycleComponent
     @Override
     public void deliverSystemCommand(IDeviceNestingContext nested, List<IDeviceAssignment> assignments, byte[] encoded,
 	    MqttParameters params) throws SiteWhereException {
+	publish(params.getSystemTopic(), encoded, new SystemCommandPublishCallback(params.getSystemTopic()));
+    }
+
+    /**
+     * Publish a message on the next available connection with an open window.
+     * Blocks only if every available connection has its full window of publishes
+     * outstanding.
+     * 
+     * @param topic
+     * @param encoded
+     * @param callback
+     * @throws SiteWhereException
+     */
+    protected void publish(String topic, byte[] encoded, Callback<Void> callback) throws SiteWhereException {
+	PooledConnection pooled = selectConnection();
+	pooled.acquire();
+	PublishCompletion completion = new PublishCompletion(pooled, callback);
 	try {
-	    getLogger().info("About to publish system message to topic: " + params.getSystemTopic());
-	    connection.publish(params.getSystemTopic(), encoded, QoS.AT_LEAST_ONCE, false);
-	    getLogger().info("Command published.");
-	} catch (Exception e) {
-	    throw new SiteWhereException("Unable to publish command to MQTT topic.", e);
+	    completion.scheduleTimeout();
+	    getLogger().debug("Publishing command message to topic: " + topic);
+	    pooled.getConnection().publish(topic, encoded, QoS.AT_LEAST_ONCE, false).then(completion);
+	} catch (Throwable t) {
+	    completion.abandon();
+	    throw new SiteWhereException("Unable to publish command to MQTT topic.", t);
+	}
+    }
+
+    /**
+     * Choose an available connection, starting from the next one in rotation and
+     * preferring connections that have room in their publish window. Fails
+     * immediately if no connection is available.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected PooledConnection selectConnection() throws SiteWhereException {
+	List<PooledConnection> pool = connections;
+	if (pool.isEmpty()) {
+	    throw new SiteWhereException("MQTT command delivery provider is not connected.");
 	}
+	int start = Math.abs(nextConnection.getAndIncrement() % pool.size());
+	PooledConnection available = null;
+	for (int i = 0; i < pool.size(); i++) {
+	    PooledConnection candidate = pool.get((start + i) % pool.size());
+	    if (!candidate.isAvailable()) {
+		continue;
+	    }
+	    if (candidate.hasCapacity()) {
+		return candidate;
+	    }
+	    if (available == null) {
+		available = candidate;
+	    }
+	}
+	if (available == null) {
+	    throw new SiteWhereException("No connection to MQTT broker is available.");
+	}
+	return available;
+    }
+
+    /**
+     * Build the event context used when sending a failed command to the
+     * undelivered topic.
+     * 
+     * @param nested
+     * @param assignments
+     * @param execution
+     * @return
+     */
+    protected DeviceEventContext buildEventContext(IDeviceNestingContext nested, List<IDeviceAssignment> assignments,
+	    IDeviceCommandExecution execution) {
+	IDevice device = (nested.getNested() != null) ? nested.getNested() : nested.getGateway();
+	DeviceEventContext context = new DeviceEventContext();
+	context.setDeviceId(device.getId());
+	context.setDeviceTypeId(device.getDeviceTypeId());
+	context.setParentDeviceId(device.getParentDeviceId());
+	context.setDeviceStatus(device.getStatus());
+	context.setDeviceMetadata(device.getMetadata());
+	for (IDeviceAssignment assignment : assignments) {
+	    if (assignment.getId().equals(execution.getInvocation().getDeviceAssignmentId())) {
+		context.setAssignmentStatus(assignment.getStatus());
+		context.setAssignmentMetadata(assignment.getMetadata());
+	    }
+	}
+	return context;
+    }
+
+    /**
+     * Broker connection with a window of outstanding publishes.
+     */
+    protected class PooledConnection {
+
+	/** MQTT connection */
+	private FutureConnection connection;
+
+	/** Permits for outstanding publishes */
+	private Semaphore window;
+
+	/** Window size */
+	private int windowSize;
+
+	/** Time until which the connection is skipped after a publish timeout */
+	private volatile long circuitOpenUntil;
+
+	public PooledConnection(FutureConnection connection, int windowSize) {
+	    this.connection = connection;
+	    this.windowSize = windowSize;
+	    this.window = new Semaphore(windowSize);
+	}
+
+	/**
+	 * Wait for room in the publish window.
+	 * 
+	 * @throws SiteWhereException
+	 */
+	public void acquire() throws SiteWhereException {
+	    try {
+		if (!window.tryAcquire(PUBLISH_WINDOW_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+		    throw new SiteWhereException("Timed out waiting for MQTT publish window.");
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SiteWhereException("Interrupted waiting for MQTT publish window.", e);
+	    }
+	}
+
+	/**
+	 * Release a slot in the publish window.
+	 */
+	public void release() {
+	    window.release();
+	}
+
+	/**
+	 * Indicates whether the connection is connected to the broker and has not had
+	 * a recent publish timeout.
+	 * 
+	 * @return
+	 */
+	public boolean isAvailable() {
+	    return connection.isConnected() && (System.currentTimeMillis() >= circuitOpenUntil);
+	}
+
+	/**
+	 * Skip the connection for a period after a publish timeout. Once the period
+	 * has passed, publishes are attempted again.
+	 */
+	public void openCircuit() {
+	    circuitOpenUntil = System.currentTimeMillis() + CIRCUIT_OPEN_MS;
+	}
+
+	/**
+	 * Allow publishes after one has been acknowledged.
+	 */
+	public void closeCircuit() {
+	    circuitOpenUntil = 0;
+	}
+
+	/**
+	 * Indicates whether another publish can start without waiting.
+	 * 
+	 * @return
+	 */
+	public boolean hasCapacity() {
+	    return window.availablePermits() > 0;
+	}
+
+	/**
+	 * Wait for outstanding publishes to complete before disconnecting.
+	 */
+	public void drain() {
+	    try {
+		if (!window.tryAcquire(windowSize, SHUTDOWN_DRAIN_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+		    getLogger().warn("MQTT publishes still outstanding at shutdown.");
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	}
+
+	public FutureConnection getConnection() {
+	    return connection;
+	}
+    }
+
+    /**
+     * Completes a publish exactly once, whether the broker acknowledges it, it
+     * fails, or it times out. Releases the publish window slot before passing on
+     * the result.
+     */
+    private class PublishCompletion implements Callback<Void> {
+
+	/** Connection used for publish */
+	private PooledConnection pooled;
+
+	/** Wrapped callback */
+	private Callback<Void> delegate;
+
+	/** Set once the publish has completed */
+	private AtomicBoolean completed = new AtomicBoolean();
+
+	/** Pending timeout */
+	private volatile ScheduledFuture<?> timeout;
+
+	public PublishCompletion(PooledConnection pooled, Callback<Void> delegate) {
+	    this.pooled = pooled;
+	    this.delegate = delegate;
+	}
+
+	/**
+	 * Fail the publish if it is not acknowledged in time.
+	 */
+	public void scheduleTimeout() {
+	    this.timeout = timeoutExecutor.schedule(new Runnable() {
+
+		@Override
+		public void run() {
+		    onTimeout();
+		}
+	    }, PUBLISH_ACK_TIMEOUT_SECS, TimeUnit.SECONDS);
+	}
+
+	/*
+	 * @see org.fusesource.mqtt.client.Callback#onSuccess(java.lang.Object)
+	 */
+	@Override
+	public void onSuccess(Void value) {
+	    if (complete()) {
+		pooled.closeCircuit();
+		delegate.onSuccess(value);
+	    }
+	}
+
+	/*
+	 * @see org.fusesource.mqtt.client.Callback#onFailure(java.lang.Throwable)
+	 */
+	@Override
+	public void onFailure(Throwable value) {
+	    if (complete()) {
+		delegate.onFailure(value);
+	    }
+	}
+
+	/**
+	 * Fail a publish that was not acknowledged in time and skip its connection
+	 * for a period.
+	 */
+	protected void onTimeout() {
+	    if (complete()) {
+		pooled.openCircuit();
+		delegate.onFailure(new TimeoutException(
+			"MQTT publish not acknowledged within " + PUBLISH_ACK_TIMEOUT_SECS + " seconds."));
+	    }
+	}
+
+	/**
+	 * Complete without notifying the wrapped callback. Used when the publish
+	 * could not be started.
+	 */
+	public void abandon() {
+	    complete();
+	}
+
+	/**
+	 * Mark publish as completed, releasing the window slot and cancelling the
+	 * timeout.
+	 * 
+	 * @return true if this call completed the publish
+	 */
+	protected boolean complete() {
+	    if (!completed.compareAndSet(false, true)) {
+		return false;
+	    }
+	    pooled.release();
+	    ScheduledFuture<?> pending = timeout;
+	    if (pending != null) {
+		pending.cancel(false);
+	    }
+	    return true;
+	}
+    }
+
+    /**
+     * Handles completion of a command publish. Failed commands are sent to the
+     * undelivered topic.
+     */
+    private class CommandPublishCallback implements Callback<Void> {
+
+	/** Nesting context */
+	private IDeviceNestingContext nested;
+
+	/** Active assignments */
+	private List<IDeviceAssignment> assignments;
+
+	/** Command execution */
+	private IDeviceCommandExecution execution;
+
+	public CommandPublishCallback(IDeviceNestingContext nested, List<IDeviceAssignment> assignments,
+		IDeviceCommandExecution execution) {
+	    this.nested = nested;
+	    this.assignments = assignments;
+	    this.execution = execution;
+	}
+
+	/*
+	 * @see org.fusesource.mqtt.client.Callback#onSuccess(java.lang.Object)
+	 */
+	@Override
+	public void onSuccess(Void value) {
+	    getLogger().debug("Command published for invocation " + execution.getInvocation().getId() + ".");
+	}
+
+	/*
+	 * @see org.fusesource.mqtt.client.Callback#onFailure(java.lang.Throwable)
+	 */
+	@Override
+	public void onFailure(Throwable value) {
+	    getLogger().error("Unable to publish command to MQTT topic.", value);
+	    try {
+		undeliveredExecutor.execute(new Runnable() {
+
+		    @Override
+		    public void run() {
+			sendToUndelivered();
+		    }
+		});
+	    } catch (RejectedExecutionException e) {
+		getLogger().error("Unable to push command to undeliverable topic after shutdown.", e);
+	    }
+	}
+
+	/**
+	 * Push the failed command to the undelivered topic.
+	 */
+	protected void sendToUndelivered() {
+	    try {
+		CommandRoutingLogic.sendToUndelivered(
+			((ICommandDeliveryTenantEngine) getTenantEngine()).getUndeliveredCommandInvocationsProducer(),
+			buildEventContext(nested, assignments, execution), execution);
+		getLogger().warn("Due to delivery failure, pushed command to undeliverable topic.");
+	    } catch (Throwable t) {
+		getLogger().error("Unable to push command to undeliverable topic.", t);
+	    }
+	}
+    }
+
+    /**
+     * Handles completion of a system command publish.
+     */
+    private class SystemCommandPublishCallback implements Callback<Void> {
+
+	/** Topic published to */
+	private String topic;
+
+	public SystemCommandPublishCallback(String topic) {
+	    this.topic = topic;
+	}
+
+	/*
+	 * @see org.fusesource.mqtt.client.Callback#onSuccess(java.lang.Object)
+	 */
+	@Override
+	public void onSuccess(Void value) {
+	    getLogger().debug("System command published to topic: " + topic);
+	}
+
+	/*
+	 * @see org.fusesource.mqtt.client.Callback#onFailure(java.lang.Throwable)
+	 */
+	@Override
+	public void onFailure(Throwable value) {
+	    getLogger().error("Unable to publish system command to MQTT topic.", value);
+	}
+    }
+
+    /** Used for naming undelivered command threads */
+    private class UndeliveredCommandsThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "MQTT Undelivered Commands " + counter.incrementAndGet());
+	}
+    }
+
+    /** Used for naming publish timeout threads */
+    private class PublishTimeoutThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "MQTT Publish Timeouts " + counter.incrementAndGet());
+	}
+    }
+
+    public int getConnectionPoolSize() {
+	return connectionPoolSize;
+    }
+
+    public void setConnectionPoolSize(int connectionPoolSize) {
+	this.connectionPoolSize = connectionPoolSize;
+    }
+
+    public int getMaxInflightPublishes() {
+	return maxInflightPublishes;
+    }
+
+    public void setMaxInflightPublishes(int maxInflightPublishes) {
+	this.maxInflightPublishes = maxInflightPublishes;
     }
-}
\ No newline at end of file
+}
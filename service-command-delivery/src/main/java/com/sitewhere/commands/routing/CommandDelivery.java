@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.commands.routing;
+
+import java.util.List;
+
+import com.sitewhere.commands.spi.ICommandDelivery;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceNestingContext;
+import com.sitewhere.spi.device.command.IDeviceCommandExecution;
+import com.sitewhere.spi.device.event.IDeviceEventContext;
+
+/**
+ * Default implementation of {@link ICommandDelivery}.
+ * 
+ * @author Derek
+ */
+public class CommandDelivery implements ICommandDelivery {
+
+    /** Context for triggering event */
+    private IDeviceEventContext eventContext;
+
+    /** Command execution */
+    private IDeviceCommandExecution execution;
+
+    /** Gateway nesting information */
+    private IDeviceNestingContext nesting;
+
+    /** Active assignments for target device */
+    private List<IDeviceAssignment> assignments;
+
+    public CommandDelivery(IDeviceEventContext eventContext, IDeviceCommandExecution execution,
+	    IDeviceNestingContext nesting, List<IDeviceAssignment> assignments) {
+	this.eventContext = eventContext;
+	this.execution = execution;
+	this.nesting = nesting;
+	this.assignments = assignments;
+    }
+
+    /*
+     * @see com.sitewhere.commands.spi.ICommandDelivery#getEventContext()
+     */
+    @Override
+    public IDeviceEventContext getEventContext() {
+	return eventContext;
+    }
+
+    /*
+     * @see com.sitewhere.commands.spi.ICommandDelivery#getExecution()
+     */
+    @Override
+    public IDeviceCommandExecution getExecution() {
+	return execution;
+    }
+
+    /*
+     * @see com.sitewhere.commands.spi.ICommandDelivery#getNesting()
+     */
+    @Override
+    public IDeviceNestingContext getNesting() {
+	return nesting;
+    }
+
+    /*
+     * @see com.sitewhere.commands.spi.ICommandDelivery#getAssignments()
+     */
+    @Override
+    public List<IDeviceAssignment> getAssignments() {
+	return assignments;
+    }
+}
@@ -7,9 +7,14 @@
  */
 package com.sitewhere.commands.routing;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.sitewhere.commands.spi.ICommandDelivery;
 import com.sitewhere.commands.spi.ICommandDestination;
+import com.sitewhere.commands.spi.ICommandDestinationsManager;
 import com.sitewhere.commands.spi.IOutboundCommandRouter;
 import com.sitewhere.commands.spi.kafka.IUndeliveredCommandInvocationsProducer;
 import com.sitewhere.grpc.client.event.EventModelMarshaler;
@@ -54,15 +59,87 @@ public class CommandRoutingLogic {
 	}
 	// If any command destination was not available, add to undelivered topic.
 	if (!deliveredToAll) {
-	    EnrichedEventPayload payload = new EnrichedEventPayload();
-	    payload.setEventContext(eventContext);
-	    payload.setEvent(execution.getInvocation());
-	    byte[] message = EventModelMarshaler.buildEnrichedEventPayloadMessage(payload);
-	    undelivered.send(eventContext.getDeviceId().toString(), message);
-	    router.getLogger().warn("Due to delivery failure, pushed command to undeliverable topic.");
+	    addToUndelivered(router, undelivered, eventContext, execution);
 	}
     }
 
+    /**
+     * Route a group of commands using the given router. Commands are grouped by
+     * destination and delivered in parallel by the destinations manager. Commands
+     * not delivered to all of their destinations are added to the undelivered
+     * topic.
+     * 
+     * @param router
+     * @param destinations
+     * @param undelivered
+     * @param deliveries
+     * @throws SiteWhereException
+     */
+    public static void routeCommands(IOutboundCommandRouter router, ICommandDestinationsManager destinations,
+	    IUndeliveredCommandInvocationsProducer undelivered, List<ICommandDelivery> deliveries)
+	    throws SiteWhereException {
+	Map<ICommandDestination<?, ?>, List<ICommandDelivery>> byDestination = new LinkedHashMap<>();
+	for (ICommandDelivery delivery : deliveries) {
+	    List<ICommandDestination<?, ?>> targets;
+	    try {
+		targets = router.getDestinationsFor(delivery.getExecution(), delivery.getNesting(),
+			delivery.getAssignments());
+	    } catch (SiteWhereException e) {
+		router.getLogger().error("Unable to route command.", e);
+		addToUndelivered(router, undelivered, delivery.getEventContext(), delivery.getExecution());
+		continue;
+	    }
+	    for (ICommandDestination<?, ?> destination : targets) {
+		List<ICommandDelivery> grouped = byDestination.get(destination);
+		if (grouped == null) {
+		    grouped = new ArrayList<>();
+		    byDestination.put(destination, grouped);
+		}
+		grouped.add(delivery);
+	    }
+	}
+	if (byDestination.isEmpty()) {
+	    return;
+	}
+	for (ICommandDelivery failed : destinations.deliverCommands(byDestination)) {
+	    addToUndelivered(router, undelivered, failed.getEventContext(), failed.getExecution());
+	}
+    }
+
+    /**
+     * Add a command that could not be delivered to the undelivered topic.
+     * 
+     * @param router
+     * @param undelivered
+     * @param eventContext
+     * @param execution
+     * @throws SiteWhereException
+     */
+    protected static void addToUndelivered(IOutboundCommandRouter router,
+	    IUndeliveredCommandInvocationsProducer undelivered, IDeviceEventContext eventContext,
+	    IDeviceCommandExecution execution) throws SiteWhereException {
+	sendToUndelivered(undelivered, eventContext, execution);
+	router.getLogger().warn("Due to delivery failure, pushed command to undeliverable topic.");
+    }
+
+    /**
+     * Send a command execution to the undelivered topic. Used directly by delivery
+     * providers that learn of failures after the delivery call has returned.
+     * 
+     * @param undelivered
+     * @param eventContext
+     * @param execution
+     * @throws SiteWhereException
+     */
+    public static void sendToUndelivered(IUndeliveredCommandInvocationsProducer undelivered,
+	    IDeviceEventContext eventContext, IDeviceCommandExecution execution) throws SiteWhereException {
+	EnrichedEventPayload payload = new EnrichedEventPayload();
+	payload.setEventContext(eventContext);
+	payload.setEvent(execution.getInvocation());
+	byte[] message = EventModelMarshaler.buildEnrichedEventPayloadMessage(payload);
+	undelivered.send(eventContext.getDeviceId().toString(), message);
+    }
+
     /**
      * Route a system command using the given router.
      * 
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.commands.spi;
+
+import java.util.List;
+
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceNestingContext;
+import com.sitewhere.spi.device.command.IDeviceCommandExecution;
+import com.sitewhere.spi.device.event.IDeviceEventContext;
+
+/**
+ * Command execution resolved for a single target device, ready to be handed to
+ * one or more {@link ICommandDestination} implementations.
+ * 
+ * @author Derek
+ */
+public interface ICommandDelivery {
+
+    /**
+     * Get context for the event that triggered the command.
+     * 
+     * @return
+     */
+    public IDeviceEventContext getEventContext();
+
+    /**
+     * Get command execution to be delivered.
+     * 
+     * @return
+     */
+    public IDeviceCommandExecution getExecution();
+
+    /**
+     * Get gateway nesting information for the target device.
+     * 
+     * @return
+     */
+    public IDeviceNestingContext getNesting();
+
+    /**
+     * Get active assignments for the target device.
+     * 
+     * @return
+     */
+    public List<IDeviceAssignment> getAssignments();
+}
@@ -7,8 +7,10 @@
  */
 package com.sitewhere.commands.spi;
 
+import java.util.List;
 import java.util.Map;
 
+import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.server.lifecycle.ITenantEngineLifecycleComponent;
 
 /**
@@ -24,4 +26,17 @@ public interface ICommandDestinationsManager extends ITenantEngineLifecycleCompo
      * @return
      */
     public Map<String, ICommandDestination<?, ?>> getCommandDestinations();
+
+    /**
+     * Deliver commands that have been grouped by destination. Destinations are
+     * processed in parallel while commands for a single destination are delivered
+     * in the order given. If a destination fails unexpectedly, all deliveries
+     * for it are reported as failed.
+     * 
+     * @param deliveriesByDestination
+     * @return deliveries that failed for at least one destination
+     * @throws SiteWhereException
+     */
+    public List<ICommandDelivery> deliverCommands(
+	    Map<ICommandDestination<?, ?>, List<ICommandDelivery>> deliveriesByDestination) throws SiteWhereException;
 }
\ No newline at end of file
@@ -7,10 +7,13 @@
  */
 package com.sitewhere.commands.spi;
 
+import java.util.List;
+
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.command.ISystemCommand;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.device.event.IDeviceEventContext;
+import com.sitewhere.spi.device.event.kafka.IEnrichedEventPayload;
 import com.sitewhere.spi.server.lifecycle.ITenantEngineLifecycleComponent;
 
 /**
@@ -37,6 +40,16 @@ public interface ICommandProcessingStrategy extends ITenantEngineLifecycleCompon
     public void deliverCommand(IDeviceEventContext eventContext, IDeviceCommandInvocation invocation)
 	    throws SiteWhereException;
 
+    /**
+     * Deliver a group of command invocations, such as those received in a single
+     * consumer poll. Each payload carries a command invocation event along with
+     * its device context.
+     * 
+     * @param payloads
+     * @throws SiteWhereException
+     */
+    public void deliverCommands(List<IEnrichedEventPayload> payloads) throws SiteWhereException;
+
     /**
      * Deliver a system command.
      * 
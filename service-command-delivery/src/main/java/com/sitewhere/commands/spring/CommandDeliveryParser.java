@@ -239,6 +239,16 @@ public class CommandDeliveryParser extends AbstractBeanDefinitionParser {
 	    mqtt.addPropertyValue("keyStorePassword", trustStorePassword.getValue());
 	}
 
+	Attr connectionPoolSize = element.getAttributeNode("connectionPoolSize");
+	if (connectionPoolSize != null) {
+	    mqtt.addPropertyValue("connectionPoolSize", connectionPoolSize.getValue());
+	}
+
+	Attr maxInflightPublishes = element.getAttributeNode("maxInflightPublishes");
+	if (maxInflightPublishes != null) {
+	    mqtt.addPropertyValue("maxInflightPublishes", maxInflightPublishes.getValue());
+	}
+
 	return mqtt.getBeanDefinition();
     }
 
@@ -30,7 +30,7 @@ import com.sitewhere.microservice.kafka.DirectKafkaConsumer;
 import com.sitewhere.microservice.security.SystemUserRunnable;
 import com.sitewhere.rest.model.device.event.kafka.EnrichedEventPayload;
 import com.sitewhere.spi.SiteWhereException;
-import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
+import com.sitewhere.spi.device.event.kafka.IEnrichedEventPayload;
 import com.sitewhere.spi.microservice.multitenant.IMicroserviceTenantEngine;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
@@ -125,27 +125,35 @@ public class EnrichedCommandInvocationsConsumer extends DirectKafkaConsumer
     @Override
     public void attemptToProcess(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records)
 	    throws SiteWhereException {
+	List<byte[]> messages = new ArrayList<byte[]>();
 	for (ConsumerRecord<String, byte[]> record : records) {
-	    received(record.key(), record.value());
+	    messages.add(record.value());
 	}
+	received(messages);
     }
 
-    public void received(String key, byte[] message) throws SiteWhereException {
-	executor.execute(new CommandInvocationProcessor(getTenantEngine(), message));
+    /**
+     * Hand off all messages from a poll so they are processed as a single batch.
+     * 
+     * @param messages
+     * @throws SiteWhereException
+     */
+    public void received(List<byte[]> messages) throws SiteWhereException {
+	executor.execute(new CommandInvocationProcessor(getTenantEngine(), messages));
     }
 
     /**
-     * Processor that unmarshals a decoded event for a command invocation and hands
-     * it off for processing.
+     * Processor that unmarshals decoded events for a batch of command invocations
+     * and hands them off for processing.
      * 
      * @author Derek
      */
     protected class CommandInvocationProcessor extends SystemUserRunnable {
 
-	/** Encoded payload */
-	private byte[] encoded;
+	/** Encoded payloads */
+	private List<byte[]> encoded;
 
-	public CommandInvocationProcessor(IMicroserviceTenantEngine tenantEngine, byte[] encoded) {
+	public CommandInvocationProcessor(IMicroserviceTenantEngine tenantEngine, List<byte[]> encoded) {
 	    super(tenantEngine.getMicroservice(), tenantEngine.getTenant());
 	    this.encoded = encoded;
 	}
@@ -156,23 +164,35 @@ public class EnrichedCommandInvocationsConsumer extends DirectKafkaConsumer
 	 */
 	@Override
 	public void runAsSystemUser() throws SiteWhereException {
-	    try {
-		GEnrichedEventPayload grpc = EventModelMarshaler.parseEnrichedEventPayloadMessage(encoded);
-		EnrichedEventPayload eventPayload = EventModelConverter.asApiEnrichedEventPayload(grpc);
-		if (getLogger().isDebugEnabled()) {
-		    getLogger().debug(
-			    "Received command invocation:\n\n" + MarshalUtils.marshalJsonAsPrettyString(eventPayload));
+	    List<IEnrichedEventPayload> payloads = new ArrayList<IEnrichedEventPayload>();
+	    for (byte[] message : encoded) {
+		try {
+		    GEnrichedEventPayload grpc = EventModelMarshaler.parseEnrichedEventPayloadMessage(message);
+		    EnrichedEventPayload eventPayload = EventModelConverter.asApiEnrichedEventPayload(grpc);
+		    if (getLogger().isDebugEnabled()) {
+			getLogger().debug("Received command invocation:\n\n"
+				+ MarshalUtils.marshalJsonAsPrettyString(eventPayload));
+		    }
+		    payloads.add(eventPayload);
+		} catch (SiteWhereException e) {
+		    getLogger().error("Unable to parse command invocation payload.", e);
+		} catch (Throwable e) {
+		    getLogger().error("Unhandled exception parsing command invocation payload.", e);
 		}
+	    }
+	    if (payloads.isEmpty()) {
+		return;
+	    }
 
-		// Pass decoded payload to processing strategy implementation.
+	    // Pass decoded payloads to processing strategy implementation.
+	    try {
 		ICommandProcessingStrategy strategy = ((ICommandDeliveryTenantEngine) getTenantEngine())
 			.getCommandProcessingStrategy();
-		IDeviceCommandInvocation invocation = (IDeviceCommandInvocation) eventPayload.getEvent();
-		strategy.deliverCommand(eventPayload.getEventContext(), invocation);
+		strategy.deliverCommands(payloads);
 	    } catch (SiteWhereException e) {
-		getLogger().error("Unable to parse unregistered device event payload.", e);
+		getLogger().error("Unable to deliver command invocations.", e);
 	    } catch (Throwable e) {
-		getLogger().error("Unhandled exception parsing unregistered device event payload.", e);
+		getLogger().error("Unhandled exception delivering command invocations.", e);
 	    }
 	}
     }
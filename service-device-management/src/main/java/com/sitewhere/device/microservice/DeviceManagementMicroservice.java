@@ -72,6 +72,15 @@ public class DeviceManagementMicroservice
 	return false;
     }
 
+    /*
+     * @see com.sitewhere.microservice.multitenant.MultitenantMicroservice#
+     * isTenantLazyActivationSupported()
+     */
+    @Override
+    public boolean isTenantLazyActivationSupported() {
+	return true;
+    }
+
     /*
      * @see com.sitewhere.spi.microservice.IMicroservice#buildConfigurationModel()
      */
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.sitewhere.core.ExpiringLruCache;
+import com.sitewhere.spi.device.IDeviceAssignment;
+
+/**
+ * Bounded LRU cache of active device assignments keyed by device id. Entries
+ * are invalidated explicitly whenever the assignments for a device change and
+ * expire after a fixed interval so that changes made by other instances of the
+ * service are eventually picked up.
+ * 
+ * @author Derek
+ */
+public class ActiveAssignmentCache {
+
+    /** Default maximum number of devices cached */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** Default time an entry remains valid */
+    public static final long DEFAULT_TTL_MS = 60 * 1000;
+
+    /** Cached assignments by device id */
+    private final ExpiringLruCache<UUID, List<IDeviceAssignment>> entries;
+
+    public ActiveAssignmentCache() {
+	this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS);
+    }
+
+    public ActiveAssignmentCache(int maxEntries, long ttlMs) {
+	this.entries = new ExpiringLruCache<>(maxEntries, ttlMs);
+    }
+
+    /**
+     * Get active assignments for a device or null if not cached.
+     * 
+     * @param deviceId
+     * @return
+     */
+    public List<IDeviceAssignment> get(UUID deviceId) {
+	List<IDeviceAssignment> assignments = entries.get(deviceId);
+	return (assignments != null) ? new ArrayList<>(assignments) : null;
+    }
+
+    /**
+     * Cache active assignments for a device. Assignments loaded before the last
+     * invalidation are ignored so that a concurrent load can not restore stale
+     * data.
+     * 
+     * @param deviceId
+     * @param assignments
+     * @param loadedAfter
+     *            sequence returned by {@link #getSequence()} before loading data
+     */
+    public void put(UUID deviceId, List<IDeviceAssignment> assignments, long loadedAfter) {
+	entries.putIfNotInvalidated(deviceId, Collections.unmodifiableList(new ArrayList<>(assignments)),
+		loadedAfter);
+    }
+
+    /**
+     * Remove cached assignments for a device.
+     * 
+     * @param deviceId
+     */
+    public void invalidate(UUID deviceId) {
+	entries.invalidate(deviceId);
+    }
+
+    /**
+     * Remove all cached entries.
+     */
+    public void clear() {
+	entries.clear();
+    }
+
+    /**
+     * Get sequence number which changes each time an entry is invalidated.
+     * 
+     * @return
+     */
+    public long getSequence() {
+	return entries.getSequence();
+    }
+
+    /**
+     * Get number of devices currently cached.
+     * 
+     * @return
+     */
+    public int size() {
+	return entries.size();
+    }
+}
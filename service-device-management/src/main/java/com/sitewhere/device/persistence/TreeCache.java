@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.persistence;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.sitewhere.rest.model.search.TreeNode;
+
+/**
+ * Holds the most recently built tree for a hierarchy (areas or customers) so
+ * that repeated tree requests do not reload every entity. The snapshot is
+ * invalidated whenever the hierarchy is modified locally and expires after a
+ * fixed interval so that changes made by other instances of the service are
+ * eventually picked up.
+ * 
+ * @author Derek
+ */
+public class TreeCache {
+
+    /** Default time a snapshot remains valid */
+    public static final long DEFAULT_TTL_MS = 30 * 1000;
+
+    /** Time a snapshot remains valid */
+    private final long ttlMs;
+
+    /** Current snapshot */
+    private volatile Snapshot current;
+
+    /** Incremented on each invalidation */
+    private long sequence;
+
+    public TreeCache() {
+	this(DEFAULT_TTL_MS);
+    }
+
+    public TreeCache(long ttlMs) {
+	this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Get the cached tree or null if not available.
+     * 
+     * @return
+     */
+    public List<TreeNode> get() {
+	Snapshot snapshot = current;
+	if ((snapshot == null) || (snapshot.getExpires() < System.currentTimeMillis())) {
+	    return null;
+	}
+	return snapshot.getTree();
+    }
+
+    /**
+     * Cache a newly built tree. A tree built before the last invalidation is
+     * ignored so that a concurrent rebuild can not restore stale data.
+     * 
+     * @param tree
+     * @param builtAfter
+     *            sequence returned by {@link #getSequence()} before loading data
+     */
+    public synchronized void put(List<TreeNode> tree, long builtAfter) {
+	if (builtAfter == sequence) {
+	    current = new Snapshot(Collections.unmodifiableList(tree), System.currentTimeMillis() + ttlMs);
+	}
+    }
+
+    /**
+     * Discard the cached tree.
+     */
+    public synchronized void invalidate() {
+	sequence++;
+	current = null;
+    }
+
+    /**
+     * Get sequence number which changes each time the snapshot is invalidated.
+     * 
+     * @return
+     */
+    public synchronized long getSequence() {
+	return sequence;
+    }
+
+    /**
+     * Tree along with expiration time.
+     */
+    private static class Snapshot {
+
+	/** Tree nodes */
+	private final List<TreeNode> tree;
+
+	/** Time after which snapshot is no longer valid */
+	private final long expires;
+
+	public Snapshot(List<TreeNode> tree, long expires) {
+	    this.tree = tree;
+	    this.expires = expires;
+	}
+
+	public List<TreeNode> getTree() {
+	    return tree;
+	}
+
+	public long getExpires() {
+	    return expires;
+	}
+    }
+}
@@ -8,15 +8,19 @@
 package com.sitewhere.device.persistence.mongodb;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.commons.lang.StringUtils;
 import org.bson.Document;
 
 import com.mongodb.MongoClientException;
+import com.mongodb.MongoCommandException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
@@ -25,8 +29,10 @@ import com.mongodb.client.result.DeleteResult;
 import com.sitewhere.common.MarshalUtils;
 import com.sitewhere.device.DeviceManagementUtils;
 import com.sitewhere.device.microservice.DeviceManagementMicroservice;
+import com.sitewhere.device.persistence.ActiveAssignmentCache;
 import com.sitewhere.device.persistence.DeviceManagementPersistence;
 import com.sitewhere.device.persistence.TreeBuilder;
+import com.sitewhere.device.persistence.TreeCache;
 import com.sitewhere.mongodb.IMongoConverterLookup;
 import com.sitewhere.mongodb.MongoPersistence;
 import com.sitewhere.mongodb.MongoTenantComponent;
@@ -118,6 +124,15 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
     /** Injected with global SiteWhere Mongo client */
     private DeviceManagementMongoClient mongoClient;
 
+    /** Cache of active assignments by device id */
+    private ActiveAssignmentCache activeAssignmentCache = new ActiveAssignmentCache();
+
+    /** Cached customer tree */
+    private TreeCache customersTreeCache = new TreeCache();
+
+    /** Cached area tree */
+    private TreeCache areasTreeCache = new TreeCache();
+
     public MongoDeviceManagement() {
 	super(LifecycleComponentType.DataStore);
     }
@@ -127,9 +142,30 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
      */
     @Override
     public void ensureIndexes() throws SiteWhereException {
+	// Customer type indexes.
+	ensureUniqueTokenIndex(getMongoClient().getCustomerTypesCollection());
+
+	// Customer indexes.
+	ensureUniqueTokenIndex(getMongoClient().getCustomersCollection());
+	getMongoClient().getCustomersCollection().createIndex(
+		new Document(MongoCustomer.PROP_PARENT_CUSTOMER_ID, 1).append(MongoCustomer.PROP_NAME, 1),
+		new IndexOptions().background(true));
+
+	// Area type indexes.
+	ensureUniqueTokenIndex(getMongoClient().getAreaTypesCollection());
+
 	// Area indexes.
 	getMongoClient().getAreasCollection().createIndex(new Document(MongoPersistentEntity.PROP_TOKEN, 1),
 		new IndexOptions().unique(true).background(true));
+	getMongoClient().getAreasCollection().createIndex(
+		new Document(MongoArea.PROP_PARENT_AREA_ID, 1).append(MongoArea.PROP_NAME, 1),
+		new IndexOptions().background(true));
+
+	// Zone indexes.
+	ensureUniqueTokenIndex(getMongoClient().getZonesCollection());
+	getMongoClient().getZonesCollection().createIndex(
+		new Document(MongoZone.PROP_AREA_ID, 1).append(MongoPersistentEntity.PROP_CREATED_DATE, -1),
+		new IndexOptions().background(true));
 
 	// Device type indexes.
 	getMongoClient().getDeviceTypesCollection().createIndex(new Document(MongoPersistentEntity.PROP_TOKEN, 1),
@@ -149,7 +185,10 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	getMongoClient().getDevicesCollection().createIndex(new Document(MongoPersistentEntity.PROP_TOKEN, 1),
 		new IndexOptions().unique(true).background(true));
 	// Device search.
-	getMongoClient().getDeviceAssignmentsCollection().createIndex(new Document(MongoDevice.PROP_DEVICE_TYPE_ID, 1),
+	getMongoClient().getDevicesCollection().createIndex(
+		new Document(MongoDevice.PROP_DEVICE_TYPE_ID, 1).append(MongoPersistentEntity.PROP_CREATED_DATE, -1),
+		new IndexOptions().background(true));
+	getMongoClient().getDevicesCollection().createIndex(new Document(MongoPersistentEntity.PROP_CREATED_DATE, -1),
 		new IndexOptions().background(true));
 
 	// Device assignments.
@@ -160,6 +199,15 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 		.append(MongoDeviceAssignment.PROP_DEVICE_ID, 1).append(MongoDeviceAssignment.PROP_DEVICE_TYPE_ID, 1)
 		.append(MongoDeviceAssignment.PROP_CUSTOMER_ID, 1).append(MongoDeviceAssignment.PROP_AREA_ID, 1)
 		.append(MongoDeviceAssignment.PROP_ASSET_ID, 1), new IndexOptions().background(true));
+	// Device assignment search by a single criterion (sorted by active date).
+	String[] assignmentSearchFields = { MongoDeviceAssignment.PROP_DEVICE_ID,
+		MongoDeviceAssignment.PROP_DEVICE_TYPE_ID, MongoDeviceAssignment.PROP_CUSTOMER_ID,
+		MongoDeviceAssignment.PROP_AREA_ID, MongoDeviceAssignment.PROP_ASSET_ID };
+	for (String field : assignmentSearchFields) {
+	    getMongoClient().getDeviceAssignmentsCollection().createIndex(
+		    new Document(field, 1).append(MongoDeviceAssignment.PROP_ACTIVE_DATE, -1),
+		    new IndexOptions().background(true));
+	}
 
 	// Device group indexes.
 	getMongoClient().getDeviceGroupsCollection().createIndex(new Document(MongoPersistentEntity.PROP_TOKEN, 1),
@@ -176,6 +224,42 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 		new IndexOptions().background(true));
     }
 
+    /**
+     * Create a unique index on token for a collection that did not previously
+     * enforce it. If existing data already contains duplicate tokens, they are
+     * logged and a non-unique index is created instead so that startup does not
+     * fail.
+     * 
+     * @param collection
+     * @throws SiteWhereException
+     */
+    protected void ensureUniqueTokenIndex(MongoCollection<Document> collection) throws SiteWhereException {
+	Document key = new Document(MongoPersistentEntity.PROP_TOKEN, 1);
+	String name = collection.getNamespace().getCollectionName();
+	Document group = new Document("_id", "$" + MongoPersistentEntity.PROP_TOKEN).append("count",
+		new Document("$sum", 1));
+	Document match = new Document("count", new Document("$gt", 1));
+	try {
+	    List<String> duplicates = new ArrayList<>();
+	    for (Document dup : collection
+		    .aggregate(Arrays.asList(new Document("$group", group), new Document("$match", match)))) {
+		duplicates.add(String.valueOf(dup.get("_id")));
+	    }
+	    if (!duplicates.isEmpty()) {
+		getLogger().warn("Collection '" + name + "' contains duplicate tokens " + duplicates
+			+ ". Creating non-unique token index until duplicates are removed.");
+		collection.createIndex(key, new IndexOptions().background(true));
+		return;
+	    }
+	    collection.createIndex(key, new IndexOptions().unique(true).background(true));
+	} catch (MongoCommandException e) {
+	    // Existing index with different options (e.g. non-unique fallback).
+	    getLogger().warn("Unable to create unique token index for '" + name + "'.", e);
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	}
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.IDeviceManagement#createDeviceType(com.sitewhere.spi
@@ -756,14 +840,54 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
      */
     @Override
     public List<IDeviceAssignment> getActiveDeviceAssignments(UUID deviceId) throws SiteWhereException {
-	IDevice device = MongoDevice.fromDocument(assertDevice(deviceId));
-	List<IDeviceAssignment> active = new ArrayList<>();
-	for (UUID uuid : device.getActiveDeviceAssignmentIds()) {
-	    active.add(getDeviceAssignment(uuid));
+	List<IDeviceAssignment> cached = getActiveAssignmentCache().get(deviceId);
+	if (cached != null) {
+	    return cached;
 	}
+	long sequence = getActiveAssignmentCache().getSequence();
+	IDevice device = MongoDevice.fromDocument(assertDevice(deviceId));
+	List<IDeviceAssignment> active = getDeviceAssignmentsByIds(device.getActiveDeviceAssignmentIds());
+	getActiveAssignmentCache().put(deviceId, active, sequence);
 	return active;
     }
 
+    /**
+     * Load a list of device assignments with a single query. Results are returned
+     * in the same order as the list of ids. Ids that do not match an existing
+     * assignment are skipped.
+     * 
+     * @param ids
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<IDeviceAssignment> getDeviceAssignmentsByIds(List<UUID> ids) throws SiteWhereException {
+	List<IDeviceAssignment> result = new ArrayList<>();
+	if ((ids == null) || (ids.isEmpty())) {
+	    return result;
+	}
+	MongoCollection<Document> assignments = getMongoClient().getDeviceAssignmentsCollection();
+	Document query = new Document(MongoPersistentEntity.PROP_ID, new Document("$in", ids));
+	Map<UUID, IDeviceAssignment> byId = new HashMap<>();
+	MongoCursor<Document> cursor = assignments.find(query).iterator();
+	try {
+	    while (cursor.hasNext()) {
+		DeviceAssignment assignment = MongoDeviceAssignment.fromDocument(cursor.next());
+		byId.put(assignment.getId(), assignment);
+	    }
+	} finally {
+	    cursor.close();
+	}
+	for (UUID id : ids) {
+	    IDeviceAssignment assignment = byId.get(id);
+	    if (assignment != null) {
+		result.add(assignment);
+	    } else {
+		getLogger().warn("Device references missing active assignment: " + id);
+	    }
+	}
+	return result;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.IDeviceManagement#listDevices(com.sitewhere.spi.
@@ -820,6 +944,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	DeviceManagementPersistence.deviceDeleteLogic(device, this);
 	MongoCollection<Document> devices = getMongoClient().getDevicesCollection();
 	MongoPersistence.delete(devices, existing);
+	getActiveAssignmentCache().invalidate(id);
 	return MongoDevice.fromDocument(existing);
     }
 
@@ -941,6 +1066,25 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	Document deviceDb = assertDevice(device.getId());
 	deviceDb.put(MongoDevice.PROP_ACTIVE_ASSIGNMENT_IDS, uuids);
 	MongoPersistence.update(devices, query, deviceDb);
+	getActiveAssignmentCache().invalidate(device.getId());
+    }
+
+    /**
+     * Recalculate active assignments for a device if it still exists.
+     * 
+     * @param deviceId
+     * @throws SiteWhereException
+     */
+    protected void refreshDeviceActiveAssignments(UUID deviceId) throws SiteWhereException {
+	if (deviceId == null) {
+	    return;
+	}
+	Document deviceDb = getDeviceDocumentById(deviceId);
+	if (deviceDb != null) {
+	    updateDeviceActiveAssignments(MongoDevice.fromDocument(deviceDb));
+	} else {
+	    getActiveAssignmentCache().invalidate(deviceId);
+	}
     }
 
     /*
@@ -983,6 +1127,10 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	DeviceManagementPersistence.deviceAssignmentDeleteLogic(MongoDeviceAssignment.fromDocument(existing));
 	MongoCollection<Document> assignments = getMongoClient().getDeviceAssignmentsCollection();
 	MongoPersistence.delete(assignments, existing);
+
+	// Update list of active assignments.
+	refreshDeviceActiveAssignments((UUID) existing.get(MongoDeviceAssignment.PROP_DEVICE_ID));
+
 	return MongoDeviceAssignment.fromDocument(existing);
     }
 
@@ -1147,12 +1295,19 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	    }
 	}
 
+	UUID originalDeviceId = assignment.getDeviceId();
 	DeviceManagementPersistence.deviceAssignmentUpdateLogic(device, customer, area, asset, request, assignment);
 
 	Document query = new Document(MongoPersistentEntity.PROP_ID, id);
 	MongoCollection<Document> assignments = getMongoClient().getDeviceAssignmentsCollection();
 	MongoPersistence.update(assignments, query, MongoDeviceAssignment.toDocument(assignment));
 
+	// Update list of active assignments for any device affected.
+	refreshDeviceActiveAssignments(originalDeviceId);
+	if ((assignment.getDeviceId() != null) && (!assignment.getDeviceId().equals(originalDeviceId))) {
+	    refreshDeviceActiveAssignments(assignment.getDeviceId());
+	}
+
 	return assignment;
     }
 
@@ -1381,6 +1536,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	MongoCollection<Document> customers = getMongoClient().getCustomersCollection();
 	Document created = MongoCustomer.toDocument(customer);
 	MongoPersistence.insert(customers, created, ErrorCode.DuplicateCustomerToken);
+	getCustomersTreeCache().invalidate();
 	return MongoCustomer.fromDocument(created);
     }
 
@@ -1446,6 +1602,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	MongoCollection<Document> customers = getMongoClient().getCustomersCollection();
 	Document query = new Document(MongoPersistentEntity.PROP_ID, id);
 	MongoPersistence.update(customers, query, updated);
+	getCustomersTreeCache().invalidate();
 	return MongoCustomer.fromDocument(updated);
     }
 
@@ -1483,8 +1640,14 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
      */
     @Override
     public List<TreeNode> getCustomersTree() throws SiteWhereException {
-	ISearchResults<ICustomer> all = listCustomers(new CustomerSearchCriteria(1, 0));
-	return TreeBuilder.buildTree(all.getResults());
+	List<TreeNode> tree = getCustomersTreeCache().get();
+	if (tree == null) {
+	    long sequence = getCustomersTreeCache().getSequence();
+	    ISearchResults<ICustomer> all = listCustomers(new CustomerSearchCriteria(1, 0));
+	    tree = TreeBuilder.buildTree(all.getResults());
+	    getCustomersTreeCache().put(tree, sequence);
+	}
+	return tree;
     }
 
     /*
@@ -1499,6 +1662,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	}
 	MongoCollection<Document> customers = getMongoClient().getCustomersCollection();
 	MongoPersistence.delete(customers, existing);
+	getCustomersTreeCache().invalidate();
 	return MongoCustomer.fromDocument(existing);
     }
 
@@ -1619,6 +1783,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	MongoCollection<Document> areas = getMongoClient().getAreasCollection();
 	Document created = MongoArea.toDocument(area);
 	MongoPersistence.insert(areas, created, ErrorCode.DuplicateAreaToken);
+	getAreasTreeCache().invalidate();
 	return MongoArea.fromDocument(created);
     }
 
@@ -1682,6 +1847,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	MongoCollection<Document> areas = getMongoClient().getAreasCollection();
 	Document query = new Document(MongoPersistentEntity.PROP_ID, id);
 	MongoPersistence.update(areas, query, updated);
+	getAreasTreeCache().invalidate();
 	return MongoArea.fromDocument(updated);
     }
 
@@ -1713,8 +1879,14 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
      */
     @Override
     public List<TreeNode> getAreasTree() throws SiteWhereException {
-	ISearchResults<IArea> all = listAreas(new AreaSearchCriteria(1, 0));
-	return TreeBuilder.buildTree(all.getResults());
+	List<TreeNode> tree = getAreasTreeCache().get();
+	if (tree == null) {
+	    long sequence = getAreasTreeCache().getSequence();
+	    ISearchResults<IArea> all = listAreas(new AreaSearchCriteria(1, 0));
+	    tree = TreeBuilder.buildTree(all.getResults());
+	    getAreasTreeCache().put(tree, sequence);
+	}
+	return tree;
     }
 
     /*
@@ -1728,6 +1900,7 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
 	}
 	MongoCollection<Document> areas = getMongoClient().getAreasCollection();
 	MongoPersistence.delete(areas, existing);
+	getAreasTreeCache().invalidate();
 	return MongoArea.fromDocument(existing);
     }
 
@@ -2504,4 +2677,28 @@ public class MongoDeviceManagement extends MongoTenantComponent<DeviceManagement
     public void setMongoClient(DeviceManagementMongoClient mongoClient) {
 	this.mongoClient = mongoClient;
     }
+
+    public TreeCache getCustomersTreeCache() {
+	return customersTreeCache;
+    }
+
+    public void setCustomersTreeCache(TreeCache customersTreeCache) {
+	this.customersTreeCache = customersTreeCache;
+    }
+
+    public TreeCache getAreasTreeCache() {
+	return areasTreeCache;
+    }
+
+    public void setAreasTreeCache(TreeCache areasTreeCache) {
+	this.areasTreeCache = areasTreeCache;
+    }
+
+    public ActiveAssignmentCache getActiveAssignmentCache() {
+	return activeAssignmentCache;
+    }
+
+    public void setActiveAssignmentCache(ActiveAssignmentCache activeAssignmentCache) {
+	this.activeAssignmentCache = activeAssignmentCache;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.spi.device.IDeviceAssignment;
+
+/**
+ * Tests for {@link ActiveAssignmentCache}.
+ * 
+ * @author Derek
+ */
+public class ActiveAssignmentCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+	ActiveAssignmentCache cache = new ActiveAssignmentCache();
+	UUID deviceId = UUID.randomUUID();
+	List<IDeviceAssignment> assignments = createAssignments();
+	cache.put(deviceId, assignments, cache.getSequence());
+	assertEquals(assignments, cache.get(deviceId));
+    }
+
+    @Test
+    public void testInvalidate() {
+	ActiveAssignmentCache cache = new ActiveAssignmentCache();
+	UUID deviceId = UUID.randomUUID();
+	cache.put(deviceId, createAssignments(), cache.getSequence());
+	cache.invalidate(deviceId);
+	assertNull(cache.get(deviceId));
+    }
+
+    @Test
+    public void testAssignmentsLoadedBeforeInvalidationAreIgnored() {
+	ActiveAssignmentCache cache = new ActiveAssignmentCache();
+	UUID deviceId = UUID.randomUUID();
+	long sequence = cache.getSequence();
+	cache.invalidate(deviceId);
+	cache.put(deviceId, createAssignments(), sequence);
+	assertNull(cache.get(deviceId));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+	ActiveAssignmentCache cache = new ActiveAssignmentCache(10, 1);
+	UUID deviceId = UUID.randomUUID();
+	cache.put(deviceId, createAssignments(), cache.getSequence());
+	Thread.sleep(10);
+	assertNull(cache.get(deviceId));
+    }
+
+    /**
+     * Create a list with a single assignment.
+     * 
+     * @return
+     */
+    protected List<IDeviceAssignment> createAssignments() {
+	DeviceAssignment assignment = new DeviceAssignment();
+	assignment.setId(UUID.randomUUID());
+	List<IDeviceAssignment> assignments = new ArrayList<>();
+	assignments.add(assignment);
+	return assignments;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sitewhere.rest.model.search.TreeNode;
+
+/**
+ * Tests for {@link TreeCache}.
+ * 
+ * @author Derek
+ */
+public class TreeCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+	TreeCache cache = new TreeCache();
+	List<TreeNode> tree = createTree("root");
+	cache.put(tree, cache.getSequence());
+	assertEquals(tree, cache.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+	TreeCache cache = new TreeCache();
+	cache.put(createTree("root"), cache.getSequence());
+	cache.invalidate();
+	assertNull(cache.get());
+    }
+
+    @Test
+    public void testTreeBuiltBeforeInvalidationIsIgnored() {
+	TreeCache cache = new TreeCache();
+	long sequence = cache.getSequence();
+	cache.invalidate();
+	cache.put(createTree("stale"), sequence);
+	assertNull(cache.get());
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+	TreeCache cache = new TreeCache(1);
+	cache.put(createTree("root"), cache.getSequence());
+	Thread.sleep(10);
+	assertNull(cache.get());
+    }
+
+    /**
+     * Create a tree with a single node.
+     * 
+     * @param token
+     * @return
+     */
+    protected List<TreeNode> createTree(String token) {
+	TreeNode node = new TreeNode();
+	node.setToken(token);
+	List<TreeNode> tree = new ArrayList<>();
+	tree.add(node);
+	return tree;
+    }
+}
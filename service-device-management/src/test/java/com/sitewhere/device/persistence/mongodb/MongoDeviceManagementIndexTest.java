@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.persistence.mongodb;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.bson.Document;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.sitewhere.configuration.instance.mongodb.MongoConfiguration;
+import com.sitewhere.mongodb.EmbeddedMongoTest;
+import com.sitewhere.mongodb.common.MongoPersistentEntity;
+import com.sitewhere.mongodb.profiling.MongoIndexCoverage;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Runs explain plans for the query shapes used by {@link MongoDeviceManagement}
+ * against an embedded MongoDB instance and fails if any of them require a
+ * collection scan with the indexes created by ensureIndexes().
+ * 
+ * @author Derek
+ */
+public class MongoDeviceManagementIndexTest extends EmbeddedMongoTest {
+
+    /** Number of documents inserted into each collection */
+    private static final int NUM_DOCUMENTS = 200;
+
+    /** Database used for test */
+    private static MongoDatabase database;
+
+    /** Client that provides device management collections */
+    private static DeviceManagementMongoClient mongoClient;
+
+    /** Device management implementation under test */
+    private static MongoDeviceManagement management;
+
+    @BeforeClass
+    public static void setupDatabase() throws Exception {
+	database = getClient().getDatabase("devicemanagement");
+	mongoClient = new DeviceManagementMongoClient(new MongoConfiguration()) {
+
+	    @Override
+	    public MongoDatabase getDatabase() throws SiteWhereException {
+		return database;
+	    }
+	};
+
+	management = new MongoDeviceManagement();
+	management.setMongoClient(mongoClient);
+	management.ensureIndexes();
+	populate();
+    }
+
+    @Test
+    public void testDeviceQueries() throws Exception {
+	assertIndexed(mongoClient.getDevicesCollection(), new Document(MongoDevice.PROP_DEVICE_TYPE_ID, uuid()),
+		new Document(MongoPersistentEntity.PROP_CREATED_DATE, -1));
+	assertIndexed(mongoClient.getDevicesCollection(), new Document(MongoPersistentEntity.PROP_TOKEN, "device-1"),
+		null);
+    }
+
+    @Test
+    public void testAssignmentQueries() throws Exception {
+	Document sort = new Document(MongoDeviceAssignment.PROP_ACTIVE_DATE, -1);
+	List<String> fields = Arrays.asList(MongoDeviceAssignment.PROP_DEVICE_ID,
+		MongoDeviceAssignment.PROP_DEVICE_TYPE_ID, MongoDeviceAssignment.PROP_CUSTOMER_ID,
+		MongoDeviceAssignment.PROP_AREA_ID, MongoDeviceAssignment.PROP_ASSET_ID);
+	for (String field : fields) {
+	    assertIndexed(mongoClient.getDeviceAssignmentsCollection(),
+		    new Document(field, new Document("$in", Arrays.asList(uuid(), uuid()))), sort);
+	}
+	assertIndexed(mongoClient.getDeviceAssignmentsCollection(),
+		new Document(MongoDeviceAssignment.PROP_STATUS, new Document("$in", Arrays.asList("Active"))), sort);
+    }
+
+    @Test
+    public void testHierarchyQueries() throws Exception {
+	assertIndexed(mongoClient.getCustomersCollection(), new Document(MongoCustomer.PROP_PARENT_CUSTOMER_ID, uuid()),
+		new Document(MongoCustomer.PROP_NAME, 1));
+	assertIndexed(mongoClient.getAreasCollection(), new Document(MongoArea.PROP_PARENT_AREA_ID, uuid()),
+		new Document(MongoArea.PROP_NAME, 1));
+	assertIndexed(mongoClient.getZonesCollection(), new Document(MongoZone.PROP_AREA_ID, uuid()),
+		new Document(MongoPersistentEntity.PROP_CREATED_DATE, -1));
+    }
+
+    @Test
+    public void testDuplicateTokensDoNotFailStartup() throws Exception {
+	MongoCollection<Document> collection = database.getCollection("duplicates");
+	collection.insertMany(Arrays.asList(new Document(MongoPersistentEntity.PROP_TOKEN, "dup"),
+		new Document(MongoPersistentEntity.PROP_TOKEN, "dup")));
+	management.ensureUniqueTokenIndex(collection);
+	boolean found = false;
+	for (Document index : collection.listIndexes()) {
+	    if (new Document(MongoPersistentEntity.PROP_TOKEN, 1).equals(index.get("key"))) {
+		assertFalse(index.getBoolean("unique", false));
+		found = true;
+	    }
+	}
+	assertTrue("Token index not created.", found);
+    }
+
+    /**
+     * Assert that the winning plan for a query does not scan the collection.
+     * 
+     * @param collection
+     * @param filter
+     * @param sort
+     */
+    protected void assertIndexed(MongoCollection<Document> collection, Document filter, Document sort) {
+	String name = collection.getNamespace().getCollectionName();
+	Document plan = MongoIndexCoverage.explainFind(database, name, filter, sort);
+	assertFalse("Collection scan on '" + name + "' for " + filter.toJson() + ": " + plan.toJson(),
+		MongoIndexCoverage.hasCollectionScan(plan));
+    }
+
+    /**
+     * Insert documents so the planner has realistic choices.
+     * 
+     * @throws SiteWhereException
+     */
+    protected static void populate() throws SiteWhereException {
+	List<Document> devices = new ArrayList<>();
+	List<Document> assignments = new ArrayList<>();
+	List<Document> hierarchy = new ArrayList<>();
+	for (int i = 0; i < NUM_DOCUMENTS; i++) {
+	    devices.add(new Document(MongoPersistentEntity.PROP_TOKEN, "device-" + i)
+		    .append(MongoDevice.PROP_DEVICE_TYPE_ID, uuid())
+		    .append(MongoPersistentEntity.PROP_CREATED_DATE, new Date()));
+	    assignments.add(new Document(MongoPersistentEntity.PROP_TOKEN, "assignment-" + i)
+		    .append(MongoDeviceAssignment.PROP_STATUS, "Active")
+		    .append(MongoDeviceAssignment.PROP_DEVICE_ID, uuid())
+		    .append(MongoDeviceAssignment.PROP_DEVICE_TYPE_ID, uuid())
+		    .append(MongoDeviceAssignment.PROP_CUSTOMER_ID, uuid())
+		    .append(MongoDeviceAssignment.PROP_AREA_ID, uuid())
+		    .append(MongoDeviceAssignment.PROP_ASSET_ID, uuid())
+		    .append(MongoDeviceAssignment.PROP_ACTIVE_DATE, new Date()));
+	}
+	mongoClient.getDevicesCollection().insertMany(devices);
+	mongoClient.getDeviceAssignmentsCollection().insertMany(assignments);
+	for (int i = 0; i < NUM_DOCUMENTS; i++) {
+	    hierarchy.add(new Document(MongoPersistentEntity.PROP_TOKEN, "entity-" + i)
+		    .append(MongoCustomer.PROP_PARENT_CUSTOMER_ID, uuid()).append(MongoArea.PROP_PARENT_AREA_ID, uuid())
+		    .append(MongoZone.PROP_AREA_ID, uuid()).append(MongoCustomer.PROP_NAME, "name-" + i));
+	}
+	mongoClient.getCustomersCollection().insertMany(hierarchy);
+	mongoClient.getAreasCollection().insertMany(copy(hierarchy));
+	mongoClient.getZonesCollection().insertMany(copy(hierarchy));
+    }
+
+    /**
+     * Copy documents without generated ids so they can be inserted again.
+     * 
+     * @param source
+     * @return
+     */
+    protected static List<Document> copy(List<Document> source) {
+	List<Document> result = new ArrayList<>();
+	for (Document doc : source) {
+	    Document copy = new Document(doc);
+	    copy.remove("_id");
+	    result.add(copy);
+	}
+	return result;
+    }
+
+    protected static UUID uuid() {
+	return UUID.randomUUID();
+    }
+}
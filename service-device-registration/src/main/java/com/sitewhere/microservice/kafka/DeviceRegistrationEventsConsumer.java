@@ -10,8 +10,10 @@ package com.sitewhere.microservice.kafka;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -24,11 +26,12 @@ import com.sitewhere.grpc.client.device.DeviceModelConverter;
 import com.sitewhere.grpc.client.device.DeviceModelMarshaler;
 import com.sitewhere.grpc.model.DeviceModel.GDeviceRegistationPayload;
 import com.sitewhere.microservice.kafka.DirectKafkaConsumer;
-import com.sitewhere.microservice.security.SystemUserRunnable;
+import com.sitewhere.microservice.security.SystemUserCallable;
 import com.sitewhere.registration.spi.kafka.IDeviceRegistrationEventsConsumer;
 import com.sitewhere.registration.spi.microservice.IDeviceRegistrationTenantEngine;
 import com.sitewhere.rest.model.device.event.kafka.DeviceRegistrationPayload;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.kafka.IDeviceRegistrationPayload;
 import com.sitewhere.spi.microservice.multitenant.IMicroserviceTenantEngine;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
@@ -47,7 +50,13 @@ public class DeviceRegistrationEventsConsumer extends DirectKafkaConsumer implem
     private static String GROUP_ID_SUFFIX = "device-registration-event-consumers";
 
     /** Number of threads processing new device registrations */
-    private static final int CONCURRENT_REGISTRATION_PROCESSING_THREADS = 2;
+    private static final int CONCURRENT_REGISTRATION_PROCESSING_THREADS = 5;
+
+    /** Number of times failed registrations are attempted before giving up */
+    private static final int MAX_REGISTRATION_ATTEMPTS = 4;
+
+    /** Delay before first retry of failed registrations (doubled each retry) */
+    private static final long INITIAL_RETRY_DELAY_MS = 500;
 
     /** Executor */
     private ExecutorService executor;
@@ -122,53 +131,139 @@ public class DeviceRegistrationEventsConsumer extends DirectKafkaConsumer implem
     @Override
     public void attemptToProcess(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records)
 	    throws SiteWhereException {
+	// Decode all registrations in the batch and split them into one chunk per
+	// processing thread. Registrations for the same device always land in the
+	// same chunk so that they are applied in order.
+	List<List<IDeviceRegistrationPayload>> chunks = new ArrayList<>();
+	for (int i = 0; i < CONCURRENT_REGISTRATION_PROCESSING_THREADS; i++) {
+	    chunks.add(new ArrayList<>());
+	}
 	for (ConsumerRecord<String, byte[]> record : records) {
-	    received(record.key(), record.value());
+	    IDeviceRegistrationPayload payload = decode(record.value());
+	    if (payload != null) {
+		int index = Math.abs(String.valueOf(payload.getDeviceToken()).hashCode()
+			% CONCURRENT_REGISTRATION_PROCESSING_THREADS);
+		chunks.get(index).add(payload);
+	    }
+	}
+
+	// Retry failed registrations with backoff so transient outages do not lose
+	// them, but give up after a bounded number of attempts so a registration
+	// that can never succeed does not stall the partition.
+	long delay = INITIAL_RETRY_DELAY_MS;
+	for (int attempt = 1; attempt <= MAX_REGISTRATION_ATTEMPTS; attempt++) {
+	    chunks = processChunks(chunks);
+	    if (chunks.isEmpty()) {
+		return;
+	    }
+	    if (attempt < MAX_REGISTRATION_ATTEMPTS) {
+		getLogger().warn("Device registrations failed on attempt " + attempt + ". Retrying in " + delay + "ms.");
+		try {
+		    Thread.sleep(delay);
+		} catch (InterruptedException e) {
+		    // Rewind so the batch is polled again rather than committed.
+		    Thread.currentThread().interrupt();
+		    if ((getConsumer() != null) && !records.isEmpty()) {
+			getConsumer().seek(topicPartition, records.get(0).offset());
+		    }
+		    throw new SiteWhereException("Interrupted while retrying device registrations.", e);
+		}
+		delay *= 2;
+	    }
+	}
+	for (List<IDeviceRegistrationPayload> chunk : chunks) {
+	    for (IDeviceRegistrationPayload payload : chunk) {
+		getLogger().error("Dropping registration for device '" + payload.getDeviceToken() + "' after "
+			+ MAX_REGISTRATION_ATTEMPTS + " failed attempts.");
+	    }
 	}
     }
 
-    public void received(String key, byte[] message) throws SiteWhereException {
-	executor.execute(new DeviceRegistrationProcessor(getTenantEngine(), message));
+    /**
+     * Process chunks of registrations in parallel, waiting for all chunks to
+     * complete so offsets are only committed after registrations have been
+     * processed.
+     * 
+     * @param chunks
+     * @return chunks of registrations that failed
+     * @throws SiteWhereException
+     */
+    protected List<List<IDeviceRegistrationPayload>> processChunks(List<List<IDeviceRegistrationPayload>> chunks)
+	    throws SiteWhereException {
+	List<List<IDeviceRegistrationPayload>> submitted = new ArrayList<>();
+	List<Future<List<IDeviceRegistrationPayload>>> futures = new ArrayList<>();
+	for (List<IDeviceRegistrationPayload> chunk : chunks) {
+	    if (!chunk.isEmpty()) {
+		submitted.add(chunk);
+		futures.add(executor.submit(new DeviceRegistrationProcessor(getTenantEngine(), chunk)));
+	    }
+	}
+	List<List<IDeviceRegistrationPayload>> failed = new ArrayList<>();
+	for (int i = 0; i < futures.size(); i++) {
+	    try {
+		List<IDeviceRegistrationPayload> remaining = futures.get(i).get();
+		if (!remaining.isEmpty()) {
+		    failed.add(remaining);
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SiteWhereException("Interrupted while processing device registrations.", e);
+	    } catch (ExecutionException e) {
+		getLogger().error("Error processing device registrations.", e.getCause());
+		failed.add(submitted.get(i));
+	    }
+	}
+	return failed;
+    }
+
+    /**
+     * Decode a device registration payload.
+     * 
+     * @param message
+     * @return
+     */
+    protected IDeviceRegistrationPayload decode(byte[] message) {
+	try {
+	    GDeviceRegistationPayload grpc = DeviceModelMarshaler.parseDeviceRegistrationPayloadMessage(message);
+	    DeviceRegistrationPayload payload = DeviceModelConverter.asApiDeviceRegistrationPayload(grpc);
+	    if (getLogger().isDebugEnabled()) {
+		getLogger().debug(
+			"Received registration for device:\n\n" + MarshalUtils.marshalJsonAsPrettyString(payload));
+	    }
+	    return payload;
+	} catch (SiteWhereException e) {
+	    getLogger().error("Unable to decode device registration.", e);
+	    return null;
+	}
     }
 
     /**
-     * Processor that unmarshals a device registration payload and hands it off to
-     * the registration manager.
+     * Processor that hands a chunk of device registration payloads off to the
+     * registration manager.
      * 
      * @author Derek
      */
-    protected class DeviceRegistrationProcessor extends SystemUserRunnable {
+    protected class DeviceRegistrationProcessor extends SystemUserCallable<List<IDeviceRegistrationPayload>> {
 
-	/** Encoded payload */
-	private byte[] encoded;
+	/** Decoded payloads */
+	private List<IDeviceRegistrationPayload> payloads;
 
-	public DeviceRegistrationProcessor(IMicroserviceTenantEngine tenantEngine, byte[] encoded) {
+	public DeviceRegistrationProcessor(IMicroserviceTenantEngine tenantEngine,
+		List<IDeviceRegistrationPayload> payloads) {
 	    super(tenantEngine.getMicroservice(), tenantEngine.getTenant());
-	    this.encoded = encoded;
+	    this.payloads = payloads;
 	}
 
 	/*
-	 * @see com.sitewhere.microservice.security.SystemUserRunnable#
+	 * @see com.sitewhere.microservice.security.SystemUserCallable#
 	 * runAsSystemUser()
 	 */
 	@Override
-	public void runAsSystemUser() throws SiteWhereException {
-	    try {
-		GDeviceRegistationPayload grpc = DeviceModelMarshaler.parseDeviceRegistrationPayloadMessage(encoded);
-		DeviceRegistrationPayload payload = DeviceModelConverter.asApiDeviceRegistrationPayload(grpc);
-		if (getLogger().isDebugEnabled()) {
-		    getLogger().debug(
-			    "Received registration for device:\n\n" + MarshalUtils.marshalJsonAsPrettyString(payload));
-		}
-
-		// Pass payload to registration manager.
-		((IDeviceRegistrationTenantEngine) getTenantEngine()).getRegistrationManager()
-			.handleDeviceRegistration(payload);
-	    } catch (SiteWhereException e) {
-		getLogger().error("Error processing device registration.", e);
-	    } catch (Throwable e) {
-		getLogger().error("Unhandled exception processing device registration.", e);
-	    }
+	public List<IDeviceRegistrationPayload> runAsSystemUser() throws SiteWhereException {
+	    // Pass payloads to registration manager. Failures are reported to the
+	    // consumer so they can be retried.
+	    return ((IDeviceRegistrationTenantEngine) getTenantEngine()).getRegistrationManager()
+		    .handleDeviceRegistrations(payloads);
 	}
     }
 
@@ -7,9 +7,25 @@
  */
 package com.sitewhere.registration;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sitewhere.grpc.client.cache.CacheConfiguration;
+import com.sitewhere.grpc.client.spi.cache.ICacheProvider;
 import com.sitewhere.registration.spi.IRegistrationManager;
 import com.sitewhere.registration.spi.microservice.IDeviceRegistrationMicroservice;
 import com.sitewhere.rest.model.device.command.RegistrationAckCommand;
@@ -38,6 +54,16 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
  */
 public class DeviceRegistrationManager extends TenantEngineLifecycleComponent implements IRegistrationManager {
 
+    /** Default number of registration content hashes remembered */
+    private static final int DEFAULT_REGISTRATION_HASH_CACHE_SIZE = 50000;
+
+    /** Number of seconds a registration content hash is remembered */
+    private static final int REGISTRATION_HASH_TTL_IN_SECONDS = 60 * 60;
+
+    /** Mapper that produces stable JSON for hashing registration content */
+    private static ObjectMapper HASH_MAPPER = new ObjectMapper()
+	    .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
     /** Indicates if new devices can register with the system */
     private boolean allowNewDevices = false;
 
@@ -68,6 +94,15 @@ public class DeviceRegistrationManager extends TenantEngineLifecycleComponent im
     /** Area used for automatic assignment */
     private IArea defaultArea;
 
+    /** Maximum number of registration content hashes remembered */
+    private int registrationHashCacheSize = DEFAULT_REGISTRATION_HASH_CACHE_SIZE;
+
+    /**
+     * Content hash of last registration applied for each device token, along with
+     * the version of the device it was applied to
+     */
+    private ICacheProvider<String, String> registrationHashes;
+
     public DeviceRegistrationManager() {
 	super(LifecycleComponentType.RegistrationManager);
     }
@@ -84,63 +119,217 @@ public class DeviceRegistrationManager extends TenantEngineLifecycleComponent im
 	    Authentication system = getMicroservice().getSystemUser()
 		    .getAuthenticationForTenant(getTenantEngine().getTenant());
 	    SecurityContextHolder.getContext().setAuthentication(system);
+	    processRegistration(registration);
+	} finally {
+	    SecurityContextHolder.getContext().setAuthentication(previous);
+	}
+    }
 
-	    IDevice device = getOrCreateDevice(registration);
+    /*
+     * @see
+     * com.sitewhere.registration.spi.IRegistrationManager#handleDeviceRegistrations
+     * (java.util.List)
+     */
+    @Override
+    public List<IDeviceRegistrationPayload> handleDeviceRegistrations(List<IDeviceRegistrationPayload> registrations)
+	    throws SiteWhereException {
+	// Devices often send several registrations during a reconnect storm. Only the
+	// most recent registration for each device needs to be applied.
+	Map<String, IDeviceRegistrationPayload> latest = new LinkedHashMap<>();
+	for (IDeviceRegistrationPayload registration : registrations) {
+	    latest.remove(registration.getDeviceToken());
+	    latest.put(registration.getDeviceToken(), registration);
+	}
+	if (latest.size() < registrations.size()) {
+	    getLogger().debug("Collapsed " + registrations.size() + " registrations into " + latest.size() + ".");
+	}
+
+	List<IDeviceRegistrationPayload> failed = new ArrayList<>();
+	Authentication previous = SecurityContextHolder.getContext().getAuthentication();
+	try {
+	    Authentication system = getMicroservice().getSystemUser()
+		    .getAuthenticationForTenant(getTenantEngine().getTenant());
+	    SecurityContextHolder.getContext().setAuthentication(system);
+	    for (IDeviceRegistrationPayload registration : latest.values()) {
+		try {
+		    processRegistration(registration);
+		} catch (Throwable e) {
+		    getLogger().error("Unable to process registration for device '" + registration.getDeviceToken()
+			    + "'.", e);
+		    failed.add(registration);
+		}
+	    }
+	} finally {
+	    SecurityContextHolder.getContext().setAuthentication(previous);
+	}
+	return failed;
+    }
+
+    /**
+     * Process a single registration. Assumes security context has already been
+     * established.
+     * 
+     * @param registration
+     * @throws SiteWhereException
+     */
+    protected void processRegistration(IDeviceRegistrationPayload registration) throws SiteWhereException {
+	String hash = computeRegistrationHash(registration);
+	IDevice device = getCachedDeviceManagement().getDeviceByToken(registration.getDeviceToken());
+	if ((device == null) || (device.getActiveDeviceAssignmentIds().size() == 0)) {
+	    // Cached copy may predate a create or assignment made since.
+	    device = getDeviceManagement().getDeviceByToken(registration.getDeviceToken());
+	}
+	boolean isNewRegistration = (device == null);
+	if (isNewRegistration) {
+	    getRegistrationHashes().removeCacheEntry(getTenantEngine().getTenant(), registration.getDeviceToken());
+	    device = createDevice(registration);
+	} else if (isUpdateRequired(registration, device, hash)) {
+	    getLogger().debug("Found existing device registration. Updating device information.");
+	    device = getDeviceManagement().updateDevice(device.getId(), registration.getDeviceRegistrationRequest());
+	} else {
+	    getLogger().debug("Registration for '" + device.getToken() + "' did not change device information.");
+	}
+
+	// Make sure device is assigned.
+	if (device.getActiveDeviceAssignmentIds().size() == 0) {
+	    getLogger().debug("Handling unassigned device for registration.");
 
 	    // Find assignment metadata that should be associated.
 	    ICustomer customer = getCustomerFor(registration);
 	    IArea area = getAreaFor(registration);
 
-	    // Make sure device is assigned.
-	    if (device.getActiveDeviceAssignmentIds().size() == 0) {
-		getLogger().debug("Handling unassigned device for registration.");
-		DeviceAssignmentCreateRequest assnCreate = new DeviceAssignmentCreateRequest();
-		assnCreate.setDeviceToken(device.getToken());
-		if (customer != null) {
-		    assnCreate.setCustomerToken(customer.getToken());
-		}
-		if (area != null) {
-		    assnCreate.setAreaToken(area.getToken());
-		}
-		getDeviceManagement().createDeviceAssignment(assnCreate);
+	    DeviceAssignmentCreateRequest assnCreate = new DeviceAssignmentCreateRequest();
+	    assnCreate.setDeviceToken(device.getToken());
+	    if (customer != null) {
+		assnCreate.setCustomerToken(customer.getToken());
 	    }
-	    boolean isNewRegistration = (device != null);
-	    sendRegistrationAck(registration.getDeviceToken(), isNewRegistration);
-	} finally {
-	    SecurityContextHolder.getContext().setAuthentication(previous);
+	    if (area != null) {
+		assnCreate.setAreaToken(area.getToken());
+	    }
+	    getDeviceManagement().createDeviceAssignment(assnCreate);
+
+	    // Assignment changes the device, so reload it before remembering state.
+	    device = getDeviceManagement().getDeviceByToken(registration.getDeviceToken());
 	}
+	getRegistrationHashes().setCacheEntry(getTenantEngine().getTenant(), registration.getDeviceToken(),
+		getRegistrationState(hash, device));
+	sendRegistrationAck(registration.getDeviceToken(), isNewRegistration);
     }
 
     /**
-     * Get existing device or create a new one based on registration request.
+     * Determine whether an existing device needs to be updated based on a
+     * registration. Registrations identical to the last one applied are skipped
+     * as long as the device has not been changed since. Otherwise the request is
+     * compared against the current device so that unchanged devices are not
+     * rewritten (e.g. after a restart).
      * 
      * @param registration
+     * @param device
+     * @param hash
      * @return
      * @throws SiteWhereException
      */
-    protected IDevice getOrCreateDevice(IDeviceRegistrationPayload registration) throws SiteWhereException {
-	IDevice device = getDeviceManagement().getDeviceByToken(registration.getDeviceToken());
+    protected boolean isUpdateRequired(IDeviceRegistrationPayload registration, IDevice device, String hash)
+	    throws SiteWhereException {
+	String state = getRegistrationHashes().getCacheEntry(getTenantEngine().getTenant(),
+		registration.getDeviceToken());
+	if (state != null) {
+	    if (state.equals(getRegistrationState(hash, device))) {
+		return false;
+	    }
+
+	    // Device or registration changed since last applied.
+	    getRegistrationHashes().removeCacheEntry(getTenantEngine().getTenant(), registration.getDeviceToken());
+	}
 	IDeviceCreateRequest request = registration.getDeviceRegistrationRequest();
-	if (device == null) {
-	    if (!isAllowNewDevices()) {
-		throw new SiteWhereException("Ignoring device registration request. New devices are not allowed.");
+	if ((request.getDeviceElementMappings() != null) && (request.getDeviceElementMappings().size() > 0)) {
+	    return true;
+	}
+	if ((request.getStatus() != null) && (!request.getStatus().equals(device.getStatus()))) {
+	    return true;
+	}
+	if ((request.getComments() != null) && (!request.getComments().equals(device.getComments()))) {
+	    return true;
+	}
+	if (request.getMetadata() != null) {
+	    // Update replaces metadata, so keys missing from the request are removed.
+	    Map<String, String> existing = (device.getMetadata() != null) ? device.getMetadata()
+		    : Collections.emptyMap();
+	    if (!request.getMetadata().equals(existing)) {
+		return true;
 	    }
-	    // Create device if it does not already exist.
-	    getLogger().info("Creating new device as part of registration.");
-	    DeviceCreateRequest deviceCreate = new DeviceCreateRequest();
-	    deviceCreate.setToken(request.getToken() != null ? request.getToken() : registration.getDeviceToken());
-	    deviceCreate.setDeviceTypeToken(request.getDeviceTypeToken());
-	    deviceCreate.setStatus(request.getStatus());
-	    deviceCreate.setDeviceElementMappings(request.getDeviceElementMappings());
-	    deviceCreate.setParentDeviceToken(request.getParentDeviceToken());
-	    deviceCreate.setComments(request.getComments() != null ? request.getComments()
-		    : "Device created by on-demand registration.");
-	    deviceCreate.setMetadata(request.getMetadata());
-	    return getDeviceManagement().createDevice(deviceCreate);
-	} else {
-	    getLogger().info("Found existing device registration. Updating device information.");
-	    return getDeviceManagement().updateDevice(device.getId(), request);
 	}
+	if (request.getDeviceTypeToken() != null) {
+	    IDeviceType deviceType = getCachedDeviceManagement().getDeviceTypeByToken(request.getDeviceTypeToken());
+	    if ((deviceType == null) || (!deviceType.getId().equals(device.getDeviceTypeId()))) {
+		return true;
+	    }
+	}
+	if (request.getParentDeviceToken() != null) {
+	    IDevice parent = getCachedDeviceManagement().getDeviceByToken(request.getParentDeviceToken());
+	    if ((parent == null) || (!parent.getId().equals(device.getParentDeviceId()))) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Combine registration hash with the last update time of the device so that
+     * remembered state no longer matches once the device (or its assignments) is
+     * changed elsewhere.
+     * 
+     * @param hash
+     * @param device
+     * @return
+     */
+    protected String getRegistrationState(String hash, IDevice device) {
+	Date updated = (device.getUpdatedDate() != null) ? device.getUpdatedDate() : device.getCreatedDate();
+	return hash + ":" + ((updated != null) ? updated.getTime() : 0);
+    }
+
+    /**
+     * Compute a hash of the content of a registration request.
+     * 
+     * @param registration
+     * @return
+     * @throws SiteWhereException
+     */
+    protected String computeRegistrationHash(IDeviceRegistrationPayload registration) throws SiteWhereException {
+	try {
+	    byte[] content = HASH_MAPPER.writeValueAsBytes(registration.getDeviceRegistrationRequest());
+	    byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+	    return new String(Base64.getEncoder().encode(digest), StandardCharsets.US_ASCII);
+	} catch (JsonProcessingException | NoSuchAlgorithmException e) {
+	    throw new SiteWhereException("Unable to compute registration hash.", e);
+	}
+    }
+
+    /**
+     * Create a new device based on registration request.
+     * 
+     * @param registration
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDevice createDevice(IDeviceRegistrationPayload registration) throws SiteWhereException {
+	if (!isAllowNewDevices()) {
+	    throw new SiteWhereException("Ignoring device registration request. New devices are not allowed.");
+	}
+	IDeviceCreateRequest request = registration.getDeviceRegistrationRequest();
+
+	// Create device if it does not already exist.
+	getLogger().info("Creating new device as part of registration.");
+	DeviceCreateRequest deviceCreate = new DeviceCreateRequest();
+	deviceCreate.setToken(request.getToken() != null ? request.getToken() : registration.getDeviceToken());
+	deviceCreate.setDeviceTypeToken(request.getDeviceTypeToken());
+	deviceCreate.setStatus(request.getStatus());
+	deviceCreate.setDeviceElementMappings(request.getDeviceElementMappings());
+	deviceCreate.setParentDeviceToken(request.getParentDeviceToken());
+	deviceCreate.setComments(request.getComments() != null ? request.getComments()
+		: "Device created by on-demand registration.");
+	deviceCreate.setMetadata(request.getMetadata());
+	return getDeviceManagement().createDevice(deviceCreate);
     }
 
     /*
@@ -163,7 +352,7 @@ public class DeviceRegistrationManager extends TenantEngineLifecycleComponent im
     protected IDeviceType getDeviceTypeFor(IDeviceRegistrationPayload registration) throws SiteWhereException {
 	String deviceTypeToken = registration.getDeviceRegistrationRequest().getDeviceTypeToken();
 	if (deviceTypeToken != null) {
-	    IDeviceType override = getDeviceManagement().getDeviceTypeByToken(deviceTypeToken);
+	    IDeviceType override = getCachedDeviceManagement().getDeviceTypeByToken(deviceTypeToken);
 	    if (override == null) {
 		throw new SiteWhereException("Registration request specified invalid device type token.");
 	    }
@@ -184,7 +373,7 @@ public class DeviceRegistrationManager extends TenantEngineLifecycleComponent im
     protected ICustomer getCustomerFor(IDeviceRegistrationPayload registration) throws SiteWhereException {
 	String customerToken = registration.getDeviceRegistrationRequest().getCustomerToken();
 	if (customerToken != null) {
-	    ICustomer override = getDeviceManagement().getCustomerByToken(customerToken);
+	    ICustomer override = getCachedDeviceManagement().getCustomerByToken(customerToken);
 	    if (override == null) {
 		throw new SiteWhereException("Registration request specified invalid customer token.");
 	    }
@@ -205,7 +394,7 @@ public class DeviceRegistrationManager extends TenantEngineLifecycleComponent im
     protected IArea getAreaFor(IDeviceRegistrationPayload registration) throws SiteWhereException {
 	String areaToken = registration.getDeviceRegistrationRequest().getAreaToken();
 	if (areaToken != null) {
-	    IArea override = getDeviceManagement().getAreaByToken(areaToken);
+	    IArea override = getCachedDeviceManagement().getAreaByToken(areaToken);
 	    if (override == null) {
 		throw new SiteWhereException("Registration request specified invalid area token.");
 	    }
@@ -258,6 +447,18 @@ public class DeviceRegistrationManager extends TenantEngineLifecycleComponent im
 	// getDeviceCommunication().deliverSystemCommand(hardwareId, command);
     }
 
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#initialize(com.sitewhere.
+     * spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void initialize(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.registrationHashes = new RegistrationStateCache(
+		new CacheConfiguration(getRegistrationHashCacheSize(), REGISTRATION_HASH_TTL_IN_SECONDS));
+	initializeNestedComponent(getRegistrationHashes(), monitor, true);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -267,6 +468,8 @@ public class DeviceRegistrationManager extends TenantEngineLifecycleComponent im
      */
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	startNestedComponent(getRegistrationHashes(), monitor, true);
+
 	Authentication previous = SecurityContextHolder.getContext().getAuthentication();
 	try {
 	    Authentication system = getMicroservice().getSystemUser()
@@ -299,6 +502,16 @@ public class DeviceRegistrationManager extends TenantEngineLifecycleComponent im
 	}
     }
 
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	stopNestedComponent(getRegistrationHashes(), monitor);
+    }
+
     /*
      * @see com.sitewhere.registration.spi.IRegistrationManager#isAllowNewDevices()
      */
@@ -413,7 +626,23 @@ public class DeviceRegistrationManager extends TenantEngineLifecycleComponent im
 	this.defaultArea = defaultArea;
     }
 
+    public int getRegistrationHashCacheSize() {
+	return registrationHashCacheSize;
+    }
+
+    public void setRegistrationHashCacheSize(int registrationHashCacheSize) {
+	this.registrationHashCacheSize = registrationHashCacheSize;
+    }
+
+    protected ICacheProvider<String, String> getRegistrationHashes() {
+	return registrationHashes;
+    }
+
     private IDeviceManagement getDeviceManagement() {
 	return ((IDeviceRegistrationMicroservice) getTenantEngine().getMicroservice()).getDeviceManagementApiChannel();
     }
+
+    private IDeviceManagement getCachedDeviceManagement() {
+	return ((IDeviceRegistrationMicroservice) getTenantEngine().getMicroservice()).getCachedDeviceManagement();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.registration;
+
+import com.sitewhere.grpc.client.cache.CacheIdentifier;
+import com.sitewhere.grpc.client.cache.CacheProvider;
+import com.sitewhere.grpc.client.spi.cache.ICacheConfiguration;
+
+/**
+ * Cache of the last registration state applied for each device token.
+ * 
+ * @author Derek
+ */
+public class RegistrationStateCache extends CacheProvider<String, String> {
+
+    public RegistrationStateCache(ICacheConfiguration configuration) {
+	super(CacheIdentifier.DeviceRegistrationState, String.class, String.class, configuration);
+    }
+}
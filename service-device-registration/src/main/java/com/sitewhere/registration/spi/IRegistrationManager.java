@@ -7,6 +7,8 @@
  */
 package com.sitewhere.registration.spi;
 
+import java.util.List;
+
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.kafka.IDecodedEventPayload;
 import com.sitewhere.spi.device.event.kafka.IDeviceRegistrationPayload;
@@ -82,6 +84,18 @@ public interface IRegistrationManager extends ITenantEngineLifecycleComponent {
      */
     public void handleDeviceRegistration(IDeviceRegistrationPayload request) throws SiteWhereException;
 
+    /**
+     * Handle a batch of device registrations (e.g. all registrations from a single
+     * Kafka poll). Duplicate registrations for the same device are collapsed and
+     * failures for individual devices do not affect the rest of the batch.
+     * 
+     * @param requests
+     * @return registrations that could not be processed
+     * @throws SiteWhereException
+     */
+    public List<IDeviceRegistrationPayload> handleDeviceRegistrations(List<IDeviceRegistrationPayload> requests)
+	    throws SiteWhereException;
+
     /**
      * Handle event addressed to unknown device.
      * 
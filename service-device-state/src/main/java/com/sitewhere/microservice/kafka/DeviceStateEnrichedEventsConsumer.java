@@ -184,7 +184,7 @@ public class DeviceStateEnrichedEventsConsumer extends MicroserviceKafkaConsumer
 	@Override
 	public void runAsSystemUser() throws SiteWhereException {
 	    getDeviceStateProcessingLogic().process(records);
-	    getConsumer().commitAsync(new OffsetCommitCallback() {
+	    commitAsync(new OffsetCommitCallback() {
 		public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
 		    if (e != null) {
 			getLogger().error("Commit failed for offsets " + offsets, e);
@@ -108,7 +108,7 @@ public class InboundEventsConsumer extends MicroserviceKafkaConsumer implements
 		preprocessed.add(message);
 	    }
 	    storeEvents(preprocessed);
-	    getConsumer().commitAsync(new OffsetCommitCallback() {
+	    commitAsync(new OffsetCommitCallback() {
 		public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
 		    if (e != null) {
 			getLogger().error("Commit failed for offsets " + offsets, e);
@@ -8,37 +8,50 @@
 package com.sitewhere.search.solr;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.InputStreamResponseParser;
 import org.apache.solr.client.solrj.impl.NoOpResponseParser;
 import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.SolrPingResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.sitewhere.configuration.instance.solr.SolrConfiguration;
 import com.sitewhere.server.lifecycle.LifecycleComponent;
+import com.sitewhere.solr.ISolrFields;
 import com.sitewhere.solr.SiteWhereSolrFactory;
 import com.sitewhere.solr.SolrConnection;
+import com.sitewhere.solr.SolrEventType;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.IDeviceEvent;
 import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.IDeviceEventSearchProvider;
 import com.sitewhere.spi.search.ISearchProvider;
+import com.sitewhere.spi.search.ISearchResultHandler;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
@@ -53,6 +66,20 @@ public class SolrSearchProvider extends LifecycleComponent implements IDeviceEve
     /** Name returned for provider */
     private static final String DEFAULT_NAME = "Solr Search Provider";
 
+    /** Number of documents requested for each page of a cursor */
+    private static final int CURSOR_PAGE_SIZE = 500;
+
+    /** Request handler that streams complete sorted result sets */
+    private static final String EXPORT_HANDLER = "/export";
+
+    /** Fields exported if none are specified (must have docValues enabled) */
+    private static final List<String> DEFAULT_EXPORT_FIELDS = Arrays.asList(ISolrFields.EVENT_ID,
+	    ISolrFields.EVENT_TYPE, ISolrFields.EVENT_DATE, ISolrFields.RECEIVED_DATE);
+
+    /** Type used for reading exported documents */
+    private static final JavaType EXPORTED_DOCUMENT = TypeFactory.defaultInstance().constructMapType(HashMap.class,
+	    String.class, Object.class);
+
     /** Provider id */
     private String id;
 
@@ -141,6 +168,115 @@ public class SolrSearchProvider extends LifecycleComponent implements IDeviceEve
 	}
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.search.IDeviceEventSearchProvider#streamQuery(java.lang.
+     * String, com.sitewhere.spi.search.ISearchResultHandler)
+     */
+    @Override
+    public void streamQuery(String queryString, ISearchResultHandler<IDeviceEvent> handler)
+	    throws SiteWhereException {
+	getLogger().debug("About to stream Solr search with query string: " + queryString);
+	SolrQuery query = new SolrQuery();
+	query.setQuery(queryString);
+	streamCursor(query, handler);
+    }
+
+    /**
+     * Stream results of a query using a Solr cursor. Each page is requested with
+     * the cursor mark returned by the previous page rather than an offset, so
+     * deep pages are as cheap as the first. Results are sorted on the unique key
+     * as required by cursors.
+     * 
+     * @param query
+     * @param handler
+     * @throws SiteWhereException
+     */
+    protected void streamCursor(SolrQuery query, ISearchResultHandler<IDeviceEvent> handler)
+	    throws SiteWhereException {
+	query.setRows(CURSOR_PAGE_SIZE);
+	query.setSort(SolrQuery.SortClause.asc(ISolrFields.EVENT_ID));
+	String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+	try {
+	    while (true) {
+		query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+		QueryResponse response = getSolrConnection().getSolrClient().query(query);
+		for (SolrDocument doc : response.getResults()) {
+		    if (!handler.handle(SiteWhereSolrFactory.parseDocument(doc))) {
+			return;
+		    }
+		}
+		String next = response.getNextCursorMark();
+		if ((next == null) || next.equals(cursorMark)) {
+		    return;
+		}
+		cursorMark = next;
+	    }
+	} catch (SolrServerException e) {
+	    throw new SiteWhereException("Unable to execute query.", e);
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to execute query.", e);
+	}
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.search.IDeviceEventSearchProvider#exportQuery(java.lang.
+     * String, java.util.List, com.sitewhere.spi.search.ISearchResultHandler)
+     */
+    @Override
+    public void exportQuery(String queryString, List<String> fields,
+	    ISearchResultHandler<Map<String, Object>> handler) throws SiteWhereException {
+	getLogger().debug("About to export Solr search with query string: " + queryString);
+	List<String> exported = ((fields != null) && !fields.isEmpty()) ? fields : DEFAULT_EXPORT_FIELDS;
+	SolrQuery query = new SolrQuery();
+	query.setQuery(queryString);
+	query.setFields(exported.toArray(new String[0]));
+	query.setSort(SolrQuery.SortClause.asc(ISolrFields.EVENT_ID));
+	QueryRequest request = new QueryRequest(query);
+	request.setPath(EXPORT_HANDLER);
+	request.setResponseParser(new InputStreamResponseParser("json"));
+	try {
+	    NamedList<Object> response = getSolrConnection().getSolrClient().request(request);
+	    try (InputStream input = (InputStream) response.get("stream");
+		    JsonParser parser = MAPPER.getFactory().createParser(input)) {
+		readExportedDocuments(parser, handler);
+	    }
+	} catch (SolrServerException e) {
+	    throw new SiteWhereException("Unable to execute export.", e);
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to execute export.", e);
+	}
+    }
+
+    /**
+     * Read documents from the 'docs' array of an export response one at a time,
+     * passing each to the handler without reading the rest of the response.
+     * 
+     * @param parser
+     * @param handler
+     * @throws IOException
+     * @throws SiteWhereException
+     */
+    protected void readExportedDocuments(JsonParser parser, ISearchResultHandler<Map<String, Object>> handler)
+	    throws IOException, SiteWhereException {
+	JsonToken token;
+	while ((token = parser.nextToken()) != null) {
+	    if ((token == JsonToken.FIELD_NAME) && "docs".equals(parser.getCurrentName())) {
+		if (parser.nextToken() != JsonToken.START_ARRAY) {
+		    throw new SiteWhereException("Invalid export response. Expected array of documents.");
+		}
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+		    Map<String, Object> document = MAPPER.readValue(parser, EXPORTED_DOCUMENT);
+		    if (!handler.handle(document)) {
+			return;
+		    }
+		}
+		return;
+	    }
+	}
+    }
+
     /*
      * @see com.sitewhere.spi.search.IDeviceEventSearchProvider#
      * executeQueryWithRawResponse(java.lang.String)
@@ -174,23 +310,47 @@ public class SolrSearchProvider extends LifecycleComponent implements IDeviceEve
     @Override
     public List<IDeviceLocation> getLocationsNear(double latitude, double longitude, double distance,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	ModifiableSolrParams params = new ModifiableSolrParams();
+	SolrQuery query = new SolrQuery();
+	query.setQuery(ISolrFields.EVENT_TYPE + ":" + SolrEventType.Location.name());
+	query.addFilterQuery(String.format("{!geofilt sfield=%s pt=%s,%s d=%s}", ISolrFields.LOCATION, latitude,
+		longitude, distance));
+	if ((criteria.getStartDate() != null) || (criteria.getEndDate() != null)) {
+	    query.addFilterQuery(ISolrFields.EVENT_DATE + ":[" + formatDate(criteria.getStartDate()) + " TO "
+		    + formatDate(criteria.getEndDate()) + "]");
+	}
+
+	// Let Solr skip to the requested page so only that page is fetched.
+	List<IDeviceLocation> results = new ArrayList<IDeviceLocation>();
+	int pageSize = criteria.getPageSize();
+	if (pageSize <= 0) {
+	    return results;
+	}
+	query.setStart(Math.max(0, criteria.getPageNumber() - 1) * pageSize);
+	query.setRows(pageSize);
+	query.setSort(SolrQuery.SortClause.asc(ISolrFields.EVENT_ID));
 	try {
-	    QueryResponse response = getSolrConnection().getSolrClient().query(params);
-	    SolrDocumentList docs = response.getResults();
-	    while (docs.iterator().hasNext()) {
-		SolrDocument doc = docs.iterator().next();
-		doc.getFieldNames();
+	    QueryResponse response = getSolrConnection().getSolrClient().query(query);
+	    for (SolrDocument doc : response.getResults()) {
+		results.add((IDeviceLocation) SiteWhereSolrFactory.parseDocument(doc));
 	    }
-	    List<IDeviceLocation> results = new ArrayList<IDeviceLocation>();
 	    return results;
 	} catch (SolrServerException e) {
-	    throw new SiteWhereException("Unable to execute 'getLocationsNear' query.", e);
+	    throw new SiteWhereException("Unable to execute query.", e);
 	} catch (IOException e) {
 	    throw new SiteWhereException("Unable to execute query.", e);
 	}
     }
 
+    /**
+     * Format a date for a Solr range query.
+     * 
+     * @param date
+     * @return
+     */
+    protected static String formatDate(Date date) {
+	return (date != null) ? DateTimeFormatter.ISO_INSTANT.format(date.toInstant()) : "*";
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.search.solr;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sitewhere.solr.ISolrFields;
+import com.sitewhere.solr.SolrConnection;
+import com.sitewhere.solr.SolrEventType;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+
+/**
+ * Tests for streaming and export queries in {@link SolrSearchProvider} using a
+ * stub Solr client that returns canned responses.
+ * 
+ * @author Derek
+ */
+public class SolrSearchProviderTest {
+
+    /** Stub client */
+    private StubSolrClient client;
+
+    /** Provider being tested */
+    private SolrSearchProvider provider;
+
+    @Before
+    public void setup() {
+	client = new StubSolrClient();
+	SolrConnection connection = new SolrConnection(null);
+	connection.setSolrClient(client);
+	provider = new SolrSearchProvider();
+	provider.setSolrConnection(connection);
+    }
+
+    @Test
+    public void testStreamFollowsCursorUntilUnchanged() throws Exception {
+	client.getResponses().add(createCursorPage("AoE1", 2));
+	client.getResponses().add(createCursorPage("AoE2", 1));
+	client.getResponses().add(createCursorPage("AoE2", 0));
+
+	List<IDeviceEvent> events = new ArrayList<>();
+	provider.streamQuery("*:*", event -> events.add(event));
+
+	assertEquals(3, events.size());
+	assertEquals(3, client.getRequests().size());
+	assertEquals(CursorMarkParams.CURSOR_MARK_START, getParam(0, CursorMarkParams.CURSOR_MARK_PARAM));
+	assertEquals("AoE1", getParam(1, CursorMarkParams.CURSOR_MARK_PARAM));
+	assertEquals("AoE2", getParam(2, CursorMarkParams.CURSOR_MARK_PARAM));
+	assertEquals(ISolrFields.EVENT_ID + " asc", getParam(0, CommonParams.SORT));
+	assertEquals("*:*", getParam(0, CommonParams.Q));
+    }
+
+    @Test
+    public void testStreamStopsWhenHandlerDeclines() throws Exception {
+	client.getResponses().add(createCursorPage("AoE1", 5));
+	client.getResponses().add(createCursorPage("AoE2", 5));
+
+	List<IDeviceEvent> events = new ArrayList<>();
+	provider.streamQuery("*:*", event -> {
+	    events.add(event);
+	    return events.size() < 2;
+	});
+
+	assertEquals(2, events.size());
+	assertEquals(1, client.getRequests().size());
+    }
+
+    @Test
+    public void testExportRequestsFieldsFromExportHandler() throws Exception {
+	client.getResponses().add(createExportResponse(
+		"{\"responseHeader\":{\"status\":0},\"response\":{\"numFound\":2,\"docs\":[{\"mxName\":\"temp\","
+			+ "\"mxValue\":20.5},{\"mxName\":\"temp\",\"mxValue\":21.0}]}}"));
+
+	List<Map<String, Object>> documents = new ArrayList<>();
+	provider.exportQuery("eventType:Measurement", Arrays.asList(ISolrFields.MX_NAME, ISolrFields.MX_VALUE),
+		document -> documents.add(document));
+
+	assertEquals(1, client.getRequests().size());
+	assertEquals("/export", client.getPaths().get(0));
+	assertEquals(ISolrFields.MX_NAME + "," + ISolrFields.MX_VALUE, getParam(0, CommonParams.FL));
+	assertEquals(ISolrFields.EVENT_ID + " asc", getParam(0, CommonParams.SORT));
+	assertEquals(2, documents.size());
+	assertEquals("temp", documents.get(0).get(ISolrFields.MX_NAME));
+	assertEquals(21.0, ((Number) documents.get(1).get(ISolrFields.MX_VALUE)).doubleValue(), 0.0);
+    }
+
+    @Test
+    public void testExportUsesDefaultFields() throws Exception {
+	client.getResponses().add(createExportResponse("{\"response\":{\"numFound\":0,\"docs\":[]}}"));
+
+	List<Map<String, Object>> documents = new ArrayList<>();
+	provider.exportQuery("*:*", null, document -> documents.add(document));
+
+	assertEquals(0, documents.size());
+	assertEquals(String.join(",", ISolrFields.EVENT_ID, ISolrFields.EVENT_TYPE, ISolrFields.EVENT_DATE,
+		ISolrFields.RECEIVED_DATE), getParam(0, CommonParams.FL));
+    }
+
+    /**
+     * Get a parameter from a request sent to the stub client.
+     * 
+     * @param request
+     * @param name
+     * @return
+     */
+    protected String getParam(int request, String name) {
+	return client.getRequests().get(request).get(name);
+    }
+
+    /**
+     * Create a cursor query response with the given number of alert documents.
+     * 
+     * @param nextCursorMark
+     * @param count
+     * @return
+     */
+    protected NamedList<Object> createCursorPage(String nextCursorMark, int count) {
+	SolrDocumentList documents = new SolrDocumentList();
+	for (int i = 0; i < count; i++) {
+	    SolrDocument document = new SolrDocument();
+	    document.setField(ISolrFields.EVENT_TYPE, SolrEventType.Alert.name());
+	    document.setField(ISolrFields.EVENT_ID, UUID.randomUUID());
+	    document.setField(ISolrFields.ALERT_TYPE, "test");
+	    document.setField(ISolrFields.ALERT_MESSAGE, "Test alert.");
+	    document.setField(ISolrFields.ALERT_LEVEL, "Info");
+	    document.setField(ISolrFields.ALERT_SOURCE, "Device");
+	    documents.add(document);
+	}
+	documents.setNumFound(count);
+	NamedList<Object> response = new NamedList<Object>();
+	response.add("response", documents);
+	response.add(CursorMarkParams.CURSOR_MARK_NEXT, nextCursorMark);
+	return response;
+    }
+
+    /**
+     * Create an export response streaming the given JSON.
+     * 
+     * @param json
+     * @return
+     */
+    protected NamedList<Object> createExportResponse(String json) {
+	NamedList<Object> response = new NamedList<Object>();
+	response.add("stream", new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	return response;
+    }
+
+    /**
+     * Solr client that records requests and returns queued responses.
+     */
+    private static class StubSolrClient extends SolrClient {
+
+	/** Serial version UID */
+	private static final long serialVersionUID = -4262108405396281760L;
+
+	/** Responses returned in order */
+	private Deque<NamedList<Object>> responses = new LinkedList<>();
+
+	/** Copies of request parameters at the time each request was sent */
+	private List<SolrParams> requests = new ArrayList<>();
+
+	/** Path of each request */
+	private List<String> paths = new ArrayList<>();
+
+	/*
+	 * @see
+	 * org.apache.solr.client.solrj.SolrClient#request(org.apache.solr.client.solrj.
+	 * SolrRequest, java.lang.String)
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public NamedList<Object> request(SolrRequest request, String collection) {
+	    requests.add(new ModifiableSolrParams(request.getParams()));
+	    paths.add(request.getPath());
+	    return responses.removeFirst();
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+	}
+
+	public Deque<NamedList<Object>> getResponses() {
+	    return responses;
+	}
+
+	public List<SolrParams> getRequests() {
+	    return requests;
+	}
+
+	public List<String> getPaths() {
+	    return paths;
+	}
+    }
+}
@@ -19,8 +19,25 @@ import com.sitewhere.spi.SiteWhereException;
  */
 public class DecodedEventsProducer extends MicroserviceKafkaProducer {
 
+    /** Default time to wait for more records before sending a batch */
+    public static final int DEFAULT_LINGER_MS = 5;
+
+    /** Default maximum size of a batch of records for a partition */
+    public static final int DEFAULT_BATCH_SIZE_BYTES = 64 * 1024;
+
+    /** Default compression type */
+    public static final String DEFAULT_COMPRESSION_TYPE = "lz4";
+
+    /** Default time receivers may be blocked waiting on Kafka */
+    public static final long DEFAULT_MAX_WAIT_MS = 5 * 1000;
+
     public DecodedEventsProducer() {
 	super(AckPolicy.FireAndForget);
+	setLingerMs(DEFAULT_LINGER_MS);
+	setBatchSizeBytes(DEFAULT_BATCH_SIZE_BYTES);
+	setCompressionType(DEFAULT_COMPRESSION_TYPE);
+	setMaxBlockMs(DEFAULT_MAX_WAIT_MS);
+	setAvailabilityWaitMs(DEFAULT_MAX_WAIT_MS);
     }
 
     /*
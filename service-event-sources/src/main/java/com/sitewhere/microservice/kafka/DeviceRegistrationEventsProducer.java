@@ -21,6 +21,10 @@ public class DeviceRegistrationEventsProducer extends MicroserviceKafkaProducer
 
     public DeviceRegistrationEventsProducer() {
 	super(AckPolicy.FireAndForget);
+	setLingerMs(DecodedEventsProducer.DEFAULT_LINGER_MS);
+	setCompressionType(DecodedEventsProducer.DEFAULT_COMPRESSION_TYPE);
+	setMaxBlockMs(DecodedEventsProducer.DEFAULT_MAX_WAIT_MS);
+	setAvailabilityWaitMs(DecodedEventsProducer.DEFAULT_MAX_WAIT_MS);
     }
 
     /*
@@ -19,8 +19,18 @@ import com.sitewhere.spi.SiteWhereException;
  */
 public class FailedDecodeEventsProducer extends MicroserviceKafkaProducer {
 
+    /** Default time to wait for more records before sending a batch */
+    public static final int DEFAULT_LINGER_MS = 20;
+
     public FailedDecodeEventsProducer() {
 	super(AckPolicy.FireAndForget);
+
+	// Failed payloads are raw and rarely read, so favor compression.
+	setLingerMs(DEFAULT_LINGER_MS);
+	setBatchSizeBytes(DecodedEventsProducer.DEFAULT_BATCH_SIZE_BYTES);
+	setCompressionType(DecodedEventsProducer.DEFAULT_COMPRESSION_TYPE);
+	setMaxBlockMs(DecodedEventsProducer.DEFAULT_MAX_WAIT_MS);
+	setAvailabilityWaitMs(DecodedEventsProducer.DEFAULT_MAX_WAIT_MS);
     }
 
     /*
@@ -7,14 +7,19 @@
  */
 package com.sitewhere.sources;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
 
 import com.sitewhere.grpc.client.device.DeviceModelMarshaler;
 import com.sitewhere.grpc.client.event.EventModelMarshaler;
 import com.sitewhere.microservice.kafka.DecodedEventsProducer;
 import com.sitewhere.microservice.kafka.DeviceRegistrationEventsProducer;
 import com.sitewhere.microservice.kafka.FailedDecodeEventsProducer;
+import com.sitewhere.microservice.kafka.MicroserviceKafkaProducer;
 import com.sitewhere.rest.model.device.event.kafka.DecodedEventPayload;
 import com.sitewhere.rest.model.device.event.kafka.DeviceRegistrationPayload;
 import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
@@ -48,6 +53,15 @@ public class EventSourcesManager extends TenantEngineLifecycleComponent implemen
     /** Kafka producer for device registation events from event sources */
     private DeviceRegistrationEventsProducer deviceRegistrationEventsProducer;
 
+    /** Linger time for decoded event producers (null for default) */
+    private Integer decodedEventsLingerMs;
+
+    /** Batch size for decoded event producers (null for default) */
+    private Integer decodedEventsBatchSize;
+
+    /** Compression type for decoded event producers (null for default) */
+    private String decodedEventsCompression;
+
     /*
      * @see com.sitewhere.server.lifecycle.LifecycleComponent#initialize(com.
      * sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
@@ -87,6 +101,26 @@ public class EventSourcesManager extends TenantEngineLifecycleComponent implemen
 	this.decodedEventsProducer = new DecodedEventsProducer();
 	this.failedDecodeEventsProducer = new FailedDecodeEventsProducer();
 	this.deviceRegistrationEventsProducer = new DeviceRegistrationEventsProducer();
+	configureDecodedEventsProducer(getDecodedEventsProducer());
+	configureDecodedEventsProducer(getDeviceRegistrationEventsProducer());
+    }
+
+    /**
+     * Apply configured batching and compression settings to a producer that
+     * handles decoded requests.
+     * 
+     * @param producer
+     */
+    protected void configureDecodedEventsProducer(MicroserviceKafkaProducer producer) {
+	if (getDecodedEventsLingerMs() != null) {
+	    producer.setLingerMs(getDecodedEventsLingerMs());
+	}
+	if (getDecodedEventsBatchSize() != null) {
+	    producer.setBatchSizeBytes(getDecodedEventsBatchSize());
+	}
+	if (getDecodedEventsCompression() != null) {
+	    producer.setCompressionType(getDecodedEventsCompression());
+	}
     }
 
     /*
@@ -151,35 +185,111 @@ public class EventSourcesManager extends TenantEngineLifecycleComponent implemen
      * com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
      */
     @Override
-    public void handleDecodedEvent(String sourceId, byte[] encoded, Map<String, Object> metadata,
+    public Future<RecordMetadata> handleDecodedEvent(String sourceId, byte[] encoded, Map<String, Object> metadata,
 	    IDecodedDeviceRequest<?> decoded) throws SiteWhereException {
+	OutboundRecord record = buildRecord(sourceId, decoded);
+	if (record == null) {
+	    return handleUnsupportedRequest(sourceId, encoded, metadata, decoded);
+	}
+	return record.send();
+    }
+
+    /*
+     * @see
+     * com.sitewhere.sources.spi.IEventSourcesManager#handleDecodedEvents(java.lang
+     * .String, byte[], java.util.Map, java.util.List)
+     */
+    @Override
+    public List<Future<RecordMetadata>> handleDecodedEvents(String sourceId, byte[] encoded,
+	    Map<String, Object> metadata, List<IDecodedDeviceRequest<?>> decoded) throws SiteWhereException {
+	// Marshal everything first so records are appended to batches together.
+	List<OutboundRecord> records = new ArrayList<>(decoded.size());
+	List<Future<RecordMetadata>> published = new ArrayList<>(decoded.size());
+	IDecodedDeviceRequest<?> unsupported = null;
+	for (IDecodedDeviceRequest<?> request : decoded) {
+	    try {
+		OutboundRecord record = buildRecord(sourceId, request);
+		if (record != null) {
+		    records.add(record);
+		} else {
+		    unsupported = request;
+		}
+	    } catch (SiteWhereException e) {
+		// Report failure so the payload is not acknowledged with events missing.
+		getLogger().warn("Unable to build record for decoded request.", e);
+		published.add(InboundEventSource.failed(e));
+	    }
+	}
+	for (OutboundRecord record : records) {
+	    published.add(record.send());
+	}
+
+	// Payload is parked once no matter how many requests could not be handled.
+	if (unsupported != null) {
+	    try {
+		published.add(handleUnsupportedRequest(sourceId, encoded, metadata, unsupported));
+	    } catch (SiteWhereException e) {
+		published.add(InboundEventSource.failed(e));
+	    }
+	}
+	return published;
+    }
+
+    /**
+     * Handle a decoded request of a type that can not be forwarded. Retrying will
+     * never succeed, so the original payload is sent to the failed decode topic
+     * rather than reported as a failure that would cause redelivery.
+     * 
+     * @param sourceId
+     * @param encoded
+     * @param metadata
+     * @param decoded
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Future<RecordMetadata> handleUnsupportedRequest(String sourceId, byte[] encoded,
+	    Map<String, Object> metadata, IDecodedDeviceRequest<?> decoded) throws SiteWhereException {
+	return handleFailedDecode(sourceId, encoded, metadata, new SiteWhereException(
+		"Unhandled decoded request type: " + decoded.getRequest().getClass().getName()));
+    }
+
+    /**
+     * Build the Kafka record for a decoded request. Returns null if the request
+     * type is not handled. Throws an exception if the target producer is not
+     * started so that the original message is not acknowledged.
+     * 
+     * @param sourceId
+     * @param decoded
+     * @return
+     * @throws SiteWhereException
+     */
+    protected OutboundRecord buildRecord(String sourceId, IDecodedDeviceRequest<?> decoded) throws SiteWhereException {
 	if (decoded.getRequest() instanceof IDeviceEventCreateRequest) {
 	    if (getDecodedEventsProducer().getLifecycleStatus() == LifecycleStatus.Started) {
-		// Build and forward inbound event payload message.
+		// Build inbound event payload message.
 		DecodedEventPayload payload = new DecodedEventPayload();
 		payload.setSourceId(sourceId);
 		payload.setDeviceToken(decoded.getDeviceToken());
 		payload.setOriginator(decoded.getOriginator());
 		payload.setEventCreateRequest((IDeviceEventCreateRequest) decoded.getRequest());
-		getDecodedEventsProducer().send(decoded.getDeviceToken(),
+		return new OutboundRecord(getDecodedEventsProducer(), decoded.getDeviceToken(),
 			EventModelMarshaler.buildDecodedEventPayloadMessage(payload));
-	    } else {
-		getLogger().warn("Producer not started. Unable to add decoded event to topic.");
 	    }
+	    throw new SiteWhereException("Producer not started. Unable to add decoded event to topic.");
 	} else if (decoded.getRequest() instanceof IDeviceRegistrationRequest) {
 	    if (getDeviceRegistrationEventsProducer().getLifecycleStatus() == LifecycleStatus.Started) {
-		// Build and forward device registration payload message.
+		// Build device registration payload message.
 		DeviceRegistrationPayload payload = new DeviceRegistrationPayload();
 		payload.setSourceId(sourceId);
 		payload.setDeviceToken(decoded.getDeviceToken());
 		payload.setOriginator(decoded.getOriginator());
 		payload.setDeviceRegistrationRequest((IDeviceRegistrationRequest) decoded.getRequest());
-		getDeviceRegistrationEventsProducer().send(decoded.getDeviceToken(),
+		return new OutboundRecord(getDeviceRegistrationEventsProducer(), decoded.getDeviceToken(),
 			DeviceModelMarshaler.buildDeviceRegistrationPayloadMessage(payload));
-	    } else {
-		getLogger().warn("Producer not started. Unable to add device registration event to topic.");
 	    }
+	    throw new SiteWhereException("Producer not started. Unable to add device registration event to topic.");
 	}
+	return null;
     }
 
     /*
@@ -187,14 +297,13 @@ public class EventSourcesManager extends TenantEngineLifecycleComponent implemen
      * lang.String, byte[], java.util.Map, java.lang.Throwable)
      */
     @Override
-    public void handleFailedDecode(String sourceId, byte[] encoded, Map<String, Object> metadata, Throwable t)
-	    throws SiteWhereException {
+    public Future<RecordMetadata> handleFailedDecode(String sourceId, byte[] encoded, Map<String, Object> metadata,
+	    Throwable t) throws SiteWhereException {
 	getLogger().warn("Event could not be decoded. Adding to failed decode topic.", t);
 	if (getFailedDecodeEventsProducer().getLifecycleStatus() == LifecycleStatus.Started) {
-	    getFailedDecodeEventsProducer().send(sourceId, encoded);
-	} else if (getLogger().isWarnEnabled()) {
-	    getLogger().warn("Producer not started. Unable to add event to topic.");
+	    return getFailedDecodeEventsProducer().send(sourceId, encoded);
 	}
+	throw new SiteWhereException("Producer not started. Unable to add event to failed decode topic.");
     }
 
     /*
@@ -248,4 +357,59 @@ public class EventSourcesManager extends TenantEngineLifecycleComponent implemen
     public void setDeviceRegistrationEventsProducer(DeviceRegistrationEventsProducer deviceRegistrationEventsProducer) {
 	this.deviceRegistrationEventsProducer = deviceRegistrationEventsProducer;
     }
+
+    public Integer getDecodedEventsLingerMs() {
+	return decodedEventsLingerMs;
+    }
+
+    public void setDecodedEventsLingerMs(Integer decodedEventsLingerMs) {
+	this.decodedEventsLingerMs = decodedEventsLingerMs;
+    }
+
+    public Integer getDecodedEventsBatchSize() {
+	return decodedEventsBatchSize;
+    }
+
+    public void setDecodedEventsBatchSize(Integer decodedEventsBatchSize) {
+	this.decodedEventsBatchSize = decodedEventsBatchSize;
+    }
+
+    public String getDecodedEventsCompression() {
+	return decodedEventsCompression;
+    }
+
+    public void setDecodedEventsCompression(String decodedEventsCompression) {
+	this.decodedEventsCompression = decodedEventsCompression;
+    }
+
+    /**
+     * Marshaled record waiting to be sent to a producer.
+     */
+    protected static class OutboundRecord {
+
+	/** Producer that will send the record */
+	private MicroserviceKafkaProducer producer;
+
+	/** Record key */
+	private String key;
+
+	/** Marshaled message */
+	private byte[] message;
+
+	public OutboundRecord(MicroserviceKafkaProducer producer, String key, byte[] message) {
+	    this.producer = producer;
+	    this.key = key;
+	    this.message = message;
+	}
+
+	/**
+	 * Send record via producer.
+	 * 
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	public Future<RecordMetadata> send() throws SiteWhereException {
+	    return producer.send(key, message);
+	}
+    }
 }
\ No newline at end of file
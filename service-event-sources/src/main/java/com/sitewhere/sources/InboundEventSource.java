@@ -8,9 +8,15 @@
 package com.sitewhere.sources;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import com.sitewhere.microservice.kafka.KafkaLatencyTracing;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.sources.spi.EventDecodeException;
 import com.sitewhere.sources.spi.IDecodedDeviceRequest;
@@ -186,14 +192,37 @@ public abstract class InboundEventSource<T> extends TenantEngineLifecycleCompone
      */
     @Override
     public void onEncodedEventReceived(IInboundEventReceiver<T> receiver, T encoded, Map<String, Object> metadata) {
-	List<IDecodedDeviceRequest<?>> requests = decodeEvent(encoded, metadata);
-	if (requests != null) {
-	    for (IDecodedDeviceRequest<?> decoded : requests) {
-		DECODED_EVENTS.labels(buildLabels(getSourceId())).inc();
-		if (shouldProcess(decoded)) {
-		    handleDecodedRequest(encoded, metadata, decoded);
+	processEncodedEvent(receiver, encoded, metadata);
+    }
+
+    /*
+     * @see
+     * com.sitewhere.sources.spi.IInboundEventSource#processEncodedEvent(com.
+     * sitewhere.sources.spi.IInboundEventReceiver, java.lang.Object, java.util.Map)
+     */
+    @Override
+    public List<Future<RecordMetadata>> processEncodedEvent(IInboundEventReceiver<T> receiver, T encoded,
+	    Map<String, Object> metadata) {
+	// Events enter the pipeline when received, so latency includes decoding.
+	KafkaLatencyTracing.setCurrentOrigin(System.currentTimeMillis());
+	try {
+	    List<Future<RecordMetadata>> published = new ArrayList<>();
+	    List<IDecodedDeviceRequest<?>> requests = decodeEvent(encoded, metadata, published);
+	    if (requests != null) {
+		List<IDecodedDeviceRequest<?>> accepted = new ArrayList<>(requests.size());
+		for (IDecodedDeviceRequest<?> decoded : requests) {
+		    DECODED_EVENTS.labels(buildLabels(getSourceId())).inc();
+		    if (shouldProcess(decoded)) {
+			accepted.add(decoded);
+		    }
+		}
+		if (accepted.size() > 0) {
+		    published.addAll(handleDecodedRequests(encoded, metadata, accepted));
 		}
 	    }
+	    return published;
+	} finally {
+	    KafkaLatencyTracing.clearCurrentOrigin();
 	}
     }
 
@@ -202,17 +231,31 @@ public abstract class InboundEventSource<T> extends TenantEngineLifecycleCompone
      * 
      * @param encoded
      * @param metadata
+     * @param published
      * @return
      */
-    protected List<IDecodedDeviceRequest<?>> decodeEvent(T encoded, Map<String, Object> metadata) {
+    protected List<IDecodedDeviceRequest<?>> decodeEvent(T encoded, Map<String, Object> metadata,
+	    List<Future<RecordMetadata>> published) {
 	try {
 	    return decodePayload(encoded, metadata);
 	} catch (EventDecodeException e) {
-	    onEventDecodeFailed(encoded, metadata, e);
+	    addPublished(published, onEventDecodeFailed(encoded, metadata, e));
 	    return null;
 	}
     }
 
+    /**
+     * Add future for a published record to the list (if a record was sent).
+     * 
+     * @param published
+     * @param future
+     */
+    protected void addPublished(List<Future<RecordMetadata>> published, Future<RecordMetadata> future) {
+	if (future != null) {
+	    published.add(future);
+	}
+    }
+
     /**
      * Indicates if a decoded record should be processed. Returning false skips
      * processing for the request.
@@ -236,18 +279,22 @@ public abstract class InboundEventSource<T> extends TenantEngineLifecycleCompone
     }
 
     /**
-     * Pass decoded events to the {@link IEventSourcesManager} for further
-     * processing.
+     * Pass all events decoded from a payload to the {@link IEventSourcesManager}
+     * so they are published together.
      * 
      * @param encoded
      * @param metadata
      * @param decoded
+     * @return
      */
-    protected void handleDecodedRequest(T encoded, Map<String, Object> metadata, IDecodedDeviceRequest<?> decoded) {
+    protected List<Future<RecordMetadata>> handleDecodedRequests(T encoded, Map<String, Object> metadata,
+	    List<IDecodedDeviceRequest<?>> decoded) {
 	try {
-	    getEventSourcesManager().handleDecodedEvent(getSourceId(), getRawPayload(encoded), metadata, decoded);
+	    return getEventSourcesManager().handleDecodedEvents(getSourceId(), getRawPayload(encoded), metadata,
+		    decoded);
 	} catch (SiteWhereException e) {
-	    getLogger().error("Unable to handle decoded event.", e);
+	    getLogger().error("Unable to handle decoded events.", e);
+	    return Collections.singletonList(failed(e));
 	}
     }
 
@@ -258,16 +305,31 @@ public abstract class InboundEventSource<T> extends TenantEngineLifecycleCompone
      * @param encoded
      * @param metadata
      * @param t
+     * @return
      */
-    protected void onEventDecodeFailed(T encoded, Map<String, Object> metadata, Throwable t) {
+    protected Future<RecordMetadata> onEventDecodeFailed(T encoded, Map<String, Object> metadata, Throwable t) {
 	try {
 	    DECODE_FAILURES.labels(buildLabels(getSourceId())).inc();
-	    getEventSourcesManager().handleFailedDecode(getSourceId(), getRawPayload(encoded), metadata, t);
+	    return getEventSourcesManager().handleFailedDecode(getSourceId(), getRawPayload(encoded), metadata, t);
 	} catch (SiteWhereException e) {
 	    getLogger().error("Unable to handle failed event decode.", e);
+	    return failed(e);
 	}
     }
 
+    /**
+     * Create a future that reports a failure to publish a record so receivers
+     * that wait on publishing do not acknowledge the original message.
+     * 
+     * @param t
+     * @return
+     */
+    protected static Future<RecordMetadata> failed(Throwable t) {
+	CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+	future.completeExceptionally(t);
+	return future;
+    }
+
     /**
      * Decode a payload into individual events.
      * 
@@ -111,6 +111,16 @@ public class EventSourcesModelProvider extends ConfigurationModelProvider {
 
 	builder.description(
 		"Event sources are responsible for acquiring device event data from external devices or systems.");
+	builder.attribute((new AttributeNode.Builder("Decoded events linger (ms)", "decodedEventsLingerMs",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_PERFORMANCE).defaultValue("5")
+			.description("Time to wait for more decoded events before sending a batch to Kafka.").build()));
+	builder.attribute((new AttributeNode.Builder("Decoded events batch size", "decodedEventsBatchSize",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_PERFORMANCE).defaultValue("65536")
+			.description("Maximum size in bytes of a batch of decoded events for a Kafka partition.")
+			.build()));
+	builder.attribute((new AttributeNode.Builder("Decoded events compression", "decodedEventsCompression",
+		AttributeType.String, ConfigurationModelProvider.ATTR_GROUP_PERFORMANCE).defaultValue("lz4")
+			.description("Compression used for decoded events (none, gzip, snappy or lz4).").build()));
 
 	return builder.build();
     }
@@ -188,6 +198,16 @@ public class EventSourcesModelProvider extends ConfigurationModelProvider {
 	builder.attribute((new AttributeNode.Builder("Consumer threads", "numConsumers", AttributeType.Integer,
 		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY).defaultValue("5")
 			.description("Number of thread used by consumers to pull data from the queue.").build()));
+	builder.attribute((new AttributeNode.Builder("Prefetch count", "prefetchCount", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY).defaultValue("250")
+			.description("Maximum number of unacknowledged messages delivered to each consumer.").build()));
+	builder.attribute((new AttributeNode.Builder("Acknowledge batch size", "ackBatchSize", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY).defaultValue("50")
+			.description("Number of messages acknowledged together after events are published.").build()));
+	builder.attribute((new AttributeNode.Builder("Acknowledge interval (ms)", "ackIntervalMs",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY).defaultValue("500")
+			.description("Interval at which published messages in a partial batch are acknowledged.")
+			.build()));
 
 	return builder.build();
     }
@@ -464,13 +484,16 @@ public class EventSourcesModelProvider extends ConfigurationModelProvider {
 
 	builder.description("Event source that polls a REST service at a given interval to generate payloads. "
 		+ "A groovy script is used to make the REST call(s) and parse the responses "
-		+ "into payloads to be decoded.");
+		+ "into payloads to be decoded. If a list of endpoints is given, each endpoint is polled "
+		+ "independently with an adaptive interval and the script only parses responses.");
 	builder.attributeGroup(ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY);
 	addEventSourceAttributes(builder, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY);
 
 	builder.attribute((new AttributeNode.Builder("Script Id", "scriptId", AttributeType.Script,
 		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY)
-			.description("Script which makes REST calls and parses responses.").makeRequired().build()));
+			.description("Script which makes REST calls and parses responses. Optional if endpoints "
+				+ "are configured, in which case each response body is used as a payload.")
+			.build()));
 	builder.attribute((new AttributeNode.Builder("Base REST url", "baseUrl", AttributeType.String,
 		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY).description(
 			"Base URL for REST calls. All calls in the Groovy script are made relative to this URL.")
@@ -485,6 +508,31 @@ public class EventSourcesModelProvider extends ConfigurationModelProvider {
 	builder.attribute((new AttributeNode.Builder("Password", "password", AttributeType.String,
 		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY)
 			.description("Password used for basic authentication.").build()));
+	builder.attribute((new AttributeNode.Builder("Endpoints", "endpoints", AttributeType.String,
+		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY).description(
+			"Comma-separated list of URLs (relative to base URL) polled concurrently. Each endpoint "
+				+ "speeds up to the polling interval when data arrives and backs off when idle.")
+			.build()));
+	builder.attribute((new AttributeNode.Builder("Maximum polling interval (ms)", "maxPollIntervalMs",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY)
+			.description("Longest interval used for endpoints that return no new data.")
+			.defaultValue("300000").build()));
+	builder.attribute((new AttributeNode.Builder("Backoff multiplier", "backoffMultiplier", AttributeType.Decimal,
+		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY)
+			.description("Factor applied to interval each time an endpoint returns no new data.")
+			.defaultValue("2.0").build()));
+	builder.attribute((new AttributeNode.Builder("Maximum concurrent requests", "maxConcurrentRequests",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY)
+			.description("Maximum number of endpoint requests in flight at once.").defaultValue("8")
+			.build()));
+	builder.attribute((new AttributeNode.Builder("Decode threads", "decodeThreads", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY)
+			.description("Number of threads used to decode received payloads.").defaultValue("4")
+			.build()));
+	builder.attribute((new AttributeNode.Builder("Conditional requests", "conditionalRequests",
+		AttributeType.Boolean, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY)
+			.description("Send ETag/Last-Modified validators so unchanged responses are skipped.")
+			.defaultValue("true").build()));
 
 	// Only accept binary event decoders.
 	builder.specializes(EventSourcesRoleKeys.EventDecoder, EventSourcesRoleKeys.BinaryEventDecoder);
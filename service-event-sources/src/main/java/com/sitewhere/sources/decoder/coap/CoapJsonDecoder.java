@@ -12,7 +12,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sitewhere.rest.model.device.communication.DeviceRequest;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
@@ -55,9 +55,8 @@ public class CoapJsonDecoder extends TenantEngineLifecycleComponent implements I
 	String deviceToken = (String) metadata.get(META_DEVICE_TOKEN);
 	DeviceRequest.Type type = DeviceRequest.Type.valueOf(typeStr);
 
-	try {
-	    JsonNode request = MAPPER.readTree(payload);
-	    DecodedDeviceRequest<?> decoded = JsonDeviceRequestMarshaler.unmarshal(deviceToken, null, type, request);
+	try (JsonParser parser = MAPPER.getFactory().createParser(payload)) {
+	    DecodedDeviceRequest<?> decoded = JsonDeviceRequestMarshaler.unmarshal(deviceToken, null, type, parser);
 	    return Collections.singletonList(decoded);
 	} catch (IOException e) {
 	    throw new EventDecodeException("Unable to decode CoAP event.", e);
@@ -11,9 +11,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.sitewhere.sources.spi.ICompositeDeviceEventDecoder;
+import com.sitewhere.sources.spi.microservice.IEventSourcesMicroservice;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceManagement;
-import com.sitewhere.spi.tenant.ITenant;
+import com.sitewhere.spi.device.IDeviceType;
 
 /**
  * Concrete implementation of {@link ICompositeDeviceEventDecoder} for binary
@@ -40,15 +42,21 @@ public class BinaryCompositeDeviceEventDecoder extends CompositeDeviceEventDecod
     public IDeviceContext<byte[]> buildContext(IMessageMetadata<byte[]> metadata) throws SiteWhereException {
 	BinaryDeviceContext context = new BinaryDeviceContext();
 
-	IDeviceManagement devices = getDeviceManagement(getTenantEngine().getTenant());
-	context.setDevice(devices.getDeviceByToken(metadata.getDeviceToken()));
-	if (context.getDevice() == null) {
+	// Cached device management serves repeat lookups without remote calls.
+	IDeviceManagement devices = getDeviceManagement();
+	IDevice device = devices.getDeviceByToken(metadata.getDeviceToken());
+	if (device == null) {
 	    throw new SiteWhereException(
 		    "Unable to build device context. Device not found for token: " + metadata.getDeviceToken());
 	}
+	IDeviceType deviceType = devices.getDeviceType(device.getDeviceTypeId());
+	if (deviceType == null) {
+	    throw new SiteWhereException(
+		    "Unable to build device context. Device type not found for device: " + device.getToken());
+	}
 
-	context.setDeviceType(devices.getDeviceType(context.getDevice().getDeviceTypeId()));
-
+	context.setDevice(device);
+	context.setDeviceType(deviceType);
 	context.setPayload(metadata.getPayload());
 	return context;
     }
@@ -81,7 +89,7 @@ public class BinaryCompositeDeviceEventDecoder extends CompositeDeviceEventDecod
 	this.decoderChoices = decoderChoices;
     }
 
-    private IDeviceManagement getDeviceManagement(ITenant tenant) {
-	return null;
+    private IDeviceManagement getDeviceManagement() {
+	return ((IEventSourcesMicroservice) getTenantEngine().getMicroservice()).getCachedDeviceManagement();
     }
 }
\ No newline at end of file
@@ -23,8 +23,9 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
 /**
  * Basic logic for a composite decoder. Extracts metadata from initial payload,
- * looks up device management data to build a context, then loops through a list
- * of potential decoders, returning the first one that applies to the context.
+ * looks up device management data to build a context, then uses the first
+ * decoder choice that applies to the context. Choices based on device type are
+ * located via a map rather than testing each choice in turn.
  * 
  * @author Derek
  *
@@ -33,6 +34,12 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 public abstract class CompositeDeviceEventDecoder<T> extends TenantEngineLifecycleComponent
 	implements ICompositeDeviceEventDecoder<T> {
 
+    /** Index of first device type choice for each device type token */
+    private Map<String, Integer> choiceIndexByDeviceType = new HashMap<String, Integer>();
+
+    /** Indexes (in order) of choices that can not be routed by device type */
+    private List<Integer> unroutedChoiceIndexes = new ArrayList<Integer>();
+
     public CompositeDeviceEventDecoder() {
 	super(LifecycleComponentType.DeviceEventDecoder);
     }
@@ -57,15 +64,46 @@ public abstract class CompositeDeviceEventDecoder<T> extends TenantEngineLifecyc
     public List<IDecodedDeviceRequest<?>> decode(T payload, Map<String, Object> eventSourceMetadata)
 	    throws EventDecodeException {
 
-	// Parse metadata from payload.
-	IMessageMetadata<T> metadata = getMetadataExtractor().extractMetadata(payload, eventSourceMetadata);
-	getLogger().info("Extracted payload metadata: DeviceToken: " + metadata.getDeviceToken() + " Payload: "
-		+ metadata.getPayload().toString());
+	// Parse metadata from payload. Payload may contain multiple messages.
+	List<IMessageMetadata<T>> messages = getMetadataExtractor().extractAllMetadata(payload, eventSourceMetadata);
+	return decodeBatch(messages, eventSourceMetadata);
+    }
+
+    /*
+     * @see
+     * com.sitewhere.sources.spi.ICompositeDeviceEventDecoder#decodeBatch(java.util.
+     * List, java.util.Map)
+     */
+    @Override
+    public List<IDecodedDeviceRequest<?>> decodeBatch(List<IMessageMetadata<T>> messages,
+	    Map<String, Object> eventSourceMetadata) throws EventDecodeException {
+	List<IDecodedDeviceRequest<?>> decoded = new ArrayList<IDecodedDeviceRequest<?>>();
+	for (IMessageMetadata<T> metadata : messages) {
+	    decoded.addAll(decodeMessage(metadata, eventSourceMetadata));
+	}
+	return decoded;
+    }
+
+    /**
+     * Decode a single message based on its extracted metadata.
+     * 
+     * @param metadata
+     * @param eventSourceMetadata
+     * @return
+     * @throws EventDecodeException
+     */
+    protected List<IDecodedDeviceRequest<?>> decodeMessage(IMessageMetadata<T> metadata,
+	    Map<String, Object> eventSourceMetadata) throws EventDecodeException {
+	if (getLogger().isDebugEnabled()) {
+	    getLogger().debug("Extracted payload metadata: DeviceToken: " + metadata.getDeviceToken());
+	}
 
 	try {
 	    IDeviceContext<T> context = buildContext(metadata);
-	    getLogger().debug("Built context: Device: " + context.getDevice().getToken() + " Device type: "
-		    + context.getDeviceType().getToken());
+	    if (getLogger().isDebugEnabled()) {
+		getLogger().debug("Built context: Device: " + context.getDevice().getToken() + " Device type: "
+			+ context.getDeviceType().getToken());
+	    }
 
 	    // Add context metadata to event source metadata.
 	    Map<String, Object> combined = new HashMap<String, Object>();
@@ -75,12 +113,9 @@ public abstract class CompositeDeviceEventDecoder<T> extends TenantEngineLifecyc
 	    combined.put(IDeviceEventDecoder.META_DEVICE, context.getDevice());
 	    combined.put(IDeviceEventDecoder.META_DEVICE_TYPE, context.getDeviceType());
 
-	    // Loop through choices and use first one that applies.
-	    for (ICompositeDeviceEventDecoder.IDecoderChoice<T> choice : getDecoderChoices()) {
-
-		if (choice.appliesTo(context)) {
-		    return choice.getDeviceEventDecoder().decode(context.getPayload(), combined);
-		}
+	    ICompositeDeviceEventDecoder.IDecoderChoice<T> choice = chooseDecoder(context);
+	    if (choice != null) {
+		return choice.getDeviceEventDecoder().decode(context.getPayload(), combined);
 	    }
 	} catch (SiteWhereException e) {
 	    throw new EventDecodeException("Exception in composite decoder.", e);
@@ -92,6 +127,50 @@ public abstract class CompositeDeviceEventDecoder<T> extends TenantEngineLifecyc
 	return new ArrayList<IDecodedDeviceRequest<?>>();
     }
 
+    /**
+     * Find the first decoder choice that applies to the given context. Choices
+     * based on device type are located by map lookup. Other choices are tested
+     * in order, but only those configured before the matching device type
+     * choice.
+     * 
+     * @param context
+     * @return
+     */
+    protected ICompositeDeviceEventDecoder.IDecoderChoice<T> chooseDecoder(IDeviceContext<T> context) {
+	Integer routed = getChoiceIndexByDeviceType().get(context.getDeviceType().getToken());
+	int limit = (routed != null) ? routed : Integer.MAX_VALUE;
+	for (Integer index : getUnroutedChoiceIndexes()) {
+	    if (index > limit) {
+		break;
+	    }
+	    ICompositeDeviceEventDecoder.IDecoderChoice<T> choice = getDecoderChoices().get(index);
+	    if (choice.appliesTo(context)) {
+		return choice;
+	    }
+	}
+	return (routed != null) ? getDecoderChoices().get(routed) : null;
+    }
+
+    /**
+     * Build indexes used to route contexts to decoder choices.
+     */
+    protected void buildChoiceIndexes() {
+	getChoiceIndexByDeviceType().clear();
+	getUnroutedChoiceIndexes().clear();
+	List<ICompositeDeviceEventDecoder.IDecoderChoice<T>> choices = getDecoderChoices();
+	for (int i = 0; i < choices.size(); i++) {
+	    ICompositeDeviceEventDecoder.IDecoderChoice<T> choice = choices.get(i);
+	    if (choice instanceof DeviceTypeDecoderChoice) {
+		String token = ((DeviceTypeDecoderChoice<T>) choice).getDeviceTypeToken();
+		if ((token != null) && (!getChoiceIndexByDeviceType().containsKey(token))) {
+		    getChoiceIndexByDeviceType().put(token, i);
+		}
+	    } else {
+		getUnroutedChoiceIndexes().add(i);
+	    }
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -112,6 +191,7 @@ public abstract class CompositeDeviceEventDecoder<T> extends TenantEngineLifecyc
 	for (ICompositeDeviceEventDecoder.IDecoderChoice<T> choice : getDecoderChoices()) {
 	    startNestedComponent(choice, monitor, true);
 	}
+	buildChoiceIndexes();
     }
 
     /*
@@ -130,4 +210,12 @@ public abstract class CompositeDeviceEventDecoder<T> extends TenantEngineLifecyc
 	    choice.lifecycleStop(monitor);
 	}
     }
+
+    protected Map<String, Integer> getChoiceIndexByDeviceType() {
+	return choiceIndexByDeviceType;
+    }
+
+    protected List<Integer> getUnroutedChoiceIndexes() {
+	return unroutedChoiceIndexes;
+    }
 }
\ No newline at end of file
@@ -7,6 +7,9 @@
  */
 package com.sitewhere.sources.decoder.composite;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import com.sitewhere.groovy.IGroovyVariables;
@@ -14,10 +17,10 @@ import com.sitewhere.microservice.groovy.GroovyComponent;
 import com.sitewhere.sources.spi.EventDecodeException;
 import com.sitewhere.sources.spi.ICompositeDeviceEventDecoder.IMessageMetadata;
 import com.sitewhere.sources.spi.ICompositeDeviceEventDecoder.IMessageMetadataExtractor;
+import com.sitewhere.sources.spi.microservice.IEventSourcesMicroservice;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
-import com.sitewhere.spi.tenant.ITenant;
 
 import groovy.lang.Binding;
 
@@ -40,23 +43,46 @@ public class GroovyMessageMetadataExtractor extends GroovyComponent implements I
      * IMessageMetadataExtractor#extractMetadata(java.lang.Object, java.util.Map)
      */
     @Override
-    @SuppressWarnings("unchecked")
     public IMessageMetadata<byte[]> extractMetadata(byte[] payload, Map<String, Object> eventSourceMetadata)
 	    throws EventDecodeException {
+	List<IMessageMetadata<byte[]>> all = extractAllMetadata(payload, eventSourceMetadata);
+	if (all.size() != 1) {
+	    throw new EventDecodeException("Metadata extractor returned " + all.size() + " messages. Expected one.");
+	}
+	return all.get(0);
+    }
+
+    /*
+     * @see com.sitewhere.sources.spi.ICompositeDeviceEventDecoder.
+     * IMessageMetadataExtractor#extractAllMetadata(java.lang.Object,
+     * java.util.Map)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<IMessageMetadata<byte[]>> extractAllMetadata(byte[] payload, Map<String, Object> eventSourceMetadata)
+	    throws EventDecodeException {
 	try {
 	    Binding binding = createBindingFor(this);
-	    binding.setVariable(IGroovyVariables.VAR_DEVICE_MANAGEMENT,
-		    getDeviceManagement(getTenantEngine().getTenant()));
+	    binding.setVariable(IGroovyVariables.VAR_DEVICE_MANAGEMENT, getDeviceManagement());
 	    binding.setVariable(IGroovyVariables.VAR_PAYLOAD, payload);
 	    binding.setVariable(IGroovyVariables.VAR_PAYLOAD_METADATA, eventSourceMetadata);
-	    getLogger().debug("About to execute '" + getScriptId() + "' with payload: " + payload);
-	    return (IMessageMetadata<byte[]>) run(binding);
+	    getLogger().debug(
+		    "About to execute '" + getScriptId() + "' with payload of " + payload.length + " bytes.");
+	    Object result = run(binding);
+
+	    // Scripts for multiplexed payloads may return a list of messages.
+	    if (result == null) {
+		return Collections.emptyList();
+	    } else if (result instanceof List) {
+		return new ArrayList<IMessageMetadata<byte[]>>((List<IMessageMetadata<byte[]>>) result);
+	    }
+	    return Collections.singletonList((IMessageMetadata<byte[]>) result);
 	} catch (SiteWhereException e) {
 	    throw new EventDecodeException("Unable to run metadata extractor.", e);
 	}
     }
 
-    private IDeviceManagement getDeviceManagement(ITenant tenant) {
-	return null;
+    private IDeviceManagement getDeviceManagement() {
+	return ((IEventSourcesMicroservice) getTenantEngine().getMicroservice()).getCachedDeviceManagement();
     }
 }
\ No newline at end of file
@@ -13,17 +13,20 @@ import java.util.List;
 import java.util.Map;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.sitewhere.rest.model.device.event.DeviceEventBatch;
+import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceLocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementCreateRequest;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.sources.DecodedDeviceRequest;
 import com.sitewhere.sources.spi.EventDecodeException;
 import com.sitewhere.sources.spi.IDecodedDeviceRequest;
 import com.sitewhere.sources.spi.IDeviceEventDecoder;
-import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
-import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
-import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
 /**
@@ -34,6 +37,9 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
  * {@link DeviceEventBatch} object and does not offer full-featured support. Use
  * {@link JsonDeviceRequestDecoder} instead.
  * 
+ * The batch is streamed rather than bound as a whole so that each event is
+ * wrapped as soon as it is read and the batch object is never materialized.
+ * 
  * @author Derek
  */
 public class JsonBatchEventDecoder extends TenantEngineLifecycleComponent implements IDeviceEventDecoder<byte[]> {
@@ -41,6 +47,15 @@ public class JsonBatchEventDecoder extends TenantEngineLifecycleComponent implem
     /** Used to map data into an object based on JSON parsing */
     private ObjectMapper mapper = new ObjectMapper();
 
+    /** Reader for location entries */
+    private ObjectReader locationReader = mapper.readerFor(DeviceLocationCreateRequest.class);
+
+    /** Reader for measurement entries */
+    private ObjectReader measurementReader = mapper.readerFor(DeviceMeasurementCreateRequest.class);
+
+    /** Reader for alert entries */
+    private ObjectReader alertReader = mapper.readerFor(DeviceAlertCreateRequest.class);
+
     public JsonBatchEventDecoder() {
 	super(LifecycleComponentType.DeviceEventDecoder);
     }
@@ -54,27 +69,47 @@ public class JsonBatchEventDecoder extends TenantEngineLifecycleComponent implem
     @Override
     public List<IDecodedDeviceRequest<?>> decode(byte[] payload, Map<String, Object> metadata)
 	    throws EventDecodeException {
-	try {
-	    List<IDecodedDeviceRequest<?>> events = new ArrayList<IDecodedDeviceRequest<?>>();
-	    DeviceEventBatch batch = mapper.readValue(payload, DeviceEventBatch.class);
-	    for (IDeviceLocationCreateRequest lc : batch.getLocations()) {
-		DecodedDeviceRequest<IDeviceLocationCreateRequest> decoded = new DecodedDeviceRequest<IDeviceLocationCreateRequest>();
-		decoded.setDeviceToken(batch.getDeviceToken());
-		decoded.setRequest(lc);
-		events.add(decoded);
-	    }
-	    for (IDeviceMeasurementCreateRequest mc : batch.getMeasurements()) {
-		DecodedDeviceRequest<IDeviceMeasurementCreateRequest> decoded = new DecodedDeviceRequest<IDeviceMeasurementCreateRequest>();
-		decoded.setDeviceToken(batch.getDeviceToken());
-		decoded.setRequest(mc);
-		events.add(decoded);
+	try (JsonParser parser = mapper.getFactory().createParser(payload)) {
+	    List<DecodedDeviceRequest<?>> locations = new ArrayList<DecodedDeviceRequest<?>>();
+	    List<DecodedDeviceRequest<?>> measurements = new ArrayList<DecodedDeviceRequest<?>>();
+	    List<DecodedDeviceRequest<?>> alerts = new ArrayList<DecodedDeviceRequest<?>>();
+	    String deviceToken = null;
+
+	    if (parser.nextToken() != JsonToken.START_OBJECT) {
+		throw new EventDecodeException("Expected JSON object for event batch.");
 	    }
-	    for (IDeviceAlertCreateRequest ac : batch.getAlerts()) {
-		DecodedDeviceRequest<IDeviceAlertCreateRequest> decoded = new DecodedDeviceRequest<IDeviceAlertCreateRequest>();
-		decoded.setDeviceToken(batch.getDeviceToken());
-		decoded.setRequest(ac);
-		events.add(decoded);
+	    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+		String field = parser.getCurrentName();
+		parser.nextToken();
+		switch (field) {
+		case "deviceToken": {
+		    deviceToken = parser.getValueAsString();
+		    break;
+		}
+		case "locations": {
+		    readEntries(parser, locationReader, locations);
+		    break;
+		}
+		case "measurements": {
+		    readEntries(parser, measurementReader, measurements);
+		    break;
+		}
+		case "alerts": {
+		    readEntries(parser, alertReader, alerts);
+		    break;
+		}
+		default: {
+		    parser.skipChildren();
+		}
+		}
 	    }
+
+	    // Token may appear after the events, so apply it once parsing completes.
+	    List<IDecodedDeviceRequest<?>> events = new ArrayList<IDecodedDeviceRequest<?>>(
+		    locations.size() + measurements.size() + alerts.size());
+	    addEvents(events, locations, deviceToken);
+	    addEvents(events, measurements, deviceToken);
+	    addEvents(events, alerts, deviceToken);
 	    return events;
 	} catch (JsonParseException e) {
 	    throw new EventDecodeException(e);
@@ -84,4 +119,41 @@ public class JsonBatchEventDecoder extends TenantEngineLifecycleComponent implem
 	    throw new EventDecodeException(e);
 	}
     }
+
+    /**
+     * Read each entry of a JSON array and wrap it as a decoded request.
+     * 
+     * @param parser
+     * @param reader
+     * @param results
+     * @throws IOException
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected void readEntries(JsonParser parser, ObjectReader reader, List<DecodedDeviceRequest<?>> results)
+	    throws IOException {
+	if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+	    parser.skipChildren();
+	    return;
+	}
+	while (parser.nextToken() != JsonToken.END_ARRAY) {
+	    DecodedDeviceRequest decoded = new DecodedDeviceRequest();
+	    decoded.setRequest(reader.readValue(parser));
+	    results.add(decoded);
+	}
+    }
+
+    /**
+     * Assign device token and add decoded requests to the result list.
+     * 
+     * @param events
+     * @param decoded
+     * @param deviceToken
+     */
+    protected void addEvents(List<IDecodedDeviceRequest<?>> events, List<DecodedDeviceRequest<?>> decoded,
+	    String deviceToken) {
+	for (DecodedDeviceRequest<?> request : decoded) {
+	    request.setDeviceToken(deviceToken);
+	    events.add(request);
+	}
+    }
 }
\ No newline at end of file
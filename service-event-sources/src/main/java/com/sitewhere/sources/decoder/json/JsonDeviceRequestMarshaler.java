@@ -8,14 +8,19 @@
 package com.sitewhere.sources.decoder.json;
 
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.sitewhere.rest.model.device.communication.DeviceRequest.Type;
 import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
 import com.sitewhere.rest.model.device.event.request.DeviceCommandResponseCreateRequest;
@@ -25,17 +30,11 @@ import com.sitewhere.rest.model.device.event.request.DeviceRegistrationRequest;
 import com.sitewhere.rest.model.device.request.DeviceStreamCreateRequest;
 import com.sitewhere.rest.model.device.streaming.request.DeviceStreamDataCreateRequest;
 import com.sitewhere.sources.DecodedDeviceRequest;
-import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
-import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
-import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
-import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
-import com.sitewhere.spi.device.event.request.IDeviceRegistrationRequest;
-import com.sitewhere.spi.device.event.request.IDeviceStreamCreateRequest;
-import com.sitewhere.spi.device.streaming.request.IDeviceStreamDataCreateRequest;
 
 /**
  * Custom marshaler for converting JSON payloads to {@link DecodedDeviceRequest}
- * objects.
+ * objects. Payloads are processed as a token stream so that the request is
+ * bound directly to its model class without building an intermediate tree.
  * 
  * @author Derek
  */
@@ -44,6 +43,19 @@ public class JsonDeviceRequestMarshaler extends JsonDeserializer<DecodedDeviceRe
     /** Used to map data into an object based on JSON parsing */
     private static ObjectMapper MAPPER = new ObjectMapper();
 
+    /** Readers for each supported request type */
+    private static Map<Type, ObjectReader> READERS = new EnumMap<Type, ObjectReader>(Type.class);
+
+    static {
+	READERS.put(Type.RegisterDevice, MAPPER.readerFor(DeviceRegistrationRequest.class));
+	READERS.put(Type.DeviceLocation, MAPPER.readerFor(DeviceLocationCreateRequest.class));
+	READERS.put(Type.DeviceMeasurement, MAPPER.readerFor(DeviceMeasurementCreateRequest.class));
+	READERS.put(Type.DeviceAlert, MAPPER.readerFor(DeviceAlertCreateRequest.class));
+	READERS.put(Type.DeviceStream, MAPPER.readerFor(DeviceStreamCreateRequest.class));
+	READERS.put(Type.DeviceStreamData, MAPPER.readerFor(DeviceStreamDataCreateRequest.class));
+	READERS.put(Type.Acknowledge, MAPPER.readerFor(DeviceCommandResponseCreateRequest.class));
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -56,31 +68,61 @@ public class JsonDeviceRequestMarshaler extends JsonDeserializer<DecodedDeviceRe
     @SuppressWarnings("deprecation")
     public DecodedDeviceRequest<?> deserialize(JsonParser parser, DeserializationContext context)
 	    throws IOException, JsonProcessingException {
-	JsonNode node = parser.getCodec().readTree(parser);
+	Type type = null;
+	String deviceToken = null;
+	String originator = null;
+	Object request = null;
+	TokenBuffer buffered = null;
 
-	// Get type and validate its in the enum.
-	JsonNode typeNode = node.get("type");
-	if (typeNode == null) {
-	    throw new JsonMappingException("Event type is required.");
+	JsonToken token = parser.getCurrentToken();
+	if (token == JsonToken.START_OBJECT) {
+	    token = parser.nextToken();
 	}
-	try {
-	    Type type = Type.valueOf(typeNode.asText());
-	    JsonNode request = node.get("request");
-	    if (request == null) {
-		throw new IOException("Request is missing.");
+	for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+	    String field = parser.getCurrentName();
+	    parser.nextToken();
+	    switch (field) {
+	    case "type": {
+		type = parseType(parser.getValueAsString());
+		break;
 	    }
-
-	    JsonNode deviceToken = node.get("deviceToken");
-	    if (deviceToken == null) {
-		throw new IOException("Device token is missing.");
+	    case "deviceToken": {
+		deviceToken = parser.getValueAsString();
+		break;
+	    }
+	    case "originator": {
+		originator = parser.getValueAsString();
+		break;
+	    }
+	    case "request": {
+		// Bind in place if type is known, otherwise hold tokens until it is.
+		if (type != null) {
+		    request = readRequest(type, parser);
+		} else {
+		    buffered = new TokenBuffer(parser);
+		    buffered.copyCurrentStructure(parser);
+		}
+		break;
 	    }
+	    default: {
+		parser.skipChildren();
+	    }
+	    }
+	}
 
-	    JsonNode originator = node.get("originator");
-	    return unmarshal(deviceToken.textValue(), (originator == null) ? null : originator.textValue(), type,
-		    request);
-	} catch (IllegalArgumentException e) {
-	    throw new JsonMappingException("Event type is not valid.");
+	if (type == null) {
+	    throw new JsonMappingException("Event type is required.");
+	}
+	if (buffered != null) {
+	    request = readRequest(type, buffered.asParser(parser.getCodec()));
+	}
+	if (request == null) {
+	    throw new IOException("Request is missing.");
 	}
+	if (deviceToken == null) {
+	    throw new IOException("Device token is missing.");
+	}
+	return create(deviceToken, originator, request);
     }
 
     /**
@@ -91,72 +133,79 @@ public class JsonDeviceRequestMarshaler extends JsonDeserializer<DecodedDeviceRe
      * @param type
      * @param json
      * @return
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    @SuppressWarnings("deprecation")
     public static DecodedDeviceRequest<?> unmarshal(String deviceToken, String originator, Type type, JsonNode json)
-	    throws JsonProcessingException {
-	switch (type) {
-	case RegisterDevice: {
-	    DecodedDeviceRequest<IDeviceRegistrationRequest> decoded = new DecodedDeviceRequest<IDeviceRegistrationRequest>();
-	    decoded.setDeviceToken(deviceToken);
-	    decoded.setOriginator(originator);
-	    IDeviceRegistrationRequest req = MAPPER.treeToValue(json, DeviceRegistrationRequest.class);
-	    decoded.setRequest(req);
-	    return decoded;
-	}
-	case DeviceLocation: {
-	    DecodedDeviceRequest<IDeviceLocationCreateRequest> decoded = new DecodedDeviceRequest<IDeviceLocationCreateRequest>();
-	    decoded.setDeviceToken(deviceToken);
-	    decoded.setOriginator(originator);
-	    IDeviceLocationCreateRequest req = MAPPER.treeToValue(json, DeviceLocationCreateRequest.class);
-	    decoded.setRequest(req);
-	    return decoded;
-	}
-	case DeviceMeasurement: {
-	    DecodedDeviceRequest<IDeviceMeasurementCreateRequest> decoded = new DecodedDeviceRequest<IDeviceMeasurementCreateRequest>();
-	    decoded.setDeviceToken(deviceToken);
-	    decoded.setOriginator(originator);
-	    IDeviceMeasurementCreateRequest req = MAPPER.treeToValue(json, DeviceMeasurementCreateRequest.class);
-	    decoded.setRequest(req);
-	    return decoded;
-	}
-	case DeviceAlert: {
-	    DecodedDeviceRequest<IDeviceAlertCreateRequest> decoded = new DecodedDeviceRequest<IDeviceAlertCreateRequest>();
-	    decoded.setDeviceToken(deviceToken);
-	    decoded.setOriginator(originator);
-	    IDeviceAlertCreateRequest req = MAPPER.treeToValue(json, DeviceAlertCreateRequest.class);
-	    decoded.setRequest(req);
-	    return decoded;
-	}
-	case DeviceStream: {
-	    DecodedDeviceRequest<IDeviceStreamCreateRequest> decoded = new DecodedDeviceRequest<IDeviceStreamCreateRequest>();
-	    decoded.setDeviceToken(deviceToken);
-	    decoded.setOriginator(originator);
-	    IDeviceStreamCreateRequest req = MAPPER.treeToValue(json, DeviceStreamCreateRequest.class);
-	    decoded.setRequest(req);
-	    return decoded;
-	}
-	case DeviceStreamData: {
-	    DecodedDeviceRequest<IDeviceStreamDataCreateRequest> decoded = new DecodedDeviceRequest<IDeviceStreamDataCreateRequest>();
-	    decoded.setDeviceToken(deviceToken);
-	    decoded.setOriginator(originator);
-	    IDeviceStreamDataCreateRequest req = MAPPER.treeToValue(json, DeviceStreamDataCreateRequest.class);
-	    decoded.setRequest(req);
-	    return decoded;
-	}
-	case Acknowledge: {
-	    DecodedDeviceRequest<IDeviceCommandResponseCreateRequest> decoded = new DecodedDeviceRequest<IDeviceCommandResponseCreateRequest>();
-	    decoded.setDeviceToken(deviceToken);
-	    decoded.setOriginator(originator);
-	    IDeviceCommandResponseCreateRequest req = MAPPER.treeToValue(json,
-		    DeviceCommandResponseCreateRequest.class);
-	    decoded.setRequest(req);
-	    return decoded;
-	}
-	default: {
+	    throws IOException {
+	return unmarshal(deviceToken, originator, type, json.traverse(MAPPER));
+    }
+
+    /**
+     * Unmarshal request streamed from a parser based on type indicator.
+     * 
+     * @param deviceToken
+     * @param originator
+     * @param type
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    public static DecodedDeviceRequest<?> unmarshal(String deviceToken, String originator, Type type,
+	    JsonParser parser) throws IOException {
+	return create(deviceToken, originator, readRequest(type, parser));
+    }
+
+    /**
+     * Bind the request located at the current parser position to the model class
+     * for the given type.
+     * 
+     * @param type
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    @SuppressWarnings("deprecation")
+    protected static Object readRequest(Type type, JsonParser parser) throws IOException {
+	ObjectReader reader = READERS.get(type);
+	if (reader == null) {
 	    throw new JsonMappingException("Unhandled event type: " + type.name());
 	}
+	return reader.readValue(parser);
+    }
+
+    /**
+     * Parse event type and validate it is in the enum.
+     * 
+     * @param value
+     * @return
+     * @throws JsonMappingException
+     */
+    @SuppressWarnings("deprecation")
+    protected static Type parseType(String value) throws JsonMappingException {
+	if (value == null) {
+	    throw new JsonMappingException("Event type is required.");
+	}
+	try {
+	    return Type.valueOf(value);
+	} catch (IllegalArgumentException e) {
+	    throw new JsonMappingException("Event type is not valid.");
 	}
     }
+
+    /**
+     * Wrap a request with the device information.
+     * 
+     * @param deviceToken
+     * @param originator
+     * @param request
+     * @return
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected static DecodedDeviceRequest<?> create(String deviceToken, String originator, Object request) {
+	DecodedDeviceRequest decoded = new DecodedDeviceRequest();
+	decoded.setDeviceToken(deviceToken);
+	decoded.setOriginator(originator);
+	decoded.setRequest(request);
+	return decoded;
+    }
 }
\ No newline at end of file
@@ -7,14 +7,16 @@
  */
 package com.sitewhere.sources.decoder.protobuf;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Parser;
 import com.sitewhere.communication.protobuf.proto.SiteWhere;
 import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
 import com.sitewhere.rest.model.device.event.request.DeviceCommandResponseCreateRequest;
@@ -41,6 +43,10 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
  * Decodes a message payload that was previously encoded using the Google
  * Protocol Buffers with the SiteWhere proto.
  * 
+ * Messages are read directly from the payload bytes rather than through an
+ * {@link java.io.InputStream}, which avoids allocating a stream and an
+ * intermediate read buffer for every message decoded.
+ * 
  * @author Derek
  */
 public class ProtobufDeviceEventDecoder extends TenantEngineLifecycleComponent implements IDeviceEventDecoder<byte[]> {
@@ -58,16 +64,38 @@ public class ProtobufDeviceEventDecoder extends TenantEngineLifecycleComponent i
     @Override
     public List<IDecodedDeviceRequest<?>> decode(byte[] payload, Map<String, Object> payloadMetadata)
 	    throws EventDecodeException {
-	try {
-	    ByteArrayInputStream stream = new ByteArrayInputStream(payload);
+	return decode(CodedInputStream.newInstance(payload));
+    }
+
+    /**
+     * Decode a payload held in a {@link ByteBuffer} without first copying it to
+     * an array.
+     * 
+     * @param payload
+     * @return
+     * @throws EventDecodeException
+     */
+    public List<IDecodedDeviceRequest<?>> decode(ByteBuffer payload) throws EventDecodeException {
+	return decode(CodedInputStream.newInstance(payload));
+    }
 
-	    SiteWhere.DeviceEvent.Header header = SiteWhere.DeviceEvent.Header.parseDelimitedFrom(stream);
+    /**
+     * Decode header and event message from the given input.
+     * 
+     * @param input
+     * @return
+     * @throws EventDecodeException
+     */
+    protected List<IDecodedDeviceRequest<?>> decode(CodedInputStream input) throws EventDecodeException {
+	try {
+	    input.enableAliasing(true);
+	    SiteWhere.DeviceEvent.Header header = readDelimited(input, SiteWhere.DeviceEvent.Header.parser());
 
 	    List<IDecodedDeviceRequest<?>> results = new ArrayList<IDecodedDeviceRequest<?>>();
 	    switch (header.getCommand()) {
 	    case SendRegistration: {
-		SiteWhere.DeviceEvent.DeviceRegistrationRequest registration = SiteWhere.DeviceEvent.DeviceRegistrationRequest
-			.parseDelimitedFrom(stream);
+		SiteWhere.DeviceEvent.DeviceRegistrationRequest registration = readDelimited(input,
+			SiteWhere.DeviceEvent.DeviceRegistrationRequest.parser());
 		getLogger().debug("Decoded registration for: " + header.getDeviceToken().getValue());
 		DeviceRegistrationRequest request = new DeviceRegistrationRequest();
 		request.setDeviceTypeToken(registration.getDeviceTypeToken().getValue());
@@ -90,8 +118,8 @@ public class ProtobufDeviceEventDecoder extends TenantEngineLifecycleComponent i
 		return results;
 	    }
 	    case SendAcknowledgement: {
-		SiteWhere.DeviceEvent.DeviceAcknowledge ack = SiteWhere.DeviceEvent.DeviceAcknowledge
-			.parseDelimitedFrom(stream);
+		SiteWhere.DeviceEvent.DeviceAcknowledge ack = readDelimited(input,
+			SiteWhere.DeviceEvent.DeviceAcknowledge.parser());
 		getLogger().debug("Decoded acknowledge for: " + header.getDeviceToken().getValue());
 		DeviceCommandResponseCreateRequest request = new DeviceCommandResponseCreateRequest();
 		request.setOriginatingEventId(UUID.fromString(header.getOriginator().getValue()));
@@ -107,8 +135,8 @@ public class ProtobufDeviceEventDecoder extends TenantEngineLifecycleComponent i
 		return results;
 	    }
 	    case SendLocation: {
-		SiteWhere.DeviceEvent.DeviceLocation location = SiteWhere.DeviceEvent.DeviceLocation
-			.parseDelimitedFrom(stream);
+		SiteWhere.DeviceEvent.DeviceLocation location = readDelimited(input,
+			SiteWhere.DeviceEvent.DeviceLocation.parser());
 		getLogger().debug("Decoded location for: " + header.getDeviceToken().getValue());
 		DeviceLocationCreateRequest request = new DeviceLocationCreateRequest();
 		request.setLatitude(location.getLatitude().getValue());
@@ -137,7 +165,8 @@ public class ProtobufDeviceEventDecoder extends TenantEngineLifecycleComponent i
 		return results;
 	    }
 	    case SendAlert: {
-		SiteWhere.DeviceEvent.DeviceAlert alert = SiteWhere.DeviceEvent.DeviceAlert.parseDelimitedFrom(stream);
+		SiteWhere.DeviceEvent.DeviceAlert alert = readDelimited(input,
+			SiteWhere.DeviceEvent.DeviceAlert.parser());
 		getLogger().debug("Decoded alert for: " + header.getDeviceToken().getValue());
 		DeviceAlertCreateRequest request = new DeviceAlertCreateRequest();
 		request.setType(alert.getAlertType().getValue());
@@ -165,8 +194,8 @@ public class ProtobufDeviceEventDecoder extends TenantEngineLifecycleComponent i
 		return results;
 	    }
 	    case SendMeasurement: {
-		SiteWhere.DeviceEvent.DeviceMeasurement dm = SiteWhere.DeviceEvent.DeviceMeasurement
-			.parseDelimitedFrom(stream);
+		SiteWhere.DeviceEvent.DeviceMeasurement dm = readDelimited(input,
+			SiteWhere.DeviceEvent.DeviceMeasurement.parser());
 		getLogger().debug("Decoded measurement for: " + header.getDeviceToken().getValue());
 
 		DeviceMeasurementCreateRequest request = new DeviceMeasurementCreateRequest();
@@ -196,8 +225,8 @@ public class ProtobufDeviceEventDecoder extends TenantEngineLifecycleComponent i
 		return results;
 	    }
 	    case CreateStream: {
-		SiteWhere.DeviceEvent.DeviceStream devStream = SiteWhere.DeviceEvent.DeviceStream
-			.parseDelimitedFrom(stream);
+		SiteWhere.DeviceEvent.DeviceStream devStream = readDelimited(input,
+			SiteWhere.DeviceEvent.DeviceStream.parser());
 		getLogger().debug("Decoded stream for: " + header.getDeviceToken().getValue());
 		DeviceStreamCreateRequest request = new DeviceStreamCreateRequest();
 		request.setStreamId(devStream.getStreamId().getValue());
@@ -282,6 +311,23 @@ public class ProtobufDeviceEventDecoder extends TenantEngineLifecycleComponent i
 	}
     }
 
+    /**
+     * Read a length-delimited message from the input. Equivalent to
+     * <code>parseDelimitedFrom</code> without wrapping the payload in a stream.
+     * 
+     * @param input
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    protected static <M> M readDelimited(CodedInputStream input, Parser<M> parser) throws IOException {
+	int length = input.readRawVarint32();
+	int limit = input.pushLimit(length);
+	M message = parser.parseFrom(input);
+	input.popLimit(limit);
+	return message;
+    }
+
     private static AlertLevel fromProtocolBuffer(SiteWhere.DeviceEvent.AlertLevel level) {
 	switch (level) {
 	case Info:
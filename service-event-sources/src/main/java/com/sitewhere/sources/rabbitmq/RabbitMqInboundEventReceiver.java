@@ -8,17 +8,25 @@
 package com.sitewhere.sources.rabbitmq;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.kafka.clients.producer.RecordMetadata;
+
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
-import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
 import com.rabbitmq.client.ShutdownListener;
@@ -29,6 +37,13 @@ import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
 /**
  * Binary inbound event source that consumes messages from a RabbitMQ broker.
+ * Each consumer uses a dedicated channel with a bounded prefetch window.
+ * Messages are acknowledged in batches only after the resulting Kafka records
+ * have been acknowledged, so a slow Kafka cluster stops the broker from
+ * delivering more data and unpublished messages are redelivered after a crash.
+ * A message that fails is requeued once. If it fails again after redelivery it
+ * is rejected without requeue, so configure a dead letter exchange on the queue
+ * to retain such messages.
  * 
  * @author Derek
  */
@@ -46,6 +61,15 @@ public class RabbitMqInboundEventReceiver extends InboundEventReceiver<byte[]> {
     /** Default period in which to attempt connects/re-connects to RabbitMQ */
     private static final int DEFAULT_RECONNECT_INTERVAL = 10;
 
+    /** Default number of unacknowledged messages allowed per consumer */
+    private static final int DEFAULT_PREFETCH_COUNT = 250;
+
+    /** Default number of messages acknowledged together */
+    private static final int DEFAULT_ACK_BATCH_SIZE = 50;
+
+    /** Default interval (in ms) at which partial batches are acknowledged */
+    private static final int DEFAULT_ACK_INTERVAL_MS = 500;
+
     /** Connection URI */
     private String connectionUri = DEFAULT_CONNECTION_URI;
 
@@ -61,14 +85,23 @@ public class RabbitMqInboundEventReceiver extends InboundEventReceiver<byte[]> {
     /** Indicates if queue should be durable */
     private boolean durable = false;
 
+    /** Number of unacknowledged messages allowed per consumer */
+    private int prefetchCount = DEFAULT_PREFETCH_COUNT;
+
+    /** Number of messages acknowledged together */
+    private int ackBatchSize = DEFAULT_ACK_BATCH_SIZE;
+
+    /** Interval at which partial batches are acknowledged */
+    private int ackIntervalMs = DEFAULT_ACK_INTERVAL_MS;
+
     /** RabbitMQ connection factory **/
     private ConnectionFactory factory;
 
     /** RabbitMQ connection */
     private Connection connection;
 
-    /** RabbitMQ channel */
-    private Channel channel;
+    /** Consumers (one per channel) */
+    private List<AcknowledgingConsumer> consumers = Collections.emptyList();
 
     /** Used for consumer thread pool */
     private ExecutorService executors;
@@ -79,6 +112,9 @@ public class RabbitMqInboundEventReceiver extends InboundEventReceiver<byte[]> {
     /** Shedules reconnection attempts */
     private ScheduledExecutorService connectionExecutor;
 
+    /** Periodically acknowledges completed messages */
+    private ScheduledExecutorService ackExecutor;
+
     /*
      * (non-Javadoc)
      * 
@@ -90,6 +126,7 @@ public class RabbitMqInboundEventReceiver extends InboundEventReceiver<byte[]> {
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	executors = Executors.newFixedThreadPool(getNumConsumers());
 	connectionExecutor = Executors.newScheduledThreadPool(1);
+	ackExecutor = Executors.newSingleThreadScheduledExecutor();
 	factory = new ConnectionFactory();
 
 	try {
@@ -99,6 +136,8 @@ public class RabbitMqInboundEventReceiver extends InboundEventReceiver<byte[]> {
 	}
 
 	connect();
+	ackExecutor.scheduleWithFixedDelay(() -> acknowledgeCompleted(), getAckIntervalMs(), getAckIntervalMs(),
+		TimeUnit.MILLISECONDS);
     }
 
     /*
@@ -133,38 +172,54 @@ public class RabbitMqInboundEventReceiver extends InboundEventReceiver<byte[]> {
 		    // Do nothing if SiteWhere initiated the connection close
 		    if (!cause.isInitiatedByApplication()) {
 			connection = null;
+			consumers = Collections.emptyList();
 			scheduleReconnect();
 		    }
 		}
 	    });
 
-	    this.channel = connection.createChannel();
-
 	    getLogger().info("RabbitMQ receiver connected to: " + getConnectionUri());
 
-	    channel.queueDeclare(getQueueName(), isDurable(), false, false, null);
-
-	    getLogger().info("RabbitMQ receiver using " + (isDurable() ? "durable " : "") + "queue: " + getQueueName());
-
-	    // Add consumer callback for channel.
-	    Consumer consumer = new DefaultConsumer(channel) {
-		@Override
-		public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
-			byte[] body) throws IOException {
-		    onEventPayloadReceived(body, null);
+	    // Create a channel and consumer for each consumer thread.
+	    List<AcknowledgingConsumer> created = new ArrayList<>();
+	    for (int i = 0; i < getNumConsumers(); i++) {
+		Channel channel = connection.createChannel();
+		channel.basicQos(getPrefetchCount());
+		if (i == 0) {
+		    channel.queueDeclare(getQueueName(), isDurable(), false, false, null);
+		    getLogger().info(
+			    "RabbitMQ receiver using " + (isDurable() ? "durable " : "") + "queue: " + getQueueName());
 		}
-	    };
-
-	    channel.basicConsume(getQueueName(), true, consumer);
+		AcknowledgingConsumer consumer = new AcknowledgingConsumer(channel);
+		channel.basicConsume(getQueueName(), false, consumer);
+		created.add(consumer);
+	    }
+	    this.consumers = created;
 
+	    getLogger().info(String.format("RabbitMQ receiver started %d consumers with prefetch of %d.",
+		    getNumConsumers(), getPrefetchCount()));
 	} catch (Exception e) {
 	    getLogger().error("Connection Error", e);
 	    connection = null;
+	    consumers = Collections.emptyList();
 	    scheduleReconnect();
 	}
 
     }
 
+    /**
+     * Acknowledge messages for all consumers where publishing has completed.
+     */
+    protected void acknowledgeCompleted() {
+	for (AcknowledgingConsumer consumer : consumers) {
+	    try {
+		consumer.acknowledge(false);
+	    } catch (Throwable t) {
+		getLogger().warn("Unable to acknowledge RabbitMQ messages.", t);
+	    }
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -179,11 +234,17 @@ public class RabbitMqInboundEventReceiver extends InboundEventReceiver<byte[]> {
 	if (connectionFuture != null && !connectionFuture.isDone()) {
 	    connectionFuture.cancel(true);
 	}
+	if (ackExecutor != null) {
+	    ackExecutor.shutdownNow();
+	}
 
 	try {
-	    if (channel != null) {
-		channel.close();
+	    for (AcknowledgingConsumer consumer : consumers) {
+		consumer.getChannel().basicCancel(consumer.getConsumerTag());
+		consumer.acknowledge(true);
+		consumer.getChannel().close();
 	    }
+	    consumers = Collections.emptyList();
 	    if (connection != null) {
 		connection.close();
 	    }
@@ -206,6 +267,175 @@ public class RabbitMqInboundEventReceiver extends InboundEventReceiver<byte[]> {
 	return "RabbitMQ uri=" + getConnectionUri() + " queue=" + getQueueName();
     }
 
+    /**
+     * Consumer that tracks deliveries on a channel until the Kafka records
+     * produced from them are acknowledged, then acknowledges the deliveries in
+     * batches. Blocking the delivery thread while a full batch is published keeps
+     * at most 'prefetchCount' messages in memory per channel.
+     */
+    private class AcknowledgingConsumer extends DefaultConsumer {
+
+	/** Deliveries waiting to be acknowledged (in delivery tag order) */
+	private Deque<PendingDelivery> pending = new ArrayDeque<>();
+
+	public AcknowledgingConsumer(Channel channel) {
+	    super(channel);
+	}
+
+	/*
+	 * @see com.rabbitmq.client.DefaultConsumer#handleDelivery(java.lang.String,
+	 * com.rabbitmq.client.Envelope, com.rabbitmq.client.AMQP.BasicProperties,
+	 * byte[])
+	 */
+	@Override
+	public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body)
+		throws IOException {
+	    List<Future<RecordMetadata>> published;
+	    try {
+		published = getEventSource().processEncodedEvent(RabbitMqInboundEventReceiver.this, body, null);
+	    } catch (Throwable t) {
+		getLogger().error("Unhandled exception processing RabbitMQ message.", t);
+		acknowledge(true);
+		reject(envelope.getDeliveryTag(), envelope.isRedeliver());
+		return;
+	    }
+	    int size;
+	    synchronized (this) {
+		pending.add(new PendingDelivery(envelope.getDeliveryTag(), envelope.isRedeliver(), published));
+		size = pending.size();
+	    }
+	    if (size >= getAckBatchSize()) {
+		acknowledge(true);
+	    }
+	}
+
+	/*
+	 * @see
+	 * com.rabbitmq.client.DefaultConsumer#handleShutdownSignal(java.lang.String,
+	 * com.rabbitmq.client.ShutdownSignalException)
+	 */
+	@Override
+	public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+	    // Delivery tags are not valid on a new channel. Broker will redeliver.
+	    synchronized (this) {
+		pending.clear();
+	    }
+	}
+
+	/**
+	 * Acknowledge pending deliveries in order. If 'wait' is true, blocks until
+	 * all pending records are published. Otherwise only the completed prefix is
+	 * acknowledged. Deliveries whose records failed to publish are rejected.
+	 * 
+	 * @param wait
+	 * @throws IOException
+	 */
+	public synchronized void acknowledge(boolean wait) throws IOException {
+	    long lastTag = -1;
+	    while (!pending.isEmpty()) {
+		PendingDelivery delivery = pending.peek();
+		if (!wait && !delivery.isDone()) {
+		    break;
+		}
+		pending.poll();
+		if (delivery.awaitPublished()) {
+		    lastTag = delivery.getDeliveryTag();
+		} else {
+		    if (lastTag != -1) {
+			getChannel().basicAck(lastTag, true);
+			lastTag = -1;
+		    }
+		    reject(delivery.getDeliveryTag(), delivery.isRedelivered());
+		}
+	    }
+	    if (lastTag != -1) {
+		getChannel().basicAck(lastTag, true);
+	    }
+	}
+
+	/**
+	 * Reject a delivery. A first failure is requeued in case it was transient. A
+	 * failure after redelivery is not requeued, so the message is dead-lettered
+	 * (or dropped) rather than redelivered in a tight loop.
+	 * 
+	 * @param deliveryTag
+	 * @param redelivered
+	 * @throws IOException
+	 */
+	protected void reject(long deliveryTag, boolean redelivered) throws IOException {
+	    if (redelivered) {
+		getLogger().error("RabbitMQ message failed after redelivery. Rejecting without requeue.");
+	    } else {
+		getLogger().warn("RabbitMQ message failed. Message will be redelivered.");
+	    }
+	    getChannel().basicNack(deliveryTag, false, !redelivered);
+	}
+    }
+
+    /**
+     * Delivery along with the futures for records published from it.
+     */
+    private class PendingDelivery {
+
+	/** Delivery tag */
+	private long deliveryTag;
+
+	/** Indicates if broker has delivered the message before */
+	private boolean redelivered;
+
+	/** Futures for published records */
+	private List<Future<RecordMetadata>> published;
+
+	public PendingDelivery(long deliveryTag, boolean redelivered, List<Future<RecordMetadata>> published) {
+	    this.deliveryTag = deliveryTag;
+	    this.redelivered = redelivered;
+	    this.published = published;
+	}
+
+	/**
+	 * Indicates whether all records have completed (successfully or not).
+	 * 
+	 * @return
+	 */
+	public boolean isDone() {
+	    for (Future<RecordMetadata> future : published) {
+		if (!future.isDone()) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+
+	/**
+	 * Wait for all records to be published.
+	 * 
+	 * @return true if all records were acknowledged by Kafka
+	 */
+	public boolean awaitPublished() {
+	    boolean success = true;
+	    for (Future<RecordMetadata> future : published) {
+		try {
+		    future.get();
+		} catch (ExecutionException e) {
+		    getLogger().warn("Event was not published to Kafka.", e.getCause());
+		    success = false;
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    return false;
+		}
+	    }
+	    return success;
+	}
+
+	public long getDeliveryTag() {
+	    return deliveryTag;
+	}
+
+	public boolean isRedelivered() {
+	    return redelivered;
+	}
+    }
+
     public int getReconnectInterval() {
 	return this.reconnectInterval;
     }
@@ -245,4 +475,28 @@ public class RabbitMqInboundEventReceiver extends InboundEventReceiver<byte[]> {
     public void setDurable(boolean durable) {
 	this.durable = durable;
     }
+
+    public int getPrefetchCount() {
+	return prefetchCount;
+    }
+
+    public void setPrefetchCount(int prefetchCount) {
+	this.prefetchCount = prefetchCount;
+    }
+
+    public int getAckBatchSize() {
+	return ackBatchSize;
+    }
+
+    public void setAckBatchSize(int ackBatchSize) {
+	this.ackBatchSize = ackBatchSize;
+    }
+
+    public int getAckIntervalMs() {
+	return ackIntervalMs;
+    }
+
+    public void setAckIntervalMs(int ackIntervalMs) {
+	this.ackIntervalMs = ackIntervalMs;
+    }
 }
\ No newline at end of file
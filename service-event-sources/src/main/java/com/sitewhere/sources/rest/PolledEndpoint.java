@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.sources.rest;
+
+/**
+ * Tracks polling state for a single REST endpoint. The polling interval
+ * shrinks back to the base interval whenever new data arrives and backs off
+ * geometrically (up to a maximum) while the endpoint has nothing new.
+ * Validators from the last response are kept so that requests can be made
+ * conditional.
+ * 
+ * @author Derek
+ */
+public class PolledEndpoint {
+
+    /** URL relative to base REST url */
+    private String relativeUrl;
+
+    /** Interval used when data is flowing */
+    private long baseIntervalMs;
+
+    /** Upper bound for interval when idle */
+    private long maxIntervalMs;
+
+    /** Multiplier applied to interval when no data is returned */
+    private double backoffMultiplier;
+
+    /** Interval to wait before next poll */
+    private long currentIntervalMs;
+
+    /** Entity tag from last response */
+    private String etag;
+
+    /** Last modified value from last response */
+    private String lastModified;
+
+    public PolledEndpoint(String relativeUrl, long baseIntervalMs, long maxIntervalMs, double backoffMultiplier) {
+	this.relativeUrl = relativeUrl;
+	this.baseIntervalMs = baseIntervalMs;
+	this.maxIntervalMs = Math.max(baseIntervalMs, maxIntervalMs);
+	this.backoffMultiplier = Math.max(1.0, backoffMultiplier);
+	this.currentIntervalMs = baseIntervalMs;
+    }
+
+    /**
+     * Called when a poll produced new data.
+     */
+    public void onData() {
+	this.currentIntervalMs = baseIntervalMs;
+    }
+
+    /**
+     * Called when a poll returned unchanged content, no payloads, or failed.
+     */
+    public void onNoData() {
+	this.currentIntervalMs = Math.min(maxIntervalMs, (long) (currentIntervalMs * backoffMultiplier));
+    }
+
+    /**
+     * Store validators returned by the server for the next conditional request.
+     * 
+     * @param etag
+     * @param lastModified
+     */
+    public void updateValidators(String etag, String lastModified) {
+	this.etag = etag;
+	this.lastModified = lastModified;
+    }
+
+    public String getRelativeUrl() {
+	return relativeUrl;
+    }
+
+    public long getCurrentIntervalMs() {
+	return currentIntervalMs;
+    }
+
+    public String getEtag() {
+	return etag;
+    }
+
+    public String getLastModified() {
+	return lastModified;
+    }
+}
@@ -8,13 +8,26 @@
 package com.sitewhere.sources.rest;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.sitewhere.groovy.IGroovyVariables;
 import com.sitewhere.sources.PollingInboundEventReceiver;
+import com.sitewhere.sources.rest.RestHelper.ConditionalResponse;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.microservice.configuration.IConfigurableMicroservice;
 import com.sitewhere.spi.microservice.scripting.IScriptMetadata;
@@ -23,7 +36,13 @@ import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import groovy.lang.Binding;
 
 /**
- * Performs polling on a REST endpoint at a given interval.
+ * Performs polling on REST endpoints. If no endpoints are configured, a Groovy
+ * script is run at a fixed interval and is responsible for making all REST
+ * calls. If a list of endpoints is configured, each endpoint is polled
+ * independently on a shared pool with an adaptive interval and conditional
+ * requests, and the script (if any) is only used to parse each response into
+ * payloads. In both cases payloads are decoded on a separate pool so that slow
+ * decoding does not delay polling.
  * 
  * @author Derek
  */
@@ -32,6 +51,27 @@ public class PollingRestInboundEventReceiver extends PollingInboundEventReceiver
     /** Static logger instance */
     private static Log LOGGER = LogFactory.getLog(PollingRestInboundEventReceiver.class);
 
+    /** Metadata key for relative URL of endpoint that produced a payload */
+    public static final String META_ENDPOINT = "endpoint";
+
+    /** Default maximum polling interval in milliseconds */
+    private static final int DEFAULT_MAX_POLL_INTERVAL_MS = 5 * 60 * 1000;
+
+    /** Default multiplier applied to interval for idle endpoints */
+    private static final double DEFAULT_BACKOFF_MULTIPLIER = 2.0;
+
+    /** Default number of concurrent endpoint requests */
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+
+    /** Default number of decoder threads */
+    private static final int DEFAULT_DECODE_THREADS = 4;
+
+    /** Number of payloads that may wait for a decoder thread */
+    private static final int DECODE_QUEUE_SIZE = 1000;
+
+    /** Time to wait for queued payloads to be decoded on shutdown */
+    private static final int DECODE_SHUTDOWN_TIMEOUT_SECS = 10;
+
     /** Script metadata */
     private IScriptMetadata scriptMetadata;
 
@@ -47,9 +87,33 @@ public class PollingRestInboundEventReceiver extends PollingInboundEventReceiver
     /** Password used for REST calls */
     private String password;
 
+    /** Comma-separated list of endpoint URLs relative to base URL */
+    private String endpoints;
+
+    /** Maximum interval for endpoints that return no new data */
+    private int maxPollIntervalMs = DEFAULT_MAX_POLL_INTERVAL_MS;
+
+    /** Multiplier applied to interval for endpoints that return no new data */
+    private double backoffMultiplier = DEFAULT_BACKOFF_MULTIPLIER;
+
+    /** Maximum number of endpoint requests in flight */
+    private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+
+    /** Number of threads used to decode payloads */
+    private int decodeThreads = DEFAULT_DECODE_THREADS;
+
+    /** Indicates whether ETag/Last-Modified validators are sent */
+    private boolean conditionalRequests = true;
+
     /** Helper class for REST operations */
     private RestHelper rest;
 
+    /** Schedules endpoint polling */
+    private ScheduledExecutorService pollers;
+
+    /** Decodes received payloads */
+    private ExecutorService decoders;
+
     /*
      * @see
      * com.sitewhere.server.lifecycle.LifecycleComponent#initialize(com.sitewhere.
@@ -59,8 +123,12 @@ public class PollingRestInboundEventReceiver extends PollingInboundEventReceiver
     public void initialize(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	super.initialize(monitor);
 
+	// Script is optional when endpoints are polled directly.
 	if (getScriptId() == null) {
-	    throw new SiteWhereException("Script id was not initialized properly.");
+	    if (getEndpointUrls().isEmpty()) {
+		throw new SiteWhereException("Script id was not initialized properly.");
+	    }
+	    return;
 	}
 	this.scriptMetadata = ((IConfigurableMicroservice<?>) getMicroservice()).getScriptManagement()
 		.getScriptMetadata(getMicroservice().getIdentifier(), getTenantEngine().getTenant().getId(),
@@ -79,8 +147,54 @@ public class PollingRestInboundEventReceiver extends PollingInboundEventReceiver
      */
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	this.rest = new RestHelper(getBaseUrl(), getUsername(), getPassword());
-	super.start(monitor);
+	this.rest = new RestHelper(getBaseUrl(), getUsername(), getPassword(), getMaxConcurrentRequests());
+
+	// Decode on bounded pool. Poller decodes inline if pool is saturated.
+	this.decoders = new ThreadPoolExecutor(getDecodeThreads(), getDecodeThreads(), 0L, TimeUnit.MILLISECONDS,
+		new ArrayBlockingQueue<Runnable>(DECODE_QUEUE_SIZE), new DecodersThreadFactory(),
+		new ThreadPoolExecutor.CallerRunsPolicy());
+
+	List<String> urls = getEndpointUrls();
+	if (urls.isEmpty()) {
+	    super.start(monitor);
+	    return;
+	}
+
+	// Spread initial requests across the base interval.
+	this.pollers = Executors.newScheduledThreadPool(getMaxConcurrentRequests(), new PollersThreadFactory());
+	for (int i = 0; i < urls.size(); i++) {
+	    PolledEndpoint endpoint = new PolledEndpoint(urls.get(i), getPollIntervalMs(), getMaxPollIntervalMs(),
+		    getBackoffMultiplier());
+	    long delay = ((long) getPollIntervalMs() * i) / urls.size();
+	    pollers.schedule(new EndpointPoller(endpoint), delay, TimeUnit.MILLISECONDS);
+	}
+	getLogger().info("Polling " + urls.size() + " REST endpoints with up to " + getMaxConcurrentRequests()
+		+ " concurrent requests.");
+    }
+
+    /*
+     * @see
+     * com.sitewhere.sources.PollingInboundEventReceiver#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (pollers != null) {
+	    pollers.shutdownNow();
+	}
+	super.stop(monitor);
+	if (decoders != null) {
+	    // Allow payloads that were already polled to be decoded.
+	    decoders.shutdown();
+	    try {
+		if (!decoders.awaitTermination(DECODE_SHUTDOWN_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+		    getLogger().warn("Timed out waiting for queued REST payloads to be decoded.");
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    decoders.shutdownNow();
+	}
     }
 
     /*
@@ -89,9 +203,59 @@ public class PollingRestInboundEventReceiver extends PollingInboundEventReceiver
      * @see com.sitewhere.device.communication.PollingInboundEventReceiver#doPoll()
      */
     @Override
-    @SuppressWarnings("unchecked")
     public void doPoll() throws SiteWhereException {
 	Binding binding = new Binding();
+	List<byte[]> payloads = runScript(binding);
+
+	// Process each payload individually.
+	for (byte[] payload : payloads) {
+	    dispatch(payload, null);
+	}
+    }
+
+    /**
+     * Poll a single endpoint and dispatch any payloads produced.
+     * 
+     * @param endpoint
+     * @return true if new data was received
+     * @throws SiteWhereException
+     */
+    protected boolean pollEndpoint(PolledEndpoint endpoint) throws SiteWhereException {
+	ConditionalResponse response = isConditionalRequests()
+		? rest.getConditional(endpoint.getRelativeUrl(), endpoint.getEtag(), endpoint.getLastModified())
+		: rest.getConditional(endpoint.getRelativeUrl(), null, null);
+	if (!response.isModified()) {
+	    return false;
+	}
+	endpoint.updateValidators(response.getEtag(), response.getLastModified());
+	if ((response.getBody() == null) || (response.getBody().length == 0)) {
+	    return false;
+	}
+
+	List<byte[]> payloads;
+	if (getScriptMetadata() != null) {
+	    Binding binding = new Binding();
+	    binding.setVariable(IGroovyVariables.VAR_PAYLOAD, response.getBody());
+	    binding.setVariable(IGroovyVariables.VAR_PAYLOAD_METADATA, createMetadata(endpoint));
+	    payloads = runScript(binding);
+	} else {
+	    payloads = Collections.singletonList(response.getBody());
+	}
+	for (byte[] payload : payloads) {
+	    dispatch(payload, createMetadata(endpoint));
+	}
+	return !payloads.isEmpty();
+    }
+
+    /**
+     * Run the Groovy script and return the payloads it generated.
+     * 
+     * @param binding
+     * @return
+     * @throws SiteWhereException
+     */
+    @SuppressWarnings("unchecked")
+    protected List<byte[]> runScript(Binding binding) throws SiteWhereException {
 	List<byte[]> payloads = new ArrayList<byte[]>();
 	binding.setVariable(IGroovyVariables.VAR_REST_CLIENT, rest);
 	binding.setVariable(IGroovyVariables.VAR_EVENT_PAYLOADS, payloads);
@@ -99,12 +263,7 @@ public class PollingRestInboundEventReceiver extends PollingInboundEventReceiver
 
 	try {
 	    getTenantEngine().getGroovyConfiguration().run(getScriptMetadata(), binding);
-	    payloads = (List<byte[]>) binding.getVariable(IGroovyVariables.VAR_EVENT_PAYLOADS);
-
-	    // Process each payload individually.
-	    for (byte[] payload : payloads) {
-		onEventPayloadReceived(payload, null);
-	    }
+	    return (List<byte[]>) binding.getVariable(IGroovyVariables.VAR_EVENT_PAYLOADS);
 	} catch (SiteWhereException e) {
 	    throw e;
 	} catch (Exception e) {
@@ -112,6 +271,137 @@ public class PollingRestInboundEventReceiver extends PollingInboundEventReceiver
 	}
     }
 
+    /**
+     * Hand payload to decoder pool.
+     * 
+     * @param payload
+     * @param metadata
+     */
+    protected void dispatch(byte[] payload, Map<String, Object> metadata) {
+	decoders.execute(new PayloadDecoder(payload, metadata));
+    }
+
+    /**
+     * Create metadata passed along with payloads from an endpoint.
+     * 
+     * @param endpoint
+     * @return
+     */
+    protected Map<String, Object> createMetadata(PolledEndpoint endpoint) {
+	Map<String, Object> metadata = new HashMap<String, Object>();
+	metadata.put(META_ENDPOINT, endpoint.getRelativeUrl());
+	return metadata;
+    }
+
+    /**
+     * Get list of configured endpoint URLs.
+     * 
+     * @return
+     */
+    protected List<String> getEndpointUrls() {
+	List<String> urls = new ArrayList<String>();
+	if (getEndpoints() != null) {
+	    for (String url : getEndpoints().split(",")) {
+		if (!url.trim().isEmpty()) {
+		    urls.add(url.trim());
+		}
+	    }
+	}
+	return urls;
+    }
+
+    /**
+     * Polls a single endpoint and reschedules itself based on the adaptive
+     * interval.
+     */
+    private class EndpointPoller implements Runnable {
+
+	/** Endpoint being polled */
+	private PolledEndpoint endpoint;
+
+	public EndpointPoller(PolledEndpoint endpoint) {
+	    this.endpoint = endpoint;
+	}
+
+	/*
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+	    try {
+		if (pollEndpoint(endpoint)) {
+		    endpoint.onData();
+		} else {
+		    endpoint.onNoData();
+		}
+	    } catch (SiteWhereException e) {
+		getLogger().warn("Unable to poll REST endpoint '" + endpoint.getRelativeUrl() + "'.", e);
+		endpoint.onNoData();
+	    } catch (Throwable e) {
+		getLogger().error("Unhandled exception polling REST endpoint '" + endpoint.getRelativeUrl() + "'.", e);
+		endpoint.onNoData();
+	    }
+	    try {
+		pollers.schedule(this, endpoint.getCurrentIntervalMs(), TimeUnit.MILLISECONDS);
+	    } catch (RejectedExecutionException e) {
+		// Receiver is stopping.
+	    }
+	}
+    }
+
+    /**
+     * Passes a payload to the event source for decoding.
+     */
+    private class PayloadDecoder implements Runnable {
+
+	/** Payload */
+	private byte[] payload;
+
+	/** Payload metadata */
+	private Map<String, Object> metadata;
+
+	public PayloadDecoder(byte[] payload, Map<String, Object> metadata) {
+	    this.payload = payload;
+	    this.metadata = metadata;
+	}
+
+	/*
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+	    try {
+		onEventPayloadReceived(payload, metadata);
+	    } catch (Throwable e) {
+		getLogger().error("Unhandled exception processing polled REST payload.", e);
+	    }
+	}
+    }
+
+    /** Used for naming poller threads */
+    private class PollersThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "SiteWhere REST(" + getEventSource().getSourceId() + ") Poller "
+		    + counter.incrementAndGet());
+	}
+    }
+
+    /** Used for naming decoder threads */
+    private class DecodersThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "SiteWhere REST(" + getEventSource().getSourceId() + ") Decoder "
+		    + counter.incrementAndGet());
+	}
+    }
+
     protected IScriptMetadata getScriptMetadata() {
 	return scriptMetadata;
     }
@@ -147,4 +437,52 @@ public class PollingRestInboundEventReceiver extends PollingInboundEventReceiver
     public void setPassword(String password) {
 	this.password = password;
     }
+
+    public String getEndpoints() {
+	return endpoints;
+    }
+
+    public void setEndpoints(String endpoints) {
+	this.endpoints = endpoints;
+    }
+
+    public int getMaxPollIntervalMs() {
+	return maxPollIntervalMs;
+    }
+
+    public void setMaxPollIntervalMs(int maxPollIntervalMs) {
+	this.maxPollIntervalMs = maxPollIntervalMs;
+    }
+
+    public double getBackoffMultiplier() {
+	return backoffMultiplier;
+    }
+
+    public void setBackoffMultiplier(double backoffMultiplier) {
+	this.backoffMultiplier = backoffMultiplier;
+    }
+
+    public int getMaxConcurrentRequests() {
+	return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+	this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getDecodeThreads() {
+	return decodeThreads;
+    }
+
+    public void setDecodeThreads(int decodeThreads) {
+	this.decodeThreads = decodeThreads;
+    }
+
+    public boolean isConditionalRequests() {
+	return conditionalRequests;
+    }
+
+    public void setConditionalRequests(boolean conditionalRequests) {
+	this.conditionalRequests = conditionalRequests;
+    }
 }
\ No newline at end of file
@@ -24,12 +24,15 @@ import org.apache.http.impl.client.HttpClientBuilder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -44,6 +47,9 @@ import com.sitewhere.spi.SiteWhereSystemException;
  */
 public class RestHelper {
 
+    /** Default maximum number of pooled connections */
+    private static final int DEFAULT_MAX_CONNECTIONS = 20;
+
     /** Base URL used for REST calls */
     private String baseUrl;
 
@@ -59,14 +65,23 @@ public class RestHelper {
     /** Indicates whether to ignore a bad SSL certificate on the server */
     private boolean ignoreBadCertificate = true;
 
+    /** Maximum number of pooled connections */
+    private int maxConnections;
+
     public RestHelper(String baseUrl, String username, String password) {
+	this(baseUrl, username, password, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    public RestHelper(String baseUrl, String username, String password, int maxConnections) {
 	this.baseUrl = baseUrl;
 	this.username = username;
 	this.password = password;
+	this.maxConnections = maxConnections;
 
 	this.client = isIgnoreBadCertificate() ? new RestTemplate(createSecureTransport()) : new RestTemplate();
 	List<HttpMessageConverter<?>> converters = new ArrayList<HttpMessageConverter<?>>();
 	converters.add(new MappingJackson2HttpMessageConverter());
+	converters.add(new ByteArrayHttpMessageConverter());
 	client.setMessageConverters(converters);
     }
 
@@ -115,6 +130,44 @@ public class RestHelper {
 	}
     }
 
+    /**
+     * Perform a conditional GET request to the given relative URL. Validators
+     * from a previous response are sent so that the server may answer with
+     * '304 Not Modified' rather than resending unchanged content.
+     * 
+     * @param relativeUrl
+     * @param etag
+     * @param lastModified
+     * @return
+     * @throws SiteWhereException
+     */
+    public ConditionalResponse getConditional(String relativeUrl, String etag, String lastModified)
+	    throws SiteWhereException {
+	try {
+	    HttpHeaders headers = new HttpHeaders();
+	    if (!StringUtils.isEmpty(getUsername()) && !StringUtils.isEmpty(getPassword())) {
+		headers.add("Authorization", getAuthHeader());
+	    }
+	    if (etag != null) {
+		headers.add(HttpHeaders.IF_NONE_MATCH, etag);
+	    }
+	    if (lastModified != null) {
+		headers.add(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+	    }
+	    HttpEntity<Void> entity = new HttpEntity<Void>(headers);
+	    String url = baseUrl + relativeUrl;
+	    ResponseEntity<byte[]> response = client.exchange(url, HttpMethod.GET, entity, byte[].class);
+	    if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+		return new ConditionalResponse(false, null, etag, lastModified);
+	    }
+	    HttpHeaders received = response.getHeaders();
+	    return new ConditionalResponse(true, response.getBody(), received.getFirst(HttpHeaders.ETAG),
+		    received.getFirst(HttpHeaders.LAST_MODIFIED));
+	} catch (RestClientException e) {
+	    throw new SiteWhereException(e);
+	}
+    }
+
     /**
      * Encode the username and password to make the authorization header.
      * 
@@ -139,7 +192,8 @@ public class RestHelper {
 	};
 
 	HttpClient client = HttpClientBuilder.create().setSSLHostnameVerifier(nullHostnameVerifier)
-		.setSSLContext(createContext()).build();
+		.setSSLContext(createContext()).setMaxConnTotal(getMaxConnections())
+		.setMaxConnPerRoute(getMaxConnections()).build();
 
 	HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(client);
 
@@ -205,6 +259,10 @@ public class RestHelper {
 	this.password = password;
     }
 
+    public int getMaxConnections() {
+	return maxConnections;
+    }
+
     public boolean isIgnoreBadCertificate() {
 	return ignoreBadCertificate;
     }
@@ -212,4 +270,47 @@ public class RestHelper {
     public void setIgnoreBadCertificate(boolean ignoreBadCertificate) {
 	this.ignoreBadCertificate = ignoreBadCertificate;
     }
+
+    /**
+     * Result of a conditional GET request.
+     * 
+     * @author Derek
+     */
+    public static class ConditionalResponse {
+
+	/** Indicates whether content changed since last request */
+	private boolean modified;
+
+	/** Response body */
+	private byte[] body;
+
+	/** Entity tag returned by server */
+	private String etag;
+
+	/** Last modified date returned by server */
+	private String lastModified;
+
+	public ConditionalResponse(boolean modified, byte[] body, String etag, String lastModified) {
+	    this.modified = modified;
+	    this.body = body;
+	    this.etag = etag;
+	    this.lastModified = lastModified;
+	}
+
+	public boolean isModified() {
+	    return modified;
+	}
+
+	public byte[] getBody() {
+	    return body;
+	}
+
+	public String getEtag() {
+	    return etag;
+	}
+
+	public String getLastModified() {
+	    return lastModified;
+	}
+    }
 }
\ No newline at end of file
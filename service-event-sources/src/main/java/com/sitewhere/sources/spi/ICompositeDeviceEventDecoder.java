@@ -35,6 +35,18 @@ public interface ICompositeDeviceEventDecoder<T> extends IDeviceEventDecoder<T>
      */
     public List<IDecoderChoice<T>> getDecoderChoices();
 
+    /**
+     * Decode a batch of messages which may be for different devices. Used by
+     * gateways that multiplex messages for many devices into a single payload.
+     * 
+     * @param messages
+     * @param eventSourceMetadata
+     * @return
+     * @throws EventDecodeException
+     */
+    public List<IDecodedDeviceRequest<?>> decodeBatch(List<IMessageMetadata<T>> messages,
+	    Map<String, Object> eventSourceMetadata) throws EventDecodeException;
+
     /**
      * Represents a potential choice for decoding a payload.
      * 
@@ -125,5 +137,17 @@ public interface ICompositeDeviceEventDecoder<T> extends IDeviceEventDecoder<T>
 	 */
 	public IMessageMetadata<T> extractMetadata(T payload, Map<String, Object> eventSourceMetadata)
 		throws EventDecodeException;
+
+	/**
+	 * Extract metadata for all messages contained in a payload. Payloads from
+	 * gateways may contain messages for more than one device.
+	 * 
+	 * @param payload
+	 * @param eventSourceMetadata
+	 * @return
+	 * @throws EventDecodeException
+	 */
+	public List<IMessageMetadata<T>> extractAllMetadata(T payload, Map<String, Object> eventSourceMetadata)
+		throws EventDecodeException;
     }
 }
\ No newline at end of file
@@ -9,6 +9,9 @@ package com.sitewhere.sources.spi;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
 
 import com.sitewhere.microservice.kafka.DecodedEventsProducer;
 import com.sitewhere.microservice.kafka.DeviceRegistrationEventsProducer;
@@ -58,11 +61,27 @@ public interface IEventSourcesManager extends ITenantEngineLifecycleComponent {
      * @param encoded
      * @param metadata
      * @param decoded
-     * @throws SiteWhereException
+     * @return future completed when Kafka acknowledges the record
+     * @throws SiteWhereException if the record could not be sent
      */
-    public void handleDecodedEvent(String sourceId, byte[] encoded, Map<String, Object> metadata,
+    public Future<RecordMetadata> handleDecodedEvent(String sourceId, byte[] encoded, Map<String, Object> metadata,
 	    IDecodedDeviceRequest<?> decoded) throws SiteWhereException;
 
+    /**
+     * Handle processing for all requests decoded from a single payload. Records
+     * are marshaled up front and sent together so that they are grouped into the
+     * same producer batches.
+     * 
+     * @param sourceId
+     * @param encoded
+     * @param metadata
+     * @param decoded
+     * @return futures completed when Kafka acknowledges each record that was sent
+     * @throws SiteWhereException
+     */
+    public List<Future<RecordMetadata>> handleDecodedEvents(String sourceId, byte[] encoded,
+	    Map<String, Object> metadata, List<IDecodedDeviceRequest<?>> decoded) throws SiteWhereException;
+
     /**
      * Handle failed decode from an event source.
      * 
@@ -70,8 +89,9 @@ public interface IEventSourcesManager extends ITenantEngineLifecycleComponent {
      * @param encoded
      * @param metadata
      * @param t
-     * @throws SiteWhereException
+     * @return future completed when Kafka acknowledges the record
+     * @throws SiteWhereException if the record could not be sent
      */
-    public void handleFailedDecode(String sourceId, byte[] encoded, Map<String, Object> metadata, Throwable t)
-	    throws SiteWhereException;
+    public Future<RecordMetadata> handleFailedDecode(String sourceId, byte[] encoded, Map<String, Object> metadata,
+	    Throwable t) throws SiteWhereException;
 }
\ No newline at end of file
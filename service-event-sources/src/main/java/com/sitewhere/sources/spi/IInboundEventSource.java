@@ -9,6 +9,9 @@ package com.sitewhere.sources.spi;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
 
 import com.sitewhere.spi.server.lifecycle.ITenantEngineLifecycleComponent;
 
@@ -64,4 +67,17 @@ public interface IInboundEventSource<T> extends ITenantEngineLifecycleComponent
      * @param metadata
      */
     public void onEncodedEventReceived(IInboundEventReceiver<T> receiver, T encodedEvent, Map<String, Object> metadata);
+
+    /**
+     * Process an encoded event and return futures for the Kafka records produced
+     * as a result. Allows receivers to delay acknowledging the original message
+     * until it has been safely published.
+     * 
+     * @param receiver
+     * @param encodedEvent
+     * @param metadata
+     * @return
+     */
+    public List<Future<RecordMetadata>> processEncodedEvent(IInboundEventReceiver<T> receiver, T encodedEvent,
+	    Map<String, Object> metadata);
 }
\ No newline at end of file
@@ -139,6 +139,21 @@ public class EventSourcesParser extends AbstractBeanDefinitionParser {
 	// Build event sources manager and inject the list of beans.
 	BeanDefinitionBuilder manager = BeanDefinitionBuilder.rootBeanDefinition(EventSourcesManager.class);
 	manager.addPropertyValue("eventSources", sources);
+
+	Attr lingerMs = element.getAttributeNode("decodedEventsLingerMs");
+	if (lingerMs != null) {
+	    manager.addPropertyValue("decodedEventsLingerMs", lingerMs.getValue());
+	}
+
+	Attr batchSize = element.getAttributeNode("decodedEventsBatchSize");
+	if (batchSize != null) {
+	    manager.addPropertyValue("decodedEventsBatchSize", batchSize.getValue());
+	}
+
+	Attr compression = element.getAttributeNode("decodedEventsCompression");
+	if (compression != null) {
+	    manager.addPropertyValue("decodedEventsCompression", compression.getValue());
+	}
 	context.getRegistry().registerBeanDefinition(EventSourcesBeans.BEAN_EVENT_SOURCES_MANAGER,
 		manager.getBeanDefinition());
 
@@ -328,7 +343,7 @@ public class EventSourcesParser extends AbstractBeanDefinitionParser {
 	}
 
 	Attr queueName = element.getAttributeNode("queueName");
-	if (connectionUri != null) {
+	if (queueName != null) {
 	    mqtt.addPropertyValue("queueName", queueName.getValue());
 	}
 
@@ -338,10 +353,25 @@ public class EventSourcesParser extends AbstractBeanDefinitionParser {
 	}
 
 	Attr numConsumers = element.getAttributeNode("numConsumers");
-	if (connectionUri != null) {
+	if (numConsumers != null) {
 	    mqtt.addPropertyValue("numConsumers", numConsumers.getValue());
 	}
 
+	Attr prefetchCount = element.getAttributeNode("prefetchCount");
+	if (prefetchCount != null) {
+	    mqtt.addPropertyValue("prefetchCount", prefetchCount.getValue());
+	}
+
+	Attr ackBatchSize = element.getAttributeNode("ackBatchSize");
+	if (ackBatchSize != null) {
+	    mqtt.addPropertyValue("ackBatchSize", ackBatchSize.getValue());
+	}
+
+	Attr ackIntervalMs = element.getAttributeNode("ackIntervalMs");
+	if (ackIntervalMs != null) {
+	    mqtt.addPropertyValue("ackIntervalMs", ackIntervalMs.getValue());
+	}
+
 	return mqtt.getBeanDefinition();
     }
 
@@ -841,6 +871,36 @@ public class EventSourcesParser extends AbstractBeanDefinitionParser {
 	    builder.addPropertyValue("password", password.getValue());
 	}
 
+	Attr endpoints = element.getAttributeNode("endpoints");
+	if (endpoints != null) {
+	    builder.addPropertyValue("endpoints", endpoints.getValue());
+	}
+
+	Attr maxPollIntervalMs = element.getAttributeNode("maxPollIntervalMs");
+	if (maxPollIntervalMs != null) {
+	    builder.addPropertyValue("maxPollIntervalMs", maxPollIntervalMs.getValue());
+	}
+
+	Attr backoffMultiplier = element.getAttributeNode("backoffMultiplier");
+	if (backoffMultiplier != null) {
+	    builder.addPropertyValue("backoffMultiplier", backoffMultiplier.getValue());
+	}
+
+	Attr maxConcurrentRequests = element.getAttributeNode("maxConcurrentRequests");
+	if (maxConcurrentRequests != null) {
+	    builder.addPropertyValue("maxConcurrentRequests", maxConcurrentRequests.getValue());
+	}
+
+	Attr decodeThreads = element.getAttributeNode("decodeThreads");
+	if (decodeThreads != null) {
+	    builder.addPropertyValue("decodeThreads", decodeThreads.getValue());
+	}
+
+	Attr conditionalRequests = element.getAttributeNode("conditionalRequests");
+	if (conditionalRequests != null) {
+	    builder.addPropertyValue("conditionalRequests", conditionalRequests.getValue());
+	}
+
 	return builder.getBeanDefinition();
     }
 
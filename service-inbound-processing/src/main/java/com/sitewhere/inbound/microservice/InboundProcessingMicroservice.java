@@ -7,6 +7,8 @@
  */
 package com.sitewhere.inbound.microservice;
 
+import java.util.Arrays;
+
 import com.sitewhere.grpc.client.device.CachedDeviceManagementApiChannel;
 import com.sitewhere.grpc.client.device.DeviceManagementApiChannel;
 import com.sitewhere.grpc.client.event.DeviceEventManagementApiChannel;
@@ -15,12 +17,15 @@ import com.sitewhere.grpc.client.spi.client.IDeviceManagementApiChannel;
 import com.sitewhere.inbound.configuration.InboundProcessingModelProvider;
 import com.sitewhere.inbound.spi.microservice.IInboundProcessingMicroservice;
 import com.sitewhere.inbound.spi.microservice.IInboundProcessingTenantEngine;
+import com.sitewhere.microservice.kafka.DecodedEventsConsumer;
+import com.sitewhere.microservice.kafka.SharedKafkaConsumer;
 import com.sitewhere.microservice.multitenant.MultitenantMicroservice;
 import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.microservice.MicroserviceIdentifier;
 import com.sitewhere.spi.microservice.configuration.model.IConfigurationModel;
+import com.sitewhere.spi.microservice.kafka.ISharedKafkaConsumer;
 import com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.tenant.ITenant;
@@ -46,6 +51,9 @@ public class InboundProcessingMicroservice
     /** Device event management API channel */
     private IDeviceEventManagementApiChannel<?> deviceEventManagementApiChannel;
 
+    /** Decoded events consumer shared by tenant engines */
+    private ISharedKafkaConsumer decodedEventsSharedConsumer;
+
     /*
      * @see com.sitewhere.spi.microservice.IMicroservice#getName()
      */
@@ -97,6 +105,9 @@ public class InboundProcessingMicroservice
 	// Create GRPC components.
 	createGrpcComponents();
 
+	// Create Kafka components.
+	createKafkaComponents();
+
 	// Composite step for initializing microservice.
 	ICompositeLifecycleStep init = new CompositeLifecycleStep("Initialize " + getName());
 
@@ -106,6 +117,11 @@ public class InboundProcessingMicroservice
 	// Initialize device event management API channel.
 	init.addInitializeStep(this, getDeviceEventManagementApiChannel(), true);
 
+	// Initialize shared decoded events consumer.
+	if (getDecodedEventsSharedConsumer() != null) {
+	    init.addInitializeStep(this, getDecodedEventsSharedConsumer(), true);
+	}
+
 	// Execute initialization steps.
 	init.execute(monitor);
     }
@@ -126,6 +142,11 @@ public class InboundProcessingMicroservice
 	// Start device event mangement API channel.
 	start.addStartStep(this, getDeviceEventManagementApiChannel(), true);
 
+	// Start shared decoded events consumer.
+	if (getDecodedEventsSharedConsumer() != null) {
+	    start.addStartStep(this, getDecodedEventsSharedConsumer(), true);
+	}
+
 	// Execute startup steps.
 	start.execute(monitor);
     }
@@ -140,6 +161,11 @@ public class InboundProcessingMicroservice
 	// Composite step for stopping microservice.
 	ICompositeLifecycleStep stop = new CompositeLifecycleStep("Stop " + getName());
 
+	// Stop shared decoded events consumer.
+	if (getDecodedEventsSharedConsumer() != null) {
+	    stop.addStopStep(this, getDecodedEventsSharedConsumer());
+	}
+
 	// Stop device mangement API channel + cache.
 	stop.addStopStep(this, getCachedDeviceManagement());
 
@@ -163,6 +189,17 @@ public class InboundProcessingMicroservice
 	this.deviceEventManagementApiChannel = new DeviceEventManagementApiChannel(getInstanceSettings());
     }
 
+    /**
+     * Create Kafka components required by the microservice.
+     */
+    private void createKafkaComponents() {
+	if (getInstanceSettings().isKafkaSharedConsumers()) {
+	    this.decodedEventsSharedConsumer = new SharedKafkaConsumer(DecodedEventsConsumer.GROUP_ID_SUFFIX,
+		    Arrays.asList(tenant -> getKafkaTopicNaming().getEventSourceDecodedEventsTopic(tenant),
+			    tenant -> getKafkaTopicNaming().getInboundReprocessEventsTopic(tenant)));
+	}
+    }
+
     /*
      * @see com.sitewhere.inbound.spi.microservice.IInboundProcessingMicroservice#
      * getDeviceManagementApiChannel()
@@ -202,4 +239,17 @@ public class InboundProcessingMicroservice
 	    IDeviceEventManagementApiChannel<?> deviceEventManagementApiChannel) {
 	this.deviceEventManagementApiChannel = deviceEventManagementApiChannel;
     }
+
+    /*
+     * @see com.sitewhere.inbound.spi.microservice.IInboundProcessingMicroservice#
+     * getDecodedEventsSharedConsumer()
+     */
+    @Override
+    public ISharedKafkaConsumer getDecodedEventsSharedConsumer() {
+	return decodedEventsSharedConsumer;
+    }
+
+    public void setDecodedEventsSharedConsumer(ISharedKafkaConsumer decodedEventsSharedConsumer) {
+	this.decodedEventsSharedConsumer = decodedEventsSharedConsumer;
+    }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel;
 import com.sitewhere.grpc.client.spi.client.IDeviceManagementApiChannel;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.microservice.MicroserviceIdentifier;
+import com.sitewhere.spi.microservice.kafka.ISharedKafkaConsumer;
 import com.sitewhere.spi.microservice.multitenant.IMultitenantMicroservice;
 
 /**
@@ -41,4 +42,12 @@ public interface IInboundProcessingMicroservice
      * @return
      */
     public IDeviceEventManagementApiChannel<?> getDeviceEventManagementApiChannel();
+
+    /**
+     * Get consumer for decoded events shared by all tenant engines. Null if
+     * tenant engines use dedicated consumers.
+     * 
+     * @return
+     */
+    public ISharedKafkaConsumer getDecodedEventsSharedConsumer();
 }
\ No newline at end of file
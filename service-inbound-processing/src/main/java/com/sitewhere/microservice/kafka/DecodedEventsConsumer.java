@@ -23,11 +23,13 @@ import com.sitewhere.grpc.client.event.EventModelMarshaler;
 import com.sitewhere.grpc.model.DeviceEventModel.GDecodedEventPayload;
 import com.sitewhere.inbound.processing.InboundPayloadProcessingLogic;
 import com.sitewhere.inbound.spi.kafka.IDecodedEventsConsumer;
+import com.sitewhere.inbound.spi.microservice.IInboundProcessingMicroservice;
 import com.sitewhere.inbound.spi.processing.IInboundPayloadProcessingLogic;
 import com.sitewhere.inbound.spi.processing.IInboundProcessingConfiguration;
 import com.sitewhere.rest.model.device.event.kafka.DecodedEventPayload;
 import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.microservice.kafka.ISharedKafkaConsumer;
 import com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
@@ -41,7 +43,7 @@ public class DecodedEventsConsumer extends MicroserviceKafkaConsumer implements
     private static String CONSUMER_ID = UUID.randomUUID().toString();
 
     /** Suffix for group id */
-    private static String GROUP_ID_SUFFIX = "decoded-event-consumers";
+    public static final String GROUP_ID_SUFFIX = "decoded-event-consumers";
 
     /** Get settings for inbound processing */
     private IInboundProcessingConfiguration inboundProcessingConfiguration;
@@ -86,6 +88,15 @@ public class DecodedEventsConsumer extends MicroserviceKafkaConsumer implements
 	return topics;
     }
 
+    /*
+     * @see com.sitewhere.microservice.kafka.MicroserviceKafkaConsumer#
+     * getSharedConsumer()
+     */
+    @Override
+    protected ISharedKafkaConsumer getSharedConsumer() throws SiteWhereException {
+	return ((IInboundProcessingMicroservice) getTenantEngine().getMicroservice()).getDecodedEventsSharedConsumer();
+    }
+
     /*
      * @see
      * com.sitewhere.server.lifecycle.LifecycleComponent#initialize(com.sitewhere.
@@ -166,7 +177,7 @@ public class DecodedEventsConsumer extends MicroserviceKafkaConsumer implements
 		decoded.add(message);
 	    }
 	    getInboundPayloadProcessingLogic().process(topicPartition, decoded);
-	    getConsumer().commitAsync(new OffsetCommitCallback() {
+	    commitAsync(new OffsetCommitCallback() {
 		public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
 		    if (e != null) {
 			getLogger().error("Commit failed for offsets " + offsets, e);
@@ -80,6 +80,15 @@ public class LabelGenerationMicroservice
 	return false;
     }
 
+    /*
+     * @see com.sitewhere.microservice.multitenant.MultitenantMicroservice#
+     * isTenantLazyActivationSupported()
+     */
+    @Override
+    public boolean isTenantLazyActivationSupported() {
+	return true;
+    }
+
     /*
      * @see com.sitewhere.spi.microservice.IMicroservice#buildConfigurationModel()
      */
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.labels.symbology;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of rendered label images. Entries are keyed by the
+ * content that determines the image (generator, entity URI and rendering
+ * options) and the cache is bounded by the total number of bytes held rather
+ * than the number of entries.
+ * 
+ * @author Derek
+ */
+public class LabelCache {
+
+    /** Maximum number of bytes held in cache */
+    private long maxSizeBytes;
+
+    /** Number of bytes currently held in cache */
+    private long sizeBytes;
+
+    /** Cached labels in access order */
+    private LinkedHashMap<String, byte[]> labels = new LinkedHashMap<>(16, 0.75f, true);
+
+    public LabelCache(long maxSizeBytes) {
+	this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Get cached label content or null if not cached.
+     * 
+     * @param key
+     * @return
+     */
+    public synchronized byte[] get(String key) {
+	return labels.get(key);
+    }
+
+    /**
+     * Add label content to the cache, evicting least recently used entries until
+     * the cache is within its byte budget.
+     * 
+     * @param key
+     * @param content
+     */
+    public synchronized void put(String key, byte[] content) {
+	if (content.length > maxSizeBytes) {
+	    return;
+	}
+	byte[] previous = labels.put(key, content);
+	if (previous != null) {
+	    sizeBytes -= previous.length;
+	}
+	sizeBytes += content.length;
+	Iterator<Map.Entry<String, byte[]>> it = labels.entrySet().iterator();
+	while ((sizeBytes > maxSizeBytes) && (it.hasNext())) {
+	    Map.Entry<String, byte[]> eldest = it.next();
+	    sizeBytes -= eldest.getValue().length;
+	    it.remove();
+	}
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public synchronized void clear() {
+	labels.clear();
+	sizeBytes = 0;
+    }
+
+    public synchronized long getSizeBytes() {
+	return sizeBytes;
+    }
+
+    public long getMaxSizeBytes() {
+	return maxSizeBytes;
+    }
+}
@@ -23,6 +23,7 @@ import com.sitewhere.spi.device.IDeviceType;
 import com.sitewhere.spi.device.group.IDeviceGroup;
 import com.sitewhere.spi.label.IEntityUriProvider;
 import com.sitewhere.spi.label.ILabelGenerator;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
 import net.glxn.qrgen.core.image.ImageType;
@@ -54,10 +55,48 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     /** Background color */
     private int backgroundColor = 0xffffffff;
 
+    /** Maximum number of bytes of rendered labels to cache */
+    private long maxCacheSizeBytes = 16 * 1024 * 1024;
+
+    /** Cache of rendered labels */
+    private LabelCache cache;
+
     public QrCodeGenerator() {
 	super(LifecycleComponentType.LabelGenerator);
     }
 
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.cache = new LabelCache(getMaxCacheSizeBytes());
+    }
+
+    /**
+     * Render QR-Code for an entity URI. Rendered images are cached based on the
+     * URI and rendering settings, so repeated requests for the same entity do not
+     * re-render the image.
+     * 
+     * @param uri
+     * @return
+     */
+    protected byte[] render(URI uri) {
+	String key = getId() + "|" + uri.toString() + "|" + getWidth() + "x" + getHeight() + "|"
+		+ Integer.toHexString(getForegroundColor()) + "|" + Integer.toHexString(getBackgroundColor());
+	byte[] content = (getCache() != null) ? getCache().get(key) : null;
+	if (content == null) {
+	    content = QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
+		    .withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	    if (getCache() != null) {
+		getCache().put(key, content);
+	    }
+	}
+	return content;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.label.ILabelGenerator#getCustomerTypeLabel(com.sitewhere.
@@ -67,8 +106,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     public byte[] getCustomerTypeLabel(ICustomerType customerType, IEntityUriProvider provider)
 	    throws SiteWhereException {
 	URI uri = provider.getCustomerTypeIdentifier(customerType);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -79,8 +117,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     @Override
     public byte[] getCustomerLabel(ICustomer customer, IEntityUriProvider provider) throws SiteWhereException {
 	URI uri = provider.getCustomerIdentifier(customer);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -91,8 +128,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     @Override
     public byte[] getAreaTypeLabel(IAreaType areaType, IEntityUriProvider provider) throws SiteWhereException {
 	URI uri = provider.getAreaTypeIdentifier(areaType);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -103,8 +139,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     @Override
     public byte[] getAreaLabel(IArea area, IEntityUriProvider provider) throws SiteWhereException {
 	URI uri = provider.getAreaIdentifier(area);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -115,8 +150,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     @Override
     public byte[] getDeviceTypeLabel(IDeviceType deviceType, IEntityUriProvider provider) throws SiteWhereException {
 	URI uri = provider.getDeviceTypeIdentifier(deviceType);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -127,8 +161,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     @Override
     public byte[] getDeviceLabel(IDevice device, IEntityUriProvider provider) throws SiteWhereException {
 	URI uri = provider.getDeviceIdentifier(device);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -139,8 +172,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     @Override
     public byte[] getDeviceGroupLabel(IDeviceGroup group, IEntityUriProvider provider) throws SiteWhereException {
 	URI uri = provider.getDeviceGroupIdentifier(group);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -152,8 +184,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     public byte[] getDeviceAssignmentLabel(IDeviceAssignment assignment, IEntityUriProvider provider)
 	    throws SiteWhereException {
 	URI uri = provider.getDeviceAssignmentIdentifier(assignment);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -164,8 +195,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     @Override
     public byte[] getAssetTypeLabel(IAssetType assetType, IEntityUriProvider provider) throws SiteWhereException {
 	URI uri = provider.getAssetTypeIdentifier(assetType);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -176,8 +206,7 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
     @Override
     public byte[] getAssetLabel(IAsset asset, IEntityUriProvider provider) throws SiteWhereException {
 	URI uri = provider.getAssetIdentifier(asset);
-	return QRCode.from(uri.toString()).withSize(getWidth(), getHeight())
-		.withColor(getForegroundColor(), getBackgroundColor()).to(ImageType.PNG).stream().toByteArray();
+	return render(uri);
     }
 
     /*
@@ -206,6 +235,18 @@ public class QrCodeGenerator extends TenantEngineLifecycleComponent implements I
 	this.name = name;
     }
 
+    public long getMaxCacheSizeBytes() {
+	return maxCacheSizeBytes;
+    }
+
+    public void setMaxCacheSizeBytes(long maxCacheSizeBytes) {
+	this.maxCacheSizeBytes = maxCacheSizeBytes;
+    }
+
+    protected LabelCache getCache() {
+	return cache;
+    }
+
     public int getWidth() {
 	return width;
     }
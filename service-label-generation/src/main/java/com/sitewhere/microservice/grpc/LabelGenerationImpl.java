@@ -373,7 +373,7 @@ public class LabelGenerationImpl extends LabelGenerationGrpc.LabelGenerationImpl
      */
     protected IDeviceManagement getDeviceManagement() throws SiteWhereException {
 	return ((ILabelGenerationMicroservice) getLabelGenerationTenantEngine().getMicroservice())
-		.getDeviceManagementApiChannel();
+		.getCachedDeviceManagement();
     }
 
     /**
@@ -10,6 +10,7 @@ package com.sitewhere.connectors;
 import java.util.List;
 
 import com.sitewhere.connectors.spi.IOutboundConnector;
+import com.sitewhere.connectors.spi.IOutboundConnectorBackpressureListener;
 import com.sitewhere.connectors.spi.microservice.IOutboundConnectorsMicroservice;
 import com.sitewhere.grpc.client.event.BlockingDeviceEventManagement;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
@@ -35,6 +36,9 @@ public abstract class OutboundConnector extends TenantEngineLifecycleComponent i
     /** Number of threads used for processing events */
     private int numProcessingThreads = DEFAULT_NUM_PROCESSING_THREADS;
 
+    /** Listener notified of backpressure changes */
+    private volatile IOutboundConnectorBackpressureListener backpressureListener;
+
     public OutboundConnector() {
 	super(LifecycleComponentType.OutboundConnector);
     }
@@ -74,6 +78,36 @@ public abstract class OutboundConnector extends TenantEngineLifecycleComponent i
 	    throws SiteWhereException {
     }
 
+    /*
+     * @see com.sitewhere.connectors.spi.IOutboundConnector#isBackpressured()
+     */
+    @Override
+    public boolean isBackpressured() {
+	return false;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.connectors.spi.IOutboundConnector#setBackpressureListener(com.
+     * sitewhere.connectors.spi.IOutboundConnectorBackpressureListener)
+     */
+    @Override
+    public void setBackpressureListener(IOutboundConnectorBackpressureListener listener) {
+	this.backpressureListener = listener;
+    }
+
+    /**
+     * Notify listener that backpressure state has changed.
+     * 
+     * @param backpressured
+     */
+    protected void onBackpressureChanged(boolean backpressured) {
+	IOutboundConnectorBackpressureListener listener = backpressureListener;
+	if (listener != null) {
+	    listener.onBackpressureChanged(this, backpressured);
+	}
+    }
+
     /*
      * @see com.sitewhere.connectors.spi.IOutboundConnector#getDeviceManagement()
      */
@@ -172,6 +172,15 @@ public class OutboundConnectorsModelProvider extends ConfigurationModelProvider
 	builder.attributeGroup(ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY);
 
 	addCommonConnectorAttributes(builder, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY);
+	builder.attribute((new AttributeNode.Builder("Number of indexing workers", "numIndexingWorkers",
+		AttributeType.Integer, ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY).defaultValue("4")
+			.description("Number of workers sending concurrent update requests to Solr.").build()));
+	builder.attribute((new AttributeNode.Builder("Maximum batch size", "maxBatchSize", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY).defaultValue("1000")
+			.description("Maximum number of documents sent in a single update request.").build()));
+	builder.attribute((new AttributeNode.Builder("Buffer size", "bufferSize", AttributeType.Integer,
+		ConfigurationModelProvider.ATTR_GROUP_CONNECTIVITY).defaultValue("10000")
+			.description("Number of documents buffered before event delivery is paused.").build()));
 	return builder.build();
     }
 
@@ -10,20 +10,25 @@ package com.sitewhere.connectors.solr;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.SolrPingResponse;
 import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 
 import com.sitewhere.configuration.instance.solr.SolrConfiguration;
 import com.sitewhere.connectors.SerialOutboundConnector;
 import com.sitewhere.connectors.spi.IOutboundConnector;
+import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.solr.SiteWhereSolrFactory;
 import com.sitewhere.solr.SolrConnection;
 import com.sitewhere.spi.SiteWhereException;
@@ -33,38 +38,130 @@ import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.device.event.IDeviceMeasurement;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+
 /**
  * {@link IOutboundConnector} implementation that takes saved events and indexes
  * them in Apache Solr for advanced analytics processing.
  * 
+ * Documents are buffered and indexed by a pool of workers. Batch size adapts to
+ * Solr response times, failed updates are retried with exponential backoff and
+ * batches rejected by Solr are split to isolate the offending documents. When
+ * the buffer passes its high watermark, the connector signals backpressure so
+ * the host stops fetching events instead of blocking in the connector. On
+ * shutdown, workers drain the buffer before stopping. Documents still buffered
+ * when the drain timeout expires are counted as dropped.
+ * 
  * @author Derek
  */
 public class SolrOutboundConnector extends SerialOutboundConnector {
 
-    /** Number of documents to buffer before blocking calls */
-    private static final int BUFFER_SIZE = 1000;
+    /** Default number of documents buffered before backpressure is applied */
+    private static final int DEFAULT_BUFFER_SIZE = 10000;
 
-    /** Interval at which batches are written */
-    private static final int BATCH_INTERVAL = 2 * 1000;
+    /** Default number of concurrent indexing workers */
+    private static final int DEFAULT_NUM_INDEXING_WORKERS = 4;
 
-    /** Maximum count of documents to send in a batch */
-    private static final int MAX_BATCH_SIZE = 200;
+    /** Default maximum count of documents to send in a batch */
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    /** Default target time for a batch update request */
+    private static final int DEFAULT_TARGET_BATCH_LATENCY = 1000;
+
+    /** Minimum count of documents to send in a batch */
+    private static final int MIN_BATCH_SIZE = 10;
+
+    /** Initial count of documents to send in a batch */
+    private static final int INITIAL_BATCH_SIZE = 200;
+
+    /** Interval workers wait for documents before checking for shutdown */
+    private static final int BATCH_INTERVAL = 2 * 1000;
 
     /** Interval by which documents should be committed */
     private static final int COMMIT_INTERVAL = 60 * 1000;
 
+    /** Initial delay before retrying a failed update */
+    private static final long INITIAL_BACKOFF_MS = 500;
+
+    /** Maximum delay before retrying a failed update */
+    private static final long MAX_BACKOFF_MS = 30 * 1000;
+
+    /** Time allowed for workers to drain the buffer on shutdown */
+    private static final long DRAIN_TIMEOUT_MS = 30 * 1000;
+
+    /** Time allowed for workers to exit once interrupted */
+    private static final long TERMINATE_TIMEOUT_MS = 10 * 1000;
+
+    /** Count of documents indexed */
+    private static final Counter INDEXED_DOCUMENTS = TenantEngineLifecycleComponent
+	    .createCounterMetric("solr_indexed_document_count", "Count of documents indexed in Solr", "connector");
+
+    /** Count of documents rejected by Solr */
+    private static final Counter REJECTED_DOCUMENTS = TenantEngineLifecycleComponent.createCounterMetric(
+	    "solr_rejected_document_count", "Count of documents rejected by Solr and dropped", "connector");
+
+    /** Count of documents not indexed before shutdown */
+    private static final Counter DROPPED_DOCUMENTS = TenantEngineLifecycleComponent.createCounterMetric(
+	    "solr_dropped_document_count", "Count of documents not indexed before shutdown", "connector");
+
+    /** Count of update retries */
+    private static final Counter RETRIES = TenantEngineLifecycleComponent
+	    .createCounterMetric("solr_indexing_retry_count", "Count of Solr update requests retried", "connector");
+
+    /** Time taken by update requests */
+    private static final Histogram REQUEST_TIME = TenantEngineLifecycleComponent.createHistogramMetric(
+	    "solr_indexing_request_seconds", "Time taken by Solr update requests", "connector");
+
+    /** Time from document being buffered until it is indexed */
+    private static final Gauge INDEXING_LAG = TenantEngineLifecycleComponent.createGaugeMetric(
+	    "solr_indexing_lag_seconds", "Time oldest document in last batch waited before being indexed",
+	    "connector");
+
+    /** Number of documents waiting to be indexed */
+    private static final Gauge QUEUE_SIZE = TenantEngineLifecycleComponent
+	    .createGaugeMetric("solr_indexing_queue_size", "Number of documents waiting to be indexed", "connector");
+
+    /** Current adaptive batch size */
+    private static final Gauge BATCH_SIZE = TenantEngineLifecycleComponent
+	    .createGaugeMetric("solr_indexing_batch_size", "Current adaptive Solr batch size", "connector");
+
     /** Injected Solr configuration */
     private SolrConfiguration solrConfiguration;
 
     /** Connection to Solr instance */
     private SolrConnection solrConnection;
 
-    /** Bounded queue that holds documents to be processed */
-    private BlockingQueue<SolrInputDocument> queue = new ArrayBlockingQueue<SolrInputDocument>(BUFFER_SIZE);
+    /** Number of documents buffered before backpressure is applied */
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /** Number of concurrent indexing workers */
+    private int numIndexingWorkers = DEFAULT_NUM_INDEXING_WORKERS;
+
+    /** Maximum count of documents to send in a batch */
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    /** Target time in milliseconds for a batch update request */
+    private int targetBatchLatency = DEFAULT_TARGET_BATCH_LATENCY;
+
+    /** Queue that holds documents to be processed */
+    private BlockingQueue<QueuedDocument> queue;
+
+    /** Current batch size adjusted based on response times */
+    private AtomicInteger batchSize = new AtomicInteger(INITIAL_BATCH_SIZE);
+
+    /** Indicates backpressure is being applied */
+    private AtomicBoolean backpressured = new AtomicBoolean();
+
+    /** Indicates workers should keep running */
+    private volatile boolean running;
 
-    /** Used to execute Solr indexing in a separate thread */
-    /** TODO: Use a better approach for scalability */
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    /** Indicates workers should exit once the queue is empty */
+    private volatile boolean stopping;
+
+    /** Executes indexing workers */
+    private ExecutorService executor;
 
     /*
      * @see
@@ -95,7 +192,52 @@ public class SolrOutboundConnector extends SerialOutboundConnector {
 	}
 	getLogger().info(
 		"Solr event processor indexing events to server at: " + getSolrConfiguration().getSolrServerUrl());
-	executor.execute(new SolrDocumentQueueProcessor());
+
+	// Hard limit leaves room for batches delivered before host pauses.
+	this.queue = new LinkedBlockingQueue<QueuedDocument>(getBufferSize() * 2);
+	this.batchSize.set(Math.min(INITIAL_BATCH_SIZE, getMaxBatchSize()));
+	this.backpressured.set(false);
+	this.stopping = false;
+	this.running = true;
+	this.executor = Executors.newFixedThreadPool(getNumIndexingWorkers(), new SolrIndexingThreadFactory());
+	for (int i = 0; i < getNumIndexingWorkers(); i++) {
+	    executor.execute(new SolrIndexingWorker());
+	}
+    }
+
+    /*
+     * @see
+     * com.sitewhere.connectors.FilteredOutboundConnector#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	// Let workers index buffered documents before stopping them.
+	this.stopping = true;
+	if (executor != null) {
+	    executor.shutdown();
+	    try {
+		if (!executor.awaitTermination(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+		    getLogger().warn("Solr indexing queue not drained within timeout period. Stopping workers.");
+		    this.running = false;
+		    executor.shutdownNow();
+		    if (!executor.awaitTermination(TERMINATE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+			getLogger().warn("Solr indexing workers did not terminate within timeout period.");
+		    }
+		}
+	    } catch (InterruptedException e) {
+		getLogger().warn("Interrupted waiting for Solr indexing workers to terminate.");
+		executor.shutdownNow();
+		Thread.currentThread().interrupt();
+	    }
+	}
+	this.running = false;
+	if ((queue != null) && !queue.isEmpty()) {
+	    List<QueuedDocument> remaining = new ArrayList<QueuedDocument>();
+	    queue.drainTo(remaining);
+	    onDropped(remaining.size(), "not indexed before shutdown");
+	}
+	super.stop(monitor);
     }
 
     /*
@@ -106,12 +248,7 @@ public class SolrOutboundConnector extends SerialOutboundConnector {
      */
     @Override
     public void onMeasurement(IDeviceEventContext context, IDeviceMeasurement mx) throws SiteWhereException {
-	SolrInputDocument document = SiteWhereSolrFactory.createDocumentFromMeasurement(mx);
-	try {
-	    queue.put(document);
-	} catch (InterruptedException e) {
-	    throw new SiteWhereException("Interrupted during indexing.", e);
-	}
+	enqueue(SiteWhereSolrFactory.createDocumentFromMeasurement(mx));
     }
 
     /*
@@ -122,12 +259,7 @@ public class SolrOutboundConnector extends SerialOutboundConnector {
      */
     @Override
     public void onLocation(IDeviceEventContext context, IDeviceLocation location) throws SiteWhereException {
-	SolrInputDocument document = SiteWhereSolrFactory.createDocumentFromLocation(location);
-	try {
-	    queue.put(document);
-	} catch (InterruptedException e) {
-	    throw new SiteWhereException("Interrupted during indexing.", e);
-	}
+	enqueue(SiteWhereSolrFactory.createDocumentFromLocation(location));
     }
 
     /*
@@ -138,61 +270,273 @@ public class SolrOutboundConnector extends SerialOutboundConnector {
      */
     @Override
     public void onAlert(IDeviceEventContext context, IDeviceAlert alert) throws SiteWhereException {
-	SolrInputDocument document = SiteWhereSolrFactory.createDocumentFromAlert(alert);
+	enqueue(SiteWhereSolrFactory.createDocumentFromAlert(alert));
+    }
+
+    /*
+     * @see com.sitewhere.connectors.OutboundConnector#isBackpressured()
+     */
+    @Override
+    public boolean isBackpressured() {
+	return backpressured.get();
+    }
+
+    /**
+     * Add a document to the indexing queue. Backpressure is signalled once the
+     * buffer size is reached. The call only blocks if events keep arriving after
+     * the hard limit (twice the buffer size) is reached.
+     * 
+     * @param document
+     * @throws SiteWhereException
+     */
+    protected void enqueue(SolrInputDocument document) throws SiteWhereException {
+	QueuedDocument queued = new QueuedDocument(document);
 	try {
-	    queue.put(document);
+	    if (!queue.offer(queued)) {
+		getLogger().warn("Solr indexing queue full. Blocking until space is available.");
+		queue.put(queued);
+	    }
 	} catch (InterruptedException e) {
 	    throw new SiteWhereException("Interrupted during indexing.", e);
 	}
+	if ((queue.size() >= getBufferSize()) && backpressured.compareAndSet(false, true)) {
+	    onBackpressureChanged(true);
+	}
+    }
+
+    /**
+     * Release backpressure once the queue has drained to half of the buffer size.
+     */
+    protected void checkBackpressureReleased() {
+	if ((queue.size() <= getBufferSize() / 2) && backpressured.compareAndSet(true, false)) {
+	    onBackpressureChanged(false);
+	}
+    }
+
+    /**
+     * Index a batch of documents, retrying with exponential backoff on failures
+     * that may be transient. Retries continue until the connector is stopped
+     * since backpressure stops events being fetched while Solr is unavailable. If
+     * Solr rejects the batch, it is split in half and each half indexed
+     * separately until the rejected documents are isolated and dropped.
+     * 
+     * @param batch
+     * @throws InterruptedException
+     */
+    protected void indexWithRetry(List<QueuedDocument> batch) throws InterruptedException {
+	long backoff = INITIAL_BACKOFF_MS;
+	while (true) {
+	    try {
+		index(batch);
+		return;
+	    } catch (SolrException e) {
+		if (isDocumentRejected(e)) {
+		    isolateRejected(batch, e);
+		    return;
+		} else if (isConfigurationError(e)) {
+		    getLogger().error("Solr refused batch (HTTP " + e.code()
+			    + "). Verify Solr credentials and collection. Retrying in " + backoff + " ms.", e);
+		} else {
+		    getLogger().warn("Solr error indexing batch. Retrying in " + backoff + " ms.", e);
+		}
+	    } catch (SolrServerException e) {
+		getLogger().warn("Exception indexing batch. Retrying in " + backoff + " ms.", e);
+	    } catch (IOException e) {
+		getLogger().warn("IOException indexing batch. Retrying in " + backoff + " ms.", e);
+	    }
+	    if (!running) {
+		onDropped(batch.size(), "dropped due to shutdown");
+		return;
+	    }
+	    RETRIES.labels(buildLabels(getConnectorId())).inc();
+	    Thread.sleep(backoff);
+	    backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+	}
+    }
+
+    /**
+     * Split a batch rejected by Solr to find and drop the rejected documents.
+     * 
+     * @param batch
+     * @param cause
+     * @throws InterruptedException
+     */
+    protected void isolateRejected(List<QueuedDocument> batch, SolrException cause) throws InterruptedException {
+	if (batch.size() == 1) {
+	    REJECTED_DOCUMENTS.labels(buildLabels(getConnectorId())).inc();
+	    getLogger().error("Solr rejected document. Dropping: " + batch.get(0).getDocument(), cause);
+	    return;
+	}
+	int middle = batch.size() / 2;
+	indexWithRetry(new ArrayList<QueuedDocument>(batch.subList(0, middle)));
+	indexWithRetry(new ArrayList<QueuedDocument>(batch.subList(middle, batch.size())));
+    }
+
+    /**
+     * Send a batch of documents to Solr and update batch size and metrics based on
+     * the response.
+     * 
+     * @param batch
+     * @throws SolrServerException
+     * @throws IOException
+     */
+    protected void index(List<QueuedDocument> batch) throws SolrServerException, IOException {
+	List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>(batch.size());
+	long oldest = Long.MAX_VALUE;
+	for (QueuedDocument queued : batch) {
+	    documents.add(queued.getDocument());
+	    oldest = Math.min(oldest, queued.getQueued());
+	}
+	long start = System.currentTimeMillis();
+	UpdateResponse response = getSolrConnection().getSolrClient().add(documents, COMMIT_INTERVAL);
+	long now = System.currentTimeMillis();
+	if (response.getStatus() != 0) {
+	    getLogger().warn("Bad response code indexing documents: " + response.getStatus());
+	}
+	getLogger().debug("Indexed " + batch.size() + " documents in Solr.");
+
+	String[] labels = buildLabels(getConnectorId());
+	REQUEST_TIME.labels(labels).observe((now - start) / 1000.0);
+	INDEXED_DOCUMENTS.labels(labels).inc(batch.size());
+	INDEXING_LAG.labels(labels).set((now - oldest) / 1000.0);
+	adjustBatchSize(batch.size(), now - start);
+    }
+
+    /**
+     * Adjust batch size based on the time taken by the last request. Size is
+     * halved if the request took longer than the target and grown by a quarter
+     * if a full batch was indexed within half of the target.
+     * 
+     * @param size
+     * @param elapsed
+     */
+    protected void adjustBatchSize(int size, long elapsed) {
+	int current = batchSize.get();
+	int updated = current;
+	if (elapsed > getTargetBatchLatency()) {
+	    updated = Math.max(MIN_BATCH_SIZE, current / 2);
+	} else if ((size >= current) && (elapsed < getTargetBatchLatency() / 2)) {
+	    updated = Math.min(getMaxBatchSize(), current + Math.max(1, current / 4));
+	}
+	if ((updated != current) && batchSize.compareAndSet(current, updated)) {
+	    getLogger().debug("Solr batch size changed from " + current + " to " + updated + ".");
+	}
+    }
+
+    /**
+     * Indicates Solr rejected the request due to its content rather than due to a
+     * condition that may clear on retry.
+     * 
+     * @param e
+     * @return
+     */
+    protected boolean isDocumentRejected(SolrException e) {
+	return e.code() == SolrException.ErrorCode.BAD_REQUEST.code;
     }
 
     /**
-     * Class that processes documents in the queue asynchronously.
+     * Indicates the request failed due to Solr configuration (credentials,
+     * permissions or missing collection). The batch is retried, but the failure
+     * is logged as an error since it will not clear without intervention.
+     * 
+     * @param e
+     * @return
+     */
+    protected boolean isConfigurationError(SolrException e) {
+	return (e.code() == SolrException.ErrorCode.UNAUTHORIZED.code)
+		|| (e.code() == SolrException.ErrorCode.FORBIDDEN.code)
+		|| (e.code() == SolrException.ErrorCode.NOT_FOUND.code);
+    }
+
+    /**
+     * Record documents that were not indexed.
+     * 
+     * @param count
+     * @param reason
+     */
+    protected void onDropped(int count, String reason) {
+	DROPPED_DOCUMENTS.labels(buildLabels(getConnectorId())).inc(count);
+	getLogger().error("Solr indexing lost " + count + " documents (" + reason + ").");
+    }
+
+    /**
+     * Document along with the time it was queued.
+     */
+    private static class QueuedDocument {
+
+	/** Document to index */
+	private SolrInputDocument document;
+
+	/** Time document was queued */
+	private long queued;
+
+	public QueuedDocument(SolrInputDocument document) {
+	    this.document = document;
+	    this.queued = System.currentTimeMillis();
+	}
+
+	public SolrInputDocument getDocument() {
+	    return document;
+	}
+
+	public long getQueued() {
+	    return queued;
+	}
+    }
+
+    /**
+     * Worker that takes batches of documents from the queue and indexes them.
      * 
      * @author Derek
      */
-    private class SolrDocumentQueueProcessor implements Runnable {
+    private class SolrIndexingWorker implements Runnable {
 
 	@Override
 	public void run() {
-	    getLogger().info("Started Solr indexing thread.");
-	    boolean interrupted = false;
-
-	    while (!interrupted) {
-		long start = System.currentTimeMillis();
-		List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>();
-
-		while (((System.currentTimeMillis() - start) < BATCH_INTERVAL) && (batch.size() <= MAX_BATCH_SIZE)) {
-		    try {
-			SolrInputDocument document = queue.poll(BATCH_INTERVAL, TimeUnit.MILLISECONDS);
-			if (document != null) {
-			    batch.add(document);
+	    getLogger().info("Started Solr indexing worker.");
+	    String[] labels = buildLabels(getConnectorId());
+	    while (running) {
+		List<QueuedDocument> batch = null;
+		try {
+		    QueuedDocument first = queue.poll(BATCH_INTERVAL, TimeUnit.MILLISECONDS);
+		    if (first == null) {
+			if (stopping) {
+			    return;
 			}
-		    } catch (InterruptedException e) {
-			getLogger().error("Solr indexing thread interrupted.", e);
-			interrupted = true;
-			break;
+			continue;
 		    }
-		}
-		if (!batch.isEmpty()) {
-		    try {
-			UpdateResponse response = getSolrConnection().getSolrClient().add(batch, COMMIT_INTERVAL);
-			if (response.getStatus() != 0) {
-			    getLogger().warn("Bad response code indexing documents: " + response.getStatus());
-			}
-			getLogger().debug("Indexed " + batch.size() + " documents in Solr.");
-		    } catch (SolrServerException e) {
-			getLogger().error("Exception indexing SiteWhere document.", e);
-		    } catch (IOException e) {
-			getLogger().error("IOException indexing SiteWhere document.", e);
-		    } catch (Throwable e) {
-			getLogger().error("Unhandled exception indexing SiteWhere document.", e);
+		    batch = new ArrayList<QueuedDocument>();
+		    batch.add(first);
+		    queue.drainTo(batch, batchSize.get() - 1);
+		    QUEUE_SIZE.labels(labels).set(queue.size());
+		    checkBackpressureReleased();
+
+		    indexWithRetry(batch);
+		    BATCH_SIZE.labels(labels).set(batchSize.get());
+		} catch (InterruptedException e) {
+		    getLogger().warn("Solr indexing worker interrupted.");
+		    if (batch != null) {
+			onDropped(batch.size(), "worker interrupted");
 		    }
+		    return;
+		} catch (Throwable e) {
+		    getLogger().error("Unhandled exception indexing SiteWhere documents.", e);
 		}
 	    }
 	}
     }
 
+    /** Used for naming Solr indexing threads */
+    private class SolrIndexingThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Solr Indexer '" + getConnectorId() + "' " + counter.incrementAndGet());
+	}
+    }
+
     public SolrConfiguration getSolrConfiguration() {
 	return solrConfiguration;
     }
@@ -208,4 +552,36 @@ public class SolrOutboundConnector extends SerialOutboundConnector {
     public void setSolrConnection(SolrConnection solrConnection) {
 	this.solrConnection = solrConnection;
     }
-}
\ No newline at end of file
+
+    public int getBufferSize() {
+	return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+	this.bufferSize = bufferSize;
+    }
+
+    public int getNumIndexingWorkers() {
+	return numIndexingWorkers;
+    }
+
+    public void setNumIndexingWorkers(int numIndexingWorkers) {
+	this.numIndexingWorkers = numIndexingWorkers;
+    }
+
+    public int getMaxBatchSize() {
+	return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+	this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getTargetBatchLatency() {
+	return targetBatchLatency;
+    }
+
+    public void setTargetBatchLatency(int targetBatchLatency) {
+	this.targetBatchLatency = targetBatchLatency;
+    }
+}
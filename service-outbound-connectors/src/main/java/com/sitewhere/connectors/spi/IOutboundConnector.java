@@ -53,6 +53,22 @@ public interface IOutboundConnector extends ITenantEngineLifecycleComponent {
      */
     public void handleFailedBatch(List<IEnrichedEventPayload> payloads, Throwable failReason) throws SiteWhereException;
 
+    /**
+     * Indicates whether the connector can not currently accept more events
+     * without blocking the calling thread. Event delivery should be paused until
+     * the connector reports that backpressure has been relieved.
+     * 
+     * @return
+     */
+    public boolean isBackpressured();
+
+    /**
+     * Set listener notified when backpressure state changes.
+     * 
+     * @param listener
+     */
+    public void setBackpressureListener(IOutboundConnectorBackpressureListener listener);
+
     /**
      * Get device management API.
      * 
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.connectors.spi;
+
+/**
+ * Notified when an {@link IOutboundConnector} starts or stops applying
+ * backpressure so that the component delivering events can stop fetching them
+ * rather than blocking in the connector.
+ * 
+ * @author Derek
+ */
+public interface IOutboundConnectorBackpressureListener {
+
+    /**
+     * Called when backpressure state of connector changes.
+     * 
+     * @param connector
+     * @param backpressured
+     */
+    public void onBackpressureChanged(IOutboundConnector connector, boolean backpressured);
+}
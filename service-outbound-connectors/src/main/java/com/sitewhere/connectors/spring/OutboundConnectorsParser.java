@@ -317,6 +317,21 @@ public class OutboundConnectorsParser extends AbstractBeanDefinitionParser {
 	    }
 	}
 
+	Attr numIndexingWorkers = element.getAttributeNode("numIndexingWorkers");
+	if (numIndexingWorkers != null) {
+	    connector.addPropertyValue("numIndexingWorkers", numIndexingWorkers.getValue());
+	}
+
+	Attr maxBatchSize = element.getAttributeNode("maxBatchSize");
+	if (maxBatchSize != null) {
+	    connector.addPropertyValue("maxBatchSize", maxBatchSize.getValue());
+	}
+
+	Attr bufferSize = element.getAttributeNode("bufferSize");
+	if (bufferSize != null) {
+	    connector.addPropertyValue("bufferSize", bufferSize.getValue());
+	}
+
 	// Parse common outbound connector attributes.
 	parseCommonOutboundConnectorAttributes(element, connector);
 
@@ -24,6 +24,7 @@ import org.apache.kafka.common.TopicPartition;
 
 import com.sitewhere.common.MarshalUtils;
 import com.sitewhere.connectors.spi.IOutboundConnector;
+import com.sitewhere.connectors.spi.IOutboundConnectorBackpressureListener;
 import com.sitewhere.grpc.client.event.EventModelConverter;
 import com.sitewhere.grpc.client.event.EventModelMarshaler;
 import com.sitewhere.grpc.model.DeviceEventModel.GEnrichedEventPayload;
@@ -37,11 +38,17 @@ import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
 
 /**
  * Kafka host container that reads from the enriched events topic and forwards
- * the messages to a wrapped outbound connector.
+ * the messages to a wrapped outbound connector. Fetching from Kafka is paused
+ * while the connector signals backpressure or too many batches are waiting on
+ * processing threads, so neither the consumer nor processing threads block.
  * 
  * @author Derek
  */
-public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
+public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer
+	implements IOutboundConnectorBackpressureListener {
+
+    /** Batches allowed to wait or run per processing thread before pausing */
+    private static final int MAX_IN_FLIGHT_BATCHES_PER_THREAD = 2;
 
     /** Consumer id */
     private static String CONSUMER_ID = UUID.randomUUID().toString();
@@ -52,6 +59,9 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
     /** Batch processors executor */
     private ExecutorService batchProcessors;
 
+    /** Number of batches submitted but not yet processed */
+    private AtomicInteger inFlightBatches = new AtomicInteger();
+
     public KafkaOutboundConnectorHost(IOutboundConnector outboundConnector) {
 	this.outboundConnector = outboundConnector;
     }
@@ -108,6 +118,7 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	// Start the wrapped connector component.
+	getOutboundConnector().setBackpressureListener(this);
 	startNestedComponent(getOutboundConnector(), monitor, true);
 
 	// Only start the consumer if outbound connector started successfully.
@@ -151,10 +162,12 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
     public void process(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
 	if (getOutboundConnector().getLifecycleStatus() == LifecycleStatus.Started) {
 	    if (records.size() > 0) {
+		inFlightBatches.incrementAndGet();
 		getBatchProcessors().execute(new TopicBatchProcessor(topicPartition, records));
+		updateFetchState();
 
 		// Send new offset information.
-		getConsumer().commitAsync(new OffsetCommitCallback() {
+		commitAsync(new OffsetCommitCallback() {
 		    public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
 			if (e != null) {
 			    getLogger().error("Commit failed for offsets " + offsets, e);
@@ -167,6 +180,33 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
 	}
     }
 
+    /*
+     * @see com.sitewhere.connectors.spi.IOutboundConnectorBackpressureListener#
+     * onBackpressureChanged(com.sitewhere.connectors.spi.IOutboundConnector,
+     * boolean)
+     */
+    @Override
+    public void onBackpressureChanged(IOutboundConnector connector, boolean backpressured) {
+	getLogger().info(String.format("Connector '%s' %s backpressure.", connector.getConnectorId(),
+		backpressured ? "applied" : "released"));
+	updateFetchState();
+    }
+
+    /**
+     * Pause or resume fetching based on connector backpressure and the number of
+     * batches waiting to be processed. Synchronized so that concurrent updates
+     * can not leave fetching paused after pressure is relieved.
+     */
+    protected synchronized void updateFetchState() {
+	int maxInFlight = Math.max(1, getOutboundConnector().getNumProcessingThreads())
+		* MAX_IN_FLIGHT_BATCHES_PER_THREAD;
+	if (getOutboundConnector().isBackpressured() || (inFlightBatches.get() >= maxInFlight)) {
+	    pauseFetching();
+	} else {
+	    resumeFetching();
+	}
+    }
+
     protected IOutboundConnector getOutboundConnector() {
 	return outboundConnector;
     }
@@ -200,6 +240,20 @@ public class KafkaOutboundConnectorHost extends MicroserviceKafkaConsumer {
 	 */
 	@Override
 	public void runAsSystemUser() throws SiteWhereException {
+	    try {
+		processRecords();
+	    } finally {
+		inFlightBatches.decrementAndGet();
+		updateFetchState();
+	    }
+	}
+
+	/**
+	 * Decode records and pass them to the outbound connector.
+	 * 
+	 * @throws SiteWhereException
+	 */
+	protected void processRecords() throws SiteWhereException {
 	    List<IEnrichedEventPayload> decoded = new ArrayList<>();
 	    for (ConsumerRecord<String, byte[]> record : getRecords()) {
 		try {
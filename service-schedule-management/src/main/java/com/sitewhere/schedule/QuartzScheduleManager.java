@@ -8,19 +8,27 @@
 package com.sitewhere.schedule;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.ObjectAlreadyExistsException;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.Trigger;
 import org.quartz.TriggerKey;
 import org.quartz.impl.DirectSchedulerFactory;
+import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.simpl.RAMJobStore;
 import org.quartz.simpl.SimpleThreadPool;
+import org.quartz.spi.JobStore;
 
 import com.sitewhere.rest.model.search.SearchCriteria;
 import com.sitewhere.schedule.jobs.QuartzBuilder;
+import com.sitewhere.schedule.persistence.mongodb.IScheduleManagementMongoClient;
+import com.sitewhere.schedule.persistence.mongodb.MongoQuartzJobStore;
 import com.sitewhere.schedule.spi.IScheduleManager;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
@@ -46,34 +54,66 @@ public class QuartzScheduleManager extends TenantEngineLifecycleComponent implem
     /** Default number of threads used to process scheduled tasks */
     private static final int DEFAULT_THREAD_COUNT = 5;
 
+    /** Default maximum number of triggers acquired in a single batch */
+    private static final int DEFAULT_MAX_BATCH_SIZE = 20;
+
+    /** Default window (in ms) for acquiring triggers ahead of fire time */
+    private static final long DEFAULT_BATCH_TIME_WINDOW = 1000;
+
+    /** Default time (in ms) scheduler waits when no triggers are pending */
+    private static final long DEFAULT_IDLE_WAIT_TIME = 30 * 1000;
+
+    /** Default time (in ms) between retries on job store failure */
+    private static final long DEFAULT_DB_FAILURE_RETRY_INTERVAL = 15 * 1000;
+
     /** Schedule management implementation */
     private IScheduleManagement scheduleManagement;
 
+    /** Mongo client used for persistent job store (RAM store used if null) */
+    private IScheduleManagementMongoClient mongoClient;
+
     /** Number of threads used for processing */
     private int numProcessingThreads = DEFAULT_THREAD_COUNT;
 
+    /** Maximum number of triggers acquired in a single batch */
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    /** Window (in ms) for acquiring triggers ahead of fire time */
+    private long batchTimeWindow = DEFAULT_BATCH_TIME_WINDOW;
+
     /** Cache schedules by token */
     private Map<String, ISchedule> schedulesByToken = new HashMap<String, ISchedule>();
 
     public QuartzScheduleManager(IScheduleManagement scheduleManagement) {
+	this(scheduleManagement, null);
+    }
+
+    public QuartzScheduleManager(IScheduleManagement scheduleManagement, IScheduleManagementMongoClient mongoClient) {
 	super(LifecycleComponentType.ScheduleManager);
 	this.scheduleManagement = scheduleManagement;
+	this.mongoClient = mongoClient;
     }
 
-    /*
-     * @see
-     * com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent#setTenantEngine
-     * (com.sitewhere.spi.microservice.multitenant.IMicroserviceTenantEngine)
+    /**
+     * Create Quartz scheduler for the tenant. Jobs are persisted in MongoDB if a
+     * client is available, allowing schedules to survive restarts and triggers to
+     * be shared across replicas.
+     * 
+     * @param tenantEngine
+     * @throws SchedulerException
      */
-    @Override
-    public void setTenantEngine(IMicroserviceTenantEngine tenantEngine) {
-	super.setTenantEngine(tenantEngine);
-	try {
-	    DirectSchedulerFactory.getInstance().createScheduler(tenantEngine.getTenant().getToken(), INSTANCE_ID,
-		    new SimpleThreadPool(getNumProcessingThreads(), Thread.NORM_PRIORITY), new RAMJobStore());
-	} catch (SchedulerException e) {
-	    throw new RuntimeException("Unable to create Quartz scheduler for schedule manager.", e);
+    protected void createScheduler(IMicroserviceTenantEngine tenantEngine) throws SchedulerException {
+	String schedulerName = tenantEngine.getTenant().getToken();
+	JobStore store = new RAMJobStore();
+	String instanceId = INSTANCE_ID;
+	if (getMongoClient() != null) {
+	    store = new MongoQuartzJobStore(getMongoClient());
+	    instanceId = getMicroservice().getHostname();
 	}
+	DirectSchedulerFactory.getInstance().createScheduler(schedulerName, instanceId,
+		new SimpleThreadPool(getNumProcessingThreads(), Thread.NORM_PRIORITY), store, null, null, 0,
+		DEFAULT_IDLE_WAIT_TIME, DEFAULT_DB_FAILURE_RETRY_INTERVAL, false, null, getMaxBatchSize(),
+		getBatchTimeWindow());
     }
 
     /*
@@ -86,6 +126,7 @@ public class QuartzScheduleManager extends TenantEngineLifecycleComponent implem
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	try {
+	    createScheduler(getTenantEngine());
 	    getScheduler().start();
 	    cacheSchedules();
 	    scheduleJobs();
@@ -110,14 +151,32 @@ public class QuartzScheduleManager extends TenantEngineLifecycleComponent implem
     }
 
     /**
-     * Schedule all jobs registered in the system.
+     * Schedule all jobs registered in the system. Jobs already present in a
+     * persistent job store keep their existing triggers so that fire times and
+     * misfire state carry across restarts. Jobs that were removed while the
+     * scheduler was down are unscheduled.
      * 
      * @throws SiteWhereException
      */
     protected void scheduleJobs() throws SiteWhereException {
-	ISearchResults<IScheduledJob> jobs = getScheduleManagement().listScheduledJobs(SearchCriteria.ALL);
-	for (IScheduledJob job : jobs.getResults()) {
-	    scheduleJob(job);
+	try {
+	    Set<JobKey> expected = new HashSet<JobKey>();
+	    ISearchResults<IScheduledJob> jobs = getScheduleManagement().listScheduledJobs(SearchCriteria.ALL);
+	    for (IScheduledJob job : jobs.getResults()) {
+		expected.add(new JobKey(job.getToken()));
+		if (getScheduler().checkExists(new TriggerKey(job.getToken()))) {
+		    continue;
+		}
+		scheduleJob(job);
+	    }
+	    for (JobKey existing : getScheduler().getJobKeys(GroupMatcher.jobGroupEquals(JobKey.DEFAULT_GROUP))) {
+		if (!expected.contains(existing)) {
+		    getLogger().info("Removing stale job " + existing.getName() + " from scheduler.");
+		    getScheduler().deleteJob(existing);
+		}
+	    }
+	} catch (SchedulerException e) {
+	    throw new SiteWhereException("Unable to synchronize scheduled jobs.", e);
 	}
     }
 
@@ -178,6 +237,9 @@ public class QuartzScheduleManager extends TenantEngineLifecycleComponent implem
 	Trigger trigger = QuartzBuilder.buildTrigger(job, schedule);
 	try {
 	    getScheduler().scheduleJob(detail, trigger);
+	} catch (ObjectAlreadyExistsException e) {
+	    // Another replica sharing the job store scheduled it first.
+	    getLogger().debug("Job " + job.getToken() + " was already scheduled.");
 	} catch (SchedulerException e) {
 	    throw new SiteWhereException("Unable to schedule job.", e);
 	}
@@ -221,6 +283,30 @@ public class QuartzScheduleManager extends TenantEngineLifecycleComponent implem
 	this.scheduleManagement = scheduleManagement;
     }
 
+    public IScheduleManagementMongoClient getMongoClient() {
+	return mongoClient;
+    }
+
+    public void setMongoClient(IScheduleManagementMongoClient mongoClient) {
+	this.mongoClient = mongoClient;
+    }
+
+    public int getMaxBatchSize() {
+	return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+	this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getBatchTimeWindow() {
+	return batchTimeWindow;
+    }
+
+    public void setBatchTimeWindow(long batchTimeWindow) {
+	this.batchTimeWindow = batchTimeWindow;
+    }
+
     public int getNumProcessingThreads() {
 	return numProcessingThreads;
     }
@@ -17,7 +17,11 @@ import com.sitewhere.grpc.service.ScheduleManagementGrpc;
 import com.sitewhere.microservice.groovy.GroovyConfiguration;
 import com.sitewhere.microservice.grpc.ScheduleManagementImpl;
 import com.sitewhere.microservice.multitenant.MicroserviceTenantEngine;
+import com.sitewhere.schedule.QuartzScheduleManager;
+import com.sitewhere.schedule.ScheduleManagementTriggers;
 import com.sitewhere.schedule.initializer.GroovyScheduleModelInitializer;
+import com.sitewhere.schedule.persistence.mongodb.IScheduleManagementMongoClient;
+import com.sitewhere.schedule.spi.IScheduleManager;
 import com.sitewhere.schedule.spi.microservice.IScheduleManagementMicroservice;
 import com.sitewhere.schedule.spi.microservice.IScheduleManagementTenantEngine;
 import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
@@ -44,6 +48,9 @@ public class ScheduleManagementTenantEngine extends MicroserviceTenantEngine
     /** Schedule management persistence API */
     private IScheduleManagement scheduleManagement;
 
+    /** Manages Quartz scheduler for tenant */
+    private IScheduleManager scheduleManager;
+
     /** Responds to schedule management GRPC requests */
     private ScheduleManagementGrpc.ScheduleManagementImplBase scheduleManagementImpl;
 
@@ -59,8 +66,15 @@ public class ScheduleManagementTenantEngine extends MicroserviceTenantEngine
     @Override
     public void tenantInitialize(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	// Create management interfaces.
-	this.scheduleManagement = (IScheduleManagement) getModuleContext()
+	IScheduleManagement implementation = (IScheduleManagement) getModuleContext()
 		.getBean(ScheduleManagementBeans.BEAN_SCHEDULE_MANAGEMENT);
+	IScheduleManagementMongoClient mongoClient = null;
+	if (getModuleContext().containsBean(ScheduleManagementBeans.BEAN_MONGODB_CLIENT)) {
+	    mongoClient = (IScheduleManagementMongoClient) getModuleContext()
+		    .getBean(ScheduleManagementBeans.BEAN_MONGODB_CLIENT);
+	}
+	this.scheduleManager = new QuartzScheduleManager(implementation, mongoClient);
+	this.scheduleManagement = new ScheduleManagementTriggers(implementation, getScheduleManager());
 	this.scheduleManagementImpl = new ScheduleManagementImpl((IScheduleManagementMicroservice) getMicroservice(),
 		getScheduleManagement());
 
@@ -73,6 +87,9 @@ public class ScheduleManagementTenantEngine extends MicroserviceTenantEngine
 	// Initialize schedule management persistence.
 	init.addInitializeStep(this, getScheduleManagement(), true);
 
+	// Initialize schedule manager.
+	init.addInitializeStep(this, getScheduleManager(), true);
+
 	// Execute initialization steps.
 	init.execute(monitor);
     }
@@ -92,6 +109,9 @@ public class ScheduleManagementTenantEngine extends MicroserviceTenantEngine
 	// Start schedule management persistence.
 	start.addStartStep(this, getScheduleManagement(), true);
 
+	// Start schedule manager.
+	start.addStartStep(this, getScheduleManager(), true);
+
 	// Execute startup steps.
 	start.execute(monitor);
     }
@@ -142,6 +162,9 @@ public class ScheduleManagementTenantEngine extends MicroserviceTenantEngine
 	// Create step that will stop components.
 	ICompositeLifecycleStep stop = new CompositeLifecycleStep("Stop " + getComponentName());
 
+	// Stop schedule manager.
+	stop.addStopStep(this, getScheduleManager());
+
 	// Stop schedule management persistence.
 	stop.addStopStep(this, getScheduleManagement());
 
@@ -165,6 +188,14 @@ public class ScheduleManagementTenantEngine extends MicroserviceTenantEngine
 	this.scheduleManagement = scheduleManagement;
     }
 
+    public IScheduleManager getScheduleManager() {
+	return scheduleManager;
+    }
+
+    protected void setScheduleManager(IScheduleManager scheduleManager) {
+	this.scheduleManager = scheduleManager;
+    }
+
     /*
      * @see com.sitewhere.schedule.spi.microservice.IScheduleManagementTenantEngine#
      * getScheduleManagementImpl()
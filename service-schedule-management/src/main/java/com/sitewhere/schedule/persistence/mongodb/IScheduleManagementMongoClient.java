@@ -25,6 +25,18 @@ public interface IScheduleManagementMongoClient {
     /** Default collection name for SiteWhere scheduled jobs */
     public static final String DEFAULT_SCHEDULED_JOBS_COLLECTION_NAME = "scheduledjobs";
 
+    /** Default collection name for Quartz job details */
+    public static final String DEFAULT_QUARTZ_JOBS_COLLECTION_NAME = "quartzjobs";
+
+    /** Default collection name for Quartz triggers */
+    public static final String DEFAULT_QUARTZ_TRIGGERS_COLLECTION_NAME = "quartztriggers";
+
+    /** Default collection name for Quartz calendars */
+    public static final String DEFAULT_QUARTZ_CALENDARS_COLLECTION_NAME = "quartzcalendars";
+
+    /** Default collection name for Quartz paused groups */
+    public static final String DEFAULT_QUARTZ_PAUSED_GROUPS_COLLECTION_NAME = "quartzpausedgroups";
+
     /**
      * Get collection for schedules.
      * 
@@ -40,4 +52,36 @@ public interface IScheduleManagementMongoClient {
      * @throws SiteWhereException
      */
     public MongoCollection<Document> getScheduledJobsCollection() throws SiteWhereException;
+
+    /**
+     * Get collection for Quartz job details.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    public MongoCollection<Document> getQuartzJobsCollection() throws SiteWhereException;
+
+    /**
+     * Get collection for Quartz triggers.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    public MongoCollection<Document> getQuartzTriggersCollection() throws SiteWhereException;
+
+    /**
+     * Get collection for Quartz calendars.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    public MongoCollection<Document> getQuartzCalendarsCollection() throws SiteWhereException;
+
+    /**
+     * Get collection for Quartz paused trigger and job groups.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    public MongoCollection<Document> getQuartzPausedGroupsCollection() throws SiteWhereException;
 }
\ No newline at end of file
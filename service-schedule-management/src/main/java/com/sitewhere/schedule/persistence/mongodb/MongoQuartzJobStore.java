@@ -0,0 +1,1638 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.schedule.persistence.mongodb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.quartz.Calendar;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.JobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Quartz {@link JobStore} that persists jobs, triggers and calendars in MongoDB
+ * so that schedules survive restarts and may be shared by multiple replicas of
+ * the schedule management microservice.
+ * 
+ * Job details, triggers and calendars are stored as serialized blobs alongside
+ * the fields needed for querying. Trigger acquisition is cluster-aware: each
+ * trigger is claimed with a conditional update on its state, so only one
+ * scheduler instance can acquire a given firing. Claims held by instances that
+ * stop checking in expire after a configurable timeout and are returned to the
+ * waiting pool. Triggers blocked by a running non-concurrent job stay blocked
+ * until the job completes. The instance running the job renews the block
+ * periodically, so a block held by an instance that died (possibly returning
+ * under a different instance id) expires like any other claim.
+ * 
+ * @author Derek
+ */
+public class MongoQuartzJobStore implements JobStore {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LoggerFactory.getLogger(MongoQuartzJobStore.class);
+
+    /** Default threshold (in ms) after which a trigger is considered misfired */
+    private static final long DEFAULT_MISFIRE_THRESHOLD = 60 * 1000;
+
+    /** Default time (in ms) after which a claim from another instance expires */
+    private static final long DEFAULT_LOCK_TIMEOUT = 10 * 60 * 1000;
+
+    /** Interval (in ms) between checks for expired trigger claims */
+    private static final long EXPIRED_LOCK_CHECK_INTERVAL = 15 * 1000;
+
+    /** Minimum interval (in ms) between renewals of claims held by this instance */
+    private static final long MIN_CHECK_IN_INTERVAL = 1000;
+
+    /** Trigger is waiting to be fired */
+    public static final String STATE_WAITING = "WAITING";
+
+    /** Trigger has been acquired by a scheduler instance */
+    public static final String STATE_ACQUIRED = "ACQUIRED";
+
+    /** Trigger is blocked by a non-concurrent job that is executing */
+    public static final String STATE_BLOCKED = "BLOCKED";
+
+    /** Trigger is paused */
+    public static final String STATE_PAUSED = "PAUSED";
+
+    /** Trigger is paused and its job is executing */
+    public static final String STATE_PAUSED_BLOCKED = "PAUSED_BLOCKED";
+
+    /** Trigger will not fire again */
+    public static final String STATE_COMPLETE = "COMPLETE";
+
+    /** Trigger is in error */
+    public static final String STATE_ERROR = "ERROR";
+
+    /** Property for scheduler name */
+    public static final String PROP_SCHEDULER = "scheduler";
+
+    /** Property for key name */
+    public static final String PROP_NAME = "name";
+
+    /** Property for key group */
+    public static final String PROP_GROUP = "group";
+
+    /** Property for job name referenced by trigger */
+    public static final String PROP_JOB_NAME = "jobName";
+
+    /** Property for job group referenced by trigger */
+    public static final String PROP_JOB_GROUP = "jobGroup";
+
+    /** Property for durable flag */
+    public static final String PROP_DURABLE = "durable";
+
+    /** Property for calendar name referenced by trigger */
+    public static final String PROP_CALENDAR_NAME = "calendarName";
+
+    /** Property for trigger state */
+    public static final String PROP_STATE = "state";
+
+    /** Property for next trigger fire time */
+    public static final String PROP_NEXT_FIRE_TIME = "nextFireTime";
+
+    /** Property for trigger priority */
+    public static final String PROP_PRIORITY = "priority";
+
+    /** Property for id of instance holding trigger claim */
+    public static final String PROP_INSTANCE_ID = "instanceId";
+
+    /** Property for time at which trigger claim expires */
+    public static final String PROP_LOCK_EXPIRATION = "lockExpiration";
+
+    /** Property for paused group type */
+    public static final String PROP_TYPE = "type";
+
+    /** Property for serialized data */
+    public static final String PROP_DATA = "data";
+
+    /** Paused group type for triggers */
+    private static final String GROUP_TYPE_TRIGGER = "trigger";
+
+    /** Paused group type for jobs */
+    private static final String GROUP_TYPE_JOB = "job";
+
+    /** Mongo client that provides collections */
+    private IScheduleManagementMongoClient mongoClient;
+
+    /** Loads classes for deserialized objects */
+    private ClassLoadHelper classLoadHelper;
+
+    /** Signals scheduler on trigger changes */
+    private SchedulerSignaler signaler;
+
+    /** Scheduler instance id */
+    private String instanceId;
+
+    /** Scheduler name */
+    private String instanceName;
+
+    /** Size of thread pool that executes jobs */
+    private int threadPoolSize;
+
+    /** Threshold (in ms) after which a trigger is considered misfired */
+    private long misfireThreshold = DEFAULT_MISFIRE_THRESHOLD;
+
+    /** Time (in ms) after which trigger claims expire */
+    private long lockTimeout = DEFAULT_LOCK_TIMEOUT;
+
+    /** Indicates whether store is shared by multiple scheduler instances */
+    private boolean clustered = true;
+
+    /** Last time expired claims were checked */
+    private volatile long lastExpiredLockCheck = 0;
+
+    /** Non-concurrent jobs currently executing on this instance */
+    private Set<JobKey> executingJobs = ConcurrentHashMap.newKeySet();
+
+    /** Periodically renews claims for jobs executing on this instance */
+    private ScheduledExecutorService checkInExecutor;
+
+    public MongoQuartzJobStore(IScheduleManagementMongoClient mongoClient) {
+	this.mongoClient = mongoClient;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#initialize(org.quartz.spi.ClassLoadHelper,
+     * org.quartz.spi.SchedulerSignaler)
+     */
+    @Override
+    public void initialize(ClassLoadHelper loadHelper, SchedulerSignaler signaler) throws SchedulerConfigException {
+	this.classLoadHelper = loadHelper;
+	this.signaler = signaler;
+	try {
+	    ensureIndexes();
+	} catch (SiteWhereException | MongoException e) {
+	    throw new SchedulerConfigException("Unable to create indexes for Quartz job store.", e);
+	}
+    }
+
+    /**
+     * Create indexes used for trigger acquisition and lookups.
+     * 
+     * @throws SiteWhereException
+     */
+    protected void ensureIndexes() throws SiteWhereException {
+	getJobs().createIndex(new Document(PROP_SCHEDULER, 1).append(PROP_GROUP, 1).append(PROP_NAME, 1),
+		new IndexOptions().unique(true).background(true));
+	getTriggers().createIndex(new Document(PROP_SCHEDULER, 1).append(PROP_GROUP, 1).append(PROP_NAME, 1),
+		new IndexOptions().unique(true).background(true));
+	getTriggers().createIndex(new Document(PROP_SCHEDULER, 1).append(PROP_STATE, 1).append(PROP_NEXT_FIRE_TIME, 1)
+		.append(PROP_PRIORITY, -1), new IndexOptions().background(true));
+	getTriggers().createIndex(
+		new Document(PROP_SCHEDULER, 1).append(PROP_JOB_GROUP, 1).append(PROP_JOB_NAME, 1),
+		new IndexOptions().background(true));
+	getCalendars().createIndex(new Document(PROP_SCHEDULER, 1).append(PROP_NAME, 1),
+		new IndexOptions().unique(true).background(true));
+	getPausedGroups().createIndex(new Document(PROP_SCHEDULER, 1).append(PROP_TYPE, 1).append(PROP_GROUP, 1),
+		new IndexOptions().unique(true).background(true));
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#schedulerStarted()
+     */
+    @Override
+    public void schedulerStarted() throws SchedulerException {
+	// Release claims left over from a previous run of this instance.
+	try {
+	    Bson owned = scoped(Filters.eq(PROP_INSTANCE_ID, getInstanceId()));
+	    getTriggers().updateMany(Filters.and(owned, Filters.eq(PROP_STATE, STATE_ACQUIRED)), releaseClaim());
+	    getTriggers().updateMany(Filters.and(owned, Filters.eq(PROP_STATE, STATE_BLOCKED)), releaseClaim());
+	    getTriggers().updateMany(Filters.and(owned, Filters.eq(PROP_STATE, STATE_PAUSED_BLOCKED)),
+		    Updates.combine(Updates.set(PROP_STATE, STATE_PAUSED), Updates.unset(PROP_INSTANCE_ID),
+			    Updates.unset(PROP_LOCK_EXPIRATION)));
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to recover triggers on startup.", e);
+	}
+
+	// Renew blocks held by running jobs well before they expire.
+	long interval = Math.max(MIN_CHECK_IN_INTERVAL, getLockTimeout() / 4);
+	checkInExecutor = Executors.newSingleThreadScheduledExecutor(new CheckInThreadFactory());
+	checkInExecutor.scheduleWithFixedDelay(new Runnable() {
+
+	    @Override
+	    public void run() {
+		try {
+		    checkIn();
+		} catch (Throwable t) {
+		    LOGGER.error("Unable to renew trigger claims.", t);
+		}
+	    }
+	}, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#schedulerPaused()
+     */
+    @Override
+    public void schedulerPaused() {
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#schedulerResumed()
+     */
+    @Override
+    public void schedulerResumed() {
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#shutdown()
+     */
+    @Override
+    public void shutdown() {
+	if (checkInExecutor != null) {
+	    checkInExecutor.shutdownNow();
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#supportsPersistence()
+     */
+    @Override
+    public boolean supportsPersistence() {
+	return true;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getEstimatedTimeToReleaseAndAcquireTrigger()
+     */
+    @Override
+    public long getEstimatedTimeToReleaseAndAcquireTrigger() {
+	return 50;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#isClustered()
+     */
+    @Override
+    public boolean isClustered() {
+	return clustered;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#storeJobAndTrigger(org.quartz.JobDetail,
+     * org.quartz.spi.OperableTrigger)
+     */
+    @Override
+    public void storeJobAndTrigger(JobDetail newJob, OperableTrigger newTrigger)
+	    throws ObjectAlreadyExistsException, JobPersistenceException {
+	storeJob(newJob, false);
+	storeTrigger(newTrigger, false);
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#storeJob(org.quartz.JobDetail, boolean)
+     */
+    @Override
+    public void storeJob(JobDetail newJob, boolean replaceExisting)
+	    throws ObjectAlreadyExistsException, JobPersistenceException {
+	try {
+	    Document document = new Document(PROP_SCHEDULER, getInstanceName())
+		    .append(PROP_NAME, newJob.getKey().getName()).append(PROP_GROUP, newJob.getKey().getGroup())
+		    .append(PROP_DURABLE, newJob.isDurable()).append(PROP_DATA, serialize(newJob));
+	    if (replaceExisting) {
+		getJobs().replaceOne(jobFilter(newJob.getKey()), document, new ReplaceOptions().upsert(true));
+	    } else {
+		getJobs().insertOne(document);
+	    }
+	} catch (MongoWriteException e) {
+	    if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+		throw new ObjectAlreadyExistsException(newJob);
+	    }
+	    throw new JobPersistenceException("Unable to store job.", e);
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to store job.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#storeJobsAndTriggers(java.util.Map, boolean)
+     */
+    @Override
+    public void storeJobsAndTriggers(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, boolean replace)
+	    throws ObjectAlreadyExistsException, JobPersistenceException {
+	for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : triggersAndJobs.entrySet()) {
+	    storeJob(entry.getKey(), replace);
+	    for (Trigger trigger : entry.getValue()) {
+		storeTrigger((OperableTrigger) trigger, replace);
+	    }
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#removeJob(org.quartz.JobKey)
+     */
+    @Override
+    public boolean removeJob(JobKey jobKey) throws JobPersistenceException {
+	try {
+	    getTriggers().deleteMany(triggersForJobFilter(jobKey));
+	    return getJobs().deleteOne(jobFilter(jobKey)).getDeletedCount() > 0;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to remove job.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#removeJobs(java.util.List)
+     */
+    @Override
+    public boolean removeJobs(List<JobKey> jobKeys) throws JobPersistenceException {
+	boolean allFound = true;
+	for (JobKey key : jobKeys) {
+	    allFound = removeJob(key) && allFound;
+	}
+	return allFound;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#retrieveJob(org.quartz.JobKey)
+     */
+    @Override
+    public JobDetail retrieveJob(JobKey jobKey) throws JobPersistenceException {
+	try {
+	    Document match = getJobs().find(jobFilter(jobKey)).first();
+	    return (match != null) ? (JobDetail) deserialize(match) : null;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to retrieve job.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#storeTrigger(org.quartz.spi.OperableTrigger,
+     * boolean)
+     */
+    @Override
+    public void storeTrigger(OperableTrigger newTrigger, boolean replaceExisting)
+	    throws ObjectAlreadyExistsException, JobPersistenceException {
+	JobDetail job = retrieveJob(newTrigger.getJobKey());
+	if (job == null) {
+	    throw new JobPersistenceException("The job (" + newTrigger.getJobKey()
+		    + ") referenced by the trigger does not exist.");
+	}
+	try {
+	    String state = STATE_WAITING;
+	    if (isGroupPaused(GROUP_TYPE_TRIGGER, newTrigger.getKey().getGroup())
+		    || isGroupPaused(GROUP_TYPE_JOB, newTrigger.getJobKey().getGroup())) {
+		state = STATE_PAUSED;
+	    }
+	    Document claim = null;
+	    if (job.isConcurrentExectionDisallowed()) {
+		// A new trigger for a running job shares the claim of the blocking instance.
+		claim = findBlockingTrigger(job.getKey());
+		if (claim != null) {
+		    state = STATE_PAUSED.equals(state) ? STATE_PAUSED_BLOCKED : STATE_BLOCKED;
+		}
+	    }
+	    if (replaceExisting) {
+		Document existing = getTriggers().find(triggerFilter(newTrigger.getKey())).first();
+		if ((claim == null) && STATE_WAITING.equals(state) && isClaimedFiring(existing, newTrigger)) {
+		    // Same firing is already claimed, so leave the claim in place.
+		    state = STATE_ACQUIRED;
+		    claim = existing;
+		}
+		Document document = toTriggerDocument(newTrigger, state, claim);
+		getTriggers().replaceOne(triggerFilter(newTrigger.getKey()), document,
+			new ReplaceOptions().upsert(true));
+	    } else {
+		Document document = toTriggerDocument(newTrigger, state, claim);
+		getTriggers().insertOne(document);
+	    }
+	} catch (MongoWriteException e) {
+	    if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+		throw new ObjectAlreadyExistsException(newTrigger);
+	    }
+	    throw new JobPersistenceException("Unable to store trigger.", e);
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to store trigger.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#removeTrigger(org.quartz.TriggerKey)
+     */
+    @Override
+    public boolean removeTrigger(TriggerKey triggerKey) throws JobPersistenceException {
+	try {
+	    Document match = getTriggers().findOneAndDelete(triggerFilter(triggerKey));
+	    if (match == null) {
+		return false;
+	    }
+
+	    // Remove orphaned non-durable jobs.
+	    JobKey jobKey = new JobKey(match.getString(PROP_JOB_NAME), match.getString(PROP_JOB_GROUP));
+	    if (getTriggers().countDocuments(triggersForJobFilter(jobKey)) == 0) {
+		JobDetail job = retrieveJob(jobKey);
+		if ((job != null) && (!job.isDurable())) {
+		    getJobs().deleteOne(jobFilter(jobKey));
+		    getSignaler().notifySchedulerListenersJobDeleted(jobKey);
+		}
+	    }
+	    return true;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to remove trigger.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#removeTriggers(java.util.List)
+     */
+    @Override
+    public boolean removeTriggers(List<TriggerKey> triggerKeys) throws JobPersistenceException {
+	boolean allFound = true;
+	for (TriggerKey key : triggerKeys) {
+	    allFound = removeTrigger(key) && allFound;
+	}
+	return allFound;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#replaceTrigger(org.quartz.TriggerKey,
+     * org.quartz.spi.OperableTrigger)
+     */
+    @Override
+    public boolean replaceTrigger(TriggerKey triggerKey, OperableTrigger newTrigger) throws JobPersistenceException {
+	OperableTrigger existing = retrieveTrigger(triggerKey);
+	if (existing == null) {
+	    return false;
+	}
+	if (!existing.getJobKey().equals(newTrigger.getJobKey())) {
+	    throw new JobPersistenceException("New trigger is not related to the same job as the old trigger.");
+	}
+	try {
+	    getTriggers().deleteOne(triggerFilter(triggerKey));
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to replace trigger.", e);
+	}
+	storeTrigger(newTrigger, false);
+	return true;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#retrieveTrigger(org.quartz.TriggerKey)
+     */
+    @Override
+    public OperableTrigger retrieveTrigger(TriggerKey triggerKey) throws JobPersistenceException {
+	try {
+	    Document match = getTriggers().find(triggerFilter(triggerKey)).first();
+	    return (match != null) ? (OperableTrigger) deserialize(match) : null;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to retrieve trigger.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#checkExists(org.quartz.JobKey)
+     */
+    @Override
+    public boolean checkExists(JobKey jobKey) throws JobPersistenceException {
+	try {
+	    return getJobs().countDocuments(jobFilter(jobKey)) > 0;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to check for job.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#checkExists(org.quartz.TriggerKey)
+     */
+    @Override
+    public boolean checkExists(TriggerKey triggerKey) throws JobPersistenceException {
+	try {
+	    return getTriggers().countDocuments(triggerFilter(triggerKey)) > 0;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to check for trigger.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#clearAllSchedulingData()
+     */
+    @Override
+    public void clearAllSchedulingData() throws JobPersistenceException {
+	try {
+	    getTriggers().deleteMany(scoped());
+	    getJobs().deleteMany(scoped());
+	    getCalendars().deleteMany(scoped());
+	    getPausedGroups().deleteMany(scoped());
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to clear scheduling data.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#storeCalendar(java.lang.String,
+     * org.quartz.Calendar, boolean, boolean)
+     */
+    @Override
+    public void storeCalendar(String name, Calendar calendar, boolean replaceExisting, boolean updateTriggers)
+	    throws ObjectAlreadyExistsException, JobPersistenceException {
+	try {
+	    Document document = new Document(PROP_SCHEDULER, getInstanceName()).append(PROP_NAME, name)
+		    .append(PROP_DATA, serialize(calendar));
+	    if (replaceExisting) {
+		getCalendars().replaceOne(calendarFilter(name), document, new ReplaceOptions().upsert(true));
+	    } else {
+		getCalendars().insertOne(document);
+	    }
+
+	    if (updateTriggers) {
+		for (Document match : getTriggers().find(scoped(Filters.eq(PROP_CALENDAR_NAME, name)))) {
+		    OperableTrigger trigger = (OperableTrigger) deserialize(match);
+		    trigger.updateWithNewCalendar(calendar, getMisfireThreshold());
+		    getTriggers().replaceOne(triggerFilter(trigger.getKey()),
+			    toTriggerDocument(trigger, match.getString(PROP_STATE), match));
+		}
+	    }
+	} catch (MongoWriteException e) {
+	    if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+		throw new ObjectAlreadyExistsException("Calendar with name '" + name + "' already exists.");
+	    }
+	    throw new JobPersistenceException("Unable to store calendar.", e);
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to store calendar.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#removeCalendar(java.lang.String)
+     */
+    @Override
+    public boolean removeCalendar(String calName) throws JobPersistenceException {
+	try {
+	    if (getTriggers().countDocuments(scoped(Filters.eq(PROP_CALENDAR_NAME, calName))) > 0) {
+		throw new JobPersistenceException("Calendar cannot be removed if it is referenced by a trigger.");
+	    }
+	    return getCalendars().deleteOne(calendarFilter(calName)).getDeletedCount() > 0;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to remove calendar.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#retrieveCalendar(java.lang.String)
+     */
+    @Override
+    public Calendar retrieveCalendar(String calName) throws JobPersistenceException {
+	if (calName == null) {
+	    return null;
+	}
+	try {
+	    Document match = getCalendars().find(calendarFilter(calName)).first();
+	    return (match != null) ? (Calendar) deserialize(match) : null;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to retrieve calendar.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getNumberOfJobs()
+     */
+    @Override
+    public int getNumberOfJobs() throws JobPersistenceException {
+	try {
+	    return (int) getJobs().countDocuments(scoped());
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to count jobs.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getNumberOfTriggers()
+     */
+    @Override
+    public int getNumberOfTriggers() throws JobPersistenceException {
+	try {
+	    return (int) getTriggers().countDocuments(scoped());
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to count triggers.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getNumberOfCalendars()
+     */
+    @Override
+    public int getNumberOfCalendars() throws JobPersistenceException {
+	try {
+	    return (int) getCalendars().countDocuments(scoped());
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to count calendars.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getJobKeys(org.quartz.impl.matchers.
+     * GroupMatcher)
+     */
+    @Override
+    public Set<JobKey> getJobKeys(GroupMatcher<JobKey> matcher) throws JobPersistenceException {
+	try {
+	    Set<JobKey> keys = new HashSet<>();
+	    for (Document match : getJobs().find(scoped(groupFilter(PROP_GROUP, matcher)))) {
+		keys.add(new JobKey(match.getString(PROP_NAME), match.getString(PROP_GROUP)));
+	    }
+	    return keys;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to list job keys.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getTriggerKeys(org.quartz.impl.matchers.
+     * GroupMatcher)
+     */
+    @Override
+    public Set<TriggerKey> getTriggerKeys(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException {
+	try {
+	    Set<TriggerKey> keys = new HashSet<>();
+	    for (Document match : getTriggers().find(scoped(groupFilter(PROP_GROUP, matcher)))) {
+		keys.add(new TriggerKey(match.getString(PROP_NAME), match.getString(PROP_GROUP)));
+	    }
+	    return keys;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to list trigger keys.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getJobGroupNames()
+     */
+    @Override
+    public List<String> getJobGroupNames() throws JobPersistenceException {
+	try {
+	    return getJobs().distinct(PROP_GROUP, scoped(), String.class).into(new ArrayList<String>());
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to list job groups.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getTriggerGroupNames()
+     */
+    @Override
+    public List<String> getTriggerGroupNames() throws JobPersistenceException {
+	try {
+	    return getTriggers().distinct(PROP_GROUP, scoped(), String.class).into(new ArrayList<String>());
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to list trigger groups.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getCalendarNames()
+     */
+    @Override
+    public List<String> getCalendarNames() throws JobPersistenceException {
+	try {
+	    return getCalendars().distinct(PROP_NAME, scoped(), String.class).into(new ArrayList<String>());
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to list calendars.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getTriggersForJob(org.quartz.JobKey)
+     */
+    @Override
+    public List<OperableTrigger> getTriggersForJob(JobKey jobKey) throws JobPersistenceException {
+	try {
+	    List<OperableTrigger> triggers = new ArrayList<>();
+	    for (Document match : getTriggers().find(triggersForJobFilter(jobKey))) {
+		triggers.add((OperableTrigger) deserialize(match));
+	    }
+	    return triggers;
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to list triggers for job.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getTriggerState(org.quartz.TriggerKey)
+     */
+    @Override
+    public TriggerState getTriggerState(TriggerKey triggerKey) throws JobPersistenceException {
+	try {
+	    Document match = getTriggers().find(triggerFilter(triggerKey)).first();
+	    if (match == null) {
+		return TriggerState.NONE;
+	    }
+	    switch (match.getString(PROP_STATE)) {
+	    case STATE_COMPLETE:
+		return TriggerState.COMPLETE;
+	    case STATE_PAUSED:
+	    case STATE_PAUSED_BLOCKED:
+		return TriggerState.PAUSED;
+	    case STATE_BLOCKED:
+		return TriggerState.BLOCKED;
+	    case STATE_ERROR:
+		return TriggerState.ERROR;
+	    default:
+		return TriggerState.NORMAL;
+	    }
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to get trigger state.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#pauseTrigger(org.quartz.TriggerKey)
+     */
+    @Override
+    public void pauseTrigger(TriggerKey triggerKey) throws JobPersistenceException {
+	try {
+	    Bson filter = triggerFilter(triggerKey);
+	    getTriggers().updateOne(Filters.and(filter, Filters.in(PROP_STATE, STATE_WAITING, STATE_ACQUIRED)),
+		    Updates.combine(Updates.set(PROP_STATE, STATE_PAUSED), Updates.unset(PROP_INSTANCE_ID),
+			    Updates.unset(PROP_LOCK_EXPIRATION)));
+	    getTriggers().updateOne(Filters.and(filter, Filters.eq(PROP_STATE, STATE_BLOCKED)),
+		    Updates.set(PROP_STATE, STATE_PAUSED_BLOCKED));
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to pause trigger.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#pauseTriggers(org.quartz.impl.matchers.
+     * GroupMatcher)
+     */
+    @Override
+    public Collection<String> pauseTriggers(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException {
+	Set<String> groups = new HashSet<>();
+	if (matcher.getCompareWithOperator() == GroupMatcher.StringOperatorName.EQUALS) {
+	    addPausedGroup(GROUP_TYPE_TRIGGER, matcher.getCompareToValue());
+	    groups.add(matcher.getCompareToValue());
+	}
+	for (TriggerKey key : getTriggerKeys(matcher)) {
+	    pauseTrigger(key);
+	    groups.add(key.getGroup());
+	}
+	return groups;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#pauseJob(org.quartz.JobKey)
+     */
+    @Override
+    public void pauseJob(JobKey jobKey) throws JobPersistenceException {
+	for (OperableTrigger trigger : getTriggersForJob(jobKey)) {
+	    pauseTrigger(trigger.getKey());
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#pauseJobs(org.quartz.impl.matchers.
+     * GroupMatcher)
+     */
+    @Override
+    public Collection<String> pauseJobs(GroupMatcher<JobKey> groupMatcher) throws JobPersistenceException {
+	Set<String> groups = new HashSet<>();
+	if (groupMatcher.getCompareWithOperator() == GroupMatcher.StringOperatorName.EQUALS) {
+	    addPausedGroup(GROUP_TYPE_JOB, groupMatcher.getCompareToValue());
+	    groups.add(groupMatcher.getCompareToValue());
+	}
+	for (JobKey key : getJobKeys(groupMatcher)) {
+	    pauseJob(key);
+	    groups.add(key.getGroup());
+	}
+	return groups;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#resumeTrigger(org.quartz.TriggerKey)
+     */
+    @Override
+    public void resumeTrigger(TriggerKey triggerKey) throws JobPersistenceException {
+	try {
+	    Document match = getTriggers().find(triggerFilter(triggerKey)).first();
+	    if (match == null) {
+		return;
+	    }
+	    String state = match.getString(PROP_STATE);
+	    if (STATE_PAUSED_BLOCKED.equals(state)) {
+		getTriggers().updateOne(
+			Filters.and(triggerFilter(triggerKey), Filters.eq(PROP_STATE, STATE_PAUSED_BLOCKED)),
+			Updates.set(PROP_STATE, STATE_BLOCKED));
+	    } else if (STATE_PAUSED.equals(state)) {
+		OperableTrigger trigger = (OperableTrigger) deserialize(match);
+		String updated = applyMisfire(trigger) && (trigger.getNextFireTime() == null) ? STATE_COMPLETE
+			: STATE_WAITING;
+		getTriggers().replaceOne(Filters.and(triggerFilter(triggerKey), Filters.eq(PROP_STATE, STATE_PAUSED)),
+			toTriggerDocument(trigger, updated));
+		getSignaler().signalSchedulingChange(0L);
+	    }
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to resume trigger.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#resumeTriggers(org.quartz.impl.matchers.
+     * GroupMatcher)
+     */
+    @Override
+    public Collection<String> resumeTriggers(GroupMatcher<TriggerKey> matcher) throws JobPersistenceException {
+	Set<String> groups = new HashSet<>();
+	removePausedGroups(GROUP_TYPE_TRIGGER, matcher);
+	for (TriggerKey key : getTriggerKeys(matcher)) {
+	    resumeTrigger(key);
+	    groups.add(key.getGroup());
+	}
+	return groups;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#getPausedTriggerGroups()
+     */
+    @Override
+    public Set<String> getPausedTriggerGroups() throws JobPersistenceException {
+	try {
+	    Bson filter = scoped(Filters.eq(PROP_TYPE, GROUP_TYPE_TRIGGER));
+	    return getPausedGroups().distinct(PROP_GROUP, filter, String.class).into(new HashSet<String>());
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to list paused trigger groups.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#resumeJob(org.quartz.JobKey)
+     */
+    @Override
+    public void resumeJob(JobKey jobKey) throws JobPersistenceException {
+	for (OperableTrigger trigger : getTriggersForJob(jobKey)) {
+	    resumeTrigger(trigger.getKey());
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#resumeJobs(org.quartz.impl.matchers.
+     * GroupMatcher)
+     */
+    @Override
+    public Collection<String> resumeJobs(GroupMatcher<JobKey> matcher) throws JobPersistenceException {
+	Set<String> groups = new HashSet<>();
+	removePausedGroups(GROUP_TYPE_JOB, matcher);
+	for (JobKey key : getJobKeys(matcher)) {
+	    resumeJob(key);
+	    groups.add(key.getGroup());
+	}
+	return groups;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#pauseAll()
+     */
+    @Override
+    public void pauseAll() throws JobPersistenceException {
+	for (String group : getTriggerGroupNames()) {
+	    pauseTriggers(GroupMatcher.triggerGroupEquals(group));
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#resumeAll()
+     */
+    @Override
+    public void resumeAll() throws JobPersistenceException {
+	try {
+	    getPausedGroups().deleteMany(scoped(Filters.eq(PROP_TYPE, GROUP_TYPE_JOB)));
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to clear paused job groups.", e);
+	}
+	for (String group : getTriggerGroupNames()) {
+	    resumeTriggers(GroupMatcher.triggerGroupEquals(group));
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#acquireNextTriggers(long, int, long)
+     */
+    @Override
+    public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow)
+	    throws JobPersistenceException {
+	List<OperableTrigger> acquired = new ArrayList<>();
+	try {
+	    releaseExpiredClaims();
+
+	    Set<JobKey> nonConcurrentJobs = new HashSet<>();
+	    Map<JobKey, JobDetail> jobs = new HashMap<>();
+	    long batchEnd = noLaterThan + timeWindow;
+
+	    // Fetch a batch of candidates in a single query. Extra candidates cover
+	    // triggers claimed concurrently by other instances.
+	    Bson candidates = scoped(Filters.eq(PROP_STATE, STATE_WAITING), Filters.lte(PROP_NEXT_FIRE_TIME, batchEnd));
+	    FindIterable<Document> matches = getTriggers().find(candidates)
+		    .sort(Sorts.orderBy(Sorts.ascending(PROP_NEXT_FIRE_TIME), Sorts.descending(PROP_PRIORITY)))
+		    .limit(Math.max(1, maxCount) * 2);
+	    for (Document match : matches) {
+		if (acquired.size() >= maxCount) {
+		    break;
+		}
+		OperableTrigger trigger = (OperableTrigger) deserialize(match);
+		if (trigger.getNextFireTime() == null) {
+		    continue;
+		}
+
+		// Handle misfires before attempting to claim trigger.
+		Date originalFireTime = trigger.getNextFireTime();
+		if (applyMisfire(trigger)) {
+		    String state = (trigger.getNextFireTime() == null) ? STATE_COMPLETE : STATE_WAITING;
+		    UpdateResult result = getTriggers().replaceOne(
+			    Filters.and(triggerFilter(trigger.getKey()), Filters.eq(PROP_STATE, STATE_WAITING),
+				    Filters.eq(PROP_NEXT_FIRE_TIME, originalFireTime.getTime())),
+			    toTriggerDocument(trigger, state));
+		    if ((result.getModifiedCount() == 0) || (trigger.getNextFireTime() == null)
+			    || (trigger.getNextFireTime().getTime() > batchEnd)) {
+			continue;
+		    }
+		    originalFireTime = trigger.getNextFireTime();
+		}
+
+		// Only allow one firing per batch for non-concurrent jobs.
+		JobKey jobKey = trigger.getJobKey();
+		JobDetail job = jobs.get(jobKey);
+		if (job == null) {
+		    job = retrieveJob(jobKey);
+		    if (job == null) {
+			continue;
+		    }
+		    jobs.put(jobKey, job);
+		}
+		if (job.isConcurrentExectionDisallowed()) {
+		    if (nonConcurrentJobs.contains(jobKey)) {
+			continue;
+		    }
+		    nonConcurrentJobs.add(jobKey);
+		}
+
+		// Claim the trigger. Fails if another instance claimed it first.
+		String fireInstanceId = getInstanceId() + "-" + System.nanoTime();
+		UpdateResult claim = getTriggers().updateOne(
+			Filters.and(triggerFilter(trigger.getKey()), Filters.eq(PROP_STATE, STATE_WAITING),
+				Filters.eq(PROP_NEXT_FIRE_TIME, originalFireTime.getTime())),
+			Updates.combine(Updates.set(PROP_STATE, STATE_ACQUIRED),
+				Updates.set(PROP_INSTANCE_ID, getInstanceId()),
+				Updates.set(PROP_LOCK_EXPIRATION, System.currentTimeMillis() + getLockTimeout())));
+		if (claim.getModifiedCount() == 1) {
+		    trigger.setFireInstanceId(fireInstanceId);
+		    acquired.add(trigger);
+		} else if (job.isConcurrentExectionDisallowed()) {
+		    nonConcurrentJobs.remove(jobKey);
+		}
+	    }
+	    return acquired;
+	} catch (SiteWhereException | MongoException | JobPersistenceException e) {
+	    // Release anything claimed before the failure.
+	    for (OperableTrigger trigger : acquired) {
+		releaseAcquiredTrigger(trigger);
+	    }
+	    throw new JobPersistenceException("Unable to acquire triggers.", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#releaseAcquiredTrigger(org.quartz.spi.
+     * OperableTrigger)
+     */
+    @Override
+    public void releaseAcquiredTrigger(OperableTrigger trigger) {
+	try {
+	    getTriggers().updateOne(Filters.and(triggerFilter(trigger.getKey()), Filters.eq(PROP_STATE, STATE_ACQUIRED),
+		    Filters.eq(PROP_INSTANCE_ID, getInstanceId())), releaseClaim());
+	} catch (SiteWhereException | MongoException e) {
+	    LOGGER.error("Unable to release acquired trigger " + trigger.getKey() + ".", e);
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#triggersFired(java.util.List)
+     */
+    @Override
+    public List<TriggerFiredResult> triggersFired(List<OperableTrigger> triggers) throws JobPersistenceException {
+	List<TriggerFiredResult> results = new ArrayList<>();
+	for (OperableTrigger trigger : triggers) {
+	    try {
+		results.add(new TriggerFiredResult(triggerFired(trigger)));
+	    } catch (SiteWhereException | MongoException | JobPersistenceException e) {
+		LOGGER.error("Unable to fire trigger " + trigger.getKey() + ".", e);
+		results.add(new TriggerFiredResult(e));
+	    }
+	}
+	return results;
+    }
+
+    /**
+     * Fire a single acquired trigger. Returns null if the claim on the trigger was
+     * lost or the trigger no longer exists.
+     * 
+     * @param acquired
+     * @return
+     * @throws SiteWhereException
+     * @throws JobPersistenceException
+     */
+    protected TriggerFiredBundle triggerFired(OperableTrigger acquired)
+	    throws SiteWhereException, JobPersistenceException {
+	Bson claimed = Filters.and(triggerFilter(acquired.getKey()), Filters.eq(PROP_STATE, STATE_ACQUIRED),
+		Filters.eq(PROP_INSTANCE_ID, getInstanceId()));
+	Document match = getTriggers().find(claimed).first();
+	if (match == null) {
+	    return null;
+	}
+	OperableTrigger trigger = (OperableTrigger) deserialize(match);
+	Calendar calendar = null;
+	if (trigger.getCalendarName() != null) {
+	    calendar = retrieveCalendar(trigger.getCalendarName());
+	    if (calendar == null) {
+		return null;
+	    }
+	}
+	JobDetail job = retrieveJob(trigger.getJobKey());
+	if (job == null) {
+	    return null;
+	}
+
+	Date previousFireTime = trigger.getPreviousFireTime();
+	trigger.setFireInstanceId(acquired.getFireInstanceId());
+	trigger.triggered(calendar);
+
+	// Non-concurrent jobs block other triggers until execution completes.
+	String state = (trigger.getNextFireTime() == null) ? STATE_COMPLETE : STATE_WAITING;
+	if (job.isConcurrentExectionDisallowed()) {
+	    state = STATE_BLOCKED;
+	    Bson others = Filters.and(triggersForJobFilter(job.getKey()),
+		    Filters.ne(PROP_NAME, trigger.getKey().getName()));
+	    Bson lock = Updates.combine(Updates.set(PROP_INSTANCE_ID, getInstanceId()),
+		    Updates.set(PROP_LOCK_EXPIRATION, System.currentTimeMillis() + getLockTimeout()));
+	    getTriggers().updateMany(Filters.and(others, Filters.in(PROP_STATE, STATE_WAITING, STATE_ACQUIRED)),
+		    Updates.combine(Updates.set(PROP_STATE, STATE_BLOCKED), lock));
+	    getTriggers().updateMany(Filters.and(others, Filters.eq(PROP_STATE, STATE_PAUSED)),
+		    Updates.combine(Updates.set(PROP_STATE, STATE_PAUSED_BLOCKED), lock));
+	}
+
+	Document updated = toTriggerDocument(trigger, state);
+	if (STATE_BLOCKED.equals(state)) {
+	    updated.append(PROP_INSTANCE_ID, getInstanceId()).append(PROP_LOCK_EXPIRATION,
+		    System.currentTimeMillis() + getLockTimeout());
+	}
+	if (getTriggers().replaceOne(claimed, updated).getModifiedCount() == 0) {
+	    return null;
+	}
+	if (job.isConcurrentExectionDisallowed()) {
+	    executingJobs.add(job.getKey());
+	}
+	return new TriggerFiredBundle(job, trigger, calendar, false, new Date(), trigger.getPreviousFireTime(),
+		previousFireTime, trigger.getNextFireTime());
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#triggeredJobComplete(org.quartz.spi.
+     * OperableTrigger, org.quartz.JobDetail,
+     * org.quartz.Trigger.CompletedExecutionInstruction)
+     */
+    @Override
+    public void triggeredJobComplete(OperableTrigger trigger, JobDetail jobDetail,
+	    CompletedExecutionInstruction triggerInstCode) {
+	try {
+	    if (jobDetail.isPersistJobDataAfterExecution() && checkExists(jobDetail.getKey())) {
+		getJobs().updateOne(jobFilter(jobDetail.getKey()), Updates.set(PROP_DATA, serialize(jobDetail)));
+	    }
+
+	    // Unblock triggers held by non-concurrent job.
+	    if (jobDetail.isConcurrentExectionDisallowed()) {
+		executingJobs.remove(jobDetail.getKey());
+		Bson forJob = triggersForJobFilter(jobDetail.getKey());
+		getTriggers().updateMany(Filters.and(forJob, Filters.eq(PROP_STATE, STATE_BLOCKED)), releaseClaim());
+		getTriggers().updateMany(Filters.and(forJob, Filters.eq(PROP_STATE, STATE_PAUSED_BLOCKED)),
+			Updates.combine(Updates.set(PROP_STATE, STATE_PAUSED), Updates.unset(PROP_INSTANCE_ID),
+				Updates.unset(PROP_LOCK_EXPIRATION)));
+		getSignaler().signalSchedulingChange(0L);
+	    }
+
+	    switch (triggerInstCode) {
+	    case DELETE_TRIGGER: {
+		if (trigger.getNextFireTime() == null) {
+		    // Job may have rescheduled the trigger during execution.
+		    OperableTrigger stored = retrieveTrigger(trigger.getKey());
+		    if ((stored != null) && (stored.getNextFireTime() == null)) {
+			removeTrigger(trigger.getKey());
+		    }
+		} else {
+		    removeTrigger(trigger.getKey());
+		    getSignaler().signalSchedulingChange(0L);
+		}
+		break;
+	    }
+	    case SET_TRIGGER_COMPLETE: {
+		setTriggerState(triggerFilter(trigger.getKey()), STATE_COMPLETE);
+		getSignaler().signalSchedulingChange(0L);
+		break;
+	    }
+	    case SET_TRIGGER_ERROR: {
+		setTriggerState(triggerFilter(trigger.getKey()), STATE_ERROR);
+		getSignaler().signalSchedulingChange(0L);
+		break;
+	    }
+	    case SET_ALL_JOB_TRIGGERS_ERROR: {
+		setTriggerState(triggersForJobFilter(jobDetail.getKey()), STATE_ERROR);
+		getSignaler().signalSchedulingChange(0L);
+		break;
+	    }
+	    case SET_ALL_JOB_TRIGGERS_COMPLETE: {
+		setTriggerState(triggersForJobFilter(jobDetail.getKey()), STATE_COMPLETE);
+		getSignaler().signalSchedulingChange(0L);
+		break;
+	    }
+	    default:
+		break;
+	    }
+	} catch (SiteWhereException | MongoException | JobPersistenceException e) {
+	    LOGGER.error("Unable to complete trigger " + trigger.getKey() + ".", e);
+	}
+    }
+
+    /**
+     * Apply misfire handling to a trigger if its next fire time is older than the
+     * misfire threshold.
+     * 
+     * @param trigger
+     * @return
+     * @throws JobPersistenceException
+     */
+    protected boolean applyMisfire(OperableTrigger trigger) throws JobPersistenceException {
+	long misfireTime = System.currentTimeMillis();
+	if (getMisfireThreshold() > 0) {
+	    misfireTime -= getMisfireThreshold();
+	}
+	Date nextFireTime = trigger.getNextFireTime();
+	if ((nextFireTime == null) || (nextFireTime.getTime() > misfireTime)
+		|| (trigger.getMisfireInstruction() == Trigger.MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY)) {
+	    return false;
+	}
+
+	Calendar calendar = retrieveCalendar(trigger.getCalendarName());
+	getSignaler().notifyTriggerListenersMisfired((OperableTrigger) trigger.clone());
+	trigger.updateAfterMisfire(calendar);
+	if (trigger.getNextFireTime() == null) {
+	    getSignaler().notifySchedulerListenersFinalized(trigger);
+	} else if (nextFireTime.equals(trigger.getNextFireTime())) {
+	    return false;
+	}
+	return true;
+    }
+
+    /**
+     * Return claims that have expired (e.g. held by an instance that crashed) to
+     * the pool of waiting triggers. Blocks held by running jobs are renewed by
+     * {@link #checkIn()}, so an expired block means the instance running the job
+     * is gone and its triggers are unblocked as well.
+     * 
+     * @throws SiteWhereException
+     */
+    protected void releaseExpiredClaims() throws SiteWhereException {
+	long now = System.currentTimeMillis();
+	if ((now - lastExpiredLockCheck) < EXPIRED_LOCK_CHECK_INTERVAL) {
+	    return;
+	}
+	lastExpiredLockCheck = now;
+	Bson expired = Filters.lt(PROP_LOCK_EXPIRATION, now);
+	long released = getTriggers()
+		.updateMany(scoped(expired, Filters.in(PROP_STATE, STATE_ACQUIRED, STATE_BLOCKED)), releaseClaim())
+		.getModifiedCount();
+	released += getTriggers().updateMany(scoped(expired, Filters.eq(PROP_STATE, STATE_PAUSED_BLOCKED)),
+		Updates.combine(Updates.set(PROP_STATE, STATE_PAUSED), Updates.unset(PROP_INSTANCE_ID),
+			Updates.unset(PROP_LOCK_EXPIRATION)))
+		.getModifiedCount();
+	if (released > 0) {
+	    LOGGER.warn("Released " + released + " expired trigger claims.");
+	}
+    }
+
+    /**
+     * Renew the lock expiration on triggers blocked by non-concurrent jobs that
+     * are executing on this instance.
+     * 
+     * @throws SiteWhereException
+     */
+    protected void checkIn() throws SiteWhereException {
+	long expiration = System.currentTimeMillis() + getLockTimeout();
+	for (JobKey jobKey : executingJobs) {
+	    getTriggers().updateMany(
+		    Filters.and(triggersForJobFilter(jobKey), Filters.eq(PROP_INSTANCE_ID, getInstanceId()),
+			    Filters.in(PROP_STATE, STATE_BLOCKED, STATE_PAUSED_BLOCKED)),
+		    Updates.set(PROP_LOCK_EXPIRATION, expiration));
+	}
+    }
+
+    /**
+     * Update that returns a trigger to the waiting state.
+     * 
+     * @return
+     */
+    protected Bson releaseClaim() {
+	return Updates.combine(Updates.set(PROP_STATE, STATE_WAITING), Updates.unset(PROP_INSTANCE_ID),
+		Updates.unset(PROP_LOCK_EXPIRATION));
+    }
+
+    /**
+     * Set state for all triggers matching a filter.
+     * 
+     * @param filter
+     * @param state
+     * @throws SiteWhereException
+     */
+    protected void setTriggerState(Bson filter, String state) throws SiteWhereException {
+	getTriggers().updateMany(filter, Updates.combine(Updates.set(PROP_STATE, state),
+		Updates.unset(PROP_INSTANCE_ID), Updates.unset(PROP_LOCK_EXPIRATION)));
+    }
+
+    /**
+     * Find a trigger for a job that is blocked by a running execution. Its claim
+     * fields identify the instance running the job.
+     * 
+     * @param jobKey
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Document findBlockingTrigger(JobKey jobKey) throws SiteWhereException {
+	return getTriggers().find(Filters.and(triggersForJobFilter(jobKey),
+		Filters.in(PROP_STATE, STATE_BLOCKED, STATE_PAUSED_BLOCKED))).first();
+    }
+
+    /**
+     * Indicates whether an existing trigger document holds an acquired claim for
+     * the same firing as a trigger being stored.
+     * 
+     * @param existing
+     * @param trigger
+     * @return
+     */
+    protected boolean isClaimedFiring(Document existing, OperableTrigger trigger) {
+	if ((existing == null) || (trigger.getNextFireTime() == null)
+		|| !STATE_ACQUIRED.equals(existing.getString(PROP_STATE))) {
+	    return false;
+	}
+	return Long.valueOf(trigger.getNextFireTime().getTime()).equals(existing.get(PROP_NEXT_FIRE_TIME));
+    }
+
+    /**
+     * Indicates whether a group has been paused.
+     * 
+     * @param type
+     * @param group
+     * @return
+     * @throws SiteWhereException
+     */
+    protected boolean isGroupPaused(String type, String group) throws SiteWhereException {
+	return getPausedGroups()
+		.countDocuments(scoped(Filters.eq(PROP_TYPE, type), Filters.eq(PROP_GROUP, group))) > 0;
+    }
+
+    /**
+     * Record a paused group.
+     * 
+     * @param type
+     * @param group
+     * @throws JobPersistenceException
+     */
+    protected void addPausedGroup(String type, String group) throws JobPersistenceException {
+	try {
+	    Document document = new Document(PROP_SCHEDULER, getInstanceName()).append(PROP_TYPE, type)
+		    .append(PROP_GROUP, group);
+	    getPausedGroups().replaceOne(scoped(Filters.eq(PROP_TYPE, type), Filters.eq(PROP_GROUP, group)), document,
+		    new ReplaceOptions().upsert(true));
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to pause group.", e);
+	}
+    }
+
+    /**
+     * Remove paused group records that match.
+     * 
+     * @param type
+     * @param matcher
+     * @throws JobPersistenceException
+     */
+    protected void removePausedGroups(String type, GroupMatcher<?> matcher) throws JobPersistenceException {
+	try {
+	    getPausedGroups().deleteMany(scoped(Filters.eq(PROP_TYPE, type), groupFilter(PROP_GROUP, matcher)));
+	} catch (SiteWhereException | MongoException e) {
+	    throw new JobPersistenceException("Unable to resume group.", e);
+	}
+    }
+
+    /**
+     * Build document that stores a trigger.
+     * 
+     * @param trigger
+     * @param state
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Document toTriggerDocument(OperableTrigger trigger, String state) throws SiteWhereException {
+	return toTriggerDocument(trigger, state, null);
+    }
+
+    /**
+     * Build document that stores a trigger, keeping claim information from an
+     * existing document if provided.
+     * 
+     * @param trigger
+     * @param state
+     * @param existing
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Document toTriggerDocument(OperableTrigger trigger, String state, Document existing)
+	    throws SiteWhereException {
+	Document document = new Document(PROP_SCHEDULER, getInstanceName())
+		.append(PROP_NAME, trigger.getKey().getName()).append(PROP_GROUP, trigger.getKey().getGroup())
+		.append(PROP_JOB_NAME, trigger.getJobKey().getName())
+		.append(PROP_JOB_GROUP, trigger.getJobKey().getGroup())
+		.append(PROP_CALENDAR_NAME, trigger.getCalendarName()).append(PROP_STATE, state)
+		.append(PROP_NEXT_FIRE_TIME,
+			(trigger.getNextFireTime() != null) ? trigger.getNextFireTime().getTime() : null)
+		.append(PROP_PRIORITY, trigger.getPriority()).append(PROP_DATA, serialize(trigger));
+	if ((existing != null) && (existing.get(PROP_INSTANCE_ID) != null)) {
+	    document.append(PROP_INSTANCE_ID, existing.get(PROP_INSTANCE_ID)).append(PROP_LOCK_EXPIRATION,
+		    existing.get(PROP_LOCK_EXPIRATION));
+	}
+	return document;
+    }
+
+    /**
+     * Serialize an object into binary form for storage.
+     * 
+     * @param object
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Binary serialize(Object object) throws SiteWhereException {
+	try {
+	    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	    ObjectOutputStream output = new ObjectOutputStream(bytes);
+	    output.writeObject(object);
+	    output.close();
+	    return new Binary(bytes.toByteArray());
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to serialize Quartz data.", e);
+	}
+    }
+
+    /**
+     * Deserialize an object stored in the data field of a document.
+     * 
+     * @param document
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Object deserialize(Document document) throws SiteWhereException {
+	Binary data = document.get(PROP_DATA, Binary.class);
+	try (ObjectInputStream input = new ClassLoaderObjectInputStream(new ByteArrayInputStream(data.getData()),
+		getClassLoadHelper())) {
+	    return input.readObject();
+	} catch (IOException | ClassNotFoundException e) {
+	    throw new SiteWhereException("Unable to deserialize Quartz data.", e);
+	}
+    }
+
+    /**
+     * Build filter that matches a group based on a Quartz {@link GroupMatcher}.
+     * 
+     * @param field
+     * @param matcher
+     * @return
+     */
+    protected Bson groupFilter(String field, GroupMatcher<?> matcher) {
+	String value = matcher.getCompareToValue();
+	switch (matcher.getCompareWithOperator()) {
+	case EQUALS:
+	    return Filters.eq(field, value);
+	case STARTS_WITH:
+	    return Filters.regex(field, "^" + Pattern.quote(value));
+	case ENDS_WITH:
+	    return Filters.regex(field, Pattern.quote(value) + "$");
+	case CONTAINS:
+	    return Filters.regex(field, Pattern.quote(value));
+	default:
+	    return Filters.exists(field);
+	}
+    }
+
+    /**
+     * Limit a query to documents for this scheduler.
+     * 
+     * @param filters
+     * @return
+     */
+    protected Bson scoped(Bson... filters) {
+	List<Bson> all = new ArrayList<>();
+	all.add(Filters.eq(PROP_SCHEDULER, getInstanceName()));
+	for (Bson filter : filters) {
+	    all.add(filter);
+	}
+	return Filters.and(all);
+    }
+
+    protected Bson jobFilter(JobKey key) {
+	return scoped(Filters.eq(PROP_GROUP, key.getGroup()), Filters.eq(PROP_NAME, key.getName()));
+    }
+
+    protected Bson triggerFilter(TriggerKey key) {
+	return scoped(Filters.eq(PROP_GROUP, key.getGroup()), Filters.eq(PROP_NAME, key.getName()));
+    }
+
+    protected Bson triggersForJobFilter(JobKey key) {
+	return scoped(Filters.eq(PROP_JOB_GROUP, key.getGroup()), Filters.eq(PROP_JOB_NAME, key.getName()));
+    }
+
+    protected Bson calendarFilter(String name) {
+	return scoped(Filters.eq(PROP_NAME, name));
+    }
+
+    protected MongoCollection<Document> getJobs() throws SiteWhereException {
+	return getMongoClient().getQuartzJobsCollection();
+    }
+
+    protected MongoCollection<Document> getTriggers() throws SiteWhereException {
+	return getMongoClient().getQuartzTriggersCollection();
+    }
+
+    protected MongoCollection<Document> getCalendars() throws SiteWhereException {
+	return getMongoClient().getQuartzCalendarsCollection();
+    }
+
+    protected MongoCollection<Document> getPausedGroups() throws SiteWhereException {
+	return getMongoClient().getQuartzPausedGroupsCollection();
+    }
+
+    /**
+     * Object input stream that resolves classes using the Quartz class loader.
+     */
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+	/** Class load helper */
+	private ClassLoadHelper helper;
+
+	public ClassLoaderObjectInputStream(InputStream input, ClassLoadHelper helper) throws IOException {
+	    super(input);
+	    this.helper = helper;
+	}
+
+	/*
+	 * @see java.io.ObjectInputStream#resolveClass(java.io.ObjectStreamClass)
+	 */
+	@Override
+	protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+	    if (helper != null) {
+		try {
+		    return helper.loadClass(desc.getName());
+		} catch (ClassNotFoundException e) {
+		    // Fall back to default resolution (e.g. for primitive types).
+		}
+	    }
+	    return super.resolveClass(desc);
+	}
+    }
+
+    /** Used for naming claim check-in threads */
+    private class CheckInThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, "Quartz Check-In " + counter.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#setInstanceId(java.lang.String)
+     */
+    @Override
+    public void setInstanceId(String schedInstId) {
+	this.instanceId = schedInstId;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#setInstanceName(java.lang.String)
+     */
+    @Override
+    public void setInstanceName(String schedName) {
+	this.instanceName = schedName;
+    }
+
+    /*
+     * @see org.quartz.spi.JobStore#setThreadPoolSize(int)
+     */
+    @Override
+    public void setThreadPoolSize(int poolSize) {
+	this.threadPoolSize = poolSize;
+    }
+
+    public String getInstanceId() {
+	return instanceId;
+    }
+
+    public String getInstanceName() {
+	return instanceName;
+    }
+
+    public int getThreadPoolSize() {
+	return threadPoolSize;
+    }
+
+    public IScheduleManagementMongoClient getMongoClient() {
+	return mongoClient;
+    }
+
+    public void setMongoClient(IScheduleManagementMongoClient mongoClient) {
+	this.mongoClient = mongoClient;
+    }
+
+    public ClassLoadHelper getClassLoadHelper() {
+	return classLoadHelper;
+    }
+
+    public SchedulerSignaler getSignaler() {
+	return signaler;
+    }
+
+    public long getMisfireThreshold() {
+	return misfireThreshold;
+    }
+
+    public void setMisfireThreshold(long misfireThreshold) {
+	this.misfireThreshold = misfireThreshold;
+    }
+
+    public long getLockTimeout() {
+	return lockTimeout;
+    }
+
+    public void setLockTimeout(long lockTimeout) {
+	this.lockTimeout = lockTimeout;
+    }
+
+    public void setClustered(boolean clustered) {
+	this.clustered = clustered;
+    }
+}
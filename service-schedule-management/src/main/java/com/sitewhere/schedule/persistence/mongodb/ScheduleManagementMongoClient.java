@@ -27,6 +27,21 @@ public class ScheduleManagementMongoClient extends MongoDbClient implements ISch
     /** Injected name used for scheduled jobs collection */
     private String scheduledJobsCollectionName = IScheduleManagementMongoClient.DEFAULT_SCHEDULED_JOBS_COLLECTION_NAME;
 
+    /** Injected name used for Quartz jobs collection */
+    private String quartzJobsCollectionName = IScheduleManagementMongoClient.DEFAULT_QUARTZ_JOBS_COLLECTION_NAME;
+
+    /** Injected name used for Quartz triggers collection */
+    private String quartzTriggersCollectionName =
+	    IScheduleManagementMongoClient.DEFAULT_QUARTZ_TRIGGERS_COLLECTION_NAME;
+
+    /** Injected name used for Quartz calendars collection */
+    private String quartzCalendarsCollectionName =
+	    IScheduleManagementMongoClient.DEFAULT_QUARTZ_CALENDARS_COLLECTION_NAME;
+
+    /** Injected name used for Quartz paused groups collection */
+    private String quartzPausedGroupsCollectionName =
+	    IScheduleManagementMongoClient.DEFAULT_QUARTZ_PAUSED_GROUPS_COLLECTION_NAME;
+
     public ScheduleManagementMongoClient(MongoConfiguration configuration) {
 	super(configuration);
     }
@@ -51,6 +66,46 @@ public class ScheduleManagementMongoClient extends MongoDbClient implements ISch
 	return getDatabase().getCollection(getScheduledJobsCollectionName());
     }
 
+    /*
+     * @see
+     * com.sitewhere.schedule.persistence.mongodb.IScheduleManagementMongoClient#
+     * getQuartzJobsCollection()
+     */
+    @Override
+    public MongoCollection<Document> getQuartzJobsCollection() throws SiteWhereException {
+	return getDatabase().getCollection(getQuartzJobsCollectionName());
+    }
+
+    /*
+     * @see
+     * com.sitewhere.schedule.persistence.mongodb.IScheduleManagementMongoClient#
+     * getQuartzTriggersCollection()
+     */
+    @Override
+    public MongoCollection<Document> getQuartzTriggersCollection() throws SiteWhereException {
+	return getDatabase().getCollection(getQuartzTriggersCollectionName());
+    }
+
+    /*
+     * @see
+     * com.sitewhere.schedule.persistence.mongodb.IScheduleManagementMongoClient#
+     * getQuartzCalendarsCollection()
+     */
+    @Override
+    public MongoCollection<Document> getQuartzCalendarsCollection() throws SiteWhereException {
+	return getDatabase().getCollection(getQuartzCalendarsCollectionName());
+    }
+
+    /*
+     * @see
+     * com.sitewhere.schedule.persistence.mongodb.IScheduleManagementMongoClient#
+     * getQuartzPausedGroupsCollection()
+     */
+    @Override
+    public MongoCollection<Document> getQuartzPausedGroupsCollection() throws SiteWhereException {
+	return getDatabase().getCollection(getQuartzPausedGroupsCollectionName());
+    }
+
     public String getSchedulesCollectionName() {
 	return schedulesCollectionName;
     }
@@ -66,4 +121,36 @@ public class ScheduleManagementMongoClient extends MongoDbClient implements ISch
     public void setScheduledJobsCollectionName(String scheduledJobsCollectionName) {
 	this.scheduledJobsCollectionName = scheduledJobsCollectionName;
     }
+
+    public String getQuartzJobsCollectionName() {
+	return quartzJobsCollectionName;
+    }
+
+    public void setQuartzJobsCollectionName(String quartzJobsCollectionName) {
+	this.quartzJobsCollectionName = quartzJobsCollectionName;
+    }
+
+    public String getQuartzTriggersCollectionName() {
+	return quartzTriggersCollectionName;
+    }
+
+    public void setQuartzTriggersCollectionName(String quartzTriggersCollectionName) {
+	this.quartzTriggersCollectionName = quartzTriggersCollectionName;
+    }
+
+    public String getQuartzCalendarsCollectionName() {
+	return quartzCalendarsCollectionName;
+    }
+
+    public void setQuartzCalendarsCollectionName(String quartzCalendarsCollectionName) {
+	this.quartzCalendarsCollectionName = quartzCalendarsCollectionName;
+    }
+
+    public String getQuartzPausedGroupsCollectionName() {
+	return quartzPausedGroupsCollectionName;
+    }
+
+    public void setQuartzPausedGroupsCollectionName(String quartzPausedGroupsCollectionName) {
+	this.quartzPausedGroupsCollectionName = quartzPausedGroupsCollectionName;
+    }
 }
\ No newline at end of file
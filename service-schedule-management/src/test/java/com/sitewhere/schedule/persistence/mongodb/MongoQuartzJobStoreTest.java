@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.schedule.persistence.mongodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerBuilder;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredResult;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.sitewhere.mongodb.EmbeddedMongoTest;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Tests for {@link MongoQuartzJobStore} running against an embedded MongoDB
+ * instance.
+ * 
+ * @author Derek
+ */
+public class MongoQuartzJobStoreTest extends EmbeddedMongoTest {
+
+    /** Scheduler name shared by all store instances */
+    private static final String SCHEDULER = "tenant";
+
+    /** Store for first scheduler instance */
+    private MongoQuartzJobStore first;
+
+    /** Store for second scheduler instance */
+    private MongoQuartzJobStore second;
+
+    @Before
+    public void setup() throws Exception {
+	first = createStore("node1");
+	second = createStore("node2");
+    }
+
+    @After
+    public void cleanup() throws Exception {
+	first.clearAllSchedulingData();
+    }
+
+    @Test
+    public void testStoreAndRetrieve() throws Exception {
+	JobDetail job = createJob("job1");
+	OperableTrigger trigger = createTrigger("job1", new Date(), 0);
+	first.storeJobAndTrigger(job, trigger);
+
+	// Data written by one instance is visible to the other.
+	assertNotNull(second.retrieveJob(job.getKey()));
+	assertNotNull(second.retrieveTrigger(trigger.getKey()));
+	assertEquals(TriggerState.NORMAL, second.getTriggerState(trigger.getKey()));
+	assertEquals(1, second.getNumberOfJobs());
+	assertEquals(1, second.getNumberOfTriggers());
+    }
+
+    @Test
+    public void testTriggerAcquiredByOnlyOneInstance() throws Exception {
+	long now = System.currentTimeMillis();
+	for (int i = 0; i < 10; i++) {
+	    first.storeJobAndTrigger(createJob("job" + i), createTrigger("job" + i, new Date(now), 0));
+	}
+
+	List<OperableTrigger> acquired1 = first.acquireNextTriggers(now + 1000, 6, 0);
+	List<OperableTrigger> acquired2 = second.acquireNextTriggers(now + 1000, 6, 0);
+
+	// Batch size is honored and no trigger is acquired twice.
+	assertEquals(6, acquired1.size());
+	assertEquals(4, acquired2.size());
+	List<String> names = new ArrayList<String>();
+	for (OperableTrigger trigger : acquired1) {
+	    names.add(trigger.getKey().getName());
+	}
+	for (OperableTrigger trigger : acquired2) {
+	    assertTrue(!names.contains(trigger.getKey().getName()));
+	}
+    }
+
+    @Test
+    public void testFireOnlyFromOwningInstance() throws Exception {
+	long now = System.currentTimeMillis();
+	first.storeJobAndTrigger(createJob("job1"), createTrigger("job1", new Date(now), 0));
+	List<OperableTrigger> acquired = first.acquireNextTriggers(now + 1000, 1, 0);
+	assertEquals(1, acquired.size());
+
+	// Another instance can not fire a trigger it does not hold.
+	List<TriggerFiredResult> stolen = second.triggersFired(acquired);
+	assertNull(stolen.get(0).getTriggerFiredBundle());
+
+	List<TriggerFiredResult> fired = first.triggersFired(acquired);
+	assertNotNull(fired.get(0).getTriggerFiredBundle());
+    }
+
+    @Test
+    public void testMisfireHandledAcrossRestart() throws Exception {
+	// Trigger that should have fired long ago (e.g. while service was down).
+	long past = System.currentTimeMillis() - (60 * 60 * 1000);
+	OperableTrigger trigger = createTrigger("job1", new Date(past), 60 * 1000);
+	first.storeJobAndTrigger(createJob("job1"), trigger);
+
+	// New store instance simulates restart of the service.
+	MongoQuartzJobStore restarted = createStore("node1");
+	restarted.schedulerStarted();
+	long now = System.currentTimeMillis();
+	List<OperableTrigger> acquired = restarted.acquireNextTriggers(now + (2 * 60 * 1000), 10, 0);
+	restarted.shutdown();
+
+	// Misfire policy moves next fire time forward instead of replaying the
+	// missed firings, so exactly one firing is acquired.
+	OperableTrigger stored = restarted.retrieveTrigger(trigger.getKey());
+	assertTrue(stored.getNextFireTime().getTime() >= now - 60 * 1000);
+	assertEquals(1, acquired.size());
+    }
+
+    @Test
+    public void testExpiredBlockReleasedForNewInstance() throws Exception {
+	long now = System.currentTimeMillis();
+	OperableTrigger trigger = createTrigger("job1", new Date(now), 60 * 1000);
+	first.storeJobAndTrigger(createBlockingJob("job1"), trigger);
+	first.setLockTimeout(1);
+	List<OperableTrigger> acquired = first.acquireNextTriggers(now + 1000, 1, 0);
+	assertNotNull(first.triggersFired(acquired).get(0).getTriggerFiredBundle());
+	assertEquals(TriggerState.BLOCKED, first.getTriggerState(trigger.getKey()));
+	Thread.sleep(10);
+
+	// Instance died and came back under a different id.
+	MongoQuartzJobStore replacement = createStore("node3");
+	replacement.acquireNextTriggers(now + 1000, 1, 0);
+	assertEquals(TriggerState.NORMAL, replacement.getTriggerState(trigger.getKey()));
+    }
+
+    @Test
+    public void testCheckInRenewsBlock() throws Exception {
+	long now = System.currentTimeMillis();
+	OperableTrigger trigger = createTrigger("job1", new Date(now), 60 * 1000);
+	first.storeJobAndTrigger(createBlockingJob("job1"), trigger);
+	first.setLockTimeout(1);
+	List<OperableTrigger> acquired = first.acquireNextTriggers(now + 1000, 1, 0);
+	assertNotNull(first.triggersFired(acquired).get(0).getTriggerFiredBundle());
+	first.setLockTimeout(60 * 60 * 1000);
+	first.checkIn();
+	Thread.sleep(10);
+
+	// Block held by a running job survives the expiration sweep.
+	second.acquireNextTriggers(now + 1000, 1, 0);
+	assertEquals(TriggerState.BLOCKED, second.getTriggerState(trigger.getKey()));
+    }
+
+    @Test
+    public void testReplaceKeepsBlockingClaim() throws Exception {
+	long now = System.currentTimeMillis();
+	OperableTrigger trigger = createTrigger("job1", new Date(now), 60 * 1000);
+	first.storeJobAndTrigger(createBlockingJob("job1"), trigger);
+	List<OperableTrigger> acquired = first.acquireNextTriggers(now + 1000, 1, 0);
+	assertNotNull(first.triggersFired(acquired).get(0).getTriggerFiredBundle());
+
+	// Another instance updates the trigger while the job is running.
+	second.storeTrigger(createTrigger("job1", new Date(now + 60 * 1000), 60 * 1000), true);
+	assertEquals(TriggerState.BLOCKED, second.getTriggerState(trigger.getKey()));
+	Document stored = getClient().getDatabase("quartz")
+		.getCollection(IScheduleManagementMongoClient.DEFAULT_QUARTZ_TRIGGERS_COLLECTION_NAME)
+		.find(new Document(MongoQuartzJobStore.PROP_NAME, "job1")).first();
+	assertEquals("node1", stored.getString(MongoQuartzJobStore.PROP_INSTANCE_ID));
+	assertNotNull(stored.get(MongoQuartzJobStore.PROP_LOCK_EXPIRATION));
+    }
+
+    @Test
+    public void testReleaseAcquiredTrigger() throws Exception {
+	long now = System.currentTimeMillis();
+	first.storeJobAndTrigger(createJob("job1"), createTrigger("job1", new Date(now), 0));
+	List<OperableTrigger> acquired = first.acquireNextTriggers(now + 1000, 1, 0);
+	assertEquals(1, acquired.size());
+	assertEquals(0, second.acquireNextTriggers(now + 1000, 1, 0).size());
+
+	first.releaseAcquiredTrigger(acquired.get(0));
+	assertEquals(1, second.acquireNextTriggers(now + 1000, 1, 0).size());
+    }
+
+    /**
+     * Create a store for a scheduler instance.
+     * 
+     * @param instanceId
+     * @return
+     * @throws SchedulerException
+     */
+    protected MongoQuartzJobStore createStore(String instanceId) throws SchedulerException {
+	MongoQuartzJobStore store = new MongoQuartzJobStore(new EmbeddedMongoClient(getClient().getDatabase("quartz")));
+	store.setInstanceId(instanceId);
+	store.setInstanceName(SCHEDULER);
+	CascadingClassLoadHelper loader = new CascadingClassLoadHelper();
+	loader.initialize();
+	store.initialize(loader, new NoOpSignaler());
+	return store;
+    }
+
+    protected JobDetail createJob(String name) {
+	return JobBuilder.newJob(NoOpJob.class).withIdentity(name).build();
+    }
+
+    protected JobDetail createBlockingJob(String name) {
+	return JobBuilder.newJob(NonConcurrentJob.class).withIdentity(name).build();
+    }
+
+    protected OperableTrigger createTrigger(String job, Date start, long interval) {
+	SimpleScheduleBuilder schedule = SimpleScheduleBuilder.simpleSchedule();
+	if (interval > 0) {
+	    schedule.withIntervalInMilliseconds(interval).repeatForever()
+		    .withMisfireHandlingInstructionNextWithRemainingCount();
+	}
+	SimpleTrigger trigger = TriggerBuilder.newTrigger().withIdentity(job).forJob(job).startAt(start)
+		.withSchedule(schedule).build();
+	OperableTrigger operable = (OperableTrigger) trigger;
+	operable.computeFirstFireTime(null);
+	return operable;
+    }
+
+    /**
+     * Job that does nothing.
+     */
+    public static class NoOpJob implements Job {
+
+	@Override
+	public void execute(JobExecutionContext context) {
+	}
+    }
+
+    /**
+     * Job that may not run concurrently.
+     */
+    @DisallowConcurrentExecution
+    public static class NonConcurrentJob implements Job {
+
+	@Override
+	public void execute(JobExecutionContext context) {
+	}
+    }
+
+    /**
+     * Signaler that ignores scheduler notifications.
+     */
+    private static class NoOpSignaler implements SchedulerSignaler {
+
+	@Override
+	public void notifyTriggerListenersMisfired(Trigger trigger) {
+	}
+
+	@Override
+	public void notifySchedulerListenersFinalized(Trigger trigger) {
+	}
+
+	@Override
+	public void notifySchedulerListenersJobDeleted(JobKey jobKey) {
+	}
+
+	@Override
+	public void signalSchedulingChange(long candidateNewNextFireTime) {
+	}
+
+	@Override
+	public void notifySchedulerListenersError(String string, SchedulerException jpe) {
+	}
+    }
+
+    /**
+     * Provides Quartz collections from the embedded database.
+     */
+    private static class EmbeddedMongoClient implements IScheduleManagementMongoClient {
+
+	/** Database */
+	private MongoDatabase database;
+
+	public EmbeddedMongoClient(MongoDatabase database) {
+	    this.database = database;
+	}
+
+	@Override
+	public MongoCollection<Document> getSchedulesCollection() throws SiteWhereException {
+	    return database.getCollection(DEFAULT_SCHEDULES_COLLECTION_NAME);
+	}
+
+	@Override
+	public MongoCollection<Document> getScheduledJobsCollection() throws SiteWhereException {
+	    return database.getCollection(DEFAULT_SCHEDULED_JOBS_COLLECTION_NAME);
+	}
+
+	@Override
+	public MongoCollection<Document> getQuartzJobsCollection() throws SiteWhereException {
+	    return database.getCollection(DEFAULT_QUARTZ_JOBS_COLLECTION_NAME);
+	}
+
+	@Override
+	public MongoCollection<Document> getQuartzTriggersCollection() throws SiteWhereException {
+	    return database.getCollection(DEFAULT_QUARTZ_TRIGGERS_COLLECTION_NAME);
+	}
+
+	@Override
+	public MongoCollection<Document> getQuartzCalendarsCollection() throws SiteWhereException {
+	    return database.getCollection(DEFAULT_QUARTZ_CALENDARS_COLLECTION_NAME);
+	}
+
+	@Override
+	public MongoCollection<Document> getQuartzPausedGroupsCollection() throws SiteWhereException {
+	    return database.getCollection(DEFAULT_QUARTZ_PAUSED_GROUPS_COLLECTION_NAME);
+	}
+    }
+}
@@ -8,6 +8,7 @@
 package com.sitewhere.media;
 
 import java.util.List;
+import java.util.UUID;
 
 import com.sitewhere.rest.model.device.command.DeviceStreamAckCommand;
 import com.sitewhere.rest.model.device.command.SendDeviceStreamDataCommand;
@@ -21,6 +22,7 @@ import com.sitewhere.spi.device.command.DeviceStreamStatus;
 import com.sitewhere.spi.device.communication.IDeviceStreamManager;
 import com.sitewhere.spi.device.event.request.IDeviceStreamCreateRequest;
 import com.sitewhere.spi.device.event.request.ISendDeviceStreamDataRequest;
+import com.sitewhere.spi.device.streaming.IDeviceStream;
 import com.sitewhere.spi.device.streaming.IDeviceStreamData;
 import com.sitewhere.spi.device.streaming.IDeviceStreamDataManagement;
 import com.sitewhere.spi.device.streaming.IDeviceStreamManagement;
@@ -75,9 +77,9 @@ public class DeviceStreamManager extends TenantEngineLifecycleComponent implemen
     @Override
     public void handleDeviceStreamDataRequest(String deviceToken, IDeviceStreamDataCreateRequest request)
 	    throws SiteWhereException {
-	// TODO: Send to all active assignments?
-	List<IDeviceAssignment> assignments = getActiveAssignments(deviceToken);
-	getDeviceStreamDataManagement().addDeviceStreamData(assignments.get(0).getId(), request);
+	// Chunks are stored against the stream, which must belong to the device.
+	IDeviceStream stream = getStreamForDevice(deviceToken, request.getStreamId());
+	getDeviceStreamDataManagement().addDeviceStreamData(stream.getId(), request);
     }
 
     /*
@@ -105,6 +107,34 @@ public class DeviceStreamManager extends TenantEngineLifecycleComponent implemen
 	// command);
     }
 
+    /**
+     * Get a stream by id, verifying that it is associated with one of the active
+     * assignments for the device.
+     * 
+     * @param deviceToken
+     * @param streamId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDeviceStream getStreamForDevice(String deviceToken, String streamId) throws SiteWhereException {
+	UUID id;
+	try {
+	    id = UUID.fromString(streamId);
+	} catch (IllegalArgumentException | NullPointerException e) {
+	    throw new SiteWhereException("Invalid stream id: " + streamId);
+	}
+	IDeviceStream stream = getDeviceStreamManagement().getDeviceStream(id);
+	if (stream == null) {
+	    throw new SiteWhereException("Stream not found: " + streamId);
+	}
+	for (IDeviceAssignment assignment : getActiveAssignments(deviceToken)) {
+	    if (assignment.getId().equals(stream.getAssignmentId())) {
+		return stream;
+	    }
+	}
+	throw new SiteWhereException("Stream " + streamId + " does not belong to device '" + deviceToken + "'.");
+    }
+
     /**
      * Get active assignments for the device.
      * 
@@ -7,16 +7,25 @@
  */
 package com.sitewhere.media.persistence;
 
+import java.util.Arrays;
+import java.util.Date;
 import java.util.UUID;
 
 import com.sitewhere.persistence.Persistence;
 import com.sitewhere.rest.model.device.streaming.DeviceStream;
+import com.sitewhere.rest.model.device.streaming.DeviceStreamData;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.event.request.IDeviceStreamCreateRequest;
+import com.sitewhere.spi.device.streaming.IDeviceStreamData;
+import com.sitewhere.spi.device.streaming.request.IDeviceStreamDataCreateRequest;
 
 public class DeviceStreamPersistence extends Persistence {
 
+    /** Maximum size of a single chunk of stream data (same as GridFS default) */
+    public static final int MAX_CHUNK_SIZE_BYTES = 255 * 1024;
+
+
     /**
      * Common logic for creating {@link DeviceStream} from
      * {@link IDeviceStreamCreateRequest}.
@@ -38,4 +47,47 @@ public class DeviceStreamPersistence extends Persistence {
 
 	return stream;
     }
+
+    /**
+     * Common logic for creating {@link DeviceStreamData} from
+     * {@link IDeviceStreamDataCreateRequest}. Chunks are limited in size so that
+     * large media is stored as many small records rather than a single document.
+     * 
+     * @param streamId
+     * @param request
+     * @return
+     * @throws SiteWhereException
+     */
+    public static DeviceStreamData deviceStreamDataCreateLogic(UUID streamId, IDeviceStreamDataCreateRequest request)
+	    throws SiteWhereException {
+	DeviceStreamData data = new DeviceStreamData();
+	data.setId(UUID.randomUUID());
+	data.setStreamId(streamId.toString());
+
+	requireNotNull("Sequence Number", request.getSequenceNumber());
+	data.setSequenceNumber(request.getSequenceNumber());
+
+	requireNotNull("Data", request.getData());
+	if (request.getData().length > MAX_CHUNK_SIZE_BYTES) {
+	    throw new SiteWhereException("Stream data chunk of " + request.getData().length
+		    + " bytes exceeds maximum chunk size of " + MAX_CHUNK_SIZE_BYTES + " bytes.");
+	}
+	data.setData(request.getData());
+
+	data.setEventDate(request.getEventDate() != null ? request.getEventDate() : new Date());
+	data.setReceivedDate(new Date());
+	return data;
+    }
+
+    /**
+     * Indicates whether a stored chunk with the same sequence number has the same
+     * content as one being written, so that a retried write can be accepted.
+     * 
+     * @param existing
+     * @param data
+     * @return
+     */
+    public static boolean isSameChunk(IDeviceStreamData existing, IDeviceStreamData data) {
+	return (existing != null) && Arrays.equals(existing.getData(), data.getData());
+    }
 }
@@ -7,31 +7,73 @@
  */
 package com.sitewhere.media.persistence.cassandra;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.exceptions.QueryExecutionException;
 import com.sitewhere.cassandra.CassandraClient;
+import com.sitewhere.media.persistence.DeviceStreamPersistence;
+import com.sitewhere.rest.model.device.streaming.DeviceStreamData;
+import com.sitewhere.rest.model.search.Pager;
+import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.streaming.IDeviceStreamData;
 import com.sitewhere.spi.device.streaming.IDeviceStreamDataManagement;
 import com.sitewhere.spi.device.streaming.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.error.ResourceExistsException;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
 /**
- * Implementation of {@link IDeviceStreamDataManagement} that stores data in
- * Apache Cassandra.
+ * Implementation of {@link IDeviceStreamDataManagement} that stores chunks of
+ * stream data in Apache Cassandra. Chunks are partitioned by stream id and a
+ * bucket derived from the sequence number, so a partition never grows beyond a
+ * fixed number of chunks. Buckets in use are recorded per stream so that reads
+ * visit exactly the partitions holding data, even if sequence numbers have gaps.
  * 
  * @author Derek
  */
 public class CassandraDeviceStreamManagement extends TenantEngineLifecycleComponent
 	implements IDeviceStreamDataManagement {
 
+    /** Default number of chunks stored in a single partition */
+    private static final int DEFAULT_CHUNKS_PER_BUCKET = 1000;
+
+    /** Number of rows fetched per page when reading chunks */
+    private static final int CHUNK_FETCH_SIZE = 16;
+
     /** Configured Cassandra client */
     private CassandraClient client;
 
+    /** Number of chunks stored in a single partition */
+    private int chunksPerBucket = DEFAULT_CHUNKS_PER_BUCKET;
+
+    /** Prepared statement for inserting a chunk */
+    private PreparedStatement insertStreamData;
+
+    /** Prepared statement for selecting a single chunk */
+    private PreparedStatement selectStreamData;
+
+    /** Prepared statement for selecting all chunks in a bucket */
+    private PreparedStatement selectStreamDataBucket;
+
+    /** Prepared statement for recording a bucket in use by a stream */
+    private PreparedStatement insertStreamBucket;
+
+    /** Prepared statement for selecting buckets in use by a stream */
+    private PreparedStatement selectStreamBuckets;
+
     public CassandraDeviceStreamManagement() {
 	super(LifecycleComponentType.DataStore);
     }
@@ -47,6 +89,42 @@ public class CassandraDeviceStreamManagement extends TenantEngineLifecycleCompon
 	    throw new SiteWhereException("No Cassandra client configured.");
 	}
 	getClient().start(monitor);
+	initializeTables();
+	initializePreparedStatements();
+    }
+
+    /**
+     * Create stream data tables if not already created.
+     * 
+     * @throws SiteWhereException
+     */
+    protected void initializeTables() throws SiteWhereException {
+	getClient().execute("CREATE KEYSPACE IF NOT EXISTS " + getClient().getKeyspace().getValue()
+		+ " WITH replication =  {'class':'SimpleStrategy','replication_factor':'1'}");
+	getClient().execute("CREATE TABLE IF NOT EXISTS " + getClient().getKeyspace().getValue()
+		+ ".stream_data (stream_id uuid, bucket int, sequence_number bigint, chunk_id uuid, event_date timestamp, received_date timestamp, data blob, PRIMARY KEY ((stream_id, bucket), sequence_number)) WITH CLUSTERING ORDER BY (sequence_number asc);");
+	getClient().execute("CREATE TABLE IF NOT EXISTS " + getClient().getKeyspace().getValue()
+		+ ".stream_buckets (stream_id uuid, bucket int, PRIMARY KEY (stream_id, bucket)) "
+		+ "WITH CLUSTERING ORDER BY (bucket asc);");
+    }
+
+    /**
+     * Initialize prepared statements.
+     * 
+     * @throws SiteWhereException
+     */
+    protected void initializePreparedStatements() throws SiteWhereException {
+	this.insertStreamData = getClient().getSession().prepare("insert into " + getClient().getKeyspace().getValue()
+		+ ".stream_data (stream_id, bucket, sequence_number, chunk_id, event_date, received_date, data) "
+		+ "values (?, ?, ?, ?, ?, ?, ?) if not exists");
+	this.selectStreamData = getClient().getSession().prepare("select * from " + getClient().getKeyspace().getValue()
+		+ ".stream_data where stream_id=? and bucket=? and sequence_number=?");
+	this.selectStreamDataBucket = getClient().getSession().prepare("select * from "
+		+ getClient().getKeyspace().getValue() + ".stream_data where stream_id=? and bucket=?");
+	this.insertStreamBucket = getClient().getSession().prepare("insert into "
+		+ getClient().getKeyspace().getValue() + ".stream_buckets (stream_id, bucket) values (?, ?)");
+	this.selectStreamBuckets = getClient().getSession().prepare("select bucket from "
+		+ getClient().getKeyspace().getValue() + ".stream_buckets where stream_id=?");
     }
 
     /*
@@ -57,7 +135,34 @@ public class CassandraDeviceStreamManagement extends TenantEngineLifecycleCompon
     @Override
     public IDeviceStreamData addDeviceStreamData(UUID streamId, IDeviceStreamDataCreateRequest request)
 	    throws SiteWhereException {
-	throw new SiteWhereException("Not implemented.");
+	DeviceStreamData data = DeviceStreamPersistence.deviceStreamDataCreateLogic(streamId, request);
+	BoundStatement insert = new BoundStatement(getInsertStreamData());
+	insert.setUUID("stream_id", streamId);
+	insert.setInt("bucket", getBucketValue(data.getSequenceNumber()));
+	insert.setLong("sequence_number", data.getSequenceNumber());
+	insert.setUUID("chunk_id", data.getId());
+	insert.setTimestamp("event_date", data.getEventDate());
+	insert.setTimestamp("received_date", data.getReceivedDate());
+	insert.setBytes("data", ByteBuffer.wrap(data.getData()));
+
+	// Lightweight transaction rejects rewrites of an existing chunk. A retried
+	// chunk with the same content is accepted.
+	IDeviceStreamData result = data;
+	if (!execute(insert).wasApplied()) {
+	    IDeviceStreamData existing = getDeviceStreamData(streamId, data.getSequenceNumber());
+	    if (!DeviceStreamPersistence.isSameChunk(existing, data)) {
+		throw new ResourceExistsException(ErrorCode.DuplicateId);
+	    }
+	    result = existing;
+	}
+
+	// Record bucket after the chunk so a bucket is never listed without data. The
+	// insert is idempotent, so a retried chunk repairs a missing entry.
+	BoundStatement bucket = new BoundStatement(getInsertStreamBucket());
+	bucket.setUUID("stream_id", streamId);
+	bucket.setInt("bucket", getBucketValue(data.getSequenceNumber()));
+	execute(bucket);
+	return result;
     }
 
     /*
@@ -66,7 +171,15 @@ public class CassandraDeviceStreamManagement extends TenantEngineLifecycleCompon
      */
     @Override
     public IDeviceStreamData getDeviceStreamData(UUID streamId, long sequenceNumber) throws SiteWhereException {
-	throw new SiteWhereException("Not implemented.");
+	BoundStatement select = new BoundStatement(getSelectStreamData());
+	select.setUUID("stream_id", streamId);
+	select.setInt("bucket", getBucketValue(sequenceNumber));
+	select.setLong("sequence_number", sequenceNumber);
+	Row row = execute(select).one();
+	if (row == null) {
+	    return null;
+	}
+	return load(row);
     }
 
     /*
@@ -77,7 +190,78 @@ public class CassandraDeviceStreamManagement extends TenantEngineLifecycleCompon
     @Override
     public ISearchResults<IDeviceStreamData> listDeviceStreamDataForAssignment(UUID streamId,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	throw new SiteWhereException("Not implemented.");
+	// Walk the buckets recorded for the stream in order. Gaps in sequence numbers
+	// (e.g. lost chunks) do not end the walk early.
+	List<Integer> buckets = new ArrayList<>();
+	BoundStatement selectBuckets = new BoundStatement(getSelectStreamBuckets());
+	selectBuckets.setUUID("stream_id", streamId);
+	for (Row row : execute(selectBuckets)) {
+	    buckets.add(row.getInt("bucket"));
+	}
+
+	Pager<IDeviceStreamData> pager = new Pager<>(criteria);
+	for (int bucket : buckets) {
+	    BoundStatement select = new BoundStatement(getSelectStreamDataBucket());
+	    select.setUUID("stream_id", streamId);
+	    select.setInt("bucket", bucket);
+	    select.setFetchSize(CHUNK_FETCH_SIZE);
+	    for (Row row : execute(select)) {
+		Date eventDate = row.getTimestamp("event_date");
+		if ((criteria.getStartDate() != null) && (eventDate.before(criteria.getStartDate()))) {
+		    continue;
+		}
+		if ((criteria.getEndDate() != null) && (eventDate.after(criteria.getEndDate()))) {
+		    continue;
+		}
+		pager.process(load(row));
+	    }
+	}
+	return new SearchResults<IDeviceStreamData>(pager.getResults(), pager.getTotal());
+    }
+
+    /**
+     * Execute a statement and handle failures.
+     * 
+     * @param statement
+     * @return
+     * @throws SiteWhereException
+     */
+    protected ResultSet execute(BoundStatement statement) throws SiteWhereException {
+	try {
+	    return getClient().getSession().execute(statement);
+	} catch (QueryExecutionException e) {
+	    throw new SiteWhereException("Query execution failed.", e);
+	}
+    }
+
+    /**
+     * Load stream data from a row.
+     * 
+     * @param row
+     * @return
+     */
+    protected DeviceStreamData load(Row row) {
+	DeviceStreamData data = new DeviceStreamData();
+	data.setId(row.getUUID("chunk_id"));
+	data.setStreamId(row.getUUID("stream_id").toString());
+	data.setSequenceNumber(row.getLong("sequence_number"));
+	data.setEventDate(row.getTimestamp("event_date"));
+	data.setReceivedDate(row.getTimestamp("received_date"));
+	ByteBuffer buffer = row.getBytes("data");
+	byte[] bytes = new byte[buffer.remaining()];
+	buffer.get(bytes);
+	data.setData(bytes);
+	return data;
+    }
+
+    /**
+     * Get bucket that holds the chunk with the given sequence number.
+     * 
+     * @param sequenceNumber
+     * @return
+     */
+    protected int getBucketValue(long sequenceNumber) {
+	return (int) (sequenceNumber / getChunksPerBucket());
     }
 
     public CassandraClient getClient() {
@@ -87,4 +271,32 @@ public class CassandraDeviceStreamManagement extends TenantEngineLifecycleCompon
     public void setClient(CassandraClient client) {
 	this.client = client;
     }
+
+    public int getChunksPerBucket() {
+	return chunksPerBucket;
+    }
+
+    public void setChunksPerBucket(int chunksPerBucket) {
+	this.chunksPerBucket = chunksPerBucket;
+    }
+
+    protected PreparedStatement getInsertStreamData() {
+	return insertStreamData;
+    }
+
+    protected PreparedStatement getSelectStreamData() {
+	return selectStreamData;
+    }
+
+    protected PreparedStatement getSelectStreamDataBucket() {
+	return selectStreamDataBucket;
+    }
+
+    protected PreparedStatement getInsertStreamBucket() {
+	return insertStreamBucket;
+    }
+
+    protected PreparedStatement getSelectStreamBuckets() {
+	return selectStreamBuckets;
+    }
 }
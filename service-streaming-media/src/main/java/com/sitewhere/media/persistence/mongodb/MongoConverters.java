@@ -13,6 +13,7 @@ import java.util.Map;
 import com.sitewhere.mongodb.IMongoConverterLookup;
 import com.sitewhere.mongodb.MongoConverter;
 import com.sitewhere.spi.device.streaming.IDeviceStream;
+import com.sitewhere.spi.device.streaming.IDeviceStreamData;
 
 /**
  * Manages classes used to convert between Mongo and SPI objects.
@@ -28,6 +29,9 @@ public class MongoConverters implements IMongoConverterLookup {
     static {
 	// Converters for device streams.
 	CONVERTERS.put(IDeviceStream.class, new MongoDeviceStream());
+
+	// Converters for device stream data.
+	CONVERTERS.put(IDeviceStreamData.class, new MongoDeviceStreamData());
     }
 
     /*
@@ -7,7 +7,11 @@
  */
 package com.sitewhere.media.persistence.mongodb;
 
+import java.util.Date;
+import java.util.UUID;
+
 import org.bson.Document;
+import org.bson.types.Binary;
 
 import com.sitewhere.mongodb.MongoConverter;
 import com.sitewhere.rest.model.device.streaming.DeviceStreamData;
@@ -21,6 +25,9 @@ import com.sitewhere.spi.device.streaming.IDeviceStreamData;
  */
 public class MongoDeviceStreamData implements MongoConverter<IDeviceStreamData> {
 
+    /** Property for id */
+    public static final String PROP_ID = "_id";
+
     /** Property for parent stream id */
     public static final String PROP_STREAM_ID = "stid";
 
@@ -30,6 +37,12 @@ public class MongoDeviceStreamData implements MongoConverter<IDeviceStreamData>
     /** Property for binary data */
     public static final String PROP_DATA = "data";
 
+    /** Property for event date */
+    public static final String PROP_EVENT_DATE = "evdt";
+
+    /** Property for received date */
+    public static final String PROP_RECEIVED_DATE = "rcdt";
+
     /*
      * (non-Javadoc)
      * 
@@ -58,11 +71,14 @@ public class MongoDeviceStreamData implements MongoConverter<IDeviceStreamData>
      * @param isNested
      */
     public static void toDocument(IDeviceStreamData source, Document target, boolean isNested) {
-	// MongoDeviceEvent.toDocument(source, target, isNested);
-
+	if (!isNested) {
+	    target.append(PROP_ID, source.getId());
+	}
 	target.append(PROP_STREAM_ID, source.getStreamId());
 	target.append(PROP_SEQUENCE_NUMBER, source.getSequenceNumber());
-	target.append(PROP_DATA, source.getData());
+	target.append(PROP_DATA, new Binary(source.getData()));
+	target.append(PROP_EVENT_DATE, source.getEventDate());
+	target.append(PROP_RECEIVED_DATE, source.getReceivedDate());
     }
 
     /**
@@ -73,15 +89,21 @@ public class MongoDeviceStreamData implements MongoConverter<IDeviceStreamData>
      * @param isNested
      */
     public static void fromDocument(Document source, DeviceStreamData target, boolean isNested) {
-	// MongoDeviceEvent.fromDocument(source, target, isNested);
-
+	UUID id = (UUID) source.get(PROP_ID);
 	String streamId = (String) source.get(PROP_STREAM_ID);
 	Long sequenceNumber = (Long) source.get(PROP_SEQUENCE_NUMBER);
-	byte[] data = (byte[]) source.get(PROP_DATA);
+	Object data = source.get(PROP_DATA);
+	Date eventDate = (Date) source.get(PROP_EVENT_DATE);
+	Date receivedDate = (Date) source.get(PROP_RECEIVED_DATE);
 
+	if (!isNested) {
+	    target.setId(id);
+	}
 	target.setStreamId(streamId);
 	target.setSequenceNumber(sequenceNumber);
-	target.setData(data);
+	target.setData((data instanceof Binary) ? ((Binary) data).getData() : (byte[]) data);
+	target.setEventDate(eventDate);
+	target.setReceivedDate(receivedDate);
     }
 
     /**
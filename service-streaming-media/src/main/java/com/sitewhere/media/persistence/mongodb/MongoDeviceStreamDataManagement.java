@@ -9,31 +9,63 @@ package com.sitewhere.media.persistence.mongodb;
 
 import java.util.UUID;
 
-import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
+import org.bson.Document;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoClientException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.sitewhere.media.persistence.DeviceStreamPersistence;
+import com.sitewhere.mongodb.IMongoConverterLookup;
+import com.sitewhere.mongodb.MongoPersistence;
+import com.sitewhere.mongodb.MongoTenantComponent;
+import com.sitewhere.rest.model.device.streaming.DeviceStreamData;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.streaming.IDeviceStreamData;
 import com.sitewhere.spi.device.streaming.IDeviceStreamDataManagement;
 import com.sitewhere.spi.device.streaming.IDeviceStreamManagement;
 import com.sitewhere.spi.device.streaming.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.error.ResourceExistsException;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
 /**
  * Implementation of {@link IDeviceStreamManagement} that stores data in
- * MongoDB.
+ * MongoDB. Each chunk of stream data is stored as a separate document (similar
+ * to GridFS chunks) with a unique index on stream id and sequence number, so
+ * chunks are written append-only and read back in sequence order.
  * 
  * @author Derek
  */
-public class MongoDeviceStreamDataManagement extends TenantEngineLifecycleComponent implements IDeviceStreamDataManagement {
+public class MongoDeviceStreamDataManagement extends MongoTenantComponent<DeviceStreamManagementMongoClient>
+	implements IDeviceStreamDataManagement {
+
+    /** Converter lookup */
+    private static IMongoConverterLookup LOOKUP = new MongoConverters();
 
     /** Injected with Mongo client */
-    private IDeviceStreamManagementMongoClient mongoClient;
+    private DeviceStreamManagementMongoClient mongoClient;
 
     public MongoDeviceStreamDataManagement() {
 	super(LifecycleComponentType.DataStore);
     }
 
+    /*
+     * @see com.sitewhere.mongodb.MongoTenantComponent#ensureIndexes()
+     */
+    @Override
+    public void ensureIndexes() throws SiteWhereException {
+	getMongoClient().getStreamDataCollection().createIndex(
+		new BasicDBObject(MongoDeviceStreamData.PROP_STREAM_ID, 1)
+			.append(MongoDeviceStreamData.PROP_SEQUENCE_NUMBER, 1),
+		new IndexOptions().unique(true).background(true));
+	getMongoClient().getStreamDataCollection()
+		.createIndex(new BasicDBObject(MongoDeviceStreamData.PROP_STREAM_ID, 1)
+			.append(MongoDeviceStreamData.PROP_EVENT_DATE, 1), new IndexOptions().background(true));
+    }
+
     /*
      * @see com.sitewhere.spi.device.streaming.IDeviceStreamDataManagement#
      * addDeviceStreamData(java.util.UUID,
@@ -42,7 +74,23 @@ public class MongoDeviceStreamDataManagement extends TenantEngineLifecycleCompon
     @Override
     public IDeviceStreamData addDeviceStreamData(UUID streamId, IDeviceStreamDataCreateRequest request)
 	    throws SiteWhereException {
-	throw new SiteWhereException("Not implemented.");
+	DeviceStreamData data = DeviceStreamPersistence.deviceStreamDataCreateLogic(streamId, request);
+
+	// Unique index rejects rewrites of an existing chunk. The chunk (not the
+	// stream) is the duplicate, so the stream id error code is not used.
+	MongoCollection<Document> streamData = getMongoClient().getStreamDataCollection();
+	Document created = MongoDeviceStreamData.toDocument(data, false);
+	try {
+	    MongoPersistence.insert(streamData, created, ErrorCode.DuplicateId);
+	} catch (ResourceExistsException e) {
+	    // A retried chunk with the same content is accepted.
+	    IDeviceStreamData existing = getDeviceStreamData(streamId, data.getSequenceNumber());
+	    if (DeviceStreamPersistence.isSameChunk(existing, data)) {
+		return existing;
+	    }
+	    throw e;
+	}
+	return data;
     }
 
     /*
@@ -51,7 +99,18 @@ public class MongoDeviceStreamDataManagement extends TenantEngineLifecycleCompon
      */
     @Override
     public IDeviceStreamData getDeviceStreamData(UUID streamId, long sequenceNumber) throws SiteWhereException {
-	throw new SiteWhereException("Not implemented.");
+	try {
+	    MongoCollection<Document> streamData = getMongoClient().getStreamDataCollection();
+	    Document query = new Document(MongoDeviceStreamData.PROP_STREAM_ID, streamId.toString())
+		    .append(MongoDeviceStreamData.PROP_SEQUENCE_NUMBER, sequenceNumber);
+	    Document match = streamData.find(query).first();
+	    if (match == null) {
+		return null;
+	    }
+	    return MongoDeviceStreamData.fromDocument(match, false);
+	} catch (MongoClientException e) {
+	    throw MongoPersistence.handleClientException(e);
+	}
     }
 
     /*
@@ -62,14 +121,22 @@ public class MongoDeviceStreamDataManagement extends TenantEngineLifecycleCompon
     @Override
     public ISearchResults<IDeviceStreamData> listDeviceStreamDataForAssignment(UUID streamId,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	throw new SiteWhereException("Not implemented.");
+	MongoCollection<Document> streamData = getMongoClient().getStreamDataCollection();
+	Document query = new Document(MongoDeviceStreamData.PROP_STREAM_ID, streamId.toString());
+	MongoPersistence.addDateSearchCriteria(query, MongoDeviceStreamData.PROP_EVENT_DATE, criteria);
+	Document sort = new Document(MongoDeviceStreamData.PROP_SEQUENCE_NUMBER, 1);
+	return MongoPersistence.search(IDeviceStreamData.class, streamData, query, sort, criteria, LOOKUP);
     }
 
-    public IDeviceStreamManagementMongoClient getMongoClient() {
+    /*
+     * @see com.sitewhere.mongodb.MongoTenantComponent#getMongoClient()
+     */
+    @Override
+    public DeviceStreamManagementMongoClient getMongoClient() {
 	return mongoClient;
     }
 
-    public void setMongoClient(IDeviceStreamManagementMongoClient mongoClient) {
+    public void setMongoClient(DeviceStreamManagementMongoClient mongoClient) {
 	this.mongoClient = mongoClient;
     }
 }
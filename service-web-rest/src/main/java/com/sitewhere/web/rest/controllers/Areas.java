@@ -9,7 +9,6 @@ package com.sitewhere.web.rest.controllers;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -42,6 +41,7 @@ import com.sitewhere.rest.model.device.DeviceAssignment;
 import com.sitewhere.rest.model.device.asset.DeviceAlertWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceCommandInvocationWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceCommandResponseWithAsset;
+import com.sitewhere.rest.model.device.asset.DeviceEventWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceLocationWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceMeasurementsWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceStateChangeWithAsset;
@@ -51,6 +51,7 @@ import com.sitewhere.rest.model.search.device.DeviceAssignmentSearchCriteria;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.area.IArea;
+import com.sitewhere.spi.asset.IAsset;
 import com.sitewhere.spi.asset.IAssetManagement;
 import com.sitewhere.spi.device.DeviceAssignmentStatus;
 import com.sitewhere.spi.device.IDeviceAssignment;
@@ -73,6 +74,7 @@ import com.sitewhere.spi.search.ITreeNode;
 import com.sitewhere.spi.user.SiteWhereRoles;
 import com.sitewhere.web.annotation.SiteWhereCrossOrigin;
 import com.sitewhere.web.rest.RestControllerBase;
+import com.sitewhere.web.rest.model.TreeNodeSearch;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -282,16 +284,18 @@ public class Areas extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getDeviceManagement());
+	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceMeasurement> results = getDeviceEventManagement()
 		.listDeviceMeasurementsForIndex(DeviceEventIndex.Area, areas, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceMeasurement> wrapped = new ArrayList<IDeviceMeasurement>();
 	for (IDeviceMeasurement result : results.getResults()) {
-	    wrapped.add(new DeviceMeasurementsWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceMeasurementsWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceMeasurement>(wrapped, results.getNumResults());
     }
@@ -317,16 +321,18 @@ public class Areas extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getDeviceManagement());
+	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceLocation> results = getDeviceEventManagement()
 		.listDeviceLocationsForIndex(DeviceEventIndex.Area, areas, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceLocation> wrapped = new ArrayList<IDeviceLocation>();
 	for (IDeviceLocation result : results.getResults()) {
-	    wrapped.add(new DeviceLocationWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceLocationWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceLocation>(wrapped, results.getNumResults());
     }
@@ -354,14 +360,16 @@ public class Areas extends RestControllerBase {
 	    HttpServletResponse response) throws SiteWhereException {
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
-	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getDeviceManagement());
+	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getCachedDeviceManagement());
 	ISearchResults<IDeviceAlert> results = getDeviceEventManagement()
 		.listDeviceAlertsForIndex(DeviceEventIndex.Area, areas, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceAlert> wrapped = new ArrayList<IDeviceAlert>();
 	for (IDeviceAlert result : results.getResults()) {
-	    wrapped.add(new DeviceAlertWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceAlertWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceAlert>(wrapped, results.getNumResults());
     }
@@ -387,16 +395,18 @@ public class Areas extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getDeviceManagement());
+	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceCommandInvocation> results = getDeviceEventManagement()
 		.listDeviceCommandInvocationsForIndex(DeviceEventIndex.Area, areas, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceCommandInvocation> wrapped = new ArrayList<IDeviceCommandInvocation>();
 	for (IDeviceCommandInvocation result : results.getResults()) {
-	    wrapped.add(new DeviceCommandInvocationWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceCommandInvocationWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceCommandInvocation>(wrapped, results.getNumResults());
     }
@@ -422,16 +432,18 @@ public class Areas extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getDeviceManagement());
+	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceCommandResponse> results = getDeviceEventManagement()
 		.listDeviceCommandResponsesForIndex(DeviceEventIndex.Area, areas, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceCommandResponse> wrapped = new ArrayList<IDeviceCommandResponse>();
 	for (IDeviceCommandResponse result : results.getResults()) {
-	    wrapped.add(new DeviceCommandResponseWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceCommandResponseWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceCommandResponse>(wrapped, results.getNumResults());
     }
@@ -457,16 +469,18 @@ public class Areas extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getDeviceManagement());
+	List<UUID> areas = resolveAreaIdsRecursive(areaToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceStateChange> results = getDeviceEventManagement()
 		.listDeviceStateChangesForIndex(DeviceEventIndex.Area, areas, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceStateChange> wrapped = new ArrayList<IDeviceStateChange>();
 	for (IDeviceStateChange result : results.getResults()) {
-	    wrapped.add(new DeviceStateChangeWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceStateChangeWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceStateChange>(wrapped, results.getNumResults());
     }
@@ -501,7 +515,7 @@ public class Areas extends RestControllerBase {
 	if (decodedStatus != null) {
 	    criteria.setAssignmentStatuses(Collections.singletonList(decodedStatus));
 	}
-	List<String> areas = resolveAreaTokensRecursive(areaToken, true, getDeviceManagement());
+	List<String> areas = resolveAreaTokensRecursive(areaToken, true, getCachedDeviceManagement());
 	criteria.setAreaTokens(areas);
 
 	ISearchResults<IDeviceAssignment> matches = getDeviceManagement().listDeviceAssignments(criteria);
@@ -544,10 +558,13 @@ public class Areas extends RestControllerBase {
      */
     public static List<String> resolveAreaTokensRecursive(String areaToken, boolean recursive,
 	    IDeviceManagement deviceManagement) throws SiteWhereException {
-	List<IArea> areas = resolveAreas(areaToken, recursive, deviceManagement);
 	List<String> tokens = new ArrayList<>();
-	for (IArea area : areas) {
-	    tokens.add(area.getToken());
+	if (deviceManagement.getAreaByToken(areaToken) == null) {
+	    return tokens;
+	}
+	tokens.add(areaToken);
+	if (recursive) {
+	    tokens.addAll(TreeNodeSearch.getDescendantTokens(deviceManagement.getAreasTree(), areaToken));
 	}
 	return tokens;
     }
@@ -572,7 +589,9 @@ public class Areas extends RestControllerBase {
     }
 
     /**
-     * Resolve areas including nested areas.
+     * Resolve areas including nested areas. Nested areas are located from the
+     * (cached) area tree and resolved by token, so passing a caching device
+     * management implementation avoids a remote call per area.
      * 
      * @param areaToken
      * @param recursive
@@ -582,33 +601,14 @@ public class Areas extends RestControllerBase {
      */
     public static List<IArea> resolveAreas(String areaToken, boolean recursive, IDeviceManagement deviceManagement)
 	    throws SiteWhereException {
-	IArea existing = deviceManagement.getAreaByToken(areaToken);
-	if (existing == null) {
-	    return new ArrayList<IArea>();
-	}
-	Map<String, IArea> resolved = new HashMap<>();
-	resolveAreasRecursively(existing, recursive, resolved, deviceManagement);
 	List<IArea> response = new ArrayList<>();
-	response.addAll(resolved.values());
-	return response;
-    }
-
-    /**
-     * Resolve areas recursively.
-     * 
-     * @param current
-     * @param recursive
-     * @param matches
-     * @param deviceManagement
-     * @throws SiteWhereException
-     */
-    protected static void resolveAreasRecursively(IArea current, boolean recursive, Map<String, IArea> matches,
-	    IDeviceManagement deviceManagement) throws SiteWhereException {
-	matches.put(current.getToken(), current);
-	List<IArea> children = deviceManagement.getAreaChildren(current.getToken());
-	for (IArea child : children) {
-	    resolveAreasRecursively(child, recursive, matches, deviceManagement);
+	for (String token : resolveAreaTokensRecursive(areaToken, recursive, deviceManagement)) {
+	    IArea area = deviceManagement.getAreaByToken(token);
+	    if (area != null) {
+		response.add(area);
+	    }
 	}
+	return response;
     }
 
     private IDeviceManagement getDeviceManagement() {
@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -43,6 +44,7 @@ import com.sitewhere.device.charting.ChartBuilder;
 import com.sitewhere.device.marshaling.DeviceAssignmentMarshalHelper;
 import com.sitewhere.device.marshaling.DeviceCommandInvocationMarshalHelper;
 import com.sitewhere.grpc.client.event.BlockingDeviceEventManagement;
+import com.sitewhere.grpc.client.event.DeviceEventSearchIterator;
 import com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel;
 import com.sitewhere.rest.model.device.DeviceAssignment;
 import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
@@ -249,13 +251,13 @@ public class Assignments extends RestControllerBase {
 	// If limiting by customer, look up customer and contained customers.
 	if (customerToken != null) {
 	    List<String> customers = Customers.resolveCustomerTokensRecursive(customerToken, true,
-		    getDeviceManagement());
+		    getCachedDeviceManagement());
 	    criteria.setCustomerTokens(customers);
 	}
 
 	// If limiting by area, look up area and contained areas.
 	if (areaToken != null) {
-	    List<String> areas = Areas.resolveAreaTokensRecursive(areaToken, true, getDeviceManagement());
+	    List<String> areas = Areas.resolveAreaTokensRecursive(areaToken, true, getCachedDeviceManagement());
 	    criteria.setAreaTokens(areas);
 	}
 
@@ -379,13 +381,17 @@ public class Assignments extends RestControllerBase {
     }
 
     /**
-     * List measurement events for multiple assignments as chart series data.
+     * List measurement events for multiple assignments as chart series data. If
+     * a maximum number of points is specified, all measurements in the date range
+     * are streamed in a single query across all assignments and each series is
+     * downsampled to the point budget (paging parameters are ignored).
      * 
      * @param page
      * @param pageSize
      * @param startDate
      * @param endDate
      * @param measurementIds
+     * @param maxPoints
      * @param bulk
      * @param response
      * @return
@@ -399,9 +405,35 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @ApiParam(value = "Measurement Ids", required = false) @RequestParam(required = false) String[] measurementIds,
+	    @ApiParam(value = "Maximum points per series", required = false) @RequestParam(required = false, defaultValue = "0") int maxPoints,
 	    @RequestBody DeviceAssignmentBulkRequest bulk, HttpServletResponse response) throws SiteWhereException {
 	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
 	Map<String, List<IChartSeries<Double>>> results = new HashMap<String, List<IChartSeries<Double>>>();
+	if (maxPoints > 0) {
+	    Map<UUID, ChartBuilder> builders = new HashMap<UUID, ChartBuilder>();
+	    Map<UUID, String> tokens = new HashMap<UUID, String>();
+	    for (String token : bulk.getDeviceAssignmentTokens()) {
+		IDeviceAssignment assignment = assertDeviceAssignment(token);
+		ChartBuilder builder = new ChartBuilder(maxPoints);
+		builder.start(measurementIds);
+		builders.put(assignment.getId(), builder);
+		tokens.put(assignment.getId(), token);
+	    }
+	    Iterator<IDeviceMeasurement> measurements = getDeviceEventManagement().iterateDeviceMeasurementsForIndex(
+		    DeviceEventIndex.Assignment, new ArrayList<UUID>(builders.keySet()), criteria,
+		    DeviceEventSearchIterator.DEFAULT_PAGE_SIZE);
+	    while (measurements.hasNext()) {
+		IDeviceMeasurement measurement = measurements.next();
+		ChartBuilder builder = builders.get(measurement.getDeviceAssignmentId());
+		if (builder != null) {
+		    builder.add(measurement);
+		}
+	    }
+	    for (Map.Entry<UUID, ChartBuilder> entry : builders.entrySet()) {
+		results.put(tokens.get(entry.getKey()), entry.getValue().build());
+	    }
+	    return results;
+	}
 	for (String token : bulk.getDeviceAssignmentTokens()) {
 	    IDeviceAssignment assignment = assertDeviceAssignment(token);
 	    ISearchResults<IDeviceMeasurement> measurements = new BlockingDeviceEventManagement(
@@ -422,6 +454,7 @@ public class Assignments extends RestControllerBase {
      * @param startDate
      * @param endDate
      * @param measurementIds
+     * @param maxPoints
      * @param response
      * @return
      * @throws SiteWhereException
@@ -435,9 +468,18 @@ public class Assignments extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    @ApiParam(value = "Measurement Ids", required = false) @RequestParam(required = false) String[] measurementIds,
+	    @ApiParam(value = "Maximum points per series", required = false) @RequestParam(required = false, defaultValue = "0") int maxPoints,
 	    HttpServletResponse response) throws SiteWhereException {
 	IDateRangeSearchCriteria criteria = createDateRangeSearchCriteria(page, pageSize, startDate, endDate, response);
 	IDeviceAssignment assignment = assertDeviceAssignment(token);
+
+	// Stream entire date range and downsample to point budget.
+	if (maxPoints > 0) {
+	    Iterator<IDeviceMeasurement> measurements = getDeviceEventManagement().iterateDeviceMeasurementsForIndex(
+		    DeviceEventIndex.Assignment, Collections.singletonList(assignment.getId()), criteria,
+		    DeviceEventSearchIterator.DEFAULT_PAGE_SIZE);
+	    return new ChartBuilder(maxPoints).process(measurements, measurementIds);
+	}
 	ISearchResults<IDeviceMeasurement> measurements = new BlockingDeviceEventManagement(getDeviceEventManagement())
 		.listDeviceMeasurementsForIndex(DeviceEventIndex.Assignment,
 			Collections.singletonList(assignment.getId()), criteria);
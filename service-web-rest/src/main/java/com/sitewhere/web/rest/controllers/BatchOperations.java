@@ -9,6 +9,7 @@ package com.sitewhere.web.rest.controllers;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.servlet.http.HttpServletRequest;
@@ -36,6 +37,7 @@ import com.sitewhere.schedule.ScheduledJobHelper;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.asset.IAssetManagement;
+import com.sitewhere.spi.batch.ElementProcessingStatus;
 import com.sitewhere.spi.batch.IBatchElement;
 import com.sitewhere.spi.batch.IBatchManagement;
 import com.sitewhere.spi.batch.IBatchOperation;
@@ -124,6 +126,16 @@ public class BatchOperations extends RestControllerBase {
 	return new SearchResults<IBatchElement>(converted, results.getNumResults());
     }
 
+    @RequestMapping(value = "/{operationToken}/elements/counts", method = RequestMethod.GET)
+    @ApiOperation(value = "Get batch operation element counts by processing status")
+    @Secured({ SiteWhereRoles.REST })
+    public Map<ElementProcessingStatus, Long> getBatchOperationElementCounts(
+	    @ApiParam(value = "Unique batch operation token", required = true) @PathVariable String operationToken,
+	    HttpServletRequest servletRequest) throws SiteWhereException {
+	IBatchOperation batchOperation = assureBatchOperation(operationToken);
+	return getBatchManagement().getBatchElementCounts(batchOperation.getId());
+    }
+
     @RequestMapping(value = "/command", method = RequestMethod.POST)
     @ApiOperation(value = "Create new batch command invocation")
     @Secured({ SiteWhereRoles.REST })
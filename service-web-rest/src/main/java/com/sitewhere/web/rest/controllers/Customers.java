@@ -9,7 +9,6 @@ package com.sitewhere.web.rest.controllers;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -40,6 +39,7 @@ import com.sitewhere.rest.model.device.DeviceAssignment;
 import com.sitewhere.rest.model.device.asset.DeviceAlertWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceCommandInvocationWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceCommandResponseWithAsset;
+import com.sitewhere.rest.model.device.asset.DeviceEventWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceLocationWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceMeasurementsWithAsset;
 import com.sitewhere.rest.model.device.asset.DeviceStateChangeWithAsset;
@@ -48,6 +48,7 @@ import com.sitewhere.rest.model.search.customer.CustomerSearchCriteria;
 import com.sitewhere.rest.model.search.device.DeviceAssignmentSearchCriteria;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.asset.IAsset;
 import com.sitewhere.spi.asset.IAssetManagement;
 import com.sitewhere.spi.customer.ICustomer;
 import com.sitewhere.spi.device.DeviceAssignmentStatus;
@@ -71,6 +72,7 @@ import com.sitewhere.spi.search.ITreeNode;
 import com.sitewhere.spi.user.SiteWhereRoles;
 import com.sitewhere.web.annotation.SiteWhereCrossOrigin;
 import com.sitewhere.web.rest.RestControllerBase;
+import com.sitewhere.web.rest.model.TreeNodeSearch;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -284,15 +286,17 @@ public class Customers extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getDeviceManagement());
+	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceMeasurement> results = getDeviceEventManagement()
 		.listDeviceMeasurementsForIndex(DeviceEventIndex.Customer, customers, criteria);
 
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceMeasurement> wrapped = new ArrayList<IDeviceMeasurement>();
 	for (IDeviceMeasurement result : results.getResults()) {
-	    wrapped.add(new DeviceMeasurementsWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceMeasurementsWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceMeasurement>(wrapped, results.getNumResults());
     }
@@ -319,16 +323,18 @@ public class Customers extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getDeviceManagement());
+	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceLocation> results = getDeviceEventManagement()
 		.listDeviceLocationsForIndex(DeviceEventIndex.Customer, customers, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceLocation> wrapped = new ArrayList<IDeviceLocation>();
 	for (IDeviceLocation result : results.getResults()) {
-	    wrapped.add(new DeviceLocationWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceLocationWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceLocation>(wrapped, results.getNumResults());
     }
@@ -355,16 +361,18 @@ public class Customers extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getDeviceManagement());
+	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceAlert> results = getDeviceEventManagement()
 		.listDeviceAlertsForIndex(DeviceEventIndex.Customer, customers, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceAlert> wrapped = new ArrayList<IDeviceAlert>();
 	for (IDeviceAlert result : results.getResults()) {
-	    wrapped.add(new DeviceAlertWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceAlertWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceAlert>(wrapped, results.getNumResults());
     }
@@ -391,16 +399,18 @@ public class Customers extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getDeviceManagement());
+	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceCommandInvocation> results = getDeviceEventManagement()
 		.listDeviceCommandInvocationsForIndex(DeviceEventIndex.Customer, customers, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceCommandInvocation> wrapped = new ArrayList<IDeviceCommandInvocation>();
 	for (IDeviceCommandInvocation result : results.getResults()) {
-	    wrapped.add(new DeviceCommandInvocationWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceCommandInvocationWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceCommandInvocation>(wrapped, results.getNumResults());
     }
@@ -427,16 +437,18 @@ public class Customers extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getDeviceManagement());
+	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceCommandResponse> results = getDeviceEventManagement()
 		.listDeviceCommandResponsesForIndex(DeviceEventIndex.Customer, customers, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceCommandResponse> wrapped = new ArrayList<IDeviceCommandResponse>();
 	for (IDeviceCommandResponse result : results.getResults()) {
-	    wrapped.add(new DeviceCommandResponseWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceCommandResponseWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceCommandResponse>(wrapped, results.getNumResults());
     }
@@ -463,16 +475,18 @@ public class Customers extends RestControllerBase {
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) String startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) String endDate,
 	    HttpServletResponse response) throws SiteWhereException {
-	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getDeviceManagement());
+	List<UUID> customers = resolveCustomerIdsRecursive(customerToken, true, getCachedDeviceManagement());
 	IDateRangeSearchCriteria criteria = Assignments.createDateRangeSearchCriteria(page, pageSize, startDate,
 		endDate, response);
 	ISearchResults<IDeviceStateChange> results = getDeviceEventManagement()
 		.listDeviceStateChangesForIndex(DeviceEventIndex.Customer, customers, criteria);
 
 	// Marshal with asset info since multiple assignments might match.
+	Map<UUID, IAsset> assets = DeviceEventWithAsset.resolveAssets(results.getResults(),
+		getCachedAssetManagement());
 	List<IDeviceStateChange> wrapped = new ArrayList<IDeviceStateChange>();
 	for (IDeviceStateChange result : results.getResults()) {
-	    wrapped.add(new DeviceStateChangeWithAsset(result, getCachedAssetManagement()));
+	    wrapped.add(new DeviceStateChangeWithAsset(result, assets.get(result.getAssetId())));
 	}
 	return new SearchResults<IDeviceStateChange>(wrapped, results.getNumResults());
     }
@@ -507,7 +521,7 @@ public class Customers extends RestControllerBase {
 	if (decodedStatus != null) {
 	    criteria.setAssignmentStatuses(Collections.singletonList(decodedStatus));
 	}
-	List<String> customers = resolveCustomerTokensRecursive(customerToken, true, getDeviceManagement());
+	List<String> customers = resolveCustomerTokensRecursive(customerToken, true, getCachedDeviceManagement());
 	criteria.setCustomerTokens(customers);
 
 	ISearchResults<IDeviceAssignment> matches = getDeviceManagement().listDeviceAssignments(criteria);
@@ -534,12 +548,15 @@ public class Customers extends RestControllerBase {
      */
     public static List<String> resolveCustomerTokensRecursive(String customerToken, boolean recursive,
 	    IDeviceManagement deviceManagement) throws SiteWhereException {
-	List<ICustomer> customers = resolveCustomers(customerToken, recursive, deviceManagement);
-	List<String> ids = new ArrayList<>();
-	for (ICustomer customer : customers) {
-	    ids.add(customer.getToken());
+	List<String> tokens = new ArrayList<>();
+	if (deviceManagement.getCustomerByToken(customerToken) == null) {
+	    return tokens;
 	}
-	return ids;
+	tokens.add(customerToken);
+	if (recursive) {
+	    tokens.addAll(TreeNodeSearch.getDescendantTokens(deviceManagement.getCustomersTree(), customerToken));
+	}
+	return tokens;
     }
 
     /**
@@ -572,33 +589,14 @@ public class Customers extends RestControllerBase {
      */
     public static List<ICustomer> resolveCustomers(String customerToken, boolean recursive,
 	    IDeviceManagement deviceManagement) throws SiteWhereException {
-	ICustomer existing = deviceManagement.getCustomerByToken(customerToken);
-	if (existing == null) {
-	    return new ArrayList<ICustomer>();
-	}
-	Map<String, ICustomer> resolved = new HashMap<>();
-	resolveCustomersRecursively(existing, recursive, resolved, deviceManagement);
 	List<ICustomer> response = new ArrayList<>();
-	response.addAll(resolved.values());
-	return response;
-    }
-
-    /**
-     * Resolve customers recursively.
-     * 
-     * @param current
-     * @param recursive
-     * @param matches
-     * @param deviceManagement
-     * @throws SiteWhereException
-     */
-    protected static void resolveCustomersRecursively(ICustomer current, boolean recursive,
-	    Map<String, ICustomer> matches, IDeviceManagement deviceManagement) throws SiteWhereException {
-	matches.put(current.getToken(), current);
-	List<ICustomer> children = deviceManagement.getCustomerChildren(current.getToken());
-	for (ICustomer child : children) {
-	    resolveCustomersRecursively(child, recursive, matches, deviceManagement);
+	for (String token : resolveCustomerTokensRecursive(customerToken, recursive, deviceManagement)) {
+	    ICustomer customer = deviceManagement.getCustomerByToken(token);
+	    if (customer != null) {
+		response.add(customer);
+	    }
 	}
+	return response;
     }
 
     /**
@@ -7,13 +7,29 @@
  */
 package com.sitewhere.web.rest.controllers;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.UUID;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -25,6 +41,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -84,9 +102,26 @@ import io.swagger.annotations.ApiParam;
 public class Devices extends RestControllerBase {
 
     /** Static logger instance */
-    @SuppressWarnings("unused")
     private static Log LOGGER = LogFactory.getLog(Devices.class);
 
+    /** Number of threads used to generate labels in parallel */
+    private static final int LABEL_GENERATION_THREADS = 8;
+
+    /** Maximum number of labels that may be requested at once */
+    private static final int MAX_LABELS_PER_REQUEST = 1000;
+
+    /** Executor shared by all label requests */
+    private ExecutorService labelExecutor = Executors.newFixedThreadPool(LABEL_GENERATION_THREADS,
+	    new LabelGeneratorThreadFactory());
+
+    /**
+     * Stop label generation threads when controller is destroyed.
+     */
+    @PreDestroy
+    public void shutdownLabelExecutor() {
+	labelExecutor.shutdownNow();
+    }
+
     /**
      * Create a device.
      * 
@@ -174,6 +209,85 @@ public class Devices extends RestControllerBase {
 	return new ResponseEntity<byte[]>(label.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * Get labels for a list of devices as a ZIP archive. Labels are requested in
+     * parallel and each is written to the response as soon as it is available.
+     * Devices without a label are listed in an errors.txt entry rather than
+     * failing the whole archive.
+     * 
+     * @param generatorId
+     * @param deviceTokens
+     * @param servletRequest
+     * @param response
+     * @throws SiteWhereException
+     */
+    @RequestMapping(value = "/labels/{generatorId}", method = RequestMethod.POST)
+    @ApiOperation(value = "Get labels for multiple devices as a ZIP archive")
+    @Secured({ SiteWhereRoles.REST })
+    public void getDeviceLabels(@ApiParam(value = "Generator id", required = true) @PathVariable String generatorId,
+	    @RequestBody List<String> deviceTokens, HttpServletRequest servletRequest, HttpServletResponse response)
+	    throws SiteWhereException {
+	// Each device gets one entry, since ZIP entry names must be unique.
+	Collection<String> uniqueTokens = new LinkedHashSet<>(deviceTokens);
+	if (uniqueTokens.size() > MAX_LABELS_PER_REQUEST) {
+	    try {
+		response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+			"No more than " + MAX_LABELS_PER_REQUEST + " labels may be requested at once.");
+	    } catch (IOException e) {
+		LOGGER.error(e);
+	    }
+	    return;
+	}
+	response.setContentType("application/zip");
+	response.setHeader("Content-Disposition", "attachment; filename=\"labels.zip\"");
+
+	// Worker threads act on behalf of the current user and tenant.
+	Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+	CompletionService<DeviceLabel> completion = new ExecutorCompletionService<>(labelExecutor);
+	List<Future<DeviceLabel>> inFlight = new ArrayList<>();
+	List<String> errors = new ArrayList<>();
+	try (ZipOutputStream zip = new ZipOutputStream(response.getOutputStream())) {
+	    // Keep a bounded number of labels in flight.
+	    Iterator<String> tokens = uniqueTokens.iterator();
+	    while ((inFlight.size() < LABEL_GENERATION_THREADS) && (tokens.hasNext())) {
+		inFlight.add(completion.submit(new DeviceLabelLoader(authentication, tokens.next(), generatorId)));
+	    }
+	    while (!inFlight.isEmpty()) {
+		Future<DeviceLabel> completed = completion.take();
+		inFlight.remove(completed);
+		DeviceLabel label = completed.get();
+		if (tokens.hasNext()) {
+		    inFlight.add(completion.submit(new DeviceLabelLoader(authentication, tokens.next(), generatorId)));
+		}
+		if (label.getContent() == null) {
+		    LOGGER.warn("No label generated for device '" + label.getDeviceToken() + "'.");
+		    errors.add(label.getDeviceToken() + ": " + label.getError());
+		    continue;
+		}
+		zip.putNextEntry(new ZipEntry(label.getDeviceToken() + ".png"));
+		zip.write(label.getContent());
+		zip.closeEntry();
+	    }
+	    if (!errors.isEmpty()) {
+		zip.putNextEntry(new ZipEntry("errors.txt"));
+		zip.write(String.join("\n", errors).getBytes(StandardCharsets.UTF_8));
+		zip.closeEntry();
+	    }
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to write device labels.", e);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while generating device labels.", e);
+	} catch (ExecutionException e) {
+	    throw new SiteWhereException("Unable to generate device label.", e.getCause());
+	} finally {
+	    // Do not leave work for this request on the shared executor.
+	    for (Future<DeviceLabel> future : inFlight) {
+		future.cancel(true);
+	    }
+	}
+    }
+
     /**
      * Delete device identified by token.
      * 
@@ -555,4 +669,94 @@ public class Devices extends RestControllerBase {
     private ILabelGeneration getLabelGeneration() {
 	return getMicroservice().getLabelGenerationApiChannel();
     }
+
+    /**
+     * Label content for a device.
+     */
+    private static class DeviceLabel {
+
+	/** Device token */
+	private String deviceToken;
+
+	/** Label content */
+	private byte[] content;
+
+	/** Reason label content is missing */
+	private String error;
+
+	public DeviceLabel(String deviceToken, byte[] content, String error) {
+	    this.deviceToken = deviceToken;
+	    this.content = content;
+	    this.error = error;
+	}
+
+	public String getDeviceToken() {
+	    return deviceToken;
+	}
+
+	public byte[] getContent() {
+	    return content;
+	}
+
+	public String getError() {
+	    return error;
+	}
+    }
+
+    /**
+     * Loads the label for a single device using the caller's credentials.
+     */
+    private class DeviceLabelLoader implements Callable<DeviceLabel> {
+
+	/** Authentication of caller */
+	private Authentication authentication;
+
+	/** Device token */
+	private String deviceToken;
+
+	/** Generator id */
+	private String generatorId;
+
+	public DeviceLabelLoader(Authentication authentication, String deviceToken, String generatorId) {
+	    this.authentication = authentication;
+	    this.deviceToken = deviceToken;
+	    this.generatorId = generatorId;
+	}
+
+	/*
+	 * @see java.util.concurrent.Callable#call()
+	 */
+	@Override
+	public DeviceLabel call() throws Exception {
+	    SecurityContextHolder.getContext().setAuthentication(authentication);
+	    try {
+		IDevice device = getCachedDeviceManagement().getDeviceByToken(deviceToken);
+		if (device == null) {
+		    return new DeviceLabel(deviceToken, null, "Device not found.");
+		}
+		ILabel label = getLabelGeneration().getDeviceLabel(generatorId, device.getId());
+		if ((label == null) || (label.getContent() == null)) {
+		    return new DeviceLabel(deviceToken, null, "No label generated.");
+		}
+		return new DeviceLabel(deviceToken, label.getContent(), null);
+	    } catch (Exception e) {
+		// One failed label should not abort the rest of the archive.
+		LOGGER.error("Unable to generate label for device '" + deviceToken + "'.", e);
+		return new DeviceLabel(deviceToken, null, "Label generation failed.");
+	    } finally {
+		SecurityContextHolder.clearContext();
+	    }
+	}
+    }
+
+    /** Used for naming label generator threads */
+    private class LabelGeneratorThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Device Label Generator " + counter.incrementAndGet());
+	}
+    }
 }
\ No newline at end of file
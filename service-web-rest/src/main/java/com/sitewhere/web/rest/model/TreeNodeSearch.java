@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web.rest.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sitewhere.spi.search.ITreeNode;
+
+/**
+ * Resolves subtrees from a hierarchy tree (areas or customers) so that nested
+ * entities can be located from a single cached tree rather than walking the
+ * hierarchy with one request per node.
+ * 
+ * @author Derek
+ */
+public class TreeNodeSearch {
+
+    /**
+     * Find the node with the given token.
+     * 
+     * @param nodes
+     * @param token
+     * @return
+     */
+    public static ITreeNode find(List<? extends ITreeNode> nodes, String token) {
+	if (nodes == null) {
+	    return null;
+	}
+	for (ITreeNode node : nodes) {
+	    if (token.equals(node.getToken())) {
+		return node;
+	    }
+	    ITreeNode match = find(node.getChildren(), token);
+	    if (match != null) {
+		return match;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Get tokens for all nodes below the node with the given token.
+     * 
+     * @param nodes
+     * @param token
+     * @return
+     */
+    public static List<String> getDescendantTokens(List<? extends ITreeNode> nodes, String token) {
+	List<String> tokens = new ArrayList<>();
+	ITreeNode node = find(nodes, token);
+	if (node != null) {
+	    addTokens(node.getChildren(), tokens);
+	}
+	return tokens;
+    }
+
+    /**
+     * Add tokens for nodes and all of their descendants.
+     * 
+     * @param nodes
+     * @param tokens
+     */
+    protected static void addTokens(List<? extends ITreeNode> nodes, List<String> tokens) {
+	if (nodes != null) {
+	    for (ITreeNode node : nodes) {
+		tokens.add(node.getToken());
+		addTokens(node.getChildren(), tokens);
+	    }
+	}
+    }
+}
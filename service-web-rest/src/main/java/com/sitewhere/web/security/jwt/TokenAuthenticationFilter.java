@@ -78,27 +78,15 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
 	String tenantId = SiteWhereHttpHeaders.getTenantIdFromHeader(request);
 	String tenantAuth = SiteWhereHttpHeaders.getTenantAuthFromHeader(request);
 	if (jwt != null) {
-	    // Get username from token and load user.
-	    ITokenManagement tokenManagement = getMicroservice().getTokenManagement();
 	    try {
-		Claims claims = tokenManagement.getClaimsForToken(jwt);
-		String username = tokenManagement.getUsernameFromClaims(claims);
-		LOGGER.debug("JWT decoded for username: " + username);
-		List<IGrantedAuthority> auths = tokenManagement.getGrantedAuthoritiesFromClaims(claims);
-		List<GrantedAuthority> springAuths = new ArrayList<GrantedAuthority>();
-		for (IGrantedAuthority auth : auths) {
-		    springAuths.add(new SitewhereGrantedAuthority(auth));
-		}
-
-		// Create authentication object based on JWT and tenant token.
-		JwtAuthenticationToken token = new JwtAuthenticationToken(username, springAuths, jwt);
-		Authentication authenticated = getAuthenticationManager().authenticate(token);
 		if ((!StringUtils.isEmpty(tenantId)) && (StringUtils.isEmpty(tenantAuth))) {
 		    throw new SiteWhereException("Tenant id passed without corresponding tenant auth token.");
 		}
 
-		// Add tenant authentication data if provided.
-		addTenantAuthenticationData(authenticated, tenantId, tenantAuth);
+		// Reuse authentication for previously verified JWT and tenant.
+		String tenantKey = (!StringUtils.isEmpty(tenantId)) ? tenantId + ":" + tenantAuth : null;
+		Authentication authenticated = getMicroservice().getVerifiedTokenCache().getAuthentication(jwt,
+			tenantKey, claims -> buildAuthentication(jwt, claims, tenantId, tenantAuth));
 
 		SecurityContextHolder.getContext().setAuthentication(authenticated);
 		LOGGER.debug("Added authentication to context.");
@@ -124,6 +112,37 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
 	}
     }
 
+    /**
+     * Build authentication based on verified JWT claims and tenant token.
+     * 
+     * @param jwt
+     * @param claims
+     * @param tenantId
+     * @param tenantAuth
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Authentication buildAuthentication(String jwt, Claims claims, String tenantId, String tenantAuth)
+	    throws SiteWhereException {
+	// Get username from token and load user.
+	ITokenManagement tokenManagement = getMicroservice().getTokenManagement();
+	String username = tokenManagement.getUsernameFromClaims(claims);
+	LOGGER.debug("JWT decoded for username: " + username);
+	List<IGrantedAuthority> auths = tokenManagement.getGrantedAuthoritiesFromClaims(claims);
+	List<GrantedAuthority> springAuths = new ArrayList<GrantedAuthority>();
+	for (IGrantedAuthority auth : auths) {
+	    springAuths.add(new SitewhereGrantedAuthority(auth));
+	}
+
+	// Create authentication object based on JWT and tenant token.
+	JwtAuthenticationToken token = new JwtAuthenticationToken(username, springAuths, jwt);
+	Authentication authenticated = getAuthenticationManager().authenticate(token);
+
+	// Add tenant authentication data if provided.
+	addTenantAuthenticationData(authenticated, tenantId, tenantAuth);
+	return authenticated;
+    }
+
     /**
      * Based on fields passed in HTTP headers, look up tenant and verify that tenant
      * auth token is valid. Store tenant information in Spring authentication data
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmarks.charting;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.sitewhere.device.charting.ChartBuilder;
+import com.sitewhere.device.charting.LargestTriangleThreeBuckets;
+import com.sitewhere.device.charting.MinMaxBucketDownsampler;
+import com.sitewhere.device.charting.SeriesBuffer;
+import com.sitewhere.rest.model.device.event.DeviceMeasurement;
+import com.sitewhere.spi.device.charting.IChartSeries;
+import com.sitewhere.spi.device.event.IDeviceMeasurement;
+
+/**
+ * Measures time and allocations for building chart series from large numbers
+ * of measurements. The baseline builds one chart entry per measurement and
+ * sorts the result as the chart endpoints did before downsampling was added.
+ * 
+ * @author Derek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChartBuilderBenchmark {
+
+    /** Number of measurements in input */
+    @Param({ "100000", "1000000" })
+    private int pointCount;
+
+    /** Maximum points per series */
+    @Param({ "500", "2000" })
+    private int maxPoints;
+
+    /** Measurements (most recent first as returned by event queries) */
+    private List<IDeviceMeasurement> measurements;
+
+    /** Same points as a primitive series in ascending order */
+    private SeriesBuffer series;
+
+    @Setup
+    public void setup() {
+	Random random = new Random(42);
+	long start = System.currentTimeMillis() - (pointCount * 1000L);
+	double value = 50;
+	this.series = new SeriesBuffer(pointCount);
+	List<IDeviceMeasurement> ascending = new ArrayList<IDeviceMeasurement>(pointCount);
+	for (int i = 0; i < pointCount; i++) {
+	    // Random walk with occasional spikes.
+	    value += random.nextGaussian();
+	    double point = (random.nextInt(10000) == 0) ? value * 3 : value;
+	    long time = start + (i * 1000L);
+	    series.add(time, point);
+
+	    DeviceMeasurement mx = new DeviceMeasurement();
+	    mx.setName("engine.temperature");
+	    mx.setValue(point);
+	    mx.setEventDate(new Date(time));
+	    ascending.add(mx);
+	}
+	this.measurements = new ArrayList<IDeviceMeasurement>(pointCount);
+	for (int i = pointCount - 1; i >= 0; i--) {
+	    measurements.add(ascending.get(i));
+	}
+    }
+
+    @Benchmark
+    public List<IChartSeries<Double>> processBaseline() {
+	return new ChartBuilder().process(measurements, null);
+    }
+
+    @Benchmark
+    public List<IChartSeries<Double>> processDownsampled() {
+	return new ChartBuilder(maxPoints).process(measurements.iterator(), null);
+    }
+
+    @Benchmark
+    public SeriesBuffer largestTriangleThreeBuckets() {
+	return LargestTriangleThreeBuckets.downsample(series, maxPoints);
+    }
+
+    @Benchmark
+    public SeriesBuffer minMaxBuckets() {
+	MinMaxBucketDownsampler sampler = new MinMaxBucketDownsampler(maxPoints);
+	for (int i = 0; i < series.size(); i++) {
+	    sampler.add(series.getTime(i), series.getValue(i));
+	}
+	return sampler.getSeries();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmarks.sources;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sitewhere.rest.model.device.event.DeviceEventBatch;
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementCreateRequest;
+import com.sitewhere.sources.decoder.json.JsonBatchEventDecoder;
+import com.sitewhere.sources.decoder.json.JsonDeviceRequestDecoder;
+import com.sitewhere.sources.spi.IDecodedDeviceRequest;
+
+/**
+ * Measures throughput and allocations per payload for the JSON decoders. The
+ * tree-model benchmarks reproduce the previous decode path as a baseline.
+ * 
+ * @author Derek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsonDecoderBenchmark {
+
+    /** Number of measurements in batch payload */
+    @Param({ "1", "10", "100" })
+    private int batchSize;
+
+    /** Mapper used for baseline decoding */
+    private ObjectMapper mapper = new ObjectMapper();
+
+    /** Decoder for single requests */
+    private JsonDeviceRequestDecoder requestDecoder;
+
+    /** Decoder for batches */
+    private JsonBatchEventDecoder batchDecoder;
+
+    /** Single request payload */
+    private byte[] request;
+
+    /** Batch payload */
+    private byte[] batch;
+
+    @Setup
+    public void setup() {
+	this.requestDecoder = new JsonDeviceRequestDecoder();
+	this.batchDecoder = new JsonBatchEventDecoder();
+
+	long now = System.currentTimeMillis();
+	String measurement = "{\"name\":\"engine.temperature\",\"value\":98.6,\"eventDate\":" + now
+		+ ",\"metadata\":{\"unit\":\"fahrenheit\"}}";
+	String single = "{\"deviceToken\":\"benchmark-device\",\"type\":\"DeviceMeasurement\",\"request\":"
+		+ measurement + "}";
+	this.request = single.getBytes(StandardCharsets.UTF_8);
+
+	StringBuilder json = new StringBuilder("{\"deviceToken\":\"benchmark-device\",\"measurements\":[");
+	for (int i = 0; i < batchSize; i++) {
+	    json.append((i > 0) ? "," : "").append(measurement);
+	}
+	json.append("]}");
+	this.batch = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> decodeRequest() throws Exception {
+	return requestDecoder.decode(request, null);
+    }
+
+    @Benchmark
+    public Object decodeRequestTreeBaseline() throws Exception {
+	JsonNode node = mapper.readTree(request);
+	return mapper.treeToValue(node.get("request"), DeviceMeasurementCreateRequest.class);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> decodeBatch() throws Exception {
+	return batchDecoder.decode(batch, null);
+    }
+
+    @Benchmark
+    public DeviceEventBatch decodeBatchBaseline() throws Exception {
+	return mapper.readValue(batch, DeviceEventBatch.class);
+    }
+}
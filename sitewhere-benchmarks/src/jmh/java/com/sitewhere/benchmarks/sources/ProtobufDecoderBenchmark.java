@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmarks.sources;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementCreateRequest;
+import com.sitewhere.sources.DecodedDeviceRequest;
+import com.sitewhere.sources.decoder.protobuf.ProtobufDeviceEventDecoder;
+import com.sitewhere.sources.decoder.protobuf.ProtobufDeviceEventEncoder;
+import com.sitewhere.sources.spi.IDecodedDeviceRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMeasurementCreateRequest;
+
+/**
+ * Measures throughput and allocations per event for decoding protobuf
+ * measurement payloads.
+ * 
+ * @author Derek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProtobufDecoderBenchmark {
+
+    /** Decoder being measured */
+    private ProtobufDeviceEventDecoder decoder;
+
+    /** Encoded payload as array */
+    private byte[] payload;
+
+    /** Encoded payload in direct buffer */
+    private ByteBuffer direct;
+
+    @Setup
+    public void setup() throws Exception {
+	DeviceMeasurementCreateRequest mx = new DeviceMeasurementCreateRequest();
+	mx.setName("engine.temperature");
+	mx.setValue(98.6);
+	mx.setEventDate(new Date());
+	mx.setMetadata(Collections.singletonMap("unit", "fahrenheit"));
+
+	DecodedDeviceRequest<IDeviceMeasurementCreateRequest> request = new DecodedDeviceRequest<IDeviceMeasurementCreateRequest>();
+	request.setDeviceToken("benchmark-device");
+	request.setRequest(mx);
+
+	this.decoder = new ProtobufDeviceEventDecoder();
+	this.payload = new ProtobufDeviceEventEncoder().encode(request);
+	this.direct = ByteBuffer.allocateDirect(payload.length);
+	direct.put(payload);
+	direct.flip();
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> decodeArray() throws Exception {
+	return decoder.decode(payload, null);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> decodeDirectBuffer() throws Exception {
+	return decoder.decode(direct);
+    }
+}
@@ -112,12 +112,44 @@ public class MqttLifecycleComponent extends TenantEngineLifecycleComponent imple
      * @throws SiteWhereException
      */
     public FutureConnection getConnection() throws SiteWhereException {
-	FutureConnection connection = mqtt.futureConnection();
+	return connect(mqtt.futureConnection());
+    }
+
+    /**
+     * Get a {@link FutureConnection} to the MQTT broker using the given client id.
+     * Components that hold more than one connection need a distinct client id for
+     * each, since the broker drops an existing session when its id is reused.
+     * The copied client settings would otherwise include any dispatch queue of the
+     * original, so each connection is given its own queue and callbacks for one
+     * connection are never serialized behind another.
+     * 
+     * @param clientId
+     * @return
+     * @throws SiteWhereException
+     */
+    public FutureConnection getConnection(String clientId) throws SiteWhereException {
+	MQTT copy = new MQTT(mqtt);
+	copy.setClientId(clientId);
+	copy.setDispatchQueue(Dispatch.createQueue(clientId));
+	return connect(copy.futureConnection());
+    }
+
+    /**
+     * Connect to the broker and wait for the connection to be established. A
+     * connection that can not be established in time is killed so that it does
+     * not keep reconnecting in the background.
+     * 
+     * @param connection
+     * @return
+     * @throws SiteWhereException
+     */
+    protected FutureConnection connect(FutureConnection connection) throws SiteWhereException {
 	try {
 	    Future<Void> future = connection.connect();
 	    future.await(DEFAULT_CONNECT_TIMEOUT_SECS, TimeUnit.SECONDS);
 	    return connection;
 	} catch (Exception e) {
+	    connection.kill();
 	    throw new SiteWhereException("Unable to connect to MQTT broker.", e);
 	}
     }
@@ -9,6 +9,7 @@ package com.sitewhere.rest.model.device.asset;
 
 import com.sitewhere.rest.model.device.event.DeviceAlert;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.asset.IAsset;
 import com.sitewhere.spi.asset.IAssetManagement;
 import com.sitewhere.spi.device.event.AlertLevel;
 import com.sitewhere.spi.device.event.AlertSource;
@@ -29,6 +30,10 @@ public class DeviceAlertWithAsset extends DeviceEventWithAsset implements IDevic
 	super(wrapped, assetManagement);
     }
 
+    public DeviceAlertWithAsset(IDeviceAlert wrapped, IAsset asset) {
+	super(wrapped, asset);
+    }
+
     /*
      * (non-Javadoc)
      * 
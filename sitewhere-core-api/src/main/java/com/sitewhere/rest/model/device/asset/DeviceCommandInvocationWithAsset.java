@@ -11,6 +11,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.asset.IAsset;
 import com.sitewhere.spi.asset.IAssetManagement;
 import com.sitewhere.spi.device.event.CommandInitiator;
 import com.sitewhere.spi.device.event.CommandTarget;
@@ -26,6 +27,10 @@ public class DeviceCommandInvocationWithAsset extends DeviceEventWithAsset imple
 	super(wrapped, assetManagement);
     }
 
+    public DeviceCommandInvocationWithAsset(IDeviceCommandInvocation wrapped, IAsset asset) {
+	super(wrapped, asset);
+    }
+
     /*
      * @see com.sitewhere.spi.device.event.IDeviceCommandInvocation#getInitiator()
      */
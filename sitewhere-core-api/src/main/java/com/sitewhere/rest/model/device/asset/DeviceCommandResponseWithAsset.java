@@ -11,6 +11,7 @@ import java.util.UUID;
 
 import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.asset.IAsset;
 import com.sitewhere.spi.asset.IAssetManagement;
 import com.sitewhere.spi.device.event.IDeviceCommandResponse;
 
@@ -30,6 +31,10 @@ public class DeviceCommandResponseWithAsset extends DeviceEventWithAsset impleme
 	super(wrapped, assetManagement);
     }
 
+    public DeviceCommandResponseWithAsset(IDeviceCommandResponse wrapped, IAsset asset) {
+	super(wrapped, asset);
+    }
+
     /*
      * @see
      * com.sitewhere.spi.device.event.IDeviceCommandResponse#getOriginatingEventId()
@@ -7,8 +7,13 @@
  */
 package com.sitewhere.rest.model.device.asset;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
@@ -47,6 +52,37 @@ public class DeviceEventWithAsset implements IDeviceEventWithAsset {
 	}
     }
 
+    public DeviceEventWithAsset(IDeviceEvent wrapped, IAsset asset) {
+	this.wrapped = wrapped;
+	this.asset = asset;
+    }
+
+    /**
+     * Resolve the assets for a page of events with a single bulk lookup so that
+     * events can be wrapped without a remote call per event.
+     * 
+     * @param events
+     * @param assetManagement
+     * @return map of assets by id
+     * @throws SiteWhereException
+     */
+    public static Map<UUID, IAsset> resolveAssets(List<? extends IDeviceEvent> events,
+	    IAssetManagement assetManagement) throws SiteWhereException {
+	Set<UUID> assetIds = new LinkedHashSet<>();
+	for (IDeviceEvent event : events) {
+	    if (event.getAssetId() != null) {
+		assetIds.add(event.getAssetId());
+	    }
+	}
+	Map<UUID, IAsset> assets = new HashMap<>();
+	if (!assetIds.isEmpty()) {
+	    for (IAsset asset : assetManagement.getAssetsByIds(new ArrayList<>(assetIds))) {
+		assets.put(asset.getId(), asset);
+	    }
+	}
+	return assets;
+    }
+
     /*
      * (non-Javadoc)
      * 
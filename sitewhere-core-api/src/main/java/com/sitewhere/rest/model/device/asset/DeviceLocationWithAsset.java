@@ -9,6 +9,7 @@ package com.sitewhere.rest.model.device.asset;
 
 import com.sitewhere.rest.model.device.event.DeviceLocation;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.asset.IAsset;
 import com.sitewhere.spi.asset.IAssetManagement;
 import com.sitewhere.spi.device.event.IDeviceLocation;
 
@@ -28,6 +29,10 @@ public class DeviceLocationWithAsset extends DeviceEventWithAsset implements IDe
 	super(wrapped, assetManagement);
     }
 
+    public DeviceLocationWithAsset(IDeviceLocation wrapped, IAsset asset) {
+	super(wrapped, asset);
+    }
+
     /*
      * (non-Javadoc)
      * 
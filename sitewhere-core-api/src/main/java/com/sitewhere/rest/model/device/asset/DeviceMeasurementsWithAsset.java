@@ -12,6 +12,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.sitewhere.rest.model.device.event.DeviceMeasurement;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.asset.IAsset;
 import com.sitewhere.spi.asset.IAssetManagement;
 import com.sitewhere.spi.device.event.IDeviceMeasurement;
 
@@ -33,6 +34,10 @@ public class DeviceMeasurementsWithAsset extends DeviceEventWithAsset implements
 	super(wrapped, assetManagement);
     }
 
+    public DeviceMeasurementsWithAsset(IDeviceMeasurement wrapped, IAsset asset) {
+	super(wrapped, asset);
+    }
+
     /*
      * @see com.sitewhere.spi.device.event.IDeviceMeasurement#getName()
      */
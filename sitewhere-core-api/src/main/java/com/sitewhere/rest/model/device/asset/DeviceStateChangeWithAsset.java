@@ -8,6 +8,7 @@
 package com.sitewhere.rest.model.device.asset;
 
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.asset.IAsset;
 import com.sitewhere.spi.asset.IAssetManagement;
 import com.sitewhere.spi.device.event.IDeviceStateChange;
 
@@ -27,6 +28,10 @@ public class DeviceStateChangeWithAsset extends DeviceEventWithAsset implements
 	super(wrapped, assetManagement);
     }
 
+    public DeviceStateChangeWithAsset(IDeviceStateChange wrapped, IAsset asset) {
+	super(wrapped, asset);
+    }
+
     /*
      * @see com.sitewhere.spi.device.event.IDeviceStateChange#getAttribute()
      */
@@ -7,6 +7,7 @@
  */
 package com.sitewhere.spi.asset;
 
+import java.util.List;
 import java.util.UUID;
 
 import com.sitewhere.spi.SiteWhereException;
@@ -52,6 +53,16 @@ public interface IAssetManagement extends ITenantEngineLifecycleComponent {
      */
     public IAsset getAsset(UUID assetId) throws SiteWhereException;
 
+    /**
+     * Get all assets matching the given unique ids. Ids that do not match an
+     * asset are ignored.
+     * 
+     * @param assetIds
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IAsset> getAssetsByIds(List<UUID> assetIds) throws SiteWhereException;
+
     /**
      * Get asset by unique token.
      * 
@@ -7,6 +7,9 @@
  */
 package com.sitewhere.spi.batch;
 
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.spi.SiteWhereException;
@@ -95,6 +98,20 @@ public interface IBatchManagement extends ITenantEngineLifecycleComponent {
     public IBatchElement createBatchElement(UUID batchOperationId, IBatchElementCreateRequest request)
 	    throws SiteWhereException;
 
+    /**
+     * Create batch elements for multiple devices in a single operation. The
+     * result has one entry per request in request order. An entry is null if no
+     * element could be created for the request (e.g. the device token is invalid
+     * or an element already exists for the device).
+     * 
+     * @param batchOperationId
+     * @param requests
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IBatchElement> createBatchElements(UUID batchOperationId, List<IBatchElementCreateRequest> requests)
+	    throws SiteWhereException;
+
     /**
      * Lists elements for an {@link IBatchOperation} that meet the given criteria.
      * 
@@ -117,6 +134,47 @@ public interface IBatchManagement extends ITenantEngineLifecycleComponent {
     public IBatchElement updateBatchElement(UUID elementId, IBatchElementCreateRequest request)
 	    throws SiteWhereException;
 
+    /**
+     * Updates multiple elements of a batch operation in a single operation. Only
+     * elements currently in the expected processing status are updated so that
+     * redelivered elements do not change status twice. Element counts for the
+     * batch operation are adjusted to reflect the new status values. Metadata
+     * entries in a request are merged into the existing element metadata.
+     * 
+     * @param batchOperationId
+     * @param expected
+     * @param requestsByElementId
+     * @return ids of elements that were actually updated
+     * @throws SiteWhereException
+     */
+    public List<UUID> updateBatchElements(UUID batchOperationId, ElementProcessingStatus expected,
+	    Map<UUID, IBatchElementCreateRequest> requestsByElementId) throws SiteWhereException;
+
+    /**
+     * Claims elements of a batch operation for processing. Unprocessed elements
+     * are moved to the processing status. Elements already processing are only
+     * claimed if their claim is older than the given date, which allows elements
+     * to be recovered if a processor failed before recording a result. The claim
+     * time is stored as the processed date of each claimed element.
+     * 
+     * @param batchOperationId
+     * @param elementIds
+     * @param staleBefore
+     * @return ids of elements that were claimed
+     * @throws SiteWhereException
+     */
+    public List<UUID> claimBatchElements(UUID batchOperationId, List<UUID> elementIds, Date staleBefore)
+	    throws SiteWhereException;
+
+    /**
+     * Get the number of elements in each processing status for a batch operation.
+     * 
+     * @param batchOperationId
+     * @return
+     * @throws SiteWhereException
+     */
+    public Map<ElementProcessingStatus, Long> getBatchElementCounts(UUID batchOperationId) throws SiteWhereException;
+
     /**
      * Creates an {@link ISearchResults} that will invoke a command on multiple
      * devices.
@@ -23,6 +23,7 @@ import com.sitewhere.spi.microservice.metrics.IMetricsServer;
 import com.sitewhere.spi.microservice.scripting.IScriptTemplateManager;
 import com.sitewhere.spi.microservice.security.ISystemUser;
 import com.sitewhere.spi.microservice.security.ITokenManagement;
+import com.sitewhere.spi.microservice.security.IVerifiedTokenCache;
 import com.sitewhere.spi.microservice.state.IMicroserviceDetails;
 import com.sitewhere.spi.microservice.state.IMicroserviceState;
 import com.sitewhere.spi.microservice.state.IMicroserviceStateUpdatesKafkaProducer;
@@ -139,6 +140,13 @@ public interface IMicroservice<T extends IFunctionIdentifier>
      */
     public ITokenManagement getTokenManagement();
 
+    /**
+     * Get cache of authentication data for verified tokens.
+     * 
+     * @return
+     */
+    public IVerifiedTokenCache getVerifiedTokenCache();
+
     /**
      * Get tenant management API.
      * 
@@ -70,6 +70,29 @@ public interface IInstanceSettings {
      */
     public int getKafkaDefaultTopicReplicationFactor();
 
+    /**
+     * Indicates whether tenant engines share Kafka consumers that subscribe to
+     * tenant topics by pattern rather than each creating their own.
+     * 
+     * @return
+     */
+    public boolean isKafkaSharedConsumers();
+
+    /**
+     * Get number of threads processing records for each shared Kafka consumer.
+     * 
+     * @return
+     */
+    public int getKafkaSharedConsumerThreads();
+
+    /**
+     * Get number of records a tenant may have queued on a shared Kafka consumer
+     * before its partitions are paused.
+     * 
+     * @return
+     */
+    public int getKafkaSharedConsumerMaxInFlight();
+
     /**
      * Get hostname used by microservices to connect to Apache Syncope API.
      * 
@@ -126,6 +149,43 @@ public interface IInstanceSettings {
      */
     public boolean isGrpcResolveFQDN();
 
+    /**
+     * Get number of channels pooled for each gRPC target.
+     * 
+     * @return
+     */
+    public int getGrpcChannelPoolSize();
+
+    /**
+     * Get strategy used to choose a pooled gRPC channel ('round_robin' or
+     * 'least_outstanding').
+     * 
+     * @return
+     */
+    public String getGrpcChannelBalancing();
+
+    /**
+     * Get default deadline applied to unary gRPC calls (0 for none).
+     * 
+     * @return
+     */
+    public int getGrpcDefaultDeadlineInSeconds();
+
+    /**
+     * Get interval between keepalive pings on idle gRPC connections.
+     * 
+     * @return
+     */
+    public int getGrpcKeepAliveTimeInSeconds();
+
+    /**
+     * Get time to wait for keepalive ping acknowledgement before closing
+     * connection.
+     * 
+     * @return
+     */
+    public int getGrpcKeepAliveTimeoutInSeconds();
+
     /**
      * Get root filesystem path where microservice resources may be stored.
      * 
@@ -160,4 +220,20 @@ public interface IInstanceSettings {
      * @return
      */
     public String getKubernetesPodAddress();
+
+    /**
+     * Get upper bound on number of tenant engines started concurrently.
+     * 
+     * @return
+     */
+    public int getTenantMaxConcurrentStartups();
+
+    /**
+     * Indicates whether tenant engines are started when first requested rather
+     * than when the microservice starts. Only honored by microservices that
+     * support lazy activation.
+     * 
+     * @return
+     */
+    public boolean isTenantLazyActivation();
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.microservice.kafka;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.server.lifecycle.ILifecycleComponent;
+
+/**
+ * Kafka consumer shared by all tenant engines in a microservice. Subscribes to
+ * tenant topics by pattern and routes records to the
+ * {@link IMicroserviceKafkaConsumer} registered for each topic.
+ * 
+ * @author Derek
+ */
+public interface ISharedKafkaConsumer extends ILifecycleComponent {
+
+    /**
+     * Route records for the source topics of a tenant consumer to it.
+     * 
+     * @param consumer
+     * @throws SiteWhereException
+     */
+    public void register(IMicroserviceKafkaConsumer consumer) throws SiteWhereException;
+
+    /**
+     * Stop routing records to a tenant consumer. Records that were not processed
+     * are delivered again once a consumer is registered for the topics.
+     * 
+     * @param consumer
+     * @throws SiteWhereException
+     */
+    public void unregister(IMicroserviceKafkaConsumer consumer) throws SiteWhereException;
+
+    /**
+     * Stop fetching records for a tenant consumer without leaving the consumer
+     * group.
+     * 
+     * @param consumer
+     */
+    public void pause(IMicroserviceKafkaConsumer consumer);
+
+    /**
+     * Resume fetching records for a paused tenant consumer.
+     * 
+     * @param consumer
+     */
+    public void resume(IMicroserviceKafkaConsumer consumer);
+}
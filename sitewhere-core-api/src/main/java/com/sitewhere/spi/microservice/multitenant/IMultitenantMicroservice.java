@@ -53,4 +53,14 @@ public interface IMultitenantMicroservice<I extends IFunctionIdentifier, T exten
      * @throws SiteWhereException
      */
     public T assureTenantEngineAvailable(UUID tenantId) throws TenantEngineNotAvailableException;
+
+    /**
+     * Indicates whether tenant engines may be started when first requested. Only
+     * microservices whose tenant engines are reached exclusively through API
+     * calls can support this, since engines that consume Kafka topics or run
+     * scheduled work would otherwise never be started.
+     * 
+     * @return
+     */
+    public boolean isTenantLazyActivationSupported();
 }
\ No newline at end of file
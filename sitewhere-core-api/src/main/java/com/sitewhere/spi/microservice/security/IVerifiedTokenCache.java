@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.microservice.security;
+
+import org.springframework.security.core.Authentication;
+
+import com.sitewhere.spi.SiteWhereException;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Bounded cache of {@link Authentication} objects built from JWTs that have
+ * already been verified. Entries are evicted no later than the expiration of
+ * the token they were built from.
+ * 
+ * @author Derek
+ */
+public interface IVerifiedTokenCache {
+
+    /**
+     * Get authentication for a JWT in the context of a tenant. If not cached, the
+     * token signature is verified and the builder is called with the resulting
+     * claims.
+     * 
+     * @param jwt
+     * @param tenantKey
+     * @param builder
+     * @return
+     * @throws SiteWhereException
+     */
+    public Authentication getAuthentication(String jwt, String tenantKey, IAuthenticationBuilder builder)
+	    throws SiteWhereException;
+
+    /**
+     * Remove all cached entries.
+     */
+    public void clear();
+
+    /**
+     * Builds an {@link Authentication} from verified JWT claims.
+     * 
+     * @author Derek
+     */
+    @FunctionalInterface
+    public static interface IAuthenticationBuilder {
+
+	/**
+	 * Build authentication from claims.
+	 * 
+	 * @param claims
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	public Authentication build(Claims claims) throws SiteWhereException;
+    }
+}
@@ -8,6 +8,7 @@
 package com.sitewhere.spi.search;
 
 import java.util.List;
+import java.util.Map;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.sitewhere.spi.SiteWhereException;
@@ -30,6 +31,30 @@ public interface IDeviceEventSearchProvider extends ISearchProvider {
      */
     public List<IDeviceEvent> executeQuery(String query) throws SiteWhereException;
 
+    /**
+     * Executes an event query and streams all matching events to the handler.
+     * Results are fetched in pages using a cursor, so the cost of each page does
+     * not grow with depth and only one page is held in memory.
+     * 
+     * @param query
+     * @param handler
+     * @throws SiteWhereException
+     */
+    public void streamQuery(String query, ISearchResultHandler<IDeviceEvent> handler) throws SiteWhereException;
+
+    /**
+     * Export all documents matching a query, streaming the requested fields of
+     * each document to the handler. Intended for full result extraction where
+     * the provider supports a streaming export.
+     * 
+     * @param query
+     * @param fields
+     * @param handler
+     * @throws SiteWhereException
+     */
+    public void exportQuery(String query, List<String> fields, ISearchResultHandler<Map<String, Object>> handler)
+	    throws SiteWhereException;
+
     /**
      * Execute a query, returning a raw response from the provider.
      * 
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.search;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Receives results one at a time as they are streamed from a search provider,
+ * so that large result sets do not have to be held in memory.
+ * 
+ * @author Derek
+ * 
+ * @param <T>
+ */
+public interface ISearchResultHandler<T> {
+
+    /**
+     * Handle a single result.
+     * 
+     * @param result
+     * @return true to continue receiving results or false to stop the search
+     * @throws SiteWhereException
+     */
+    public boolean handle(T result) throws SiteWhereException;
+}
@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.cal10n.LocLogger;
 import org.slf4j.cal10n.LocLoggerFactory;
@@ -74,7 +75,7 @@ public class LifecycleComponent implements ILifecycleComponent {
     private List<ILifecycleComponentParameter<?>> parameters = new ArrayList<>();
 
     /** Map of contained lifecycle components */
-    private Map<UUID, ILifecycleComponent> lifecycleComponents = new HashMap<>();
+    private Map<UUID, ILifecycleComponent> lifecycleComponents = new ConcurrentHashMap<>();
 
     public LifecycleComponent() {
 	this(LifecycleComponentType.Other);
@@ -175,9 +176,11 @@ public class LifecycleComponent implements ILifecycleComponent {
 	    setLifecycleStatus(LifecycleStatus.Initializing);
 	    getLogger().info(getComponentName() + " state transitioned to INITIALIZING.");
 
+	    long start = System.currentTimeMillis();
 	    initialize(monitor);
 	    setLifecycleStatus(LifecycleStatus.Stopped);
-	    getLogger().info(getComponentName() + " state transitioned to INITIALIZED.");
+	    getLogger().info(getComponentName() + " state transitioned to INITIALIZED in "
+		    + (System.currentTimeMillis() - start) + "ms.");
 	} catch (SiteWhereException e) {
 	    setLifecycleError(e);
 	    setLifecycleStatus(LifecycleStatus.InitializationError);
@@ -250,6 +253,7 @@ public class LifecycleComponent implements ILifecycleComponent {
 	    LifecycleStatus old = getLifecycleStatus();
 	    setLifecycleStatus(LifecycleStatus.Starting);
 	    getLogger().info(getComponentName() + " state transitioned to STARTING.");
+	    long start = System.currentTimeMillis();
 
 	    if (old != LifecycleStatus.Paused) {
 		start(monitor);
@@ -265,10 +269,12 @@ public class LifecycleComponent implements ILifecycleComponent {
 	    }
 
 	    setLifecycleStatus(status);
+	    long elapsed = System.currentTimeMillis() - start;
 	    if (status == LifecycleStatus.Started) {
-		getLogger().info(getComponentName() + " state transitioned to STARTED.");
+		getLogger().info(getComponentName() + " state transitioned to STARTED in " + elapsed + "ms.");
 	    } else if (status == LifecycleStatus.StartedWithErrors) {
-		getLogger().info(getComponentName() + " state transitioned to STARTED WITH ERRORS.");
+		getLogger().info(
+			getComponentName() + " state transitioned to STARTED WITH ERRORS in " + elapsed + "ms.");
 	    }
 	} catch (SiteWhereException e) {
 	    setLifecycleError(e);
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.lifecycle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.microservice.IMicroservice;
+import com.sitewhere.spi.monitoring.IProgressErrorMessage;
+import com.sitewhere.spi.monitoring.IProgressMessage;
+import com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep;
+import com.sitewhere.spi.server.lifecycle.ILifecycleComponent;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressContext;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.server.lifecycle.ILifecycleStep;
+import com.sitewhere.spi.server.lifecycle.LifecycleProgressUtils;
+
+/**
+ * Implementation of {@link ILifecycleStep} that is composed of multiple
+ * lifecycle steps that are executed in parallel. A step only waits for the
+ * steps it was declared to depend on, so independent nested components are
+ * initialized or started concurrently. Steps run with the authentication of the
+ * calling thread and report progress through the caller's monitor. If a step
+ * fails, steps depending on it are skipped and the first failure (in the order
+ * steps were added) is thrown once all other steps have completed.
+ * 
+ * @author Derek
+ */
+public class ParallelLifecycleStep implements ICompositeLifecycleStep {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LoggerFactory.getLogger(ParallelLifecycleStep.class);
+
+    /** Executor shared by all parallel steps (unbounded so nested steps can not deadlock) */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ParallelStepThreadFactory());
+
+    /** Step name */
+    private String name;
+
+    /** List of lifecycle steps to be executed */
+    private List<ILifecycleStep> steps = new ArrayList<ILifecycleStep>();
+
+    /** Steps each step depends on */
+    private Map<ILifecycleStep, List<ILifecycleStep>> dependencies = new HashMap<>();
+
+    public ParallelLifecycleStep(String name) {
+	this.name = name;
+    }
+
+    /*
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleStep#getName()
+     */
+    @Override
+    public String getName() {
+	return name;
+    }
+
+    /*
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleStep#getOperationCount()
+     */
+    @Override
+    public int getOperationCount() {
+	return steps.size();
+    }
+
+    /*
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleStep#execute(com.sitewhere.
+     * spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void execute(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	monitor.pushContext(new LifecycleProgressContext(steps.size(), getName()));
+	try {
+	    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+	    Map<ILifecycleStep, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+	    for (ILifecycleStep step : steps) {
+		schedule(step, futures, new HashSet<>(), authentication, monitor);
+	    }
+	    try {
+		CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[futures.size()])).join();
+	    } catch (CompletionException e) {
+		// Failures are reported below in step order.
+	    }
+	    for (ILifecycleStep step : steps) {
+		monitor.startProgress(step.getName());
+		try {
+		    futures.get(step).join();
+		} catch (CompletionException e) {
+		    Throwable cause = e.getCause();
+		    if (cause instanceof SiteWhereException) {
+			throw (SiteWhereException) cause;
+		    }
+		    throw new SiteWhereException("Unhandled exception in parallel lifecycle step.", cause);
+		}
+		monitor.finishProgress();
+	    }
+	} finally {
+	    monitor.popContext();
+	}
+    }
+
+    /**
+     * Schedule a step to run once the steps it depends on have completed.
+     * 
+     * @param step
+     * @param futures
+     * @param visiting
+     * @param authentication
+     * @param monitor
+     * @return
+     * @throws SiteWhereException
+     */
+    protected CompletableFuture<Void> schedule(ILifecycleStep step,
+	    Map<ILifecycleStep, CompletableFuture<Void>> futures, Set<ILifecycleStep> visiting,
+	    Authentication authentication, ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	CompletableFuture<Void> future = futures.get(step);
+	if (future != null) {
+	    return future;
+	}
+	if (!visiting.add(step)) {
+	    throw new SiteWhereException("Circular dependency detected for step '" + step.getName() + "'.");
+	}
+	List<CompletableFuture<Void>> prerequisites = new ArrayList<>();
+	for (ILifecycleStep dependency : getDependencies(step)) {
+	    prerequisites.add(schedule(dependency, futures, visiting, authentication, monitor));
+	}
+	future = CompletableFuture.allOf(prerequisites.toArray(new CompletableFuture[prerequisites.size()]))
+		.thenRunAsync(() -> run(step, authentication, monitor), EXECUTOR);
+	futures.put(step, future);
+	visiting.remove(step);
+	return future;
+    }
+
+    /**
+     * Run a single step on a pool thread. Progress is reported to the caller's
+     * monitor.
+     * 
+     * @param step
+     * @param authentication
+     * @param monitor
+     */
+    protected void run(ILifecycleStep step, Authentication authentication, ILifecycleProgressMonitor monitor) {
+	SecurityContextHolder.getContext().setAuthentication(authentication);
+	try {
+	    LOGGER.debug(String.format("About to start step '%s'...", step.getName()));
+	    long start = System.currentTimeMillis();
+	    step.execute(new StepProgressMonitor(monitor, step));
+	    LOGGER.debug(String.format("Step '%s' completed in %dms.", step.getName(),
+		    System.currentTimeMillis() - start));
+	} catch (SiteWhereException e) {
+	    throw new CompletionException(e);
+	} finally {
+	    SecurityContextHolder.clearContext();
+	}
+    }
+
+    /**
+     * Declare that a step may only run after another has completed.
+     * 
+     * @param step
+     * @param dependency
+     */
+    public void addDependency(ILifecycleStep step, ILifecycleStep dependency) {
+	List<ILifecycleStep> existing = dependencies.get(step);
+	if (existing == null) {
+	    existing = new ArrayList<>();
+	    dependencies.put(step, existing);
+	}
+	existing.add(dependency);
+    }
+
+    /**
+     * Declare that the step for a component may only run after the step for
+     * another component has completed. Both steps must already have been added.
+     * 
+     * @param component
+     * @param dependency
+     */
+    public void addDependency(ILifecycleComponent component, ILifecycleComponent dependency) {
+	ILifecycleStep step = getStepFor(component);
+	ILifecycleStep prerequisite = getStepFor(dependency);
+	if ((step == null) || (prerequisite == null)) {
+	    LOGGER.warn("Skipping dependency for component without step.");
+	    return;
+	}
+	addDependency(step, prerequisite);
+    }
+
+    /**
+     * Get steps that must complete before a step runs.
+     * 
+     * @param step
+     * @return
+     */
+    protected List<ILifecycleStep> getDependencies(ILifecycleStep step) {
+	List<ILifecycleStep> existing = dependencies.get(step);
+	return (existing != null) ? existing : new ArrayList<>();
+    }
+
+    /**
+     * Find the step that operates on a component.
+     * 
+     * @param component
+     * @return
+     */
+    protected ILifecycleStep getStepFor(ILifecycleComponent component) {
+	for (ILifecycleStep step : steps) {
+	    if ((step instanceof ComponentOperationLifecycleStep)
+		    && (((ComponentOperationLifecycleStep) step).getComponent() == component)) {
+		return step;
+	    }
+	}
+	return null;
+    }
+
+    /*
+     * @see com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep#addStep(com.
+     * sitewhere.spi.server.lifecycle.ILifecycleStep)
+     */
+    @Override
+    public void addStep(ILifecycleStep step) {
+	LOGGER.debug("In addStep() for " + step.getName());
+	getSteps().add(step);
+    }
+
+    /*
+     * @see com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep#
+     * addInitializeStep(com.sitewhere.spi.server.lifecycle.ILifecycleComponent,
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent, boolean)
+     */
+    @Override
+    public void addInitializeStep(ILifecycleComponent owner, ILifecycleComponent component, boolean require) {
+	if (component != null) {
+	    addStep(new InitializeComponentLifecycleStep(owner, component, require));
+	} else {
+	    LOGGER.warn("Skipping 'initialize' step for null component.");
+	}
+    }
+
+    /*
+     * @see com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep#addStartStep(
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent,
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent, boolean)
+     */
+    @Override
+    public void addStartStep(ILifecycleComponent owner, ILifecycleComponent component, boolean require) {
+	if (component != null) {
+	    addStep(new StartComponentLifecycleStep(owner, component, require));
+	} else {
+	    LOGGER.warn("Skipping 'start' step for null component.");
+	}
+    }
+
+    /*
+     * @see com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep#addStopStep(
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent,
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent)
+     */
+    @Override
+    public void addStopStep(ILifecycleComponent owner, ILifecycleComponent component) {
+	if (component != null) {
+	    addStep(new StopComponentLifecycleStep(owner, component));
+	} else {
+	    LOGGER.debug("Skipping 'stop' step for null component.");
+	}
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep#addTerminateStep(
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent,
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent)
+     */
+    @Override
+    public void addTerminateStep(ILifecycleComponent owner, ILifecycleComponent component) {
+	addStep(new TerminateComponentLifecycleStep(owner, component));
+    }
+
+    /*
+     * @see com.sitewhere.spi.server.lifecycle.ICompositeLifecycleStep#getSteps()
+     */
+    @Override
+    public List<ILifecycleStep> getSteps() {
+	return steps;
+    }
+
+    public void setSteps(List<ILifecycleStep> steps) {
+	this.steps = steps;
+    }
+
+    /**
+     * Progress monitor for a step running in parallel with others. Each step keeps
+     * its own context stack (a copy of the caller's with a context for the step
+     * pushed on top) so concurrent steps do not interfere, while progress and
+     * errors are forwarded to the caller's monitor.
+     */
+    private static class StepProgressMonitor implements ILifecycleProgressMonitor {
+
+	/** Monitor passed by caller */
+	private ILifecycleProgressMonitor parent;
+
+	/** Context stack for this step */
+	private Deque<ILifecycleProgressContext> contextStack;
+
+	public StepProgressMonitor(ILifecycleProgressMonitor parent, ILifecycleStep step)
+		throws SiteWhereException {
+	    this.parent = parent;
+	    synchronized (parent) {
+		this.contextStack = new ArrayDeque<>(parent.getContextStack());
+	    }
+	    pushContext(new LifecycleProgressContext(step.getOperationCount(), step.getName()));
+	    startProgress(step.getName());
+	}
+
+	/*
+	 * @see com.sitewhere.spi.monitoring.IProgressReporter#reportProgress(com.
+	 * sitewhere.spi.monitoring.IProgressMessage)
+	 */
+	@Override
+	public void reportProgress(IProgressMessage message) throws SiteWhereException {
+	    synchronized (parent) {
+		parent.reportProgress(message);
+	    }
+	}
+
+	/*
+	 * @see
+	 * com.sitewhere.spi.monitoring.IProgressReporter#reportError(com.sitewhere.
+	 * spi.monitoring.IProgressErrorMessage)
+	 */
+	@Override
+	public void reportError(IProgressErrorMessage error) throws SiteWhereException {
+	    synchronized (parent) {
+		parent.reportError(error);
+	    }
+	}
+
+	/*
+	 * @see
+	 * com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor#pushContext(
+	 * com.sitewhere.spi.server.lifecycle.ILifecycleProgressContext)
+	 */
+	@Override
+	public void pushContext(ILifecycleProgressContext context) throws SiteWhereException {
+	    contextStack.push(context);
+	}
+
+	/*
+	 * @see com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor#
+	 * startProgress(java.lang.String)
+	 */
+	@Override
+	public void startProgress(String operation) throws SiteWhereException {
+	    LifecycleProgressUtils.startProgressOperation(this, operation);
+	}
+
+	/*
+	 * @see com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor#
+	 * finishProgress()
+	 */
+	@Override
+	public void finishProgress() throws SiteWhereException {
+	    LifecycleProgressUtils.finishProgressOperation(this);
+	}
+
+	/*
+	 * @see
+	 * com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor#popContext()
+	 */
+	@Override
+	public ILifecycleProgressContext popContext() throws SiteWhereException {
+	    return contextStack.pop();
+	}
+
+	/*
+	 * @see com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor#
+	 * getContextStack()
+	 */
+	@Override
+	public Deque<ILifecycleProgressContext> getContextStack() {
+	    return contextStack;
+	}
+
+	/*
+	 * @see com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor#
+	 * getMicroservice()
+	 */
+	@Override
+	public IMicroservice<?> getMicroservice() {
+	    return parent.getMicroservice();
+	}
+    }
+
+    /** Used for naming parallel lifecycle step threads */
+    private static class ParallelStepThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, "Lifecycle Step " + counter.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+}
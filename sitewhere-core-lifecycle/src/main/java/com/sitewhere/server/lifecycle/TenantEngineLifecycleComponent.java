@@ -42,6 +42,10 @@ public abstract class TenantEngineLifecycleComponent extends LifecycleComponent
     /** Metrics label for microservice tenant id */
     private static final String LABEL_TENANT_ID = "tenant";
 
+    /** Time taken by lifecycle operations on components */
+    private static final Histogram LIFECYCLE_TIME = createHistogramMetric("lifecycle_operation_seconds",
+	    "Time taken to initialize or start a lifecycle component", "component", "operation");
+
     /** Tenant engine associated with component */
     private IMicroserviceTenantEngine tenantEngine;
 
@@ -116,12 +120,52 @@ public abstract class TenantEngineLifecycleComponent extends LifecycleComponent
     public String[] buildLabels(String... labels) {
 	List<String> all = new ArrayList<>();
 	all.addAll(Arrays.asList(labels));
-	all.add(0, getTenantEngine().getTenant().getId().toString());
-	all.add(0, getMicroservice().getInstanceSettings().getKubernetesPodAddress());
+	all.add(0, (getTenantEngine() != null) ? getTenantEngine().getTenant().getId().toString() : "");
+	String pod = getMicroservice().getInstanceSettings().getKubernetesPodAddress();
+	all.add(0, (pod != null) ? pod : "");
 	all.add(0, getMicroservice().getIdentifier().getPath());
 	return all.toArray(new String[all.size()]);
     }
 
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#lifecycleInitialize(com.
+     * sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void lifecycleInitialize(ILifecycleProgressMonitor monitor) {
+	long start = System.nanoTime();
+	super.lifecycleInitialize(monitor);
+	recordLifecycleTime("initialize", start);
+    }
+
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#lifecycleStart(com.sitewhere
+     * .spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void lifecycleStart(ILifecycleProgressMonitor monitor) {
+	long start = System.nanoTime();
+	super.lifecycleStart(monitor);
+	recordLifecycleTime("start", start);
+    }
+
+    /**
+     * Record time taken by a lifecycle operation, labeled by component class so
+     * slow components can be found across tenants.
+     * 
+     * @param operation
+     * @param start
+     */
+    protected void recordLifecycleTime(String operation, long start) {
+	if (getMicroservice() == null) {
+	    return;
+	}
+	String component = getClass().getSimpleName().isEmpty() ? getClass().getName() : getClass().getSimpleName();
+	LIFECYCLE_TIME.labels(buildLabels(component, operation)).observe((System.nanoTime() - start) / 1.0E9);
+    }
+
     /*
      * @see
      * com.sitewhere.server.lifecycle.LifecycleComponent#initializeNestedComponent(
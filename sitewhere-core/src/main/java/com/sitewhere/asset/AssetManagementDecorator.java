@@ -7,6 +7,7 @@
  */
 package com.sitewhere.asset;
 
+import java.util.List;
 import java.util.UUID;
 
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponentDecorator;
@@ -60,6 +61,14 @@ public class AssetManagementDecorator extends TenantEngineLifecycleComponentDeco
 	return getDelegate().getAsset(assetId);
     }
 
+    /*
+     * @see com.sitewhere.spi.asset.IAssetManagement#getAssetsByIds(java.util.List)
+     */
+    @Override
+    public List<IAsset> getAssetsByIds(List<UUID> assetIds) throws SiteWhereException {
+	return getDelegate().getAssetsByIds(assetIds);
+    }
+
     /*
      * @see
      * com.sitewhere.spi.asset.IAssetManagement#getAssetByToken(java.lang.String)
@@ -7,10 +7,14 @@
  */
 package com.sitewhere.batch;
 
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponentDecorator;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.batch.ElementProcessingStatus;
 import com.sitewhere.spi.batch.IBatchElement;
 import com.sitewhere.spi.batch.IBatchManagement;
 import com.sitewhere.spi.batch.IBatchOperation;
@@ -106,6 +110,17 @@ public class BatchManagementDecorator extends TenantEngineLifecycleComponentDeco
 	return getDelegate().createBatchElement(batchOperationId, request);
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#createBatchElements(java.util.UUID,
+     * java.util.List)
+     */
+    @Override
+    public List<IBatchElement> createBatchElements(UUID batchOperationId, List<IBatchElementCreateRequest> requests)
+	    throws SiteWhereException {
+	return getDelegate().createBatchElements(batchOperationId, requests);
+    }
+
     /*
      * @see
      * com.sitewhere.spi.batch.IBatchManagement#listBatchElements(java.util.UUID,
@@ -128,6 +143,37 @@ public class BatchManagementDecorator extends TenantEngineLifecycleComponentDeco
 	return getDelegate().updateBatchElement(elementId, request);
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#updateBatchElements(java.util.UUID,
+     * com.sitewhere.spi.batch.ElementProcessingStatus, java.util.Map)
+     */
+    @Override
+    public List<UUID> updateBatchElements(UUID batchOperationId, ElementProcessingStatus expected,
+	    Map<UUID, IBatchElementCreateRequest> requestsByElementId) throws SiteWhereException {
+	return getDelegate().updateBatchElements(batchOperationId, expected, requestsByElementId);
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#claimBatchElements(java.util.UUID,
+     * java.util.List, java.util.Date)
+     */
+    @Override
+    public List<UUID> claimBatchElements(UUID batchOperationId, List<UUID> elementIds, Date staleBefore)
+	    throws SiteWhereException {
+	return getDelegate().claimBatchElements(batchOperationId, elementIds, staleBefore);
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#getBatchElementCounts(java.util.UUID)
+     */
+    @Override
+    public Map<ElementProcessingStatus, Long> getBatchElementCounts(UUID batchOperationId) throws SiteWhereException {
+	return getDelegate().getBatchElementCounts(batchOperationId);
+    }
+
     /*
      * @see
      * com.sitewhere.spi.batch.IBatchManagement#createBatchCommandInvocation(com.
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, in-process cache that evicts the least recently used entries and
+ * drops entries once they expire. Intended for caches that need semantics the
+ * tenant-scoped cache providers do not offer, such as a per-entry expiration or
+ * ignoring values loaded before an invalidation.
+ * 
+ * @author Derek
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class ExpiringLruCache<K, V> {
+
+    /** Maximum number of entries */
+    private int maxEntries;
+
+    /** Default time an entry remains valid */
+    private long ttlMs;
+
+    /** Cached entries in access order */
+    private Map<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+
+	private static final long serialVersionUID = -7310745102463526312L;
+
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+	    return size() > getMaxEntries();
+	}
+    };
+
+    /** Incremented on each invalidation */
+    private long sequence;
+
+    public ExpiringLruCache(int maxEntries, long ttlMs) {
+	this.maxEntries = maxEntries;
+	this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Get a cached value or null if not cached or expired.
+     * 
+     * @param key
+     * @return
+     */
+    public synchronized V get(K key) {
+	Entry<V> entry = entries.get(key);
+	if (entry == null) {
+	    return null;
+	}
+	if (entry.getExpires() <= System.currentTimeMillis()) {
+	    entries.remove(key);
+	    onExpired(key, entry.getValue());
+	    return null;
+	}
+	return entry.getValue();
+    }
+
+    /**
+     * Cache a value using the default time to live.
+     * 
+     * @param key
+     * @param value
+     */
+    public synchronized void put(K key, V value) {
+	putUntil(key, value, System.currentTimeMillis() + getTtlMs());
+    }
+
+    /**
+     * Cache a value that expires at the given time.
+     * 
+     * @param key
+     * @param value
+     * @param expires
+     */
+    public synchronized void putUntil(K key, V value, long expires) {
+	entries.put(key, new Entry<V>(value, expires));
+    }
+
+    /**
+     * Cache a value unless the cache was invalidated after the value started
+     * loading, so that a concurrent load can not restore stale data.
+     * 
+     * @param key
+     * @param value
+     * @param loadedAfter
+     *            sequence returned by {@link #getSequence()} before loading data
+     * @return true if value was cached
+     */
+    public synchronized boolean putIfNotInvalidated(K key, V value, long loadedAfter) {
+	if (loadedAfter != sequence) {
+	    return false;
+	}
+	put(key, value);
+	return true;
+    }
+
+    /**
+     * Remove a cached value.
+     * 
+     * @param key
+     */
+    public synchronized void invalidate(K key) {
+	sequence++;
+	entries.remove(key);
+    }
+
+    /**
+     * Remove all cached values.
+     */
+    public synchronized void clear() {
+	sequence++;
+	entries.clear();
+    }
+
+    /**
+     * Get number of entries currently cached (including expired entries not yet
+     * removed).
+     * 
+     * @return
+     */
+    public synchronized int size() {
+	return entries.size();
+    }
+
+    /**
+     * Get sequence number which changes each time the cache is invalidated.
+     * 
+     * @return
+     */
+    public synchronized long getSequence() {
+	return sequence;
+    }
+
+    /**
+     * Called when an expired entry is removed on access.
+     * 
+     * @param key
+     * @param value
+     */
+    protected void onExpired(K key, V value) {
+    }
+
+    public synchronized int getMaxEntries() {
+	return maxEntries;
+    }
+
+    public synchronized void setMaxEntries(int maxEntries) {
+	this.maxEntries = maxEntries;
+    }
+
+    public synchronized long getTtlMs() {
+	return ttlMs;
+    }
+
+    public synchronized void setTtlMs(long ttlMs) {
+	this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Cached value along with expiration time.
+     */
+    private static class Entry<V> {
+
+	/** Cached value */
+	private final V value;
+
+	/** Time after which entry is no longer valid */
+	private final long expires;
+
+	public Entry(V value, long expires) {
+	    this.value = value;
+	    this.expires = expires;
+	}
+
+	public V getValue() {
+	    return value;
+	}
+
+	public long getExpires() {
+	    return expires;
+	}
+    }
+}
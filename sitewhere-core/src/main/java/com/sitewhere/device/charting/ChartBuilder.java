@@ -12,8 +12,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.sitewhere.rest.model.device.charting.ChartEntry;
 import com.sitewhere.rest.model.device.charting.ChartSeries;
@@ -21,13 +25,40 @@ import com.sitewhere.spi.device.charting.IChartSeries;
 import com.sitewhere.spi.device.event.IDeviceMeasurement;
 
 /**
- * Builds chart series from measurements.
+ * Builds chart series from measurements. If a maximum number of points is
+ * specified, measurements are streamed through a bounded min/max bucket
+ * downsampler per series and reduced to the point budget using
+ * largest-triangle-three-buckets, so arbitrarily large ranges can be charted in
+ * constant memory.
  */
 public class ChartBuilder {
 
+    /** Default maximum points per series when downsampling */
+    public static final int DEFAULT_MAX_POINTS = 1000;
+
+    /** Number of min/max buckets kept per point in the budget */
+    private static final int BUCKETS_PER_POINT = 4;
+
+    /** Maximum points per series (zero for no downsampling) */
+    private int maxPoints;
+
     /** Map of measurement names to series */
     private Map<String, ChartSeries<Double>> seriesByMeasurementName;
 
+    /** Map of measurement names to downsamplers */
+    private Map<String, MinMaxBucketDownsampler> samplersByMeasurementName;
+
+    /** Measurement names included in output (null for all) */
+    private Set<String> includedMeasurementIds;
+
+    public ChartBuilder() {
+	this(0);
+    }
+
+    public ChartBuilder(int maxPoints) {
+	this.maxPoints = maxPoints;
+    }
+
     /**
      * Process measurements into a list of charts series.
      * 
@@ -35,6 +66,9 @@ public class ChartBuilder {
      * @return
      */
     public List<IChartSeries<Double>> process(List<IDeviceMeasurement> matches, String[] measurementIds) {
+	if (getMaxPoints() > 0) {
+	    return process(matches.iterator(), measurementIds);
+	}
 	seriesByMeasurementName = new HashMap<String, ChartSeries<Double>>();
 	List<String> mxids = null;
 	if ((measurementIds != null) && (measurementIds.length > 0)) {
@@ -56,6 +90,91 @@ public class ChartBuilder {
 	return results;
     }
 
+    /**
+     * Process a stream of measurements into a list of downsampled chart series.
+     * Measurements are not retained, so the stream may be arbitrarily large.
+     * 
+     * @param matches
+     * @param measurementIds
+     * @return
+     */
+    public List<IChartSeries<Double>> process(Iterator<? extends IDeviceMeasurement> matches,
+	    String[] measurementIds) {
+	start(measurementIds);
+	while (matches.hasNext()) {
+	    add(matches.next());
+	}
+	return build();
+    }
+
+    /**
+     * Start streaming a new set of series. Used along with
+     * {@link #add(IDeviceMeasurement)} and {@link #build()} when measurements for
+     * several builders arrive on a shared stream.
+     * 
+     * @param measurementIds
+     */
+    public void start(String[] measurementIds) {
+	samplersByMeasurementName = new LinkedHashMap<String, MinMaxBucketDownsampler>();
+	includedMeasurementIds = null;
+	if ((measurementIds != null) && (measurementIds.length > 0)) {
+	    includedMeasurementIds = new HashSet<String>(Arrays.asList(measurementIds));
+	}
+    }
+
+    /**
+     * Add a streamed measurement. Measurements without a value or date and those
+     * not in the requested list of measurement ids are skipped.
+     * 
+     * @param mx
+     */
+    public void add(IDeviceMeasurement mx) {
+	if ((mx.getValue() == null) || (mx.getEventDate() == null)) {
+	    return;
+	}
+	if ((includedMeasurementIds != null) && (!includedMeasurementIds.contains(mx.getName()))) {
+	    return;
+	}
+	MinMaxBucketDownsampler sampler = samplersByMeasurementName.get(mx.getName());
+	if (sampler == null) {
+	    sampler = new MinMaxBucketDownsampler(getEffectiveMaxPoints() * BUCKETS_PER_POINT);
+	    samplersByMeasurementName.put(mx.getName(), sampler);
+	}
+	sampler.add(mx.getEventDate().getTime(), mx.getValue());
+    }
+
+    /**
+     * Build downsampled series from streamed measurements.
+     * 
+     * @return
+     */
+    public List<IChartSeries<Double>> build() {
+	List<IChartSeries<Double>> results = new ArrayList<IChartSeries<Double>>();
+	for (Map.Entry<String, MinMaxBucketDownsampler> entry : samplersByMeasurementName.entrySet()) {
+	    SeriesBuffer points = LargestTriangleThreeBuckets.downsample(entry.getValue().getSeries(),
+		    getEffectiveMaxPoints());
+	    ChartSeries<Double> series = new ChartSeries<Double>();
+	    series.setMeasurementId(entry.getKey());
+	    for (int i = 0; i < points.size(); i++) {
+		ChartEntry<Double> seriesEntry = new ChartEntry<Double>();
+		seriesEntry.setValue(points.getValue(i));
+		seriesEntry.setMeasurementDate(new Date(points.getTime(i)));
+		series.getEntries().add(seriesEntry);
+	    }
+	    results.add(series);
+	}
+	return results;
+    }
+
+    /**
+     * Get point budget used when streaming.
+     * 
+     * @return
+     */
+    protected int getEffectiveMaxPoints() {
+	return (getMaxPoints() > 0) ? getMaxPoints() : DEFAULT_MAX_POINTS;
+    }
+
     /**
      * Add a new measurement entry. Create a new series if one does not already
      * exist.
@@ -77,4 +196,12 @@ public class ChartBuilder {
 	seriesEntry.setMeasurementDate(date);
 	series.getEntries().add(seriesEntry);
     }
+
+    public int getMaxPoints() {
+	return maxPoints;
+    }
+
+    public void setMaxPoints(int maxPoints) {
+	this.maxPoints = maxPoints;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+/**
+ * Implementation of the Largest-Triangle-Three-Buckets downsampling algorithm
+ * (Steinarsson, 2013). Points are divided into buckets and the point in each
+ * bucket that forms the largest triangle with the previously selected point and
+ * the average of the next bucket is kept, which preserves the visual shape of
+ * the series (peaks and troughs) far better than averaging or decimation.
+ * 
+ * @author Derek
+ */
+public class LargestTriangleThreeBuckets {
+
+    /** Smallest useful threshold (first, last and one selected point) */
+    public static final int MIN_THRESHOLD = 3;
+
+    /**
+     * Downsample a series ordered by ascending time to at most the given number
+     * of points. The first and last points are always kept. The original series
+     * is returned if it is already within the threshold.
+     * 
+     * @param data
+     * @param threshold
+     * @return
+     */
+    public static SeriesBuffer downsample(SeriesBuffer data, int threshold) {
+	int size = data.size();
+	threshold = Math.max(threshold, MIN_THRESHOLD);
+	if (size <= threshold) {
+	    return data;
+	}
+
+	// Times are made relative to the first point to keep precision as doubles.
+	long base = data.getTime(0);
+	SeriesBuffer sampled = new SeriesBuffer(threshold);
+	sampled.add(data.getTime(0), data.getValue(0));
+
+	double every = (double) (size - 2) / (threshold - 2);
+	int selected = 0;
+	for (int bucket = 0; bucket < threshold - 2; bucket++) {
+	    // Average point of the following bucket.
+	    int avgStart = (int) (Math.floor((bucket + 1) * every) + 1);
+	    int avgEnd = Math.min((int) (Math.floor((bucket + 2) * every) + 1), size);
+	    double avgTime = 0;
+	    double avgValue = 0;
+	    for (int i = avgStart; i < avgEnd; i++) {
+		avgTime += data.getTime(i) - base;
+		avgValue += data.getValue(i);
+	    }
+	    int avgLength = Math.max(avgEnd - avgStart, 1);
+	    avgTime /= avgLength;
+	    avgValue /= avgLength;
+
+	    // Point in current bucket forming largest triangle.
+	    int rangeStart = (int) (Math.floor(bucket * every) + 1);
+	    int rangeEnd = (int) (Math.floor((bucket + 1) * every) + 1);
+	    double selectedTime = data.getTime(selected) - base;
+	    double selectedValue = data.getValue(selected);
+	    double maxArea = -1;
+	    int next = rangeStart;
+	    for (int i = rangeStart; i < rangeEnd; i++) {
+		double area = Math.abs((selectedTime - avgTime) * (data.getValue(i) - selectedValue)
+			- (selectedTime - (data.getTime(i) - base)) * (avgValue - selectedValue));
+		if (area > maxArea) {
+		    maxArea = area;
+		    next = i;
+		}
+	    }
+	    sampled.add(data.getTime(next), data.getValue(next));
+	    selected = next;
+	}
+
+	sampled.add(data.getTime(size - 1), data.getValue(size - 1));
+	return sampled;
+    }
+}
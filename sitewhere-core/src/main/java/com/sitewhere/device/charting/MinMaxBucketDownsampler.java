@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import java.util.Arrays;
+
+/**
+ * Streaming downsampler that keeps the minimum and maximum point for each of a
+ * fixed number of time buckets. Bucket width starts at one millisecond and is
+ * doubled (merging adjacent buckets) whenever a point falls outside the current
+ * range, so memory is bounded by the bucket count no matter how many points are
+ * added and the time range does not need to be known in advance. Buckets are
+ * aligned to multiples of the bucket width so that the range can grow in either
+ * direction and points may be added in any order.
+ * 
+ * @author Derek
+ */
+public class MinMaxBucketDownsampler {
+
+    /** Fewest buckets that can cover any range of aligned buckets */
+    private static final int MIN_BUCKETS = 2;
+
+    /** Maximum number of buckets */
+    private final int maxBuckets;
+
+    /** Point counts per bucket */
+    private final int[] counts;
+
+    /** Time of minimum point per bucket */
+    private final long[] minTimes;
+
+    /** Value of minimum point per bucket */
+    private final double[] minValues;
+
+    /** Time of maximum point per bucket */
+    private final long[] maxTimes;
+
+    /** Value of maximum point per bucket */
+    private final double[] maxValues;
+
+    /** Start time of first bucket (always a multiple of the bucket width) */
+    private long origin;
+
+    /** Bucket width in milliseconds */
+    private long width = 1;
+
+    /** Number of buckets in use */
+    private int used;
+
+    /** Total number of points added */
+    private long count;
+
+    public MinMaxBucketDownsampler(int maxBuckets) {
+	this.maxBuckets = Math.max(maxBuckets, MIN_BUCKETS);
+	this.counts = new int[this.maxBuckets];
+	this.minTimes = new long[this.maxBuckets];
+	this.minValues = new double[this.maxBuckets];
+	this.maxTimes = new long[this.maxBuckets];
+	this.maxValues = new double[this.maxBuckets];
+    }
+
+    /**
+     * Add a point. Points do not need to be ordered by time.
+     * 
+     * @param time
+     * @param value
+     */
+    public void add(long time, double value) {
+	if (count == 0) {
+	    origin = time;
+	}
+	if (time < origin) {
+	    extendBefore(time);
+	}
+	while ((time - origin) / width >= maxBuckets) {
+	    compact();
+	}
+	int bucket = (int) ((time - origin) / width);
+	if (counts[bucket] == 0) {
+	    minTimes[bucket] = maxTimes[bucket] = time;
+	    minValues[bucket] = maxValues[bucket] = value;
+	} else {
+	    if (value < minValues[bucket]) {
+		minTimes[bucket] = time;
+		minValues[bucket] = value;
+	    }
+	    if (value > maxValues[bucket]) {
+		maxTimes[bucket] = time;
+		maxValues[bucket] = value;
+	    }
+	}
+	counts[bucket]++;
+	used = Math.max(used, bucket + 1);
+	count++;
+    }
+
+    /**
+     * Move the start of the range back so that it includes the given time,
+     * compacting buckets until the extended range fits.
+     * 
+     * @param time
+     */
+    protected void extendBefore(long time) {
+	while (true) {
+	    long first = Math.floorDiv(time, width) * width;
+	    long shift = (origin - first) / width;
+	    if (used + shift <= maxBuckets) {
+		int offset = (int) shift;
+		System.arraycopy(counts, 0, counts, offset, used);
+		System.arraycopy(minTimes, 0, minTimes, offset, used);
+		System.arraycopy(minValues, 0, minValues, offset, used);
+		System.arraycopy(maxTimes, 0, maxTimes, offset, used);
+		System.arraycopy(maxValues, 0, maxValues, offset, used);
+		Arrays.fill(counts, 0, offset, 0);
+		origin = first;
+		used += offset;
+		return;
+	    }
+	    compact();
+	}
+    }
+
+    /**
+     * Double the bucket width, merging each pair of adjacent buckets. If the
+     * first bucket does not start on a multiple of the new width, it becomes the
+     * second half of the first merged bucket.
+     */
+    protected void compact() {
+	int shift = (int) Math.floorMod(Math.floorDiv(origin, width), 2L);
+	int merged = (used + shift + 1) / 2;
+	for (int target = 0; target < merged; target++) {
+	    int left = Math.max(target * 2 - shift, 0);
+	    int right = Math.min(target * 2 - shift + 1, used - 1);
+	    long minTime = 0;
+	    double minValue = 0;
+	    long maxTime = 0;
+	    double maxValue = 0;
+	    int total = 0;
+	    for (int source = left; source <= right; source++) {
+		if (counts[source] == 0) {
+		    continue;
+		}
+		if ((total == 0) || (minValues[source] < minValue)) {
+		    minTime = minTimes[source];
+		    minValue = minValues[source];
+		}
+		if ((total == 0) || (maxValues[source] > maxValue)) {
+		    maxTime = maxTimes[source];
+		    maxValue = maxValues[source];
+		}
+		total += counts[source];
+	    }
+	    counts[target] = total;
+	    minTimes[target] = minTime;
+	    minValues[target] = minValue;
+	    maxTimes[target] = maxTime;
+	    maxValues[target] = maxValue;
+	}
+	Arrays.fill(counts, merged, used, 0);
+	origin -= shift * width;
+	used = merged;
+	width *= 2;
+    }
+
+    /**
+     * Get the retained points (at most two per bucket) ordered by ascending time.
+     * 
+     * @return
+     */
+    public SeriesBuffer getSeries() {
+	SeriesBuffer series = new SeriesBuffer(used * 2);
+	for (int bucket = 0; bucket < used; bucket++) {
+	    if (counts[bucket] == 0) {
+		continue;
+	    }
+	    long first = Math.min(minTimes[bucket], maxTimes[bucket]);
+	    boolean minFirst = (minTimes[bucket] == first);
+	    series.add(first, minFirst ? minValues[bucket] : maxValues[bucket]);
+	    if ((minTimes[bucket] != maxTimes[bucket]) || (minValues[bucket] != maxValues[bucket])) {
+		series.add(minFirst ? maxTimes[bucket] : minTimes[bucket],
+			minFirst ? maxValues[bucket] : minValues[bucket]);
+	    }
+	}
+	series.sortByTime();
+	return series;
+    }
+
+    public long getCount() {
+	return count;
+    }
+
+    public int getMaxBuckets() {
+	return maxBuckets;
+    }
+}
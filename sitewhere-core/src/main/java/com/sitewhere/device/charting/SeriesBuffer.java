@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import java.util.Arrays;
+
+/**
+ * Growable series of (time, value) points stored in primitive arrays so that
+ * large series can be buffered without allocating an object per point.
+ * 
+ * @author Derek
+ */
+public class SeriesBuffer {
+
+    /** Default initial capacity */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /** Point times in epoch millis */
+    private long[] times;
+
+    /** Point values */
+    private double[] values;
+
+    /** Number of points */
+    private int size;
+
+    public SeriesBuffer() {
+	this(DEFAULT_CAPACITY);
+    }
+
+    public SeriesBuffer(int capacity) {
+	this.times = new long[Math.max(capacity, 1)];
+	this.values = new double[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Add a point to the end of the series.
+     * 
+     * @param time
+     * @param value
+     */
+    public void add(long time, double value) {
+	if (size == times.length) {
+	    int capacity = times.length * 2;
+	    times = Arrays.copyOf(times, capacity);
+	    values = Arrays.copyOf(values, capacity);
+	}
+	times[size] = time;
+	values[size] = value;
+	size++;
+    }
+
+    /**
+     * Sort points by ascending time. Series that are already ordered (in either
+     * direction) are handled without a full sort.
+     */
+    public void sortByTime() {
+	boolean ascending = true;
+	boolean descending = true;
+	for (int i = 1; i < size; i++) {
+	    ascending &= (times[i - 1] <= times[i]);
+	    descending &= (times[i - 1] >= times[i]);
+	}
+	if (ascending) {
+	    return;
+	}
+	if (descending) {
+	    for (int i = 0, j = size - 1; i < j; i++, j--) {
+		swap(i, j);
+	    }
+	    return;
+	}
+	Integer[] order = new Integer[size];
+	for (int i = 0; i < size; i++) {
+	    order[i] = i;
+	}
+	Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+	long[] sortedTimes = new long[times.length];
+	double[] sortedValues = new double[values.length];
+	for (int i = 0; i < size; i++) {
+	    sortedTimes[i] = times[order[i]];
+	    sortedValues[i] = values[order[i]];
+	}
+	times = sortedTimes;
+	values = sortedValues;
+    }
+
+    /**
+     * Swap two points.
+     * 
+     * @param i
+     * @param j
+     */
+    protected void swap(int i, int j) {
+	long time = times[i];
+	times[i] = times[j];
+	times[j] = time;
+	double value = values[i];
+	values[i] = values[j];
+	values[j] = value;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public long getTime(int index) {
+	return times[index];
+    }
+
+    public double getValue(int index) {
+	return values[index];
+    }
+}
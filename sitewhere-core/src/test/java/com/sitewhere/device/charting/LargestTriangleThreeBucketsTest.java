@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LargestTriangleThreeBuckets}.
+ * 
+ * @author Derek
+ */
+public class LargestTriangleThreeBucketsTest {
+
+    @Test
+    public void testSeriesWithinThresholdIsUnchanged() {
+	SeriesBuffer data = createSeries(10);
+	assertSame(data, LargestTriangleThreeBuckets.downsample(data, 10));
+	assertSame(data, LargestTriangleThreeBuckets.downsample(data, 50));
+    }
+
+    @Test
+    public void testMinimumThreshold() {
+	SeriesBuffer sampled = LargestTriangleThreeBuckets.downsample(createSeries(10), 1);
+	assertEquals(LargestTriangleThreeBuckets.MIN_THRESHOLD, sampled.size());
+    }
+
+    @Test
+    public void testFirstAndLastPointsRetained() {
+	SeriesBuffer data = createSeries(1000);
+	SeriesBuffer sampled = LargestTriangleThreeBuckets.downsample(data, 20);
+	assertEquals(20, sampled.size());
+	assertEquals(data.getTime(0), sampled.getTime(0));
+	assertEquals(data.getValue(0), sampled.getValue(0), 0.0);
+	assertEquals(data.getTime(999), sampled.getTime(19));
+	assertEquals(data.getValue(999), sampled.getValue(19), 0.0);
+	for (int i = 1; i < sampled.size(); i++) {
+	    assertTrue(sampled.getTime(i - 1) < sampled.getTime(i));
+	}
+    }
+
+    @Test
+    public void testOnePointPerBucket() {
+	// Eight inner points split into four buckets of two.
+	SeriesBuffer data = createSeries(10);
+	SeriesBuffer sampled = LargestTriangleThreeBuckets.downsample(data, 6);
+	assertEquals(6, sampled.size());
+	for (int bucket = 0; bucket < 4; bucket++) {
+	    long time = sampled.getTime(bucket + 1);
+	    assertTrue(time >= data.getTime(bucket * 2 + 1));
+	    assertTrue(time <= data.getTime(bucket * 2 + 2));
+	}
+    }
+
+    @Test
+    public void testPeakRetained() {
+	SeriesBuffer data = new SeriesBuffer(1000);
+	for (int i = 0; i < 1000; i++) {
+	    data.add(i * 1000L, (i == 500) ? 50.0 : 0.0);
+	}
+	SeriesBuffer sampled = LargestTriangleThreeBuckets.downsample(data, 10);
+	boolean found = false;
+	for (int i = 0; i < sampled.size(); i++) {
+	    found |= (sampled.getTime(i) == 500000L) && (sampled.getValue(i) == 50.0);
+	}
+	assertTrue(found);
+    }
+
+    /**
+     * Create a series of points one second apart.
+     * 
+     * @param size
+     * @return
+     */
+    protected SeriesBuffer createSeries(int size) {
+	SeriesBuffer data = new SeriesBuffer(size);
+	for (int i = 0; i < size; i++) {
+	    data.add(1000000L + i * 1000L, Math.sin(i / 10.0));
+	}
+	return data;
+    }
+}
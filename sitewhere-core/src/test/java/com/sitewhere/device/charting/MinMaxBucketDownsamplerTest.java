@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link MinMaxBucketDownsampler}.
+ * 
+ * @author Derek
+ */
+public class MinMaxBucketDownsamplerTest {
+
+    @Test
+    public void testFewPointsAreKept() {
+	MinMaxBucketDownsampler sampler = new MinMaxBucketDownsampler(10);
+	sampler.add(1000, 1.0);
+	sampler.add(2000, 2.0);
+	sampler.add(3000, 3.0);
+	SeriesBuffer series = sampler.getSeries();
+	assertEquals(3, series.size());
+	assertEquals(1000, series.getTime(0));
+	assertEquals(3000, series.getTime(2));
+	assertEquals(3, sampler.getCount());
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+	MinMaxBucketDownsampler sampler = new MinMaxBucketDownsampler(2);
+	sampler.add(0, 5.0);
+	sampler.add(1, 1.0);
+	sampler.add(2, 9.0);
+	sampler.add(3, 4.0);
+
+	// Buckets are [0,2) and [2,4) after compaction.
+	SeriesBuffer series = sampler.getSeries();
+	assertEquals(4, series.size());
+	assertEquals(0, series.getTime(0));
+	assertEquals(1, series.getTime(1));
+	assertEquals(2, series.getTime(2));
+	assertEquals(3, series.getTime(3));
+
+	// Buckets become [0,4) and [4,8) once width doubles again.
+	sampler.add(4, 7.0);
+	series = sampler.getSeries();
+	assertEquals(3, series.size());
+	assertEquals(1, series.getTime(0));
+	assertEquals(1.0, series.getValue(0), 0.0);
+	assertEquals(2, series.getTime(1));
+	assertEquals(9.0, series.getValue(1), 0.0);
+	assertEquals(4, series.getTime(2));
+	assertEquals(7.0, series.getValue(2), 0.0);
+    }
+
+    @Test
+    public void testExtremesRetained() {
+	MinMaxBucketDownsampler sampler = new MinMaxBucketDownsampler(16);
+	for (int i = 0; i < 10000; i++) {
+	    sampler.add(i * 1000L, (i == 4321) ? 100.0 : ((i == 8765) ? -100.0 : Math.sin(i)));
+	}
+	SeriesBuffer series = sampler.getSeries();
+	assertTrue(series.size() <= 32);
+	assertTrue(contains(series, 4321000L, 100.0));
+	assertTrue(contains(series, 8765000L, -100.0));
+	assertAscending(series);
+    }
+
+    @Test
+    public void testDescendingMatchesAscending() {
+	MinMaxBucketDownsampler ascending = new MinMaxBucketDownsampler(8);
+	MinMaxBucketDownsampler descending = new MinMaxBucketDownsampler(8);
+	for (int i = 0; i < 1000; i++) {
+	    ascending.add(5000L + i * 10L, Math.cos(i));
+	    descending.add(5000L + (999 - i) * 10L, Math.cos(999 - i));
+	}
+	assertSameSeries(ascending.getSeries(), descending.getSeries());
+    }
+
+    @Test
+    public void testUnorderedInput() {
+	MinMaxBucketDownsampler sampler = new MinMaxBucketDownsampler(4);
+	sampler.add(500, 0.0);
+	sampler.add(100, -10.0);
+	sampler.add(900, 10.0);
+	sampler.add(300, 1.0);
+	SeriesBuffer series = sampler.getSeries();
+	assertAscending(series);
+	assertTrue(contains(series, 100, -10.0));
+	assertTrue(contains(series, 900, 10.0));
+	assertEquals(4, sampler.getCount());
+    }
+
+    /**
+     * Check whether series contains the given point.
+     * 
+     * @param series
+     * @param time
+     * @param value
+     * @return
+     */
+    protected boolean contains(SeriesBuffer series, long time, double value) {
+	for (int i = 0; i < series.size(); i++) {
+	    if ((series.getTime(i) == time) && (series.getValue(i) == value)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Assert that series times are ascending.
+     * 
+     * @param series
+     */
+    protected void assertAscending(SeriesBuffer series) {
+	for (int i = 1; i < series.size(); i++) {
+	    assertTrue(series.getTime(i - 1) <= series.getTime(i));
+	}
+    }
+
+    /**
+     * Assert that two series contain the same points.
+     * 
+     * @param expected
+     * @param actual
+     */
+    protected void assertSameSeries(SeriesBuffer expected, SeriesBuffer actual) {
+	assertEquals(expected.size(), actual.size());
+	for (int i = 0; i < expected.size(); i++) {
+	    assertEquals(expected.getTime(i), actual.getTime(i));
+	    assertEquals(expected.getValue(i), actual.getValue(i), 0.0);
+	}
+    }
+}
@@ -7,10 +7,13 @@
  */
 package com.sitewhere.grpc.client;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import com.sitewhere.common.MarshalUtils;
 import com.sitewhere.grpc.client.spi.IGrpcChannel;
@@ -22,6 +25,7 @@ import com.sitewhere.spi.microservice.instance.IInstanceSettings;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
 import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
 import io.grpc.netty.NettyChannelBuilder;
 
 /**
@@ -47,7 +51,7 @@ public abstract class GrpcChannel<B, A> extends TenantEngineLifecycleComponent i
     /** Remote port */
     protected int port;
 
-    /** GRPC managed channe */
+    /** GRPC managed channel (pool of channels to the target) */
     protected ManagedChannel channel;
 
     /** Blocking stub */
@@ -97,19 +101,60 @@ public abstract class GrpcChannel<B, A> extends TenantEngineLifecycleComponent i
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	try {
-	    NettyChannelBuilder builder = NettyChannelBuilder.forAddress(getHostname(), getPort());
-	    builder.defaultServiceConfig(buildServiceConfiguration()).enableRetry().disableServiceConfigLookUp();
-	    builder.usePlaintext().intercept(getJwtInterceptor());
-	    this.channel = builder.build();
+	    Map<String, Object> serviceConfig = buildServiceConfiguration();
+	    int poolSize = Math.max(1, getInstanceSettings().getGrpcChannelPoolSize());
+	    List<ManagedChannel> channels = new ArrayList<>();
+	    for (int i = 0; i < poolSize; i++) {
+		channels.add(buildManagedChannel(serviceConfig));
+	    }
+	    GrpcChannelPool.Balancing balancing = GrpcChannelPool.Balancing
+		    .fromSetting(getInstanceSettings().getGrpcChannelBalancing());
+	    long deadlineMs = TimeUnit.SECONDS.toMillis(getInstanceSettings().getGrpcDefaultDeadlineInSeconds());
+	    this.channel = new GrpcChannelPool(getHostname() + ":" + getPort(), channels, balancing, deadlineMs);
 	    this.blockingStub = createBlockingStub();
 	    this.asyncStub = createAsyncStub();
-	    getLogger().info(
-		    String.format("Creating gRPC client channel connected to %s:%d ...", getHostname(), getPort()));
+	    getLogger().info(String.format("Creating gRPC client channel pool (%d channels, %s) connected to %s:%d ...",
+		    poolSize, balancing.name(), getHostname(), getPort()));
 	} catch (Throwable t) {
 	    throw new SiteWhereException("Unhandled exception starting gRPC channel.", t);
 	}
     }
 
+    /**
+     * Build a single channel for the pool.
+     * 
+     * @param serviceConfig
+     * @return
+     */
+    protected ManagedChannel buildManagedChannel(Map<String, Object> serviceConfig) {
+	NettyChannelBuilder builder = NettyChannelBuilder.forTarget(getTarget());
+	builder.defaultServiceConfig(serviceConfig).enableRetry().disableServiceConfigLookUp();
+	configureConnectivity(builder);
+	builder.usePlaintext().intercept(getJwtInterceptor());
+	return builder.build();
+    }
+
+    /**
+     * Configure load balancing across resolved addresses and keepalive settings.
+     * 
+     * @param builder
+     */
+    protected void configureConnectivity(ManagedChannelBuilder<?> builder) {
+	builder.defaultLoadBalancingPolicy("round_robin");
+	builder.keepAliveTime(getInstanceSettings().getGrpcKeepAliveTimeInSeconds(), TimeUnit.SECONDS);
+	builder.keepAliveTimeout(getInstanceSettings().getGrpcKeepAliveTimeoutInSeconds(), TimeUnit.SECONDS);
+	builder.keepAliveWithoutCalls(true);
+    }
+
+    /**
+     * Get DNS target so that all resolved service addresses are used.
+     * 
+     * @return
+     */
+    protected String getTarget() {
+	return "dns:///" + getHostname() + ":" + getPort();
+    }
+
     /**
      * Build service configuration that enables retry support.
      * 
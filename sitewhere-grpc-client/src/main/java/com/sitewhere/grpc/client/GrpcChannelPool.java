@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.grpc.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
+import io.prometheus.client.Gauge;
+
+/**
+ * Managed channel that spreads calls across a pool of underlying channels to
+ * the same target. Each pooled channel holds its own HTTP/2 connection(s), so
+ * the pool raises the limit on concurrent streams and lets connections land on
+ * different replicas of the target service. Calls are assigned to a pooled
+ * channel either in round-robin order or to the channel with the fewest
+ * outstanding calls. A default deadline is applied to unary calls that do not
+ * specify one.
+ * 
+ * @author Derek
+ */
+public class GrpcChannelPool extends ManagedChannel {
+
+    /** Tracks outstanding calls for each pooled channel */
+    private static final Gauge OUTSTANDING_CALLS = Gauge.build().name("sitewhere_grpc_outstanding_calls")
+	    .help("Number of gRPC calls in progress for a pooled client channel").labelNames("target", "channel")
+	    .register();
+
+    /** Strategy for choosing a pooled channel */
+    public static enum Balancing {
+
+	/** Rotate through channels */
+	RoundRobin,
+
+	/** Choose channel with fewest calls in progress */
+	LeastOutstanding;
+
+	/**
+	 * Parse from setting value. Unknown values use least outstanding.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static Balancing fromSetting(String value) {
+	    if ("round_robin".equalsIgnoreCase(value)) {
+		return RoundRobin;
+	    }
+	    return LeastOutstanding;
+	}
+    }
+
+    /** Target description used for metrics */
+    private String target;
+
+    /** Pooled channels */
+    private List<ManagedChannel> channels;
+
+    /** Outstanding calls per pooled channel */
+    private List<AtomicInteger> outstanding = new ArrayList<>();
+
+    /** Gauge children per pooled channel */
+    private List<Gauge.Child> gauges = new ArrayList<>();
+
+    /** Channel selection strategy */
+    private Balancing balancing;
+
+    /** Default deadline for unary calls in milliseconds (0 for none) */
+    private long defaultDeadlineMs;
+
+    /** Counter used for round-robin selection */
+    private AtomicInteger next = new AtomicInteger();
+
+    public GrpcChannelPool(String target, List<ManagedChannel> channels, Balancing balancing,
+	    long defaultDeadlineMs) {
+	if (channels.isEmpty()) {
+	    throw new IllegalArgumentException("Channel pool requires at least one channel.");
+	}
+	this.target = target;
+	this.channels = channels;
+	this.balancing = balancing;
+	this.defaultDeadlineMs = defaultDeadlineMs;
+	for (int i = 0; i < channels.size(); i++) {
+	    outstanding.add(new AtomicInteger());
+	    gauges.add(OUTSTANDING_CALLS.labels(target, String.valueOf(i)));
+	}
+    }
+
+    /*
+     * @see io.grpc.Channel#newCall(io.grpc.MethodDescriptor, io.grpc.CallOptions)
+     */
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+	    CallOptions callOptions) {
+	int index = choose();
+	if ((defaultDeadlineMs > 0) && (callOptions.getDeadline() == null)
+		&& (method.getType() == MethodType.UNARY)) {
+	    callOptions = callOptions.withDeadlineAfter(defaultDeadlineMs, TimeUnit.MILLISECONDS);
+	}
+	return new TrackedCall<ReqT, RespT>(channels.get(index).newCall(method, callOptions), index);
+    }
+
+    /**
+     * Choose index of pooled channel for the next call.
+     * 
+     * @return
+     */
+    protected int choose() {
+	int size = channels.size();
+	int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+	if ((size == 1) || (balancing == Balancing.RoundRobin)) {
+	    return start;
+	}
+
+	// Scan from rotating start so ties are spread evenly.
+	int best = start;
+	int min = outstanding.get(start).get();
+	for (int i = 1; (i < size) && (min > 0); i++) {
+	    int index = (start + i) % size;
+	    int count = outstanding.get(index).get();
+	    if (count < min) {
+		best = index;
+		min = count;
+	    }
+	}
+	return best;
+    }
+
+    /*
+     * @see io.grpc.Channel#authority()
+     */
+    @Override
+    public String authority() {
+	return channels.get(0).authority();
+    }
+
+    /*
+     * @see io.grpc.ManagedChannel#shutdown()
+     */
+    @Override
+    public ManagedChannel shutdown() {
+	for (ManagedChannel channel : channels) {
+	    channel.shutdown();
+	}
+	return this;
+    }
+
+    /*
+     * @see io.grpc.ManagedChannel#shutdownNow()
+     */
+    @Override
+    public ManagedChannel shutdownNow() {
+	for (ManagedChannel channel : channels) {
+	    channel.shutdownNow();
+	}
+	return this;
+    }
+
+    /*
+     * @see io.grpc.ManagedChannel#isShutdown()
+     */
+    @Override
+    public boolean isShutdown() {
+	for (ManagedChannel channel : channels) {
+	    if (!channel.isShutdown()) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /*
+     * @see io.grpc.ManagedChannel#isTerminated()
+     */
+    @Override
+    public boolean isTerminated() {
+	for (ManagedChannel channel : channels) {
+	    if (!channel.isTerminated()) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /*
+     * @see io.grpc.ManagedChannel#awaitTermination(long,
+     * java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+	long deadline = System.nanoTime() + unit.toNanos(timeout);
+	for (ManagedChannel channel : channels) {
+	    long remaining = deadline - System.nanoTime();
+	    if (!channel.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /*
+     * @see io.grpc.ManagedChannel#getState(boolean)
+     */
+    @Override
+    public ConnectivityState getState(boolean requestConnection) {
+	ConnectivityState result = null;
+	for (ManagedChannel channel : channels) {
+	    ConnectivityState state = channel.getState(requestConnection);
+	    if (state == ConnectivityState.READY) {
+		return state;
+	    }
+	    if (result == null) {
+		result = state;
+	    }
+	}
+	return result;
+    }
+
+    /*
+     * @see io.grpc.ManagedChannel#resetConnectBackoff()
+     */
+    @Override
+    public void resetConnectBackoff() {
+	for (ManagedChannel channel : channels) {
+	    channel.resetConnectBackoff();
+	}
+    }
+
+    /*
+     * @see io.grpc.ManagedChannel#enterIdle()
+     */
+    @Override
+    public void enterIdle() {
+	for (ManagedChannel channel : channels) {
+	    channel.enterIdle();
+	}
+    }
+
+    /**
+     * Get number of calls in progress across all pooled channels.
+     * 
+     * @return
+     */
+    public int getOutstandingCalls() {
+	int total = 0;
+	for (AtomicInteger count : outstanding) {
+	    total += count.get();
+	}
+	return total;
+    }
+
+    public String getTarget() {
+	return target;
+    }
+
+    public List<ManagedChannel> getChannels() {
+	return channels;
+    }
+
+    public Balancing getBalancing() {
+	return balancing;
+    }
+
+    public long getDefaultDeadlineMs() {
+	return defaultDeadlineMs;
+    }
+
+    /**
+     * Call wrapper that tracks the call as outstanding from start until close.
+     * 
+     * @param <ReqT>
+     * @param <RespT>
+     */
+    private class TrackedCall<ReqT, RespT> extends SimpleForwardingClientCall<ReqT, RespT> {
+
+	/** Index of pooled channel */
+	private int index;
+
+	/** Ensures call is only released once */
+	private AtomicBoolean released = new AtomicBoolean();
+
+	public TrackedCall(ClientCall<ReqT, RespT> delegate, int index) {
+	    super(delegate);
+	    this.index = index;
+	}
+
+	/*
+	 * @see io.grpc.ForwardingClientCall#start(io.grpc.ClientCall.Listener,
+	 * io.grpc.Metadata)
+	 */
+	@Override
+	public void start(Listener<RespT> responseListener, Metadata headers) {
+	    outstanding.get(index).incrementAndGet();
+	    gauges.get(index).inc();
+	    try {
+		super.start(new SimpleForwardingClientCallListener<RespT>(responseListener) {
+
+		    @Override
+		    public void onClose(Status status, Metadata trailers) {
+			release();
+			super.onClose(status, trailers);
+		    }
+		}, headers);
+	    } catch (RuntimeException e) {
+		release();
+		throw e;
+	    }
+	}
+
+	/**
+	 * Mark call as no longer outstanding.
+	 */
+	protected void release() {
+	    if (released.compareAndSet(false, true)) {
+		outstanding.get(index).decrementAndGet();
+		gauges.get(index).dec();
+	    }
+	}
+    }
+}
@@ -7,9 +7,7 @@
  */
 package com.sitewhere.grpc.client;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -51,9 +49,6 @@ public class GrpcUtils {
     /** Static logger instance */
     private static Logger LOGGER = LoggerFactory.getLogger(GrpcUtils.class);
 
-    /** Hashmap of JWT to decoded claims */
-    private static Map<String, Claims> jwtToClaims = new HashMap<String, Claims>();
-
     public static void handleClientMethodEntry(IApiChannel<?> channel, MethodDescriptor<?, ?> method,
 	    DebugParameter... parameters) {
 	LOGGER.debug(channel.getClass().getSimpleName() + " connected to '" + channel.getFunctionIdentifier().getPath()
@@ -98,41 +93,44 @@ public class GrpcUtils {
 	    throw new RuntimeException("JWT not found in server request.");
 	}
 	ITenant tenant = null;
+	String tenantId = null;
 	try {
 	    if (api.getMicroservice() instanceof IMultitenantMicroservice) {
-		String tenantId = GrpcContextKeys.TENANT_ID_KEY.get();
+		tenantId = GrpcContextKeys.TENANT_ID_KEY.get();
 		if (tenantId != null) {
 		    IMicroserviceTenantEngine engine = ((IMultitenantMicroservice<?, ?>) api.getMicroservice())
 			    .assureTenantEngineAvailable(UUID.fromString(tenantId));
 		    tenant = engine.getTenant();
 		}
 	    }
-	    Claims claims = getClaimsForJwt(api, jwt);
-	    String username = api.getMicroservice().getTokenManagement().getUsernameFromClaims(claims);
-	    List<IGrantedAuthority> gauths = api.getMicroservice().getTokenManagement()
-		    .getGrantedAuthoritiesFromClaims(claims);
-	    List<String> auths = gauths.stream().map(g -> g.getAuthority()).collect(Collectors.toList());
-	    establishSecurityContext(jwt, username, gauths, auths, tenant);
+	    final ITenant authTenant = tenant;
+	    Authentication auth = api.getMicroservice().getVerifiedTokenCache().getAuthentication(jwt, tenantId,
+		    claims -> buildAuthentication(api, jwt, claims, authTenant));
+	    SecurityContextHolder.getContext().setAuthentication(auth);
+	    LOGGER.trace("Set security context: username=" + auth.getName() + " jwt=" + jwt);
 	} catch (SiteWhereException e) {
 	    LOGGER.error("Error in gRPC server method " + method.getFullMethodName(), e);
 	}
     }
 
     /**
-     * Get cached claims for JWT.
+     * Build Spring Security authentication from verified JWT claims. The result
+     * is cached and shared across calls using the same JWT and tenant.
      * 
+     * @param api
      * @param jwt
+     * @param claims
+     * @param tenant
      * @return
      * @throws SiteWhereException
      */
-    protected static Claims getClaimsForJwt(IGrpcApiImplementation api, String jwt) throws SiteWhereException {
-	// TODO: Swap to expiring cache and put limits on number of cached JWTs.
-	Claims claims = jwtToClaims.get(jwt);
-	if (claims == null) {
-	    claims = api.getMicroservice().getTokenManagement().getClaimsForToken(jwt);
-	    jwtToClaims.put(jwt, claims);
-	}
-	return claims;
+    protected static Authentication buildAuthentication(IGrpcApiImplementation api, String jwt, Claims claims,
+	    ITenant tenant) throws SiteWhereException {
+	String username = api.getMicroservice().getTokenManagement().getUsernameFromClaims(claims);
+	List<IGrantedAuthority> gauths = api.getMicroservice().getTokenManagement()
+		.getGrantedAuthoritiesFromClaims(claims);
+	List<String> auths = gauths.stream().map(g -> g.getAuthority()).collect(Collectors.toList());
+	return buildAuthentication(jwt, username, gauths, auths, tenant);
     }
 
     /**
@@ -147,15 +145,17 @@ public class GrpcUtils {
     }
 
     /**
-     * Build Spring Security context based on values passed via gRPC interceptors.
+     * Build Spring Security authentication based on values passed via gRPC
+     * interceptors.
      * 
      * @param jwt
      * @param username
      * @param gauths
      * @param auths
-     * @param tenantId
+     * @param tenant
+     * @return
      */
-    protected static void establishSecurityContext(String jwt, String username, List<IGrantedAuthority> gauths,
+    protected static Authentication buildAuthentication(String jwt, String username, List<IGrantedAuthority> gauths,
 	    List<String> auths, ITenant tenant) {
 	User user = new User();
 	user.setUsername(username);
@@ -165,8 +165,7 @@ public class GrpcUtils {
 	if (tenant != null) {
 	    auth.setTenant(tenant);
 	}
-	SecurityContextHolder.getContext().setAuthentication(auth);
-	LOGGER.trace("Set security context: username=" + username + " jwt=" + jwt);
+	return auth;
     }
 
     public static void logServerApiResult(MethodDescriptor<?, ?> method, Object result) throws SiteWhereException {
@@ -7,16 +7,16 @@
  */
 package com.sitewhere.grpc.client;
 
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import com.sitewhere.grpc.client.spi.multitenant.IMultitenantGrpcChannel;
-import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.microservice.IFunctionIdentifier;
 import com.sitewhere.spi.microservice.grpc.IGrpcServiceIdentifier;
 import com.sitewhere.spi.microservice.instance.IInstanceSettings;
-import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
+import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 
 /**
@@ -45,23 +45,16 @@ public abstract class MultitenantGrpcChannel<B, A> extends GrpcChannel<B, A> imp
     }
 
     /*
-     * (non-Javadoc)
-     * 
-     * @see
-     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi
-     * .server.lifecycle.ILifecycleProgressMonitor)
+     * @see com.sitewhere.grpc.client.GrpcChannel#buildManagedChannel(java.util.Map)
      */
     @Override
-    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	ManagedChannelBuilder<?> builder = ManagedChannelBuilder.forAddress(getHostname(), getPort());
-	builder.defaultServiceConfig(buildServiceConfiguration()).enableRetry();
+    protected ManagedChannel buildManagedChannel(Map<String, Object> serviceConfig) {
+	ManagedChannelBuilder<?> builder = ManagedChannelBuilder.forTarget(getTarget());
+	builder.defaultServiceConfig(serviceConfig).enableRetry();
 	builder.executor(getServerExecutor());
+	configureConnectivity(builder);
 	builder.usePlaintext().intercept(getTenantTokenInterceptor()).intercept(getJwtInterceptor());
-	this.channel = builder.build();
-	this.blockingStub = createBlockingStub();
-	this.asyncStub = createAsyncStub();
-	getLogger()
-		.info(String.format("Creating gRPC client channel connected to %s:%d ...", getHostname(), getPort()));
+	return builder.build();
     }
 
     protected TenantTokenClientInterceptor getTenantTokenInterceptor() {
@@ -7,11 +7,16 @@
  */
 package com.sitewhere.grpc.client.asset;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.grpc.client.GrpcUtils;
 import com.sitewhere.grpc.client.MultitenantApiChannel;
 import com.sitewhere.grpc.client.common.converter.CommonModelConverter;
+import com.sitewhere.grpc.client.event.BlockingStreamObserver;
 import com.sitewhere.grpc.client.spi.client.IAssetManagementApiChannel;
 import com.sitewhere.grpc.service.AssetManagementGrpc;
 import com.sitewhere.grpc.service.GCreateAssetRequest;
@@ -263,6 +268,38 @@ public class AssetManagementApiChannel extends MultitenantApiChannel<AssetManage
 	}
     }
 
+    /*
+     * @see com.sitewhere.spi.asset.IAssetManagement#getAssetsByIds(java.util.List)
+     */
+    @Override
+    public List<IAsset> getAssetsByIds(List<UUID> assetIds) throws SiteWhereException {
+	try {
+	    // No bulk call is available, so issue lookups concurrently and wait for all.
+	    Map<UUID, BlockingStreamObserver<GGetAssetByIdResponse>> pending = new LinkedHashMap<>();
+	    for (UUID assetId : assetIds) {
+		if (!pending.containsKey(assetId)) {
+		    GrpcUtils.handleClientMethodEntry(this, AssetManagementGrpc.getGetAssetByIdMethod());
+		    GGetAssetByIdRequest.Builder grequest = GGetAssetByIdRequest.newBuilder();
+		    grequest.setAssetId(CommonModelConverter.asGrpcUuid(assetId));
+		    BlockingStreamObserver<GGetAssetByIdResponse> observer = new BlockingStreamObserver<>();
+		    getGrpcChannel().getAsyncStub().getAssetById(grequest.build(), observer);
+		    pending.put(assetId, observer);
+		}
+	    }
+	    List<IAsset> results = new ArrayList<>();
+	    for (BlockingStreamObserver<GGetAssetByIdResponse> observer : pending.values()) {
+		GGetAssetByIdResponse gresponse = observer.getResult();
+		if ((gresponse != null) && (gresponse.hasAsset())) {
+		    results.add(AssetModelConverter.asApiAsset(gresponse.getAsset()));
+		}
+	    }
+	    GrpcUtils.logClientMethodResponse(AssetManagementGrpc.getGetAssetByIdMethod(), results);
+	    return results;
+	} catch (Throwable t) {
+	    throw GrpcUtils.handleClientMethodException(AssetManagementGrpc.getGetAssetByIdMethod(), t);
+	}
+    }
+
     /*
      * @see
      * com.sitewhere.spi.asset.IAssetManagement#getAssetByToken(java.lang.String)
@@ -7,6 +7,10 @@
  */
 package com.sitewhere.grpc.client.asset;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import com.sitewhere.grpc.client.cache.AssetManagementCacheProviders;
@@ -116,6 +120,31 @@ public class CachedAssetManagementApiChannel extends TenantEngineLifecycleCompon
 	return asset;
     }
 
+    /*
+     * @see com.sitewhere.spi.asset.IAssetManagement#getAssetsByIds(java.util.List)
+     */
+    @Override
+    public List<IAsset> getAssetsByIds(List<UUID> assetIds) throws SiteWhereException {
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	List<IAsset> results = new ArrayList<>();
+	Set<UUID> missing = new LinkedHashSet<>();
+	for (UUID assetId : assetIds) {
+	    IAsset asset = getAssetByIdCache().getCacheEntry(tenant, assetId);
+	    if (asset != null) {
+		results.add(asset);
+	    } else {
+		missing.add(assetId);
+	    }
+	}
+	if (!missing.isEmpty()) {
+	    for (IAsset asset : getWrapped().getAssetsByIds(new ArrayList<>(missing))) {
+		getAssetByIdCache().setCacheEntry(tenant, asset.getId(), asset);
+		results.add(asset);
+	    }
+	}
+	return results;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.asset.IAssetManagement#getAssetByToken(java.lang.String)
@@ -7,11 +7,17 @@
  */
 package com.sitewhere.grpc.client.batch;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.sitewhere.grpc.client.GrpcUtils;
 import com.sitewhere.grpc.client.MultitenantApiChannel;
 import com.sitewhere.grpc.client.common.converter.CommonModelConverter;
+import com.sitewhere.grpc.client.event.BlockingStreamObserver;
 import com.sitewhere.grpc.client.spi.client.IBatchManagementApiChannel;
 import com.sitewhere.grpc.service.BatchManagementGrpc;
 import com.sitewhere.grpc.service.GCreateBatchCommandInvocationRequest;
@@ -34,7 +40,9 @@ import com.sitewhere.grpc.service.GUpdateBatchElementRequest;
 import com.sitewhere.grpc.service.GUpdateBatchElementResponse;
 import com.sitewhere.grpc.service.GUpdateBatchOperationRequest;
 import com.sitewhere.grpc.service.GUpdateBatchOperationResponse;
+import com.sitewhere.rest.model.batch.request.BatchElementCreateRequest;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.batch.ElementProcessingStatus;
 import com.sitewhere.spi.batch.IBatchElement;
 import com.sitewhere.spi.batch.IBatchOperation;
 import com.sitewhere.spi.batch.request.IBatchCommandInvocationRequest;
@@ -263,6 +271,44 @@ public class BatchManagementApiChannel extends MultitenantApiChannel<BatchManage
 	}
     }
 
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#createBatchElements(java.util.UUID,
+     * java.util.List)
+     */
+    @Override
+    public List<IBatchElement> createBatchElements(UUID batchOperationId, List<IBatchElementCreateRequest> requests)
+	    throws SiteWhereException {
+	try {
+	    // No bulk call is available, so issue creates concurrently and wait for all.
+	    List<BlockingStreamObserver<GCreateBatchElementResponse>> pending = new ArrayList<>();
+	    for (IBatchElementCreateRequest request : requests) {
+		GrpcUtils.handleClientMethodEntry(this, BatchManagementGrpc.getCreateBatchElementMethod());
+		GCreateBatchElementRequest.Builder grequest = GCreateBatchElementRequest.newBuilder();
+		grequest.setBatchOperationId(CommonModelConverter.asGrpcUuid(batchOperationId));
+		grequest.setRequest(BatchModelConverter.asGrpcBatchElementUpdateRequest(request));
+		BlockingStreamObserver<GCreateBatchElementResponse> observer = new BlockingStreamObserver<>();
+		getGrpcChannel().getAsyncStub().createBatchElement(grequest.build(), observer);
+		pending.add(observer);
+	    }
+	    List<IBatchElement> results = new ArrayList<>();
+	    for (BlockingStreamObserver<GCreateBatchElementResponse> observer : pending) {
+		try {
+		    GCreateBatchElementResponse gresponse = observer.getResult();
+		    results.add(((gresponse != null) && (gresponse.hasElement()))
+			    ? BatchModelConverter.asApiBatchElement(gresponse.getElement())
+			    : null);
+		} catch (SiteWhereException e) {
+		    results.add(null);
+		}
+	    }
+	    GrpcUtils.logClientMethodResponse(BatchManagementGrpc.getCreateBatchElementMethod(), results);
+	    return results;
+	} catch (Throwable t) {
+	    throw GrpcUtils.handleClientMethodException(BatchManagementGrpc.getCreateBatchElementMethod(), t);
+	}
+    }
+
     /*
      * @see
      * com.sitewhere.spi.batch.IBatchManagement#listBatchElements(java.util.UUID,
@@ -311,4 +357,83 @@ public class BatchManagementApiChannel extends MultitenantApiChannel<BatchManage
 	    throw GrpcUtils.handleClientMethodException(BatchManagementGrpc.getUpdateBatchElementMethod(), t);
 	}
     }
+
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#updateBatchElements(java.util.UUID,
+     * com.sitewhere.spi.batch.ElementProcessingStatus, java.util.Map)
+     */
+    @Override
+    public List<UUID> updateBatchElements(UUID batchOperationId, ElementProcessingStatus expected,
+	    Map<UUID, IBatchElementCreateRequest> requestsByElementId) throws SiteWhereException {
+	try {
+	    // No bulk call is available, so issue updates concurrently and wait for all.
+	    Map<UUID, BlockingStreamObserver<GUpdateBatchElementResponse>> pending = new HashMap<>();
+	    for (Map.Entry<UUID, IBatchElementCreateRequest> entry : requestsByElementId.entrySet()) {
+		GrpcUtils.handleClientMethodEntry(this, BatchManagementGrpc.getUpdateBatchElementMethod());
+		GUpdateBatchElementRequest.Builder grequest = GUpdateBatchElementRequest.newBuilder();
+		grequest.setElementId(CommonModelConverter.asGrpcUuid(entry.getKey()));
+		grequest.setRequest(BatchModelConverter.asGrpcBatchElementUpdateRequest(entry.getValue()));
+		BlockingStreamObserver<GUpdateBatchElementResponse> observer = new BlockingStreamObserver<>();
+		getGrpcChannel().getAsyncStub().updateBatchElement(grequest.build(), observer);
+		pending.put(entry.getKey(), observer);
+	    }
+	    List<UUID> updated = new ArrayList<>();
+	    for (Map.Entry<UUID, BlockingStreamObserver<GUpdateBatchElementResponse>> entry : pending.entrySet()) {
+		GUpdateBatchElementResponse gresponse = entry.getValue().getResult();
+		if ((gresponse != null) && (gresponse.hasElement())) {
+		    updated.add(entry.getKey());
+		}
+	    }
+	    GrpcUtils.logClientMethodResponse(BatchManagementGrpc.getUpdateBatchElementMethod(), updated);
+	    return updated;
+	} catch (Throwable t) {
+	    throw GrpcUtils.handleClientMethodException(BatchManagementGrpc.getUpdateBatchElementMethod(), t);
+	}
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#claimBatchElements(java.util.UUID,
+     * java.util.List, java.util.Date)
+     */
+    @Override
+    public List<UUID> claimBatchElements(UUID batchOperationId, List<UUID> elementIds, Date staleBefore)
+	    throws SiteWhereException {
+	// No conditional update is available remotely, so stale claims are not recovered.
+	Date now = new Date();
+	Map<UUID, IBatchElementCreateRequest> requests = new HashMap<>();
+	for (UUID elementId : elementIds) {
+	    BatchElementCreateRequest request = new BatchElementCreateRequest();
+	    request.setProcessingStatus(ElementProcessingStatus.Processing);
+	    request.setProcessedDate(now);
+	    requests.put(elementId, request);
+	}
+	return updateBatchElements(batchOperationId, ElementProcessingStatus.Unprocessed, requests);
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.batch.IBatchManagement#getBatchElementCounts(java.util.UUID)
+     */
+    @Override
+    public Map<ElementProcessingStatus, Long> getBatchElementCounts(UUID batchOperationId) throws SiteWhereException {
+	try {
+	    // Counts maintained by the server are returned with the batch operation.
+	    GrpcUtils.handleClientMethodEntry(this, BatchManagementGrpc.getGetBatchOperationMethod());
+	    GGetBatchOperationRequest.Builder grequest = GGetBatchOperationRequest.newBuilder();
+	    grequest.setBatchOperationId(CommonModelConverter.asGrpcUuid(batchOperationId));
+	    GGetBatchOperationResponse gresponse = getGrpcChannel().getBlockingStub()
+		    .getBatchOperation(grequest.build());
+	    if (!gresponse.hasBatchOperation()) {
+		throw new SiteWhereException("Batch operation not found: " + batchOperationId);
+	    }
+	    Map<ElementProcessingStatus, Long> response = BatchModelConverter
+		    .asApiElementCounts(gresponse.getBatchOperation());
+	    GrpcUtils.logClientMethodResponse(BatchManagementGrpc.getGetBatchOperationMethod(), response);
+	    return response;
+	} catch (Throwable t) {
+	    throw GrpcUtils.handleClientMethodException(BatchManagementGrpc.getGetBatchOperationMethod(), t);
+	}
+    }
 }
\ No newline at end of file
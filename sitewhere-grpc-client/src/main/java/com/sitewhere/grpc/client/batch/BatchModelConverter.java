@@ -8,7 +8,9 @@
 package com.sitewhere.grpc.client.batch;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.sitewhere.grpc.client.common.converter.CommonModelConverter;
 import com.sitewhere.grpc.model.BatchModel.GBatchCommandInvocationCreateRequest;
@@ -58,6 +60,9 @@ import com.sitewhere.spi.search.device.IBatchElementSearchCriteria;
  */
 public class BatchModelConverter {
 
+    /** Prefix for batch operation metadata entries that carry element counts */
+    public static final String ELEMENT_COUNT_METADATA_PREFIX = "sitewhere.elementCount.";
+
     /**
      * Convert batch operation status from GRPC to API.
      * 
@@ -275,7 +280,13 @@ public class BatchModelConverter {
 	api.setToken(grpc.getToken());
 	api.setOperationType(grpc.getOperationType());
 	api.setParameters(grpc.getParametersMap());
-	api.setMetadata(grpc.getMetadataMap());
+	Map<String, String> metadata = new HashMap<String, String>();
+	for (Map.Entry<String, String> entry : grpc.getMetadataMap().entrySet()) {
+	    if (!entry.getKey().startsWith(ELEMENT_COUNT_METADATA_PREFIX)) {
+		metadata.put(entry.getKey(), entry.getValue());
+	    }
+	}
+	api.setMetadata(metadata);
 	api.setProcessingStatus(BatchModelConverter.asApiBatchOperationStatus(grpc.getProcessingStatus()));
 	api.setProcessingStartedDate(CommonModelConverter.asApiDate(grpc.getProcessingStartedDate()));
 	api.setProcessingEndedDate(CommonModelConverter.asApiDate(grpc.getProcessingEndedDate()));
@@ -304,6 +315,46 @@ public class BatchModelConverter {
 	return grpc.build();
     }
 
+    /**
+     * Convert batch operation from API to GRPC, carrying element counts by
+     * processing status as reserved metadata entries.
+     * 
+     * @param api
+     * @param counts
+     * @return
+     * @throws SiteWhereException
+     */
+    public static GBatchOperation asGrpcBatchOperation(IBatchOperation api, Map<ElementProcessingStatus, Long> counts)
+	    throws SiteWhereException {
+	GBatchOperation.Builder grpc = BatchModelConverter.asGrpcBatchOperation(api).toBuilder();
+	for (Map.Entry<ElementProcessingStatus, Long> entry : counts.entrySet()) {
+	    grpc.putMetadata(ELEMENT_COUNT_METADATA_PREFIX + entry.getKey().name(), String.valueOf(entry.getValue()));
+	}
+	return grpc.build();
+    }
+
+    /**
+     * Read element counts by processing status from the reserved metadata entries
+     * of a GRPC batch operation.
+     * 
+     * @param grpc
+     * @return
+     * @throws SiteWhereException
+     */
+    public static Map<ElementProcessingStatus, Long> asApiElementCounts(GBatchOperation grpc)
+	    throws SiteWhereException {
+	Map<ElementProcessingStatus, Long> counts = new HashMap<ElementProcessingStatus, Long>();
+	for (ElementProcessingStatus status : ElementProcessingStatus.values()) {
+	    String value = grpc.getMetadataMap().get(ELEMENT_COUNT_METADATA_PREFIX + status.name());
+	    try {
+		counts.put(status, (value != null) ? Long.parseLong(value) : 0L);
+	    } catch (NumberFormatException e) {
+		throw new SiteWhereException("Invalid element count for status " + status.name() + ": " + value);
+	    }
+	}
+	return counts;
+    }
+
     /**
      * Convert batch element processing status from GRPC to API.
      * 
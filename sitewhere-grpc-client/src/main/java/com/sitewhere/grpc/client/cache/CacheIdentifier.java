@@ -24,6 +24,12 @@ public enum CacheIdentifier {
 
     AreaById("area_by_id"),
 
+    AreaTree("area_tree"),
+
+    CustomerByToken("customer_by_token"),
+
+    CustomerTree("customer_tree"),
+
     DeviceByToken("device_by_token"),
 
     DeviceById("device_by_id"),
@@ -32,10 +38,16 @@ public enum CacheIdentifier {
 
     DeviceAssignmentById("device_assignment_by_id"),
 
+    ActiveDeviceAssignments("active_device_assignments"),
+
+    DeviceCommandById("device_command_by_id"),
+
     DeviceTypeByToken("device_type_by_token"),
 
     DeviceTypeById("device_type_by_id"),
 
+    DeviceRegistrationState("device_registration_state"),
+
     GrantedAuthorityByToken("granted_authority_by_token"),
 
     GrantedAuthorityById("granted_authority_by_id"),
@@ -7,13 +7,17 @@
  */
 package com.sitewhere.grpc.client.cache;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import com.sitewhere.grpc.client.spi.cache.ICacheConfiguration;
 import com.sitewhere.spi.area.IArea;
+import com.sitewhere.spi.customer.ICustomer;
 import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.IDeviceType;
+import com.sitewhere.spi.search.ITreeNode;
 
 /**
  * Cache providers for device management entities.
@@ -44,6 +48,42 @@ public class DeviceManagementCacheProviders {
 	}
     }
 
+    /**
+     * Cache for area tree snapshot.
+     * 
+     * @author Derek
+     */
+    public static class AreaTreeCache extends CacheProvider<String, TreeSnapshot> {
+
+	public AreaTreeCache(ICacheConfiguration configuration) {
+	    super(CacheIdentifier.AreaTree, String.class, TreeSnapshot.class, configuration);
+	}
+    }
+
+    /**
+     * Cache for customer tree snapshot.
+     * 
+     * @author Derek
+     */
+    public static class CustomerTreeCache extends CacheProvider<String, TreeSnapshot> {
+
+	public CustomerTreeCache(ICacheConfiguration configuration) {
+	    super(CacheIdentifier.CustomerTree, String.class, TreeSnapshot.class, configuration);
+	}
+    }
+
+    /**
+     * Cache for customers.
+     * 
+     * @author Derek
+     */
+    public static class CustomerByTokenCache extends CacheProvider<String, ICustomer> {
+
+	public CustomerByTokenCache(ICacheConfiguration configuration) {
+	    super(CacheIdentifier.CustomerByToken, String.class, ICustomer.class, configuration);
+	}
+    }
+
     /**
      * Cache for device types.
      * 
@@ -115,4 +155,26 @@ public class DeviceManagementCacheProviders {
 	    super(CacheIdentifier.DeviceAssignmentById, UUID.class, IDeviceAssignment.class, configuration);
 	}
     }
+
+    /**
+     * Immutable snapshot of a complete hierarchy tree as stored in a tree cache.
+     * 
+     * @author Derek
+     */
+    public static class TreeSnapshot {
+
+	/** Key used for the single tree entry in a tenant cache */
+	public static final String KEY = "tree";
+
+	/** Top-level nodes */
+	private final List<? extends ITreeNode> nodes;
+
+	public TreeSnapshot(List<? extends ITreeNode> nodes) {
+	    this.nodes = Collections.unmodifiableList(nodes);
+	}
+
+	public List<? extends ITreeNode> getNodes() {
+	    return nodes;
+	}
+    }
 }
\ No newline at end of file
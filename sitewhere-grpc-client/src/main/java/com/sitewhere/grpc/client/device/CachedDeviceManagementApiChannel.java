@@ -12,6 +12,7 @@ import java.util.UUID;
 
 import com.sitewhere.grpc.client.cache.CacheConfiguration;
 import com.sitewhere.grpc.client.cache.DeviceManagementCacheProviders;
+import com.sitewhere.grpc.client.cache.DeviceManagementCacheProviders.TreeSnapshot;
 import com.sitewhere.grpc.client.spi.cache.ICacheConfiguration;
 import com.sitewhere.grpc.client.spi.cache.ICacheProvider;
 import com.sitewhere.grpc.client.spi.client.IDeviceManagementApiChannel;
@@ -74,6 +75,15 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     /** Area by id cache */
     private ICacheProvider<UUID, IArea> areaByIdCache;
 
+    /** Area tree cache */
+    private ICacheProvider<String, TreeSnapshot> areaTreeCache;
+
+    /** Customer cache */
+    private ICacheProvider<String, ICustomer> customerCache;
+
+    /** Customer tree cache */
+    private ICacheProvider<String, TreeSnapshot> customerTreeCache;
+
     /** Device type cache */
     private ICacheProvider<String, IDeviceType> deviceTypeCache;
 
@@ -96,6 +106,10 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	this.wrapped = wrapped;
 	this.areaCache = new DeviceManagementCacheProviders.AreaByTokenCache(cache.getAreaConfiguration());
 	this.areaByIdCache = new DeviceManagementCacheProviders.AreaByIdCache(cache.getAreaConfiguration());
+	this.areaTreeCache = new DeviceManagementCacheProviders.AreaTreeCache(cache.getAreaConfiguration());
+	this.customerCache = new DeviceManagementCacheProviders.CustomerByTokenCache(cache.getCustomerConfiguration());
+	this.customerTreeCache = new DeviceManagementCacheProviders.CustomerTreeCache(
+		cache.getCustomerConfiguration());
 	this.deviceTypeCache = new DeviceManagementCacheProviders.DeviceTypeByTokenCache(
 		cache.getDeviceTypeConfiguration());
 	this.deviceTypeByIdCache = new DeviceManagementCacheProviders.DeviceTypeByIdCache(
@@ -118,6 +132,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	initializeNestedComponent(getWrapped(), monitor, true);
 	initializeNestedComponent(getAreaCache(), monitor, true);
 	initializeNestedComponent(getAreaByIdCache(), monitor, true);
+	initializeNestedComponent(getAreaTreeCache(), monitor, true);
+	initializeNestedComponent(getCustomerCache(), monitor, true);
+	initializeNestedComponent(getCustomerTreeCache(), monitor, true);
 	initializeNestedComponent(getDeviceTypeCache(), monitor, true);
 	initializeNestedComponent(getDeviceTypeByIdCache(), monitor, true);
 	initializeNestedComponent(getDeviceCache(), monitor, true);
@@ -136,6 +153,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	startNestedComponent(getWrapped(), monitor, true);
 	startNestedComponent(getAreaCache(), monitor, true);
 	startNestedComponent(getAreaByIdCache(), monitor, true);
+	startNestedComponent(getAreaTreeCache(), monitor, true);
+	startNestedComponent(getCustomerCache(), monitor, true);
+	startNestedComponent(getCustomerTreeCache(), monitor, true);
 	startNestedComponent(getDeviceTypeCache(), monitor, true);
 	startNestedComponent(getDeviceTypeByIdCache(), monitor, true);
 	startNestedComponent(getDeviceCache(), monitor, true);
@@ -154,6 +174,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	stopNestedComponent(getWrapped(), monitor);
 	stopNestedComponent(getAreaCache(), monitor);
 	stopNestedComponent(getAreaByIdCache(), monitor);
+	stopNestedComponent(getAreaTreeCache(), monitor);
+	stopNestedComponent(getCustomerCache(), monitor);
+	stopNestedComponent(getCustomerTreeCache(), monitor);
 	stopNestedComponent(getDeviceTypeCache(), monitor);
 	stopNestedComponent(getDeviceTypeByIdCache(), monitor);
 	stopNestedComponent(getDeviceCache(), monitor);
@@ -518,7 +541,15 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public List<IDeviceAssignment> getActiveDeviceAssignments(UUID deviceId) throws SiteWhereException {
-	return getWrapped().getActiveDeviceAssignments(deviceId);
+	List<IDeviceAssignment> assignments = getWrapped().getActiveDeviceAssignments(deviceId);
+
+	// Prime assignment caches so follow-up lookups do not require a round trip.
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	for (IDeviceAssignment assignment : assignments) {
+	    getDeviceAssignmentCache().setCacheEntry(tenant, assignment.getToken(), assignment);
+	    getDeviceAssignmentByIdCache().setCacheEntry(tenant, assignment.getId(), assignment);
+	}
+	return assignments;
     }
 
     /*
@@ -529,7 +560,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
     @Override
     public IDeviceAssignment updateDeviceAssignment(UUID id, IDeviceAssignmentCreateRequest request)
 	    throws SiteWhereException {
-	return getWrapped().updateDeviceAssignment(id, request);
+	IDeviceAssignment assignment = getWrapped().updateDeviceAssignment(id, request);
+	evictDeviceAssignment(assignment);
+	return assignment;
     }
 
     /*
@@ -549,7 +582,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public IDeviceAssignment endDeviceAssignment(UUID id) throws SiteWhereException {
-	return getWrapped().endDeviceAssignment(id);
+	IDeviceAssignment assignment = getWrapped().endDeviceAssignment(id);
+	evictDeviceAssignment(assignment);
+	return assignment;
     }
 
     /*
@@ -559,7 +594,24 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public IDeviceAssignment deleteDeviceAssignment(UUID id) throws SiteWhereException {
-	return getWrapped().deleteDeviceAssignment(id);
+	IDeviceAssignment assignment = getWrapped().deleteDeviceAssignment(id);
+	evictDeviceAssignment(assignment);
+	return assignment;
+    }
+
+    /**
+     * Remove cached copies of an assignment after it has been changed.
+     * 
+     * @param assignment
+     * @throws SiteWhereException
+     */
+    protected void evictDeviceAssignment(IDeviceAssignment assignment) throws SiteWhereException {
+	if (assignment == null) {
+	    return;
+	}
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	getDeviceAssignmentCache().removeCacheEntry(tenant, assignment.getToken());
+	getDeviceAssignmentByIdCache().removeCacheEntry(tenant, assignment.getId());
     }
 
     /*
@@ -676,7 +728,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public ICustomer createCustomer(ICustomerCreateRequest request) throws SiteWhereException {
-	return getWrapped().createCustomer(request);
+	ICustomer customer = getWrapped().createCustomer(request);
+	getCustomerTreeCache().removeCacheEntry(UserContextManager.getCurrentTenant(true), TreeSnapshot.KEY);
+	return customer;
     }
 
     /*
@@ -693,7 +747,13 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public ICustomer getCustomerByToken(String token) throws SiteWhereException {
-	return getWrapped().getCustomerByToken(token);
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	ICustomer customer = getCustomerCache().getCacheEntry(tenant, token);
+	if (customer == null) {
+	    customer = getWrapped().getCustomerByToken(token);
+	    getCustomerCache().setCacheEntry(tenant, token, customer);
+	}
+	return customer;
     }
 
     /*
@@ -713,7 +773,11 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public ICustomer updateCustomer(UUID id, ICustomerCreateRequest request) throws SiteWhereException {
-	return getWrapped().updateCustomer(id, request);
+	ICustomer customer = getWrapped().updateCustomer(id, request);
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	getCustomerCache().removeCacheEntry(tenant, customer.getToken());
+	getCustomerTreeCache().removeCacheEntry(tenant, TreeSnapshot.KEY);
+	return customer;
     }
 
     /*
@@ -731,7 +795,13 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public List<? extends ITreeNode> getCustomersTree() throws SiteWhereException {
-	return getWrapped().getCustomersTree();
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	TreeSnapshot tree = getCustomerTreeCache().getCacheEntry(tenant, TreeSnapshot.KEY);
+	if (tree == null) {
+	    tree = new TreeSnapshot(getWrapped().getCustomersTree());
+	    getCustomerTreeCache().setCacheEntry(tenant, TreeSnapshot.KEY, tree);
+	}
+	return tree.getNodes();
     }
 
     /*
@@ -740,7 +810,11 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public ICustomer deleteCustomer(UUID id) throws SiteWhereException {
-	return getWrapped().deleteCustomer(id);
+	ICustomer customer = getWrapped().deleteCustomer(id);
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	getCustomerCache().removeCacheEntry(tenant, customer.getToken());
+	getCustomerTreeCache().removeCacheEntry(tenant, TreeSnapshot.KEY);
+	return customer;
     }
 
     /*
@@ -806,7 +880,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public IArea createArea(IAreaCreateRequest request) throws SiteWhereException {
-	return getWrapped().createArea(request);
+	IArea area = getWrapped().createArea(request);
+	getAreaTreeCache().removeCacheEntry(UserContextManager.getCurrentTenant(true), TreeSnapshot.KEY);
+	return area;
     }
 
     /*
@@ -824,7 +900,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public IArea updateArea(UUID id, IAreaCreateRequest request) throws SiteWhereException {
-	return getWrapped().updateArea(id, request);
+	IArea area = getWrapped().updateArea(id, request);
+	getAreaTreeCache().removeCacheEntry(UserContextManager.getCurrentTenant(true), TreeSnapshot.KEY);
+	return area;
     }
 
     /*
@@ -842,7 +920,13 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public List<? extends ITreeNode> getAreasTree() throws SiteWhereException {
-	return getWrapped().getAreasTree();
+	ITenant tenant = UserContextManager.getCurrentTenant(true);
+	TreeSnapshot tree = getAreaTreeCache().getCacheEntry(tenant, TreeSnapshot.KEY);
+	if (tree == null) {
+	    tree = new TreeSnapshot(getWrapped().getAreasTree());
+	    getAreaTreeCache().setCacheEntry(tenant, TreeSnapshot.KEY, tree);
+	}
+	return tree.getNodes();
     }
 
     /*
@@ -850,7 +934,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
      */
     @Override
     public IArea deleteArea(UUID id) throws SiteWhereException {
-	return getWrapped().deleteArea(id);
+	IArea area = getWrapped().deleteArea(id);
+	getAreaTreeCache().removeCacheEntry(UserContextManager.getCurrentTenant(true), TreeSnapshot.KEY);
+	return area;
     }
 
     /*
@@ -1016,6 +1102,9 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	/** Cache configuraton for areas */
 	private ICacheConfiguration areaConfiguration = new CacheConfiguration(1000, 60);
 
+	/** Cache configuration for customers */
+	private ICacheConfiguration customerConfiguration = new CacheConfiguration(1000, 60);
+
 	/** Cache configuration for device types */
 	private ICacheConfiguration deviceTypeConfiguration = new CacheConfiguration(1000, 60);
 
@@ -1033,6 +1122,14 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	    this.areaConfiguration = areaConfiguration;
 	}
 
+	public ICacheConfiguration getCustomerConfiguration() {
+	    return customerConfiguration;
+	}
+
+	public void setCustomerConfiguration(ICacheConfiguration customerConfiguration) {
+	    this.customerConfiguration = customerConfiguration;
+	}
+
 	public ICacheConfiguration getDeviceTypeConfiguration() {
 	    return deviceTypeConfiguration;
 	}
@@ -1074,6 +1171,14 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	this.areaByIdCache = areaByIdCache;
     }
 
+    public ICacheProvider<String, ICustomer> getCustomerCache() {
+	return customerCache;
+    }
+
+    public void setCustomerCache(ICacheProvider<String, ICustomer> customerCache) {
+	this.customerCache = customerCache;
+    }
+
     public ICacheProvider<String, IDeviceType> getDeviceTypeCache() {
 	return deviceTypeCache;
     }
@@ -1122,6 +1227,22 @@ public class CachedDeviceManagementApiChannel extends TenantEngineLifecycleCompo
 	this.deviceAssignmentByIdCache = deviceAssignmentByIdCache;
     }
 
+    public ICacheProvider<String, TreeSnapshot> getAreaTreeCache() {
+	return areaTreeCache;
+    }
+
+    public void setAreaTreeCache(ICacheProvider<String, TreeSnapshot> areaTreeCache) {
+	this.areaTreeCache = areaTreeCache;
+    }
+
+    public ICacheProvider<String, TreeSnapshot> getCustomerTreeCache() {
+	return customerTreeCache;
+    }
+
+    public void setCustomerTreeCache(ICacheProvider<String, TreeSnapshot> customerTreeCache) {
+	this.customerTreeCache = customerTreeCache;
+    }
+
     public IDeviceManagementApiChannel<?> getWrapped() {
 	return wrapped;
     }
@@ -7,6 +7,7 @@
  */
 package com.sitewhere.grpc.client.event;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
@@ -855,4 +856,88 @@ public class DeviceEventManagementApiChannel extends MultitenantApiChannel<Devic
 		    }
 		});
     }
+
+    /*
+     * @see com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel#
+     * iterateDeviceMeasurementsForIndex(com.sitewhere.spi.device.event.
+     * DeviceEventIndex, java.util.List,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria, int)
+     */
+    @Override
+    public Iterator<IDeviceMeasurement> iterateDeviceMeasurementsForIndex(DeviceEventIndex index, List<UUID> entityIds,
+	    IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException {
+	return new DeviceEventSearchIterator<IDeviceMeasurement>(
+		(page, observer) -> listDeviceMeasurementsForIndex(index, entityIds, page, observer), criteria,
+		pageSize);
+    }
+
+    /*
+     * @see com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel#
+     * iterateDeviceLocationsForIndex(com.sitewhere.spi.device.event.
+     * DeviceEventIndex, java.util.List,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria, int)
+     */
+    @Override
+    public Iterator<IDeviceLocation> iterateDeviceLocationsForIndex(DeviceEventIndex index, List<UUID> entityIds,
+	    IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException {
+	return new DeviceEventSearchIterator<IDeviceLocation>(
+		(page, observer) -> listDeviceLocationsForIndex(index, entityIds, page, observer), criteria,
+		pageSize);
+    }
+
+    /*
+     * @see com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel#
+     * iterateDeviceAlertsForIndex(com.sitewhere.spi.device.event.
+     * DeviceEventIndex, java.util.List,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria, int)
+     */
+    @Override
+    public Iterator<IDeviceAlert> iterateDeviceAlertsForIndex(DeviceEventIndex index, List<UUID> entityIds,
+	    IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException {
+	return new DeviceEventSearchIterator<IDeviceAlert>(
+		(page, observer) -> listDeviceAlertsForIndex(index, entityIds, page, observer), criteria,
+		pageSize);
+    }
+
+    /*
+     * @see com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel#
+     * iterateDeviceCommandInvocationsForIndex(com.sitewhere.spi.device.event.
+     * DeviceEventIndex, java.util.List,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria, int)
+     */
+    @Override
+    public Iterator<IDeviceCommandInvocation> iterateDeviceCommandInvocationsForIndex(DeviceEventIndex index,
+	    List<UUID> entityIds, IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException {
+	return new DeviceEventSearchIterator<IDeviceCommandInvocation>(
+		(page, observer) -> listDeviceCommandInvocationsForIndex(index, entityIds, page, observer), criteria,
+		pageSize);
+    }
+
+    /*
+     * @see com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel#
+     * iterateDeviceCommandResponsesForIndex(com.sitewhere.spi.device.event.
+     * DeviceEventIndex, java.util.List,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria, int)
+     */
+    @Override
+    public Iterator<IDeviceCommandResponse> iterateDeviceCommandResponsesForIndex(DeviceEventIndex index,
+	    List<UUID> entityIds, IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException {
+	return new DeviceEventSearchIterator<IDeviceCommandResponse>(
+		(page, observer) -> listDeviceCommandResponsesForIndex(index, entityIds, page, observer), criteria,
+		pageSize);
+    }
+
+    /*
+     * @see com.sitewhere.grpc.client.spi.client.IDeviceEventManagementApiChannel#
+     * iterateDeviceStateChangesForIndex(com.sitewhere.spi.device.event.
+     * DeviceEventIndex, java.util.List,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria, int)
+     */
+    @Override
+    public Iterator<IDeviceStateChange> iterateDeviceStateChangesForIndex(DeviceEventIndex index, List<UUID> entityIds,
+	    IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException {
+	return new DeviceEventSearchIterator<IDeviceStateChange>(
+		(page, observer) -> listDeviceStateChangesForIndex(index, entityIds, page, observer), criteria,
+		pageSize);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.grpc.client.event;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+import com.sitewhere.rest.model.search.DateRangeSearchCriteria;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.ISearchResults;
+
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Iterates over device events matching a search by requesting them from the
+ * event management API one page at a time. Each response is bounded by the page
+ * size, so large result sets never arrive as a single message. The next page is
+ * requested while the current one is being consumed, but no more than one
+ * request is ever outstanding so a slow consumer does not cause results to pile
+ * up in memory.
+ * 
+ * Events are returned newest first, so rather than paging by offset (which
+ * shifts as new events are stored) each page is requested with its end date
+ * moved to the event date of the last event seen. Events sharing that boundary
+ * date are tracked by id so they are not returned twice.
+ * 
+ * @author Derek
+ * 
+ * @param <T>
+ */
+public class DeviceEventSearchIterator<T extends IDeviceEvent> implements Iterator<T> {
+
+    /** Default number of events requested per page */
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    /** Loads a page of results */
+    private IPageLoader<T> loader;
+
+    /** Original search criteria */
+    private IDateRangeSearchCriteria criteria;
+
+    /** Number of events requested per page */
+    private int pageSize;
+
+    /** End date for the next page request */
+    private Date cursorDate;
+
+    /** Page number relative to cursor (only advances if a page shares one date) */
+    private int cursorPage = 1;
+
+    /** Ids of events already returned that share the cursor date */
+    private Set<UUID> seenAtCursor = new HashSet<>();
+
+    /** Events in the current page */
+    private List<T> current;
+
+    /** Index of next event in current page */
+    private int index;
+
+    /** Outstanding request for the following page */
+    private BlockingStreamObserver<ISearchResults<T>> pending;
+
+    /** Indicates no more pages are available */
+    private boolean exhausted;
+
+    public DeviceEventSearchIterator(IPageLoader<T> loader, IDateRangeSearchCriteria criteria, int pageSize)
+	    throws SiteWhereException {
+	this.loader = loader;
+	this.criteria = criteria;
+	this.pageSize = pageSize;
+	this.cursorDate = criteria.getEndDate();
+	this.pending = requestNextPage();
+    }
+
+    /*
+     * @see java.util.Iterator#hasNext()
+     */
+    @Override
+    public boolean hasNext() {
+	while ((current == null) || (index >= current.size())) {
+	    if (pending == null) {
+		return false;
+	    }
+	    try {
+		ISearchResults<T> page = pending.getResult();
+		List<T> results = (page != null) ? page.getResults() : null;
+		if ((results == null) || (results.size() < pageSize)) {
+		    exhausted = true;
+		}
+		current = advanceCursor(results);
+		index = 0;
+		pending = exhausted ? null : requestNextPage();
+	    } catch (SiteWhereException e) {
+		pending = null;
+		throw new DeviceEventSearchException("Unable to load page of device events.", e);
+	    }
+	}
+	return true;
+    }
+
+    /*
+     * @see java.util.Iterator#next()
+     */
+    @Override
+    public T next() {
+	if (!hasNext()) {
+	    throw new NoSuchElementException();
+	}
+	return current.get(index++);
+    }
+
+    /**
+     * Drop events already returned from a previous page and move the cursor to the
+     * date of the last event in the page.
+     * 
+     * @param results
+     * @return
+     */
+    protected List<T> advanceCursor(List<T> results) {
+	List<T> unseen = new ArrayList<>();
+	if ((results == null) || (results.isEmpty())) {
+	    return unseen;
+	}
+	for (T event : results) {
+	    if (!seenAtCursor.contains(event.getId())) {
+		unseen.add(event);
+	    }
+	}
+	Date last = results.get(results.size() - 1).getEventDate();
+	if (last.equals(cursorDate)) {
+	    // Whole page shares the cursor date, so step through it by page.
+	    cursorPage++;
+	} else {
+	    cursorDate = last;
+	    cursorPage = 1;
+	    seenAtCursor.clear();
+	}
+	for (T event : results) {
+	    if (last.equals(event.getEventDate())) {
+		seenAtCursor.add(event.getId());
+	    }
+	}
+	return unseen;
+    }
+
+    /**
+     * Start an asynchronous request for the next page of results.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected BlockingStreamObserver<ISearchResults<T>> requestNextPage() throws SiteWhereException {
+	DateRangeSearchCriteria page = new DateRangeSearchCriteria(cursorPage, pageSize, criteria.getStartDate(),
+		cursorDate);
+	BlockingStreamObserver<ISearchResults<T>> observer = new BlockingStreamObserver<>();
+	loader.load(page, observer);
+	return observer;
+    }
+
+    /**
+     * Loads a single page of search results.
+     * 
+     * @param <T>
+     */
+    @FunctionalInterface
+    public static interface IPageLoader<T> {
+
+	/**
+	 * Request a page of results to be delivered to the given observer.
+	 * 
+	 * @param criteria
+	 * @param observer
+	 * @throws SiteWhereException
+	 */
+	public void load(IDateRangeSearchCriteria criteria, StreamObserver<ISearchResults<T>> observer)
+		throws SiteWhereException;
+    }
+
+    /**
+     * Unchecked wrapper for errors loading a page, since {@link Iterator} methods
+     * can not throw {@link SiteWhereException}.
+     */
+    public static class DeviceEventSearchException extends RuntimeException {
+
+	/** Serial version UID */
+	private static final long serialVersionUID = 4263157398426281105L;
+
+	public DeviceEventSearchException(String message, SiteWhereException cause) {
+	    super(message, cause);
+	}
+
+	/*
+	 * @see java.lang.Throwable#getCause()
+	 */
+	@Override
+	public synchronized SiteWhereException getCause() {
+	    return (SiteWhereException) super.getCause();
+	}
+    }
+}
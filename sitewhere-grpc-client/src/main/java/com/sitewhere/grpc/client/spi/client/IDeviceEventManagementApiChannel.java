@@ -7,6 +7,7 @@
  */
 package com.sitewhere.grpc.client.spi.client;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
@@ -225,4 +226,94 @@ public interface IDeviceEventManagementApiChannel<T extends MultitenantGrpcChann
     public void listDeviceStateChangesForIndex(DeviceEventIndex index, List<UUID> entityIds,
 	    IDateRangeSearchCriteria criteria, StreamObserver<ISearchResults<IDeviceStateChange>> observer)
 	    throws SiteWhereException;
+
+    /**
+     * Iterate over device measurements for an index based on criteria. Events are
+     * requested one page at a time so that large result sets are not returned in
+     * a single response.
+     * 
+     * @param index
+     * @param entityIds
+     * @param criteria
+     * @param pageSize
+     * @return
+     * @throws SiteWhereException
+     */
+    public Iterator<IDeviceMeasurement> iterateDeviceMeasurementsForIndex(DeviceEventIndex index, List<UUID> entityIds,
+	    IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException;
+
+    /**
+     * Iterate over device locations for an index based on criteria. Events are
+     * requested one page at a time so that large result sets are not returned in
+     * a single response.
+     * 
+     * @param index
+     * @param entityIds
+     * @param criteria
+     * @param pageSize
+     * @return
+     * @throws SiteWhereException
+     */
+    public Iterator<IDeviceLocation> iterateDeviceLocationsForIndex(DeviceEventIndex index, List<UUID> entityIds,
+	    IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException;
+
+    /**
+     * Iterate over device alerts for an index based on criteria. Events are
+     * requested one page at a time so that large result sets are not returned in
+     * a single response.
+     * 
+     * @param index
+     * @param entityIds
+     * @param criteria
+     * @param pageSize
+     * @return
+     * @throws SiteWhereException
+     */
+    public Iterator<IDeviceAlert> iterateDeviceAlertsForIndex(DeviceEventIndex index, List<UUID> entityIds,
+	    IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException;
+
+    /**
+     * Iterate over device command invocations for an index based on criteria. Events are
+     * requested one page at a time so that large result sets are not returned in
+     * a single response.
+     * 
+     * @param index
+     * @param entityIds
+     * @param criteria
+     * @param pageSize
+     * @return
+     * @throws SiteWhereException
+     */
+    public Iterator<IDeviceCommandInvocation> iterateDeviceCommandInvocationsForIndex(DeviceEventIndex index,
+	    List<UUID> entityIds, IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException;
+
+    /**
+     * Iterate over device command responses for an index based on criteria. Events are
+     * requested one page at a time so that large result sets are not returned in
+     * a single response.
+     * 
+     * @param index
+     * @param entityIds
+     * @param criteria
+     * @param pageSize
+     * @return
+     * @throws SiteWhereException
+     */
+    public Iterator<IDeviceCommandResponse> iterateDeviceCommandResponsesForIndex(DeviceEventIndex index,
+	    List<UUID> entityIds, IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException;
+
+    /**
+     * Iterate over device state changes for an index based on criteria. Events are
+     * requested one page at a time so that large result sets are not returned in
+     * a single response.
+     * 
+     * @param index
+     * @param entityIds
+     * @param criteria
+     * @param pageSize
+     * @return
+     * @throws SiteWhereException
+     */
+    public Iterator<IDeviceStateChange> iterateDeviceStateChangesForIndex(DeviceEventIndex index, List<UUID> entityIds,
+	    IDateRangeSearchCriteria criteria, int pageSize) throws SiteWhereException;
 }
\ No newline at end of file
@@ -55,6 +55,7 @@ import com.sitewhere.spi.microservice.metrics.IMetricsServer;
 import com.sitewhere.spi.microservice.scripting.IScriptTemplateManager;
 import com.sitewhere.spi.microservice.security.ISystemUser;
 import com.sitewhere.spi.microservice.security.ITokenManagement;
+import com.sitewhere.spi.microservice.security.IVerifiedTokenCache;
 import com.sitewhere.spi.microservice.state.IMicroserviceDetails;
 import com.sitewhere.spi.microservice.state.IMicroserviceState;
 import com.sitewhere.spi.microservice.state.IMicroserviceStateUpdatesKafkaProducer;
@@ -108,6 +109,10 @@ public abstract class Microservice<T extends IFunctionIdentifier> extends Lifecy
     @Autowired
     private ITokenManagement tokenManagement;
 
+    /** Cache for verified JWTs */
+    @Autowired
+    private IVerifiedTokenCache verifiedTokenCache;
+
     /** System superuser */
     @Autowired
     private ISystemUser systemUser;
@@ -596,6 +601,18 @@ public abstract class Microservice<T extends IFunctionIdentifier> extends Lifecy
 	this.tokenManagement = tokenManagement;
     }
 
+    /*
+     * @see com.sitewhere.spi.microservice.IMicroservice#getVerifiedTokenCache()
+     */
+    @Override
+    public IVerifiedTokenCache getVerifiedTokenCache() {
+	return verifiedTokenCache;
+    }
+
+    public void setVerifiedTokenCache(IVerifiedTokenCache verifiedTokenCache) {
+	this.verifiedTokenCache = verifiedTokenCache;
+    }
+
     /*
      * @see com.sitewhere.spi.microservice.IMicroservice#getTenantManagement()
      */
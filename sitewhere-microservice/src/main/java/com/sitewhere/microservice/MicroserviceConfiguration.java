@@ -14,12 +14,14 @@ import com.sitewhere.microservice.kafka.KafkaTopicNaming;
 import com.sitewhere.microservice.metrics.MetricsServer;
 import com.sitewhere.microservice.security.SystemUser;
 import com.sitewhere.microservice.security.TokenManagement;
+import com.sitewhere.microservice.security.VerifiedTokenCache;
 import com.sitewhere.microservice.zookeeper.ZookeeperManager;
 import com.sitewhere.spi.microservice.configuration.IZookeeperManager;
 import com.sitewhere.spi.microservice.kafka.IKafkaTopicNaming;
 import com.sitewhere.spi.microservice.metrics.IMetricsServer;
 import com.sitewhere.spi.microservice.security.ISystemUser;
 import com.sitewhere.spi.microservice.security.ITokenManagement;
+import com.sitewhere.spi.microservice.security.IVerifiedTokenCache;
 
 @Configuration
 public class MicroserviceConfiguration {
@@ -44,6 +46,11 @@ public class MicroserviceConfiguration {
 	return new TokenManagement();
     }
 
+    @Bean
+    public IVerifiedTokenCache verifiedTokenCache() {
+	return new VerifiedTokenCache();
+    }
+
     @Bean
     public ISystemUser systemUser() {
 	return new SystemUser();
@@ -8,6 +8,7 @@
 package com.sitewhere.microservice.grpc;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import com.sitewhere.grpc.client.spi.server.IGrpcServer;
 import com.sitewhere.microservice.health.HealthServiceImpl;
@@ -60,10 +61,22 @@ public class GrpcServer extends TenantEngineLifecycleComponent implements IGrpcS
      */
     protected Server buildServer() {
 	NettyServerBuilder builder = NettyServerBuilder.forPort(getApiPort());
+	configureKeepAlive(builder);
 	builder.addService(getServiceImplementation()).intercept(getJwtInterceptor());
 	return builder.build();
     }
 
+    /**
+     * Allow keepalive pings at the rate configured for client channels so that
+     * idle pooled connections are not closed by the server.
+     * 
+     * @param builder
+     */
+    protected void configureKeepAlive(NettyServerBuilder builder) {
+	int keepAlive = getMicroservice().getInstanceSettings().getGrpcKeepAliveTimeInSeconds();
+	builder.permitKeepAliveTime(keepAlive, TimeUnit.SECONDS).permitKeepAliveWithoutCalls(true);
+    }
+
     /**
      * Build gRPC Health Server.
      * 
@@ -35,6 +35,7 @@ public class MultitenantGrpcServer extends GrpcServer {
     protected Server buildServer() {
 	this.tenantTokenInterceptor = new TenantTokenServerInterceptor(getMicroservice());
 	NettyServerBuilder builder = NettyServerBuilder.forPort(getApiPort());
+	configureKeepAlive(builder);
 	builder.addService(getServiceImplementation()).intercept(getTenantTokenInterceptor())
 		.intercept(getJwtInterceptor());
 	builder.addService(new MultitenantManagementImpl((IMultitenantMicroservice<?, ?>) getMicroservice()));
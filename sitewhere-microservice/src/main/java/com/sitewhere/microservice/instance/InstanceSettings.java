@@ -50,6 +50,18 @@ public class InstanceSettings implements IInstanceSettings {
     @Value("#{systemEnvironment['sitewhere.kafka.defaultTopicReplicationFactor'] ?: '3'}")
     private int kafkaDefaultTopicReplicationFactor;
 
+    /** Flag for whether tenant engines share pattern-subscribed Kafka consumers */
+    @Value("#{systemEnvironment['sitewhere.kafka.sharedConsumers'] ?: 'false'}")
+    private boolean kafkaSharedConsumers;
+
+    /** Number of threads processing records for a shared Kafka consumer */
+    @Value("#{systemEnvironment['sitewhere.kafka.sharedConsumerThreads'] ?: '8'}")
+    private int kafkaSharedConsumerThreads;
+
+    /** Records a tenant may have queued on a shared consumer before it is paused */
+    @Value("#{systemEnvironment['sitewhere.kafka.sharedConsumerMaxInFlight'] ?: '2000'}")
+    private int kafkaSharedConsumerMaxInFlight;
+
     /** Apache Synote hostname info for microservices */
     @Value("#{systemEnvironment['sitewhere.syncope.host'] ?: 'syncope'}")
     private String syncopeHost;
@@ -82,6 +94,34 @@ public class InstanceSettings implements IInstanceSettings {
     @Value("#{systemEnvironment['sitewhere.grpc.resolveFQDN'] ?: 'false'}")
     private boolean grpcResolveFQDN;
 
+    /** Number of channels pooled for each gRPC target */
+    @Value("#{systemEnvironment['sitewhere.grpc.channelPoolSize'] ?: '2'}")
+    private int grpcChannelPoolSize;
+
+    /** Strategy for choosing a pooled gRPC channel */
+    @Value("#{systemEnvironment['sitewhere.grpc.channelBalancing'] ?: 'least_outstanding'}")
+    private String grpcChannelBalancing;
+
+    /** Default deadline in seconds for unary gRPC calls */
+    @Value("#{systemEnvironment['sitewhere.grpc.defaultDeadlineSeconds'] ?: '120'}")
+    private int grpcDefaultDeadlineInSeconds;
+
+    /** Interval in seconds between gRPC keepalive pings */
+    @Value("#{systemEnvironment['sitewhere.grpc.keepAliveTimeSeconds'] ?: '60'}")
+    private int grpcKeepAliveTimeInSeconds;
+
+    /** Timeout in seconds for gRPC keepalive ping acknowledgement */
+    @Value("#{systemEnvironment['sitewhere.grpc.keepAliveTimeoutSeconds'] ?: '20'}")
+    private int grpcKeepAliveTimeoutInSeconds;
+
+    /** Upper bound on number of tenant engines started concurrently */
+    @Value("#{systemEnvironment['sitewhere.tenant.maxConcurrentStartups'] ?: '32'}")
+    private int tenantMaxConcurrentStartups;
+
+    /** Flag for whether tenant engines are only started when first requested */
+    @Value("#{systemEnvironment['sitewhere.tenant.lazyActivation'] ?: 'false'}")
+    private boolean tenantLazyActivation;
+
     /** File system root for storing SiteWhere data for microservices */
     @Value("#{systemEnvironment['sitewhere.filesystem.storage.root'] ?: '/var/sitewhere'}")
     private String fileSystemStorageRoot;
@@ -205,6 +245,45 @@ public class InstanceSettings implements IInstanceSettings {
 	this.kafkaDefaultTopicReplicationFactor = kafkaDefaultTopicReplicationFactor;
     }
 
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * isKafkaSharedConsumers()
+     */
+    @Override
+    public boolean isKafkaSharedConsumers() {
+	return kafkaSharedConsumers;
+    }
+
+    public void setKafkaSharedConsumers(boolean kafkaSharedConsumers) {
+	this.kafkaSharedConsumers = kafkaSharedConsumers;
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * getKafkaSharedConsumerThreads()
+     */
+    @Override
+    public int getKafkaSharedConsumerThreads() {
+	return kafkaSharedConsumerThreads;
+    }
+
+    public void setKafkaSharedConsumerThreads(int kafkaSharedConsumerThreads) {
+	this.kafkaSharedConsumerThreads = kafkaSharedConsumerThreads;
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * getKafkaSharedConsumerMaxInFlight()
+     */
+    @Override
+    public int getKafkaSharedConsumerMaxInFlight() {
+	return kafkaSharedConsumerMaxInFlight;
+    }
+
+    public void setKafkaSharedConsumerMaxInFlight(int kafkaSharedConsumerMaxInFlight) {
+	this.kafkaSharedConsumerMaxInFlight = kafkaSharedConsumerMaxInFlight;
+    }
+
     /*
      * @see
      * com.sitewhere.spi.microservice.instance.IInstanceSettings#getSyncopeHost()
@@ -310,6 +389,71 @@ public class InstanceSettings implements IInstanceSettings {
 	this.grpcBackoffMultiplier = grpcBackoffMultiplier;
     }
 
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * getGrpcChannelPoolSize()
+     */
+    @Override
+    public int getGrpcChannelPoolSize() {
+	return grpcChannelPoolSize;
+    }
+
+    public void setGrpcChannelPoolSize(int grpcChannelPoolSize) {
+	this.grpcChannelPoolSize = grpcChannelPoolSize;
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * getGrpcChannelBalancing()
+     */
+    @Override
+    public String getGrpcChannelBalancing() {
+	return grpcChannelBalancing;
+    }
+
+    public void setGrpcChannelBalancing(String grpcChannelBalancing) {
+	this.grpcChannelBalancing = grpcChannelBalancing;
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * getGrpcDefaultDeadlineInSeconds()
+     */
+    @Override
+    public int getGrpcDefaultDeadlineInSeconds() {
+	return grpcDefaultDeadlineInSeconds;
+    }
+
+    public void setGrpcDefaultDeadlineInSeconds(int grpcDefaultDeadlineInSeconds) {
+	this.grpcDefaultDeadlineInSeconds = grpcDefaultDeadlineInSeconds;
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * getGrpcKeepAliveTimeInSeconds()
+     */
+    @Override
+    public int getGrpcKeepAliveTimeInSeconds() {
+	return grpcKeepAliveTimeInSeconds;
+    }
+
+    public void setGrpcKeepAliveTimeInSeconds(int grpcKeepAliveTimeInSeconds) {
+	this.grpcKeepAliveTimeInSeconds = grpcKeepAliveTimeInSeconds;
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * getGrpcKeepAliveTimeoutInSeconds()
+     */
+    @Override
+    public int getGrpcKeepAliveTimeoutInSeconds() {
+	return grpcKeepAliveTimeoutInSeconds;
+    }
+
+    public void setGrpcKeepAliveTimeoutInSeconds(int grpcKeepAliveTimeoutInSeconds) {
+	this.grpcKeepAliveTimeoutInSeconds = grpcKeepAliveTimeoutInSeconds;
+    }
+
     /*
      * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
      * getFileSystemStorageRoot()
@@ -361,6 +505,32 @@ public class InstanceSettings implements IInstanceSettings {
 	this.kubernetesNamespace = kubernetesNamespace;
     }
 
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * getTenantMaxConcurrentStartups()
+     */
+    @Override
+    public int getTenantMaxConcurrentStartups() {
+	return tenantMaxConcurrentStartups;
+    }
+
+    public void setTenantMaxConcurrentStartups(int tenantMaxConcurrentStartups) {
+	this.tenantMaxConcurrentStartups = tenantMaxConcurrentStartups;
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
+     * isTenantLazyActivation()
+     */
+    @Override
+    public boolean isTenantLazyActivation() {
+	return tenantLazyActivation;
+    }
+
+    public void setTenantLazyActivation(boolean tenantLazyActivation) {
+	this.tenantLazyActivation = tenantLazyActivation;
+    }
+
     /*
      * @see com.sitewhere.spi.microservice.instance.IInstanceSettings#
      * getKubernetesPodAddress()
@@ -28,7 +28,7 @@ public abstract class DirectKafkaConsumer extends MicroserviceKafkaConsumer {
     public void process(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
 	try {
 	    attemptToProcess(topicPartition, records);
-	    getConsumer().commitAsync(new OffsetCommitCallback() {
+	    commitAsync(new OffsetCommitCallback() {
 		public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
 		    if (e != null) {
 			getLogger().error("Commit failed for offsets " + offsets, e);
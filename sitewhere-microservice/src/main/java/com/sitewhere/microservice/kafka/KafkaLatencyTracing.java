@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.kafka;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * Stamps Kafka records with timestamp headers so that latency can be measured
+ * for each pipeline stage and end-to-end. The origin timestamp is set when an
+ * event enters the pipeline and is carried forward by each stage that produces
+ * records while processing it. The stage timestamp and stage name are replaced
+ * by each producer.
+ * 
+ * The origin is passed from consumed to produced records through a thread
+ * local, so it is only carried forward when records are produced on the thread
+ * that processed the consumed batch.
+ * 
+ * @author Derek
+ */
+public class KafkaLatencyTracing {
+
+    /** Header holding time event entered the pipeline */
+    public static final String HEADER_ORIGIN_TIMESTAMP = "sw-origin-ts";
+
+    /** Header holding time record was produced */
+    public static final String HEADER_STAGE_TIMESTAMP = "sw-stage-ts";
+
+    /** Header holding identifier of microservice that produced record */
+    public static final String HEADER_STAGE = "sw-stage";
+
+    /** Stage name used when header is missing */
+    public static final String UNKNOWN_STAGE = "unknown";
+
+    /** Origin timestamp for records produced on current thread */
+    private static final ThreadLocal<Long> CURRENT_ORIGIN = new ThreadLocal<>();
+
+    /**
+     * Add timestamp headers to a record about to be produced.
+     * 
+     * @param record
+     * @param stage
+     */
+    public static void stamp(ProducerRecord<?, ?> record, String stage) {
+	long now = System.currentTimeMillis();
+	Long origin = CURRENT_ORIGIN.get();
+	Headers headers = record.headers();
+	headers.add(HEADER_ORIGIN_TIMESTAMP, encode((origin != null) ? origin : now));
+	headers.add(HEADER_STAGE_TIMESTAMP, encode(now));
+	headers.add(HEADER_STAGE, stage.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Set origin timestamp used for records produced on the current thread.
+     * 
+     * @param origin
+     */
+    public static void setCurrentOrigin(long origin) {
+	CURRENT_ORIGIN.set(origin);
+    }
+
+    /**
+     * Clear origin timestamp for the current thread.
+     */
+    public static void clearCurrentOrigin() {
+	CURRENT_ORIGIN.remove();
+    }
+
+    /**
+     * Get time record entered the pipeline. Falls back to the record timestamp
+     * for records produced without tracing headers.
+     * 
+     * @param record
+     * @return
+     */
+    public static long getOriginTimestamp(ConsumerRecord<?, ?> record) {
+	Long origin = decode(record.headers().lastHeader(HEADER_ORIGIN_TIMESTAMP));
+	return (origin != null) ? origin : record.timestamp();
+    }
+
+    /**
+     * Get time record was produced by the previous stage.
+     * 
+     * @param record
+     * @return
+     */
+    public static long getStageTimestamp(ConsumerRecord<?, ?> record) {
+	Long stage = decode(record.headers().lastHeader(HEADER_STAGE_TIMESTAMP));
+	return (stage != null) ? stage : record.timestamp();
+    }
+
+    /**
+     * Get identifier of microservice that produced record.
+     * 
+     * @param record
+     * @return
+     */
+    public static String getStage(ConsumerRecord<?, ?> record) {
+	Header header = record.headers().lastHeader(HEADER_STAGE);
+	return (header != null) ? new String(header.value(), StandardCharsets.UTF_8) : UNKNOWN_STAGE;
+    }
+
+    /**
+     * Encode a timestamp as header value.
+     * 
+     * @param value
+     * @return
+     */
+    protected static byte[] encode(long value) {
+	return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    /**
+     * Decode a timestamp from header value.
+     * 
+     * @param header
+     * @return
+     */
+    protected static Long decode(Header header) {
+	if ((header == null) || (header.value() == null) || (header.value().length != Long.BYTES)) {
+	    return null;
+	}
+	return ByteBuffer.wrap(header.value()).getLong();
+    }
+}
@@ -8,7 +8,9 @@
 package com.sitewhere.microservice.kafka;
 
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -19,6 +21,9 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
@@ -27,19 +32,71 @@ import org.apache.kafka.common.serialization.StringDeserializer;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer;
+import com.sitewhere.spi.microservice.kafka.ISharedKafkaConsumer;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+
 /**
- * Base class for components that consume messages from a Kafka topic.
+ * Base class for components that consume messages from a Kafka topic. Records
+ * latency of received records using the headers added by
+ * {@link KafkaLatencyTracing}, time taken to process each batch, and consumer
+ * lag for assigned partitions. If {@link #getSharedConsumer()} returns a shared
+ * consumer, records are routed from it rather than from a dedicated consumer.
  * 
  * @author Derek
  */
 public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleComponent
 	implements IMicroserviceKafkaConsumer {
 
+    /** Poll timeout which bounds how quickly fetch pauses take effect */
+    private static final long POLL_TIMEOUT_MS = 1000;
+
+    /** Interval at which consumer lag metrics are refreshed */
+    private static final long LAG_UPDATE_INTERVAL_MS = 10 * 1000;
+
+    /** Kafka client metric holding per-partition lag */
+    private static final String KAFKA_RECORDS_LAG = "records-lag";
+
+    /** Latency from previous stage producing a record until it is received */
+    private static final Histogram STAGE_LATENCY = TenantEngineLifecycleComponent.createHistogramMetric(
+	    "kafka_stage_latency_seconds", "Time from record being produced by previous stage until it is consumed",
+	    "topic", "source_stage");
+
+    /** Latency from event entering pipeline until record is received */
+    private static final Histogram END_TO_END_LATENCY = TenantEngineLifecycleComponent.createHistogramMetric(
+	    "kafka_end_to_end_latency_seconds", "Time from event entering pipeline until record is consumed", "topic");
+
+    /** Time taken to process a batch of records */
+    private static final Histogram PROCESSING_TIME = TenantEngineLifecycleComponent.createHistogramMetric(
+	    "kafka_processing_time_seconds", "Time taken by consumer to process a batch of records", "topic");
+
+    /** Number of records consumer is behind the end of each partition */
+    private static final Gauge CONSUMER_LAG = TenantEngineLifecycleComponent.createGaugeMetric("kafka_consumer_lag",
+	    "Number of records consumer is behind the end of a partition", "topic", "partition");
+
     /** Consumer */
     private KafkaConsumer<String, byte[]> consumer;
 
+    /** Shared consumer records are routed from (if not using own consumer) */
+    private ISharedKafkaConsumer sharedConsumer;
+
+    /** Stage latency metrics by topic and source stage (processing thread only) */
+    private Map<String, Histogram.Child> stageLatency = new HashMap<>();
+
+    /** End-to-end latency metrics by topic (processing thread only) */
+    private Map<String, Histogram.Child> endToEndLatency = new HashMap<>();
+
+    /** Processing time metrics by topic (processing thread only) */
+    private Map<String, Histogram.Child> processingTime = new HashMap<>();
+
+    /** Time consumer lag metrics were last refreshed */
+    private long lastLagUpdate;
+
+    /** Indicates fetching has been paused */
+    private volatile boolean fetchPaused;
+
     /** Executor service */
     private ExecutorService executor;
 
@@ -52,6 +109,16 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
      */
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	ISharedKafkaConsumer shared = getSharedConsumer();
+	if (shared != null) {
+	    getLogger().info("Will be consuming messages from shared consumer for: " + getSourceTopicNames());
+	    shared.register(this);
+	    this.sharedConsumer = shared;
+	    if (fetchPaused) {
+		shared.pause(this);
+	    }
+	    return;
+	}
 	getLogger().info(
 		"Consumer connecting to Kafka: " + getMicroservice().getInstanceSettings().getKafkaBootstrapServers());
 	getLogger().info("Will be consuming messages from: " + getSourceTopicNames());
@@ -69,6 +136,10 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
      */
     @Override
     public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (sharedConsumer != null) {
+	    sharedConsumer.unregister(this);
+	    this.sharedConsumer = null;
+	}
 	if (getConsumer() != null) {
 	    getConsumer().wakeup();
 	}
@@ -96,6 +167,30 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
 	return config;
     }
 
+    /**
+     * Get consumer shared with other tenant engines that records should be routed
+     * from. Returns null by default so a dedicated consumer is created.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected ISharedKafkaConsumer getSharedConsumer() throws SiteWhereException {
+	return null;
+    }
+
+    /**
+     * Commit offsets for records returned by the last poll. When records are
+     * routed from a shared consumer, it commits offsets once processing returns,
+     * so nothing is done here.
+     * 
+     * @param callback
+     */
+    protected void commitAsync(OffsetCommitCallback callback) {
+	if ((sharedConsumer == null) && (getConsumer() != null)) {
+	    getConsumer().commitAsync(callback);
+	}
+    }
+
     /*
      * @see
      * com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer#getConsumer()
@@ -109,6 +204,141 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
 	this.consumer = consumer;
     }
 
+    /**
+     * Stop fetching records without leaving the consumer group, for instance
+     * while downstream processing is applying backpressure. May be called from
+     * any thread. Records already delivered are still processed.
+     */
+    protected void pauseFetching() {
+	if (fetchPaused) {
+	    return;
+	}
+	this.fetchPaused = true;
+	ISharedKafkaConsumer shared = sharedConsumer;
+	if (shared != null) {
+	    shared.pause(this);
+	}
+    }
+
+    /**
+     * Resume fetching records after {@link #pauseFetching()}. May be called from
+     * any thread.
+     */
+    protected void resumeFetching() {
+	if (!fetchPaused) {
+	    return;
+	}
+	this.fetchPaused = false;
+	ISharedKafkaConsumer shared = sharedConsumer;
+	if (shared != null) {
+	    shared.resume(this);
+	}
+    }
+
+    /**
+     * Indicates whether fetching is paused.
+     * 
+     * @return
+     */
+    protected boolean isFetchPaused() {
+	return fetchPaused;
+    }
+
+    /**
+     * Apply requested pause state to partitions of the dedicated consumer. Called
+     * on the polling thread since the Kafka consumer is not thread safe. All
+     * assigned partitions are paused so that partitions assigned by a rebalance
+     * are also held.
+     */
+    protected void applyFetchState() {
+	if (fetchPaused) {
+	    getConsumer().pause(getConsumer().assignment());
+	} else if (!getConsumer().paused().isEmpty()) {
+	    getConsumer().resume(getConsumer().paused());
+	}
+    }
+
+    /**
+     * Record stage and end-to-end latency for a batch of records.
+     * 
+     * @param topicPartition
+     * @param records
+     * @return earliest origin timestamp in batch
+     */
+    protected long recordLatency(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
+	long now = System.currentTimeMillis();
+	long earliest = now;
+	String topic = topicPartition.topic();
+	Histogram.Child endToEnd = endToEndLatency.get(topic);
+	if (endToEnd == null) {
+	    endToEnd = END_TO_END_LATENCY.labels(buildLabels(topic));
+	    endToEndLatency.put(topic, endToEnd);
+	}
+	for (ConsumerRecord<String, byte[]> record : records) {
+	    long origin = KafkaLatencyTracing.getOriginTimestamp(record);
+	    earliest = Math.min(earliest, origin);
+	    endToEnd.observe(Math.max(0, now - origin) / 1000.0);
+
+	    String stage = KafkaLatencyTracing.getStage(record);
+	    String key = topic + "|" + stage;
+	    Histogram.Child stageChild = stageLatency.get(key);
+	    if (stageChild == null) {
+		stageChild = STAGE_LATENCY.labels(buildLabels(topic, stage));
+		stageLatency.put(key, stageChild);
+	    }
+	    stageChild.observe(Math.max(0, now - KafkaLatencyTracing.getStageTimestamp(record)) / 1000.0);
+	}
+	return earliest;
+    }
+
+    /**
+     * Process a batch with origin tracing and processing time measurement.
+     * Records produced on this thread while processing carry the earliest origin
+     * in the batch, so end-to-end latency downstream is an upper bound.
+     * 
+     * @param topicPartition
+     * @param records
+     */
+    protected void processTraced(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
+	String topic = topicPartition.topic();
+	Histogram.Child timer = processingTime.get(topic);
+	if (timer == null) {
+	    timer = PROCESSING_TIME.labels(buildLabels(topic));
+	    processingTime.put(topic, timer);
+	}
+	KafkaLatencyTracing.setCurrentOrigin(recordLatency(topicPartition, records));
+	long start = System.nanoTime();
+	try {
+	    process(topicPartition, records);
+	} finally {
+	    timer.observe((System.nanoTime() - start) / 1.0E9);
+	    KafkaLatencyTracing.clearCurrentOrigin();
+	}
+    }
+
+    /**
+     * Export per-partition lag reported by the Kafka client. Refreshed at most
+     * once per {@link #LAG_UPDATE_INTERVAL_MS}.
+     */
+    protected void updateLagMetrics() {
+	long now = System.currentTimeMillis();
+	if ((now - lastLagUpdate) < LAG_UPDATE_INTERVAL_MS) {
+	    return;
+	}
+	this.lastLagUpdate = now;
+	for (Map.Entry<MetricName, ? extends Metric> entry : getConsumer().metrics().entrySet()) {
+	    MetricName name = entry.getKey();
+	    if (!KAFKA_RECORDS_LAG.equals(name.name()) || !name.tags().containsKey("partition")) {
+		continue;
+	    }
+	    Object value = entry.getValue().metricValue();
+	    if ((value instanceof Number) && !Double.isNaN(((Number) value).doubleValue())) {
+		CONSUMER_LAG.labels(buildLabels(name.tags().get("topic"), name.tags().get("partition")))
+			.set(((Number) value).doubleValue());
+	    }
+	}
+    }
+
     /**
      * Thread that polls Kafka for records arriving on the specified topic.
      * 
@@ -138,18 +368,24 @@ public abstract class MicroserviceKafkaConsumer extends TenantEngineLifecycleCom
 	    }
 	    try {
 		while (true) {
-		    ConsumerRecords<String, byte[]> records = getConsumer().poll(Duration.ofMillis(Long.MAX_VALUE));
+		    applyFetchState();
+		    ConsumerRecords<String, byte[]> records = getConsumer().poll(Duration.ofMillis(POLL_TIMEOUT_MS));
 		    getLogger().debug(String.format("Kafka consumer received %d records on poll.", records.count()));
 		    for (TopicPartition topicPartition : records.partitions()) {
 			try {
 			    List<ConsumerRecord<String, byte[]>> topicRecords = records.records(topicPartition);
 			    getLogger().debug(String.format("Kafka consumer processing %d records for %s partition %s.",
 				    topicRecords.size(), topicPartition.topic(), topicPartition.partition()));
-			    process(topicPartition, topicRecords);
+			    processTraced(topicPartition, topicRecords);
 			} catch (Throwable e) {
 			    getLogger().error("Unhandled exception in consumer processing.", e);
 			}
 		    }
+		    try {
+			updateLagMetrics();
+		    } catch (Throwable e) {
+			getLogger().warn("Unable to update consumer lag metrics.", e);
+		    }
 		}
 	    } catch (WakeupException e) {
 		getLogger().info("Consumer thread received shutdown request.");
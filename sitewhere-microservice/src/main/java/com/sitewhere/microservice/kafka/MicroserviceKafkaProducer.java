@@ -11,11 +11,13 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
@@ -23,9 +25,11 @@ import org.apache.kafka.clients.admin.CreateTopicsResult;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.errors.InvalidReplicationFactorException;
 import org.apache.kafka.common.errors.RetriableException;
 import org.apache.kafka.common.errors.TopicExistsException;
@@ -41,7 +45,11 @@ import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 
 /**
  * Base class for components that produce messages that are forwarded to a Kafka
- * topic.
+ * topic. Sends are asynchronous and failures are reported via the returned
+ * future. Batching and compression settings may be tuned per producer based on
+ * the role of the target topic. Producers that wait indefinitely for Kafka
+ * (the default) also retry sends that fail with a retriable exception, since
+ * most callers do not inspect the returned future.
  * 
  * @author Derek
  */
@@ -51,6 +59,24 @@ public abstract class MicroserviceKafkaProducer extends TenantEngineLifecycleCom
     /** Kafka availability check interval */
     private static final int KAFKA_RETRY_INTERVAL_MS = 10 * 1000;
 
+    /** Interval between send attempts after a retriable exception */
+    private static final int SEND_RETRY_INTERVAL_MS = 5 * 1000;
+
+    /** Default time to wait for more records before sending a batch */
+    public static final int DEFAULT_LINGER_MS = 0;
+
+    /** Default maximum size of a batch of records for a partition */
+    public static final int DEFAULT_BATCH_SIZE_BYTES = 16 * 1024;
+
+    /** Default compression type */
+    public static final String DEFAULT_COMPRESSION_TYPE = "none";
+
+    /** Default time send may block if buffer is full or metadata unavailable */
+    public static final long DEFAULT_MAX_BLOCK_MS = 60 * 1000;
+
+    /** Indicates send should wait indefinitely for Kafka to become available */
+    public static final long WAIT_FOREVER = -1;
+
     /** Producer */
     private KafkaProducer<String, byte[]> producer;
 
@@ -66,6 +92,21 @@ public abstract class MicroserviceKafkaProducer extends TenantEngineLifecycleCom
     /** Executor service for waiter thread */
     ExecutorService waiterService;
 
+    /** Time to wait for more records before sending a batch */
+    private int lingerMs = DEFAULT_LINGER_MS;
+
+    /** Maximum size of a batch of records for a partition */
+    private int batchSizeBytes = DEFAULT_BATCH_SIZE_BYTES;
+
+    /** Compression type (none, gzip, snappy or lz4) */
+    private String compressionType = DEFAULT_COMPRESSION_TYPE;
+
+    /** Time send may block if buffer is full or metadata unavailable */
+    private long maxBlockMs = DEFAULT_MAX_BLOCK_MS;
+
+    /** Time to wait for Kafka to become available before failing a send */
+    private long availabilityWaitMs = WAIT_FOREVER;
+
     public MicroserviceKafkaProducer(AckPolicy ackPolicy) {
 	this.ackPolicy = ackPolicy;
     }
@@ -113,35 +154,88 @@ public abstract class MicroserviceKafkaProducer extends TenantEngineLifecycleCom
      */
     @Override
     public Future<RecordMetadata> send(String key, byte[] message) throws SiteWhereException {
+	ProducerRecord<String, byte[]> record = new ProducerRecord<String, byte[]>(getTargetTopicName(), key, message);
+	KafkaLatencyTracing.stamp(record, getMicroservice().getIdentifier().getPath());
 	while (true) {
-	    ProducerRecord<String, byte[]> record = new ProducerRecord<String, byte[]>(getTargetTopicName(), key,
-		    message);
 	    try {
-		if (getKafkaAvailable().getCount() != 0) {
-		    getLogger().info("Producer waiting on Kafka to become available...");
+		if (!waitForKafka()) {
+		    return failed(new SiteWhereException("Kafka is not available. Unable to send record."));
 		}
-		getKafkaAvailable().await();
-		return getProducer().send(record);
+		return getProducer().send(record, new SendCallback());
 	    } catch (RetriableException e) {
-		// Wait before attempting to send again.
+		// Producers with a bounded wait report failure so callers can react.
+		if (getAvailabilityWaitMs() != WAIT_FOREVER) {
+		    return failed(e);
+		}
+		// Others are typically fire-and-forget, so keep retrying.
+		getLogger().info(String.format(
+			"Got retriable exception [%s] while sending Kafka payload. Waiting to retry.", e.getMessage()));
 		try {
-		    getLogger().info(
-			    String.format("Got retriable exception [%s] while sending Kafka payload. Waiting to retry.",
-				    e.getMessage()));
-		    Thread.sleep(5000);
+		    Thread.sleep(SEND_RETRY_INTERVAL_MS);
 		} catch (InterruptedException e1) {
-		    getLogger().info("Interrupted while waiting to send Kafka payload.");
+		    throw new SiteWhereException("Producer interrupted while waiting to retry send.", e1);
 		}
 	    } catch (InterruptedException e) {
 		throw new SiteWhereException("Producer interrupted while waiting for Kafka.", e);
 	    } catch (IllegalStateException e) {
 		throw new SiteWhereException("Producer unable to send record.", e);
+	    } catch (KafkaException e) {
+		return failed(e);
 	    } catch (Throwable e) {
 		throw new SiteWhereException("Unhandled exception in producer while sending record.", e);
 	    }
 	}
     }
 
+    /**
+     * Wait for Kafka to become available based on the configured wait time.
+     * 
+     * @return
+     * @throws InterruptedException
+     */
+    protected boolean waitForKafka() throws InterruptedException {
+	if (getKafkaAvailable().getCount() == 0) {
+	    return true;
+	}
+	if (getAvailabilityWaitMs() == WAIT_FOREVER) {
+	    getLogger().info("Producer waiting on Kafka to become available...");
+	    getKafkaAvailable().await();
+	    return true;
+	}
+	return getKafkaAvailable().await(getAvailabilityWaitMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a future that has already failed with the given exception.
+     * 
+     * @param t
+     * @return
+     */
+    protected static Future<RecordMetadata> failed(Throwable t) {
+	CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+	future.completeExceptionally(t);
+	return future;
+    }
+
+    /**
+     * Logs records that could not be delivered. Callers that need to react to
+     * failures should inspect the future returned by send.
+     */
+    private class SendCallback implements Callback {
+
+	/*
+	 * @see
+	 * org.apache.kafka.clients.producer.Callback#onCompletion(org.apache.kafka.
+	 * clients.producer.RecordMetadata, java.lang.Exception)
+	 */
+	@Override
+	public void onCompletion(RecordMetadata metadata, Exception exception) {
+	    if (exception != null) {
+		getLogger().warn("Unable to deliver record to Kafka topic.", exception);
+	    }
+	}
+    }
+
     /**
      * Build configuration settings used by producer.
      * 
@@ -155,6 +249,10 @@ public abstract class MicroserviceKafkaProducer extends TenantEngineLifecycleCom
 	config.put(ProducerConfig.ACKS_CONFIG, getAckPolicy().getConfig());
 	config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
 	config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+	config.put(ProducerConfig.LINGER_MS_CONFIG, getLingerMs());
+	config.put(ProducerConfig.BATCH_SIZE_CONFIG, getBatchSizeBytes());
+	config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, getCompressionType());
+	config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, getMaxBlockMs());
 	return config;
     }
 
@@ -278,4 +376,44 @@ public abstract class MicroserviceKafkaProducer extends TenantEngineLifecycleCom
     protected void setWaiterService(ExecutorService waiterService) {
 	this.waiterService = waiterService;
     }
+
+    public int getLingerMs() {
+	return lingerMs;
+    }
+
+    public void setLingerMs(int lingerMs) {
+	this.lingerMs = lingerMs;
+    }
+
+    public int getBatchSizeBytes() {
+	return batchSizeBytes;
+    }
+
+    public void setBatchSizeBytes(int batchSizeBytes) {
+	this.batchSizeBytes = batchSizeBytes;
+    }
+
+    public String getCompressionType() {
+	return compressionType;
+    }
+
+    public void setCompressionType(String compressionType) {
+	this.compressionType = compressionType;
+    }
+
+    public long getMaxBlockMs() {
+	return maxBlockMs;
+    }
+
+    public void setMaxBlockMs(long maxBlockMs) {
+	this.maxBlockMs = maxBlockMs;
+    }
+
+    public long getAvailabilityWaitMs() {
+	return availabilityWaitMs;
+    }
+
+    public void setAvailabilityWaitMs(long availabilityWaitMs) {
+	this.availabilityWaitMs = availabilityWaitMs;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,699 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.kafka;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import com.sitewhere.rest.model.tenant.Tenant;
+import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer;
+import com.sitewhere.spi.microservice.kafka.ISharedKafkaConsumer;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.tenant.ITenant;
+
+import io.prometheus.client.Gauge;
+
+/**
+ * Kafka consumer shared by all tenant engines of a microservice. Subscribes
+ * once to the copies of a set of pipeline topics for every tenant using a
+ * pattern, so a single poll thread and group member replaces one per tenant
+ * engine. Records are routed by topic to the registered tenant consumer and
+ * processed on a shared pool.
+ * 
+ * Each tenant has a lane that processes one batch at a time, which preserves
+ * partition order, and is queued behind other tenants after each batch so that
+ * a busy tenant can not starve the others. Partitions are paused on the Kafka
+ * consumer while a tenant is over its in-flight quota, paused explicitly or not
+ * yet registered. Pausing keeps group membership, so none of these cause a
+ * rebalance.
+ * 
+ * @author Derek
+ */
+public class SharedKafkaConsumer extends TenantEngineLifecycleComponent implements ISharedKafkaConsumer {
+
+    /** Poll timeout which bounds how quickly pauses and commits take effect */
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    /** Interval at which the subscription pattern is matched against new topics */
+    private static final int METADATA_MAX_AGE_MS = 30 * 1000;
+
+    /** Time allowed for in-flight batches to complete on shutdown */
+    private static final long SHUTDOWN_TIMEOUT_SECS = 10;
+
+    /** Matches the tenant id in tenant topic names */
+    private static final String TENANT_ID_PATTERN = "[^.]+";
+
+    /** Records queued or being processed for each tenant */
+    private static final Gauge IN_FLIGHT = TenantEngineLifecycleComponent.createGaugeMetric(
+	    "kafka_shared_consumer_in_flight_records",
+	    "Records queued or being processed for a tenant by a shared consumer", "group");
+
+    /** Consumer id */
+    private static String CONSUMER_ID = UUID.randomUUID().toString();
+
+    /** Suffix for group id */
+    private String groupIdSuffix;
+
+    /** Functions that return the topics consumed for a tenant */
+    private List<Function<ITenant, String>> tenantTopics;
+
+    /** Pattern matching tenant topics for all tenants */
+    private Pattern subscriptionPattern;
+
+    /** Kafka consumer (poll thread only) */
+    private KafkaConsumer<String, byte[]> consumer;
+
+    /** Lanes indexed by registered consumer */
+    private Map<IMicroserviceKafkaConsumer, TenantLane> lanes = new ConcurrentHashMap<>();
+
+    /** Lanes indexed by topic */
+    private Map<String, TenantLane> lanesByTopic = new ConcurrentHashMap<>();
+
+    /** Offsets of processed batches waiting to be committed */
+    private Map<TopicPartition, OffsetAndMetadata> completed = new ConcurrentHashMap<>();
+
+    /** Offset of first record not yet processed for each partition (poll thread only) */
+    private Map<TopicPartition, Long> resumeOffsets = new HashMap<>();
+
+    /** Lanes that were unregistered and need their partitions rewound */
+    private Queue<TenantLane> removed = new ConcurrentLinkedQueue<>();
+
+    /** Executor for poll thread */
+    private ExecutorService pollExecutor;
+
+    /** Executor for processing batches */
+    private ExecutorService processingExecutor;
+
+    /** Indicates whether consumer is running */
+    private volatile boolean running;
+
+    public SharedKafkaConsumer(String groupIdSuffix, List<Function<ITenant, String>> tenantTopics) {
+	this.groupIdSuffix = groupIdSuffix;
+	this.tenantTopics = tenantTopics;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi
+     * .server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	Pattern pattern = getSubscriptionPattern();
+	getLogger().info("Shared consumer subscribing to topics matching: " + pattern.pattern());
+	this.consumer = new KafkaConsumer<>(buildConfiguration());
+	this.processingExecutor = Executors.newFixedThreadPool(
+		getMicroservice().getInstanceSettings().getKafkaSharedConsumerThreads(), new ProcessorThreadFactory());
+	this.pollExecutor = Executors.newSingleThreadExecutor(new PollerThreadFactory());
+	this.running = true;
+	pollExecutor.execute(new Poller(pattern));
+    }
+
+    /*
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.running = false;
+	if (consumer != null) {
+	    consumer.wakeup();
+	}
+	if (pollExecutor != null) {
+	    pollExecutor.shutdown();
+	    try {
+		pollExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECS * 2, TimeUnit.SECONDS);
+	    } catch (InterruptedException e) {
+		getLogger().warn("Interrupted while waiting for shared consumer to stop.");
+	    }
+	}
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.microservice.kafka.ISharedKafkaConsumer#register(com.
+     * sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer)
+     */
+    @Override
+    public void register(IMicroserviceKafkaConsumer consumer) throws SiteWhereException {
+	List<String> topics = consumer.getSourceTopicNames();
+	for (String topic : topics) {
+	    if (!getSubscriptionPattern().matcher(topic).matches()) {
+		throw new SiteWhereException("Topic '" + topic + "' is not consumed by shared consumer.");
+	    }
+	}
+	TenantLane lane = new TenantLane(consumer, topics);
+	TenantLane existing = lanes.put(consumer, lane);
+	if (existing != null) {
+	    retire(existing);
+	}
+	for (String topic : topics) {
+	    lanesByTopic.put(topic, lane);
+	}
+	getLogger().info("Shared consumer routing records for " + topics + ".");
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.microservice.kafka.ISharedKafkaConsumer#unregister(com.
+     * sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer)
+     */
+    @Override
+    public void unregister(IMicroserviceKafkaConsumer consumer) throws SiteWhereException {
+	TenantLane lane = lanes.remove(consumer);
+	if (lane != null) {
+	    retire(lane);
+	    getLogger().info("Shared consumer no longer routing records for " + lane.getTopics() + ".");
+	}
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.microservice.kafka.ISharedKafkaConsumer#pause(com.sitewhere
+     * .spi.microservice.kafka.IMicroserviceKafkaConsumer)
+     */
+    @Override
+    public void pause(IMicroserviceKafkaConsumer consumer) {
+	TenantLane lane = lanes.get(consumer);
+	if (lane != null) {
+	    lane.setPaused(true);
+	}
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.microservice.kafka.ISharedKafkaConsumer#resume(com.
+     * sitewhere.spi.microservice.kafka.IMicroserviceKafkaConsumer)
+     */
+    @Override
+    public void resume(IMicroserviceKafkaConsumer consumer) {
+	TenantLane lane = lanes.get(consumer);
+	if (lane != null) {
+	    lane.setPaused(false);
+	}
+    }
+
+    /**
+     * Stop routing to a lane and discard its queued batches. Its partitions are
+     * rewound by the poll thread so discarded records are fetched again.
+     * 
+     * @param lane
+     */
+    protected void retire(TenantLane lane) {
+	for (String topic : lane.getTopics()) {
+	    lanesByTopic.remove(topic, lane);
+	}
+	lane.close();
+	removed.add(lane);
+    }
+
+    /**
+     * Build configuration settings used by Kafka consumer.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Properties buildConfiguration() throws SiteWhereException {
+	Properties config = new Properties();
+	config.put(ConsumerConfig.CLIENT_ID_CONFIG, CONSUMER_ID);
+	config.put(ConsumerConfig.GROUP_ID_CONFIG, getConsumerGroupId());
+	config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG,
+		getMicroservice().getInstanceSettings().getKafkaBootstrapServers());
+	config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+	config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+	config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+	config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+	config.put(ConsumerConfig.METADATA_MAX_AGE_CONFIG, METADATA_MAX_AGE_MS);
+	return config;
+    }
+
+    /**
+     * Get group id shared by all instances of the microservice.
+     * 
+     * @return
+     */
+    protected String getConsumerGroupId() {
+	return getMicroservice().getKafkaTopicNaming().getInstancePrefix() + "."
+		+ getMicroservice().getIdentifier().getPath() + "." + groupIdSuffix;
+    }
+
+    /**
+     * Get pattern that matches the tenant topics for every tenant. Topic names
+     * are generated for a placeholder tenant and the placeholder id is replaced
+     * by a wildcard so that custom topic naming is honored.
+     * 
+     * @return
+     */
+    protected synchronized Pattern getSubscriptionPattern() {
+	if (subscriptionPattern == null) {
+	    Tenant placeholder = new Tenant();
+	    placeholder.setId(UUID.randomUUID());
+	    String id = placeholder.getId().toString();
+	    StringBuilder regex = new StringBuilder();
+	    for (Function<ITenant, String> tenantTopic : tenantTopics) {
+		if (regex.length() > 0) {
+		    regex.append("|");
+		}
+		String[] parts = tenantTopic.apply(placeholder).split(Pattern.quote(id), -1);
+		for (int i = 0; i < parts.length; i++) {
+		    if (i > 0) {
+			regex.append(TENANT_ID_PATTERN);
+		    }
+		    regex.append(Pattern.quote(parts[i]));
+		}
+	    }
+	    this.subscriptionPattern = Pattern.compile(regex.toString());
+	}
+	return subscriptionPattern;
+    }
+
+    /**
+     * Route records for a partition to the lane registered for its topic. If no
+     * lane is registered, the partition is rewound and paused until one is.
+     * 
+     * @param topicPartition
+     * @param records
+     */
+    protected void dispatch(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
+	TenantLane lane = lanesByTopic.get(topicPartition.topic());
+	if (lane == null) {
+	    getConsumer().seek(topicPartition, records.get(0).offset());
+	    getConsumer().pause(Collections.singleton(topicPartition));
+	    return;
+	}
+	resumeOffsets.putIfAbsent(topicPartition, records.get(0).offset());
+	lane.enqueue(new Batch(topicPartition, records));
+    }
+
+    /**
+     * Pause partitions of lanes that are paused or over quota and partitions with
+     * no lane. Resume all others.
+     */
+    protected void updatePausedPartitions() {
+	Set<TopicPartition> paused = getConsumer().paused();
+	Set<TopicPartition> pause = new HashSet<>();
+	Set<TopicPartition> resume = new HashSet<>();
+	for (TopicPartition topicPartition : getConsumer().assignment()) {
+	    TenantLane lane = lanesByTopic.get(topicPartition.topic());
+	    boolean hold = (lane == null) || lane.isHeld();
+	    if (hold && !paused.contains(topicPartition)) {
+		pause.add(topicPartition);
+	    } else if (!hold && paused.contains(topicPartition)) {
+		resume.add(topicPartition);
+	    }
+	}
+	if (!pause.isEmpty()) {
+	    getConsumer().pause(pause);
+	}
+	if (!resume.isEmpty()) {
+	    getConsumer().resume(resume);
+	}
+    }
+
+    /**
+     * Seek partitions of unregistered lanes back to the first record that was not
+     * processed.
+     */
+    protected void rewindRemovedLanes() {
+	TenantLane lane;
+	while ((lane = removed.poll()) != null) {
+	    for (TopicPartition topicPartition : getConsumer().assignment()) {
+		Long offset = resumeOffsets.get(topicPartition);
+		if ((offset != null) && lane.getTopics().contains(topicPartition.topic())) {
+		    getConsumer().seek(topicPartition, offset);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Collect offsets of processed batches for assigned partitions.
+     * 
+     * @return
+     */
+    protected Map<TopicPartition, OffsetAndMetadata> drainCompleted() {
+	Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+	Set<TopicPartition> assigned = getConsumer().assignment();
+	for (TopicPartition topicPartition : completed.keySet()) {
+	    OffsetAndMetadata offset = completed.remove(topicPartition);
+	    if ((offset != null) && assigned.contains(topicPartition)) {
+		offsets.put(topicPartition, offset);
+		resumeOffsets.put(topicPartition, offset.offset());
+	    }
+	}
+	return offsets;
+    }
+
+    /**
+     * Commit offsets of processed batches without blocking the poll thread.
+     */
+    protected void commitCompleted() {
+	Map<TopicPartition, OffsetAndMetadata> offsets = drainCompleted();
+	if (!offsets.isEmpty()) {
+	    getConsumer().commitAsync(offsets, new OffsetCommitCallback() {
+		public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception e) {
+		    if (e != null) {
+			getLogger().error("Commit failed for offsets " + offsets, e);
+		    }
+		}
+	    });
+	}
+    }
+
+    /**
+     * Commit offsets of processed batches, waiting for the result.
+     */
+    protected void commitCompletedSync() {
+	Map<TopicPartition, OffsetAndMetadata> offsets = drainCompleted();
+	if (!offsets.isEmpty()) {
+	    try {
+		getConsumer().commitSync(offsets);
+	    } catch (Throwable e) {
+		getLogger().error("Commit failed for offsets " + offsets, e);
+	    }
+	}
+    }
+
+    protected KafkaConsumer<String, byte[]> getConsumer() {
+	return consumer;
+    }
+
+    protected ExecutorService getProcessingExecutor() {
+	return processingExecutor;
+    }
+
+    /**
+     * Records fetched for a single partition.
+     */
+    private static class Batch {
+
+	/** Partition records were read from */
+	private TopicPartition topicPartition;
+
+	/** Records in partition order */
+	private List<ConsumerRecord<String, byte[]>> records;
+
+	public Batch(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
+	    this.topicPartition = topicPartition;
+	    this.records = records;
+	}
+    }
+
+    /**
+     * Queue of batches for a single tenant consumer. A lane is submitted to the
+     * processing pool while it has work, runs one batch and then submits itself
+     * again behind lanes of other tenants.
+     */
+    private class TenantLane implements Runnable {
+
+	/** Tenant consumer that processes records */
+	private IMicroserviceKafkaConsumer consumer;
+
+	/** Topics routed to lane */
+	private Set<String> topics;
+
+	/** Batches waiting to be processed (guarded by lane) */
+	private Deque<Batch> batches = new ArrayDeque<>();
+
+	/** Indicates lane is queued or running on the pool (guarded by lane) */
+	private boolean scheduled;
+
+	/** Records queued or being processed */
+	private AtomicInteger inFlight = new AtomicInteger();
+
+	/** Metric for records in flight */
+	private Gauge.Child inFlightMetric;
+
+	/** Indicates lane was paused explicitly */
+	private volatile boolean paused;
+
+	/** Indicates lane was unregistered */
+	private volatile boolean closed;
+
+	/** Indicates lane is over its in-flight quota (poll thread only) */
+	private boolean throttled;
+
+	public TenantLane(IMicroserviceKafkaConsumer consumer, List<String> topics) {
+	    this.consumer = consumer;
+	    this.topics = new HashSet<>(topics);
+	    this.inFlightMetric = IN_FLIGHT.labels(consumer.buildLabels(groupIdSuffix));
+	}
+
+	/**
+	 * Add a batch and make sure lane is scheduled.
+	 * 
+	 * @param batch
+	 */
+	public synchronized void enqueue(Batch batch) {
+	    if (closed) {
+		return;
+	    }
+	    inFlightMetric.set(inFlight.addAndGet(batch.records.size()));
+	    batches.add(batch);
+	    schedule();
+	}
+
+	/**
+	 * Submit lane to the processing pool if it has work and is not already
+	 * submitted.
+	 */
+	protected synchronized void schedule() {
+	    if (scheduled || paused || closed || batches.isEmpty()) {
+		return;
+	    }
+	    try {
+		getProcessingExecutor().execute(this);
+		this.scheduled = true;
+	    } catch (RejectedExecutionException e) {
+		getLogger().debug("Processing pool shut down before batch could be scheduled.");
+	    }
+	}
+
+	/*
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+	    Batch batch;
+	    synchronized (this) {
+		batch = (paused || closed) ? null : batches.poll();
+		if (batch == null) {
+		    this.scheduled = false;
+		    return;
+		}
+	    }
+	    try {
+		if (consumer instanceof MicroserviceKafkaConsumer) {
+		    ((MicroserviceKafkaConsumer) consumer).processTraced(batch.topicPartition, batch.records);
+		} else {
+		    consumer.process(batch.topicPartition, batch.records);
+		}
+	    } catch (Throwable e) {
+		getLogger().error("Unhandled exception in consumer processing.", e);
+	    } finally {
+		long next = batch.records.get(batch.records.size() - 1).offset() + 1;
+		completed.put(batch.topicPartition, new OffsetAndMetadata(next));
+		synchronized (this) {
+		    if (!closed) {
+			inFlightMetric.set(inFlight.addAndGet(-batch.records.size()));
+		    }
+		    this.scheduled = false;
+		    schedule();
+		}
+	    }
+	}
+
+	/**
+	 * Indicates whether fetching should be paused for lane. Quota is applied with
+	 * hysteresis so partitions are resumed once half of the quota has drained.
+	 * 
+	 * @return
+	 */
+	public boolean isHeld() {
+	    int max = getMicroservice().getInstanceSettings().getKafkaSharedConsumerMaxInFlight();
+	    int count = inFlight.get();
+	    if (!throttled && (count >= max)) {
+		this.throttled = true;
+	    } else if (throttled && (count <= (max / 2))) {
+		this.throttled = false;
+	    }
+	    return paused || throttled;
+	}
+
+	/**
+	 * Drop queued batches for partitions no longer assigned.
+	 * 
+	 * @param partitions
+	 */
+	public synchronized void discard(Collection<TopicPartition> partitions) {
+	    Iterator<Batch> it = batches.iterator();
+	    while (it.hasNext()) {
+		Batch batch = it.next();
+		if (partitions.contains(batch.topicPartition)) {
+		    it.remove();
+		    inFlightMetric.set(inFlight.addAndGet(-batch.records.size()));
+		}
+	    }
+	}
+
+	/**
+	 * Drop all queued batches and stop scheduling lane.
+	 */
+	public synchronized void close() {
+	    this.closed = true;
+	    batches.clear();
+	    inFlight.set(0);
+	    IN_FLIGHT.remove(consumer.buildLabels(groupIdSuffix));
+	}
+
+	public void setPaused(boolean paused) {
+	    this.paused = paused;
+	    if (!paused) {
+		schedule();
+	    }
+	}
+
+	public Set<String> getTopics() {
+	    return topics;
+	}
+    }
+
+    /**
+     * Discards queued batches and commits processed offsets when partitions are
+     * moved to another group member.
+     */
+    private class Rebalancer implements ConsumerRebalanceListener {
+
+	/*
+	 * @see org.apache.kafka.clients.consumer.ConsumerRebalanceListener#
+	 * onPartitionsRevoked(java.util.Collection)
+	 */
+	@Override
+	public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+	    for (TenantLane lane : lanes.values()) {
+		lane.discard(partitions);
+	    }
+	    commitCompletedSync();
+	    resumeOffsets.keySet().removeAll(partitions);
+	}
+
+	/*
+	 * @see org.apache.kafka.clients.consumer.ConsumerRebalanceListener#
+	 * onPartitionsAssigned(java.util.Collection)
+	 */
+	@Override
+	public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+	    getLogger().debug(String.format("Shared consumer assigned %d partitions.", partitions.size()));
+	}
+    }
+
+    /**
+     * Thread that polls Kafka for records on all matching tenant topics.
+     */
+    private class Poller implements Runnable {
+
+	/** Subscription pattern */
+	private Pattern pattern;
+
+	public Poller(Pattern pattern) {
+	    this.pattern = pattern;
+	}
+
+	@Override
+	public void run() {
+	    try {
+		getConsumer().subscribe(pattern, new Rebalancer());
+		while (running) {
+		    commitCompleted();
+		    rewindRemovedLanes();
+		    updatePausedPartitions();
+		    ConsumerRecords<String, byte[]> records = getConsumer().poll(Duration.ofMillis(POLL_TIMEOUT_MS));
+		    for (TopicPartition topicPartition : records.partitions()) {
+			try {
+			    dispatch(topicPartition, records.records(topicPartition));
+			} catch (Throwable e) {
+			    getLogger().error("Unable to route records for " + topicPartition + ".", e);
+			}
+		    }
+		}
+	    } catch (WakeupException e) {
+		getLogger().info("Shared consumer thread received shutdown request.");
+	    } catch (Throwable e) {
+		getLogger().error("Unhandled exception in shared consumer.", e);
+	    } finally {
+		getProcessingExecutor().shutdown();
+		try {
+		    getProcessingExecutor().awaitTermination(SHUTDOWN_TIMEOUT_SECS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+		    getLogger().warn("Interrupted while waiting for shared consumer processing to complete.");
+		}
+		commitCompletedSync();
+		getConsumer().close();
+	    }
+	}
+    }
+
+    /** Used for naming shared consumer poll thread */
+    private class PollerThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Shared Kafka Consumer (" + groupIdSuffix + ") " + counter.incrementAndGet());
+	}
+    }
+
+    /** Used for naming shared consumer processing threads */
+    private class ProcessorThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Shared Kafka Processor (" + groupIdSuffix + ") " + counter.incrementAndGet());
+	}
+    }
+}
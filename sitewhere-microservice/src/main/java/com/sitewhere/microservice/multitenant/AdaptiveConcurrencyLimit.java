@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.multitenant;
+
+/**
+ * Limits the number of operations running concurrently, adapting the limit to
+ * how operations complete. The limit grows by one after a full limit's worth
+ * of operations complete in time and is halved when an operation fails or
+ * takes much longer than the recent average, which indicates that shared
+ * resources such as Zookeeper, Kafka or the datastores are saturated.
+ * 
+ * @author Derek
+ */
+public class AdaptiveConcurrencyLimit {
+
+    /** Operations slower than this multiple of the average cause a decrease */
+    private static final double SLOW_OPERATION_FACTOR = 3.0;
+
+    /** Weight given to latest operation in moving average */
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    /** Lowest limit */
+    private int minLimit;
+
+    /** Highest limit */
+    private int maxLimit;
+
+    /** Current limit */
+    private int limit;
+
+    /** Operations currently running */
+    private int running;
+
+    /** Operations completed in time since limit was last raised */
+    private int successes;
+
+    /** Moving average of operation time in milliseconds */
+    private double averageMs;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+	this.minLimit = Math.max(1, minLimit);
+	this.maxLimit = Math.max(this.minLimit, maxLimit);
+	this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * Wait until an operation may start.
+     * 
+     * @throws InterruptedException
+     */
+    public synchronized void acquire() throws InterruptedException {
+	while (running >= limit) {
+	    wait();
+	}
+	running++;
+    }
+
+    /**
+     * Indicate that an operation has completed and adjust the limit.
+     * 
+     * @param success
+     * @param elapsedMs
+     */
+    public synchronized void release(boolean success, long elapsedMs) {
+	running--;
+	boolean slow = (averageMs > 0) && (elapsedMs > (averageMs * SLOW_OPERATION_FACTOR));
+	if (!success || slow) {
+	    limit = Math.max(minLimit, limit / 2);
+	    successes = 0;
+	} else if (++successes >= limit) {
+	    limit = Math.min(maxLimit, limit + 1);
+	    successes = 0;
+	}
+	if (success) {
+	    averageMs = (averageMs == 0) ? elapsedMs
+		    : ((1 - AVERAGE_WEIGHT) * averageMs) + (AVERAGE_WEIGHT * elapsedMs);
+	}
+	notifyAll();
+    }
+
+    /**
+     * Indicate that an operation has completed without adjusting the limit. Used
+     * for operations that ended early and say nothing about resource load.
+     */
+    public synchronized void release() {
+	running--;
+	notifyAll();
+    }
+
+    public synchronized int getLimit() {
+	return limit;
+    }
+
+    public synchronized int getRunning() {
+	return running;
+    }
+}
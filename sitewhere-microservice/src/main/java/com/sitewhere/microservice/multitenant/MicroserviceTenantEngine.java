@@ -28,6 +28,7 @@ import com.sitewhere.rest.model.microservice.state.TenantEngineState;
 import com.sitewhere.rest.model.tenant.DatasetTemplate;
 import com.sitewhere.rest.model.tenant.TenantTemplate;
 import com.sitewhere.server.lifecycle.CompositeLifecycleStep;
+import com.sitewhere.server.lifecycle.ParallelLifecycleStep;
 import com.sitewhere.server.lifecycle.SimpleLifecycleStep;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
@@ -115,19 +116,23 @@ public abstract class MicroserviceTenantEngine extends TenantEngineLifecycleComp
 	loadModuleConfiguration();
 
 	// Create step that will initialize components.
-	ICompositeLifecycleStep init = new CompositeLifecycleStep("Initialize tenant engine " + getTenant().getName());
+	ParallelLifecycleStep init = new ParallelLifecycleStep("Initialize tenant engine " + getTenant().getName());
 
 	// Initialize script synchronizer.
 	init.addInitializeStep(this, getTenantScriptSynchronizer(), true);
 
-	// Initialize script manager.
+	// Initialize script manager once scripts are synchronized.
 	init.addInitializeStep(this, getScriptManager(), true);
+	init.addDependency(getScriptManager(), getTenantScriptSynchronizer());
 
-	// Initialize Groovy configuration.
+	// Initialize Groovy configuration once scripts are synchronized.
 	init.addInitializeStep(this, getGroovyConfiguration(), true);
+	init.addDependency(getGroovyConfiguration(), getTenantScriptSynchronizer());
 
-	// Initialize bootstrap manager.
+	// Initialize bootstrap manager once scripting is available.
 	init.addInitializeStep(this, getBootstrapManager(), true);
+	init.addDependency(getBootstrapManager(), getScriptManager());
+	init.addDependency(getBootstrapManager(), getGroovyConfiguration());
 
 	// Execute initialization steps.
 	init.execute(monitor);
@@ -294,9 +299,12 @@ public abstract class MicroserviceTenantEngine extends TenantEngineLifecycleComp
 		Map<String, IDiscoverableTenantLifecycleComponent> components = context
 			.getBeansOfType(IDiscoverableTenantLifecycleComponent.class);
 
+		// Discoverable beans are independent, so initialize them in parallel.
+		ParallelLifecycleStep init = new ParallelLifecycleStep(getName());
 		for (IDiscoverableTenantLifecycleComponent component : components.values()) {
-		    initializeNestedComponent(component, monitor, component.isRequired());
+		    init.addInitializeStep(MicroserviceTenantEngine.this, component, component.isRequired());
 		}
+		init.execute(monitor);
 	    }
 	};
     }
@@ -314,9 +322,12 @@ public abstract class MicroserviceTenantEngine extends TenantEngineLifecycleComp
 		Map<String, IDiscoverableTenantLifecycleComponent> components = context
 			.getBeansOfType(IDiscoverableTenantLifecycleComponent.class);
 
+		// Discoverable beans are independent, so start them in parallel.
+		ParallelLifecycleStep start = new ParallelLifecycleStep(getName());
 		for (IDiscoverableTenantLifecycleComponent component : components.values()) {
-		    startNestedComponent(component, monitor, component.isRequired());
+		    start.addStartStep(MicroserviceTenantEngine.this, component, component.isRequired());
 		}
+		start.execute(monitor);
 	    }
 	};
     }
@@ -122,6 +122,15 @@ public abstract class MultitenantMicroservice<I extends IFunctionIdentifier, T e
 	return getTenantEngineManager().assureTenantEngineAvailable(tenantId);
     }
 
+    /*
+     * @see com.sitewhere.spi.microservice.multitenant.IMultitenantMicroservice#
+     * isTenantLazyActivationSupported()
+     */
+    @Override
+    public boolean isTenantLazyActivationSupported() {
+	return false;
+    }
+
     /*
      * @see com.sitewhere.spi.microservice.configuration.IConfigurableMicroservice#
      * getConfigurationPath()
@@ -8,17 +8,24 @@
 package com.sitewhere.microservice.multitenant;
 
 import java.time.Duration;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
 import org.apache.zookeeper.data.Stat;
 
 import com.evanlennick.retry4j.CallExecutorBuilder;
@@ -32,6 +39,7 @@ import com.sitewhere.rest.model.search.tenant.TenantSearchCriteria;
 import com.sitewhere.server.lifecycle.LifecycleComponent;
 import com.sitewhere.server.lifecycle.LifecycleProgressContext;
 import com.sitewhere.server.lifecycle.LifecycleProgressMonitor;
+import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.error.ErrorCode;
@@ -49,8 +57,16 @@ import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
 import com.sitewhere.spi.tenant.ITenant;
 import com.sitewhere.spi.tenant.ITenantManagement;
 
+import io.prometheus.client.Histogram;
+
 /**
- * Tenant engine manager implementation.
+ * Tenant engine manager implementation. Tenant engines are started in parallel,
+ * with concurrency adapted to how quickly engines come up. Tenants are started
+ * as soon as their configuration is bootstrapped, which is detected by a
+ * Zookeeper watch rather than by polling. If lazy activation is enabled and the
+ * microservice supports it (asset management, device management and label
+ * generation), engines are only started when a tenant is first requested.
+ * Other microservices ignore the setting and start all engines eagerly.
  * 
  * @param <I>
  * @param <T>
@@ -61,11 +77,15 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
     /** Number of seconds between fallback attempts for checking tenant bootstrap */
     private static final int BOOTSTRAP_CHECK_MAX_SECS_BETWEEN_RETRIES = 15;
 
-    /** Max number of tenants being added/removed concurrently */
-    private static final int MAX_CONCURRENT_TENANT_OPERATIONS = 5;
+    /** Number of tenant engines started concurrently before limit adapts */
+    private static final int INITIAL_CONCURRENT_STARTUPS = 5;
+
+    /** Delay before tenant is queued again if tenant lookup fails */
+    private static final long TENANT_LOOKUP_RETRY_DELAY_MS = 1000;
 
-    /** Max time to wait for tenant to be bootstrapped from template */
-    private static final long MAX_WAIT_FOR_TENANT_BOOTSTRAPPED = 60 * 1000;
+    /** Time from tenant engine being created until it has started */
+    private static final Histogram STARTUP_TIME = TenantEngineLifecycleComponent.createHistogramMetric(
+	    "tenant_engine_startup_seconds", "Time taken to create, initialize and start a tenant engine");
 
     /** Map of tenant engines that have been initialized */
     private ConcurrentMap<UUID, T> initializedTenantEngines = new MapMaker().concurrencyLevel(4).makeMap();
@@ -85,9 +105,18 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
     /** List of tenant ids waiting for an engine to be shut down */
     private BlockingDeque<UUID> tenantShutdownQueue = new LinkedBlockingDeque<>();
 
-    /** Executor for tenant operations */
+    /** Tenant ids with a startup dispatched but not yet completed */
+    private Set<UUID> pendingTenantStartups = ConcurrentHashMap.newKeySet();
+
+    /** Limits number of tenant engines started concurrently */
+    private AdaptiveConcurrencyLimit startupLimit;
+
+    /** Executor for processing startup and shutdown queues */
     private ExecutorService tenantOperations;
 
+    /** Executor for individual tenant engine startups */
+    private ExecutorService tenantStartups;
+
     /*
      * @see
      * com.sitewhere.server.lifecycle.LifecycleComponent#initialize(com.sitewhere.
@@ -98,12 +127,22 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 	super.initialize(monitor);
 
 	// Handles threading for tenant operations.
-	this.tenantOperations = Executors.newFixedThreadPool(MAX_CONCURRENT_TENANT_OPERATIONS,
-		new TenantOperationsThreadFactory());
+	this.tenantOperations = Executors.newFixedThreadPool(2, new TenantOperationsThreadFactory());
+	this.tenantStartups = Executors.newCachedThreadPool(new TenantStartupThreadFactory());
+	this.startupLimit = new AdaptiveConcurrencyLimit(INITIAL_CONCURRENT_STARTUPS, 1,
+		getMicroservice().getInstanceSettings().getTenantMaxConcurrentStartups());
 
 	// Initialize tenant engines.
 	waitForTenantsBootstrapped();
-	initializeTenantEngines();
+	boolean lazy = getMicroservice().getInstanceSettings().isTenantLazyActivation();
+	if (lazy && getMultitenantMicroservice().isTenantLazyActivationSupported()) {
+	    getLogger().info("Tenant engines will be started when first requested.");
+	} else {
+	    if (lazy) {
+		getLogger().warn("Lazy tenant activation is not supported by this microservice. Starting all tenants.");
+	    }
+	    initializeTenantEngines();
+	}
     }
 
     /*
@@ -143,6 +182,9 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 	if (tenantOperations != null) {
 	    tenantOperations.shutdown();
 	}
+	if (tenantStartups != null) {
+	    tenantStartups.shutdown();
+	}
 
 	super.terminate(monitor);
     }
@@ -169,6 +211,7 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 	try {
 	    T engine = getTenantEngineByTenantId(tenantId);
 	    if (engine == null) {
+		activateTenantEngine(tenantId);
 		throw new TenantEngineNotAvailableException("No tenant engine found for tenant id.");
 	    } else if (engine.getLifecycleStatus() == LifecycleStatus.InitializationError) {
 		throw new TenantEngineNotAvailableException("Requested tenant engine failed initialization.");
@@ -211,25 +254,19 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
     }
 
     /**
-     * Initialize tenant engines by inspecting the list of tenant configurations,
-     * loading tenant information, then creating a tenant engine for each.
+     * Initialize tenant engines by loading the list of tenants and queueing an
+     * engine startup for each. Tenants that have not been bootstrapped yet are
+     * started once their configuration is available.
      * 
      * @throws SiteWhereException
      */
     protected void initializeTenantEngines() throws SiteWhereException {
-	CuratorFramework curator = getMicroservice().getZookeeperManager().getCurator();
 	try {
 	    ISearchResults<ITenant> tenants = getTenantManagement().listTenants(new TenantSearchCriteria(1, 0));
 	    for (ITenant tenant : tenants.getResults()) {
 		if (getTenantEngineByTenantId(tenant.getId()) == null) {
-		    String configured = getMultitenantMicroservice()
-			    .getInstanceTenantConfiguredIndicatorPath(tenant.getId());
-
-		    // Only initialize tenants which have been bootstrapped.
-		    if (curator.checkExists().forPath(configured) != null) {
-			if (!getTenantInitializationQueue().contains(tenant.getId())) {
-			    getTenantInitializationQueue().offer(tenant.getId());
-			}
+		    if (!getTenantInitializationQueue().contains(tenant.getId())) {
+			getTenantInitializationQueue().offer(tenant.getId());
 		    }
 		}
 	    }
@@ -238,6 +275,38 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 	}
     }
 
+    /**
+     * Queue a tenant engine startup ahead of tenants already waiting, unless one
+     * is already queued or in progress. Used when a tenant is requested before
+     * its engine is available.
+     * 
+     * @param tenantId
+     */
+    protected void activateTenantEngine(UUID tenantId) {
+	if (!getPendingTenantStartups().contains(tenantId) && !getTenantInitializationQueue().contains(tenantId)) {
+	    getTenantInitializationQueue().offerFirst(tenantId);
+	}
+    }
+
+    /**
+     * Check whether tenant configuration has been bootstrapped. A watch is left
+     * on the configured indicator so that the tenant is queued for startup as
+     * soon as it is created.
+     * 
+     * @param tenantId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected boolean isTenantConfigured(UUID tenantId) throws SiteWhereException {
+	CuratorFramework curator = getMicroservice().getZookeeperManager().getCurator();
+	String path = getMultitenantMicroservice().getInstanceTenantConfiguredIndicatorPath(tenantId);
+	try {
+	    return curator.checkExists().usingWatcher(new TenantConfiguredWatcher(tenantId)).forPath(path) != null;
+	} catch (Exception e) {
+	    throw new SiteWhereException("Unable to check whether tenant configuration is bootstrapped.", e);
+	}
+    }
+
     /*
      * @see com.sitewhere.spi.microservice.multitenant.ITenantEngineManager#
      * getTenantConfiguration(java.util.UUID)
@@ -461,8 +530,29 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 	this.tenantOperations = tenantOperations;
     }
 
+    public ExecutorService getTenantStartups() {
+	return tenantStartups;
+    }
+
+    public void setTenantStartups(ExecutorService tenantStartups) {
+	this.tenantStartups = tenantStartups;
+    }
+
+    public Set<UUID> getPendingTenantStartups() {
+	return pendingTenantStartups;
+    }
+
+    public AdaptiveConcurrencyLimit getStartupLimit() {
+	return startupLimit;
+    }
+
+    public void setStartupLimit(AdaptiveConcurrencyLimit startupLimit) {
+	this.startupLimit = startupLimit;
+    }
+
     /**
-     * Processes the list of tenants waiting for tenant engines to be started.
+     * Takes tenants from the startup queue and dispatches engine startups, with
+     * the number running concurrently governed by an adaptive limit.
      * 
      * @author Derek
      */
@@ -480,54 +570,138 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 	    getLogger().info("Starting to process tenant startup queue.");
 	    while (true) {
 		UUID tenantId = null;
-		ITenant tenant = null;
 		try {
 		    tenantId = getTenantInitializationQueue().take();
-		    getLogger().info(String.format("Starting processing for tenant id '%s'.", tenantId.toString()));
-		    tenant = getTenantManagement().getTenant(tenantId);
+
+		    // Verify that multiple threads don't start duplicate engines.
+		    if (!getPendingTenantStartups().add(tenantId)) {
+			getLogger().debug("Skipping startup already in progress for '" + tenantId + "'.");
+			continue;
+		    }
+		    getStartupLimit().acquire();
 		} catch (InterruptedException e) {
 		    getLogger().info("Tenant startup queue shutting down.");
 		    return;
-		} catch (ServiceNotAvailableException e) {
-		    getLogger().info(String.format("Tenant API not available yet (%s). Tenant will be queued again.",
-			    e.getMessage()));
-		    getTenantInitializationQueue().add(tenantId);
-		    continue;
-		} catch (SiteWhereException e) {
-		    getLogger().error("Exception in tenant lookup. Tenant will be queued again.", e);
-		    getTenantInitializationQueue().add(tenantId);
-		    continue;
-		} catch (Throwable e) {
-		    getLogger().error("Unhandled exception in tenant lookup. Tenant will be queued again.", e);
-		    getTenantInitializationQueue().add(tenantId);
-		    continue;
 		}
+		try {
+		    getTenantStartups().execute(new TenantEngineStartup(getMicroservice(), tenantId));
+		} catch (RejectedExecutionException e) {
+		    getStartupLimit().release();
+		    getPendingTenantStartups().remove(tenantId);
+		    getLogger().info("Tenant startup pool shut down. Tenant startup queue shutting down.");
+		    return;
+		}
+	    }
+	}
+    }
 
-		// Verify that multiple threads don't start duplicate engines.
-		if (getInitializingTenantEngines().get(tenantId) != null) {
-		    getLogger().debug("Skipping initialization for existing tenant engine '" + tenantId + "'.");
-		    continue;
+    /**
+     * Starts the engine for a single tenant. Tenants whose configuration has not
+     * been bootstrapped yet are left with a watch that queues them again once it
+     * is.
+     * 
+     * @author Derek
+     */
+    private class TenantEngineStartup extends SystemUserRunnable {
+
+	/** Tenant id */
+	private UUID tenantId;
+
+	public TenantEngineStartup(IMicroservice<?> microservice, UUID tenantId) {
+	    super(microservice, null);
+	    this.tenantId = tenantId;
+	}
+
+	/*
+	 * @see com.sitewhere.microservice.security.SystemUserRunnable#runAsSystemUser()
+	 */
+	@Override
+	public void runAsSystemUser() {
+	    long start = System.currentTimeMillis();
+	    Boolean success = null;
+	    try {
+		ITenant tenant = lookUpTenant();
+		if ((tenant == null) || !isStartupRequired(tenant)) {
+		    return;
+		}
+		success = false;
+		startTenantEngine(tenant);
+		success = true;
+	    } catch (SiteWhereException e) {
+		getLogger().warn("Exception starting tenant engine.", e);
+	    } catch (Throwable e) {
+		getLogger().warn("Unhandled exception starting tenant engine.", e);
+	    } finally {
+		getPendingTenantStartups().remove(tenantId);
+		if (success != null) {
+		    getStartupLimit().release(success, System.currentTimeMillis() - start);
+		} else {
+		    getStartupLimit().release();
 		}
+	    }
+	}
 
-		// If tenant doesn't exist, skip startup.
+	/**
+	 * Look up tenant, queueing it again if tenant management is not available.
+	 * 
+	 * @return
+	 */
+	protected ITenant lookUpTenant() {
+	    getLogger().info(String.format("Starting processing for tenant id '%s'.", tenantId.toString()));
+	    try {
+		ITenant tenant = getTenantManagement().getTenant(tenantId);
 		if (tenant == null) {
 		    getLogger().error(String.format("Unable to locate tenant'%s'. Skipping engine startup.", tenantId));
-		    continue;
 		}
+		return tenant;
+	    } catch (ServiceNotAvailableException e) {
+		getLogger().info(String.format("Tenant API not available yet (%s). Tenant will be queued again.",
+			e.getMessage()));
+	    } catch (SiteWhereException e) {
+		getLogger().error("Exception in tenant lookup. Tenant will be queued again.", e);
+	    } catch (Throwable e) {
+		getLogger().error("Unhandled exception in tenant lookup. Tenant will be queued again.", e);
+	    }
+	    try {
+		Thread.sleep(TENANT_LOOKUP_RETRY_DELAY_MS);
+	    } catch (InterruptedException e) {
+		return null;
+	    }
+	    getTenantInitializationQueue().add(tenantId);
+	    return null;
+	}
 
-		try {
-		    // Start tenant initialization.
-		    if (getTenantEngineByTenantId(tenantId) == null) {
-			startTenantEngine(tenant);
-		    } else {
-			getLogger().debug("Tenant engine already exists for '" + tenantId + "'.");
-		    }
-		} catch (SiteWhereException e) {
-		    getLogger().warn("Exception starting tenant engine.", e);
-		} catch (Throwable e) {
-		    getLogger().warn("Unhandled exception starting tenant engine.", e);
+	/**
+	 * Check whether an engine still needs to be started for the tenant.
+	 * 
+	 * @param tenant
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	protected boolean isStartupRequired(ITenant tenant) throws SiteWhereException {
+	    if (getInitializingTenantEngines().get(tenantId) != null) {
+		getLogger().debug("Skipping initialization for existing tenant engine '" + tenantId + "'.");
+		return false;
+	    }
+	    if (getTenantEngineByTenantId(tenantId) != null) {
+		getLogger().debug("Tenant engine already exists for '" + tenantId + "'.");
+		return false;
+	    }
+
+	    // Configuration files must be present before initialization.
+	    if (!isTenantConfigured(tenantId)) {
+		getLogger().info("Configuration for tenant '" + tenant.getName()
+			+ "' not bootstrapped yet. Engine will start once it is available.");
+
+		// The watch ignores tenants that are pending, so leave the pending set and
+		// check again in case it fired before that.
+		getPendingTenantStartups().remove(tenantId);
+		if (isTenantConfigured(tenantId)) {
+		    activateTenantEngine(tenantId);
 		}
+		return false;
 	    }
+	    return true;
 	}
 
 	/**
@@ -542,14 +716,11 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 		// Mark that an engine is being initialized.
 		getInitializingTenantEngines().put(tenant.getId(), tenant);
 		getLogger().info("Creating tenant engine for '" + tenant.getName() + "'...");
+		long createdAt = System.currentTimeMillis();
 
 		created = getMultitenantMicroservice().createTenantEngine(tenant);
 		created.setTenantEngine(created); // Required for nested components.
 
-		// Configuration files must be present before initialization.
-		getLogger().info("Verifying tenant '" + tenant.getName() + "' configuration available.");
-		waitForTenantConfigured(tenant);
-
 		// Initialize new engine.
 		getLogger().info("Intializing tenant engine for '" + tenant.getName() + "'.");
 		ILifecycleProgressMonitor monitor = new LifecycleProgressMonitor(
@@ -561,8 +732,8 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 		getInitializedTenantEngines().put(tenant.getId(), created);
 		getFailedTenantEngines().remove(tenant.getId());
 
-		getLogger().info("Tenant engine for '" + tenant.getName() + "' initialized in "
-			+ (System.currentTimeMillis() - start) + "ms.");
+		long initialized = System.currentTimeMillis() - start;
+		getLogger().info("Tenant engine for '" + tenant.getName() + "' initialized in " + initialized + "ms.");
 
 		// Start new engine.
 		getLogger().info("Starting tenant engine for '" + created.getTenant().getName() + "'.");
@@ -573,8 +744,10 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 		if (created.getLifecycleStatus() == LifecycleStatus.LifecycleError) {
 		    throw created.getLifecycleError();
 		}
-		getLogger().info("Tenant engine for '" + created.getTenant().getName() + "' started in "
-			+ (System.currentTimeMillis() - start) + "ms.");
+		long started = System.currentTimeMillis() - start;
+		getLogger().info("Tenant engine for '" + created.getTenant().getName() + "' started in " + started
+			+ "ms (initialized in " + initialized + "ms).");
+		STARTUP_TIME.labels(created.buildLabels()).observe((System.currentTimeMillis() - createdAt) / 1000.0);
 	    } catch (Throwable t) {
 		// Keep map of failed tenant engines.
 		if (created != null) {
@@ -588,28 +761,36 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 		getInitializingTenantEngines().remove(tenant.getId());
 	    }
 	}
+    }
 
-	/**
-	 * Wait until tenant configuration has been copied before starting
-	 * initialization.
-	 * 
-	 * @param tenant
-	 * @throws SiteWhereException
+    /**
+     * Queues a tenant for startup when its configured indicator changes. Also
+     * handles session expiration, which drops the watch.
+     * 
+     * @author Derek
+     */
+    private class TenantConfiguredWatcher implements CuratorWatcher {
+
+	/** Tenant id */
+	private UUID tenantId;
+
+	public TenantConfiguredWatcher(UUID tenantId) {
+	    this.tenantId = tenantId;
+	}
+
+	/*
+	 * @see
+	 * org.apache.curator.framework.api.CuratorWatcher#process(org.apache.zookeeper.
+	 * WatchedEvent)
 	 */
-	protected void waitForTenantConfigured(ITenant tenant) throws SiteWhereException {
-	    CuratorFramework curator = getMicroservice().getZookeeperManager().getCurator();
-	    try {
-		long deadline = System.currentTimeMillis() + MAX_WAIT_FOR_TENANT_BOOTSTRAPPED;
-		while ((deadline - System.currentTimeMillis()) > 0) {
-		    if (curator.checkExists().forPath(getMultitenantMicroservice()
-			    .getInstanceTenantConfiguredIndicatorPath(tenant.getId())) != null) {
-			return;
-		    }
-		    Thread.sleep(3000);
-		}
-		throw new SiteWhereException("Tenant not bootstrapped within time limit. Aborting");
-	    } catch (Throwable t) {
-		throw new SiteWhereException("Unable to wait for tenant configuration bootstrap.", t);
+	@Override
+	public void process(WatchedEvent event) throws Exception {
+	    if ((event.getType() == EventType.None) && (event.getState() != KeeperState.Expired)) {
+		return;
+	    }
+	    if (getTenantEngineByTenantId(tenantId) == null) {
+		getLogger().info("Configuration bootstrapped for tenant '" + tenantId + "'. Queueing engine startup.");
+		activateTenantEngine(tenantId);
 	    }
 	}
     }
@@ -704,4 +885,15 @@ public class TenantEngineManager<I extends IFunctionIdentifier, T extends IMicro
 	    return new Thread(r, "Tenant Ops " + counter.incrementAndGet());
 	}
     }
+
+    /** Used for naming tenant startup threads */
+    private class TenantStartupThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "Tenant Startup " + counter.incrementAndGet());
+	}
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+
+import com.sitewhere.core.ExpiringLruCache;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.microservice.security.ITokenManagement;
+import com.sitewhere.spi.microservice.security.IVerifiedTokenCache;
+
+import io.jsonwebtoken.Claims;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/**
+ * Bounded, expiry-aware {@link IVerifiedTokenCache} that keeps the least
+ * recently used entries. Entries expire at the earlier of the token expiration
+ * and a maximum age, so that changes made after a token was issued (such as a
+ * tenant authentication token being updated) are eventually picked up.
+ * 
+ * @author Derek
+ */
+public class VerifiedTokenCache implements IVerifiedTokenCache {
+
+    /** Default maximum number of cached entries */
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** Default maximum age of a cached entry */
+    private static final long DEFAULT_MAX_AGE_MS = 5 * 60 * 1000;
+
+    /** Counts requests served from cache */
+    private static final Counter HITS = Counter.build().name("sitewhere_verified_token_cache_hits")
+	    .help("Count of JWT authentications served from cache").register();
+
+    /** Counts requests that required token verification */
+    private static final Counter MISSES = Counter.build().name("sitewhere_verified_token_cache_misses")
+	    .help("Count of JWT authentications that required verification").register();
+
+    /** Counts entries removed because the token or entry expired */
+    private static final Counter EXPIRATIONS = Counter.build().name("sitewhere_verified_token_cache_expirations")
+	    .help("Count of cached JWT authentications removed due to expiration").register();
+
+    /** Tracks number of cached entries */
+    private static final Gauge SIZE = Gauge.build().name("sitewhere_verified_token_cache_size")
+	    .help("Number of cached JWT authentications").register();
+
+    /** JWT token management */
+    @Autowired
+    private ITokenManagement tokenManagement;
+
+    /** Cached authentications in access order */
+    private ExpiringLruCache<String, Authentication> entries = new ExpiringLruCache<String, Authentication>(
+	    DEFAULT_MAX_ENTRIES, DEFAULT_MAX_AGE_MS) {
+
+	@Override
+	protected void onExpired(String key, Authentication value) {
+	    EXPIRATIONS.inc();
+	}
+    };
+
+    public VerifiedTokenCache() {
+    }
+
+    public VerifiedTokenCache(ITokenManagement tokenManagement) {
+	this.tokenManagement = tokenManagement;
+    }
+
+    /*
+     * @see
+     * com.sitewhere.spi.microservice.security.IVerifiedTokenCache#getAuthentication
+     * (java.lang.String, java.lang.String, com.sitewhere.spi.microservice.security.
+     * IVerifiedTokenCache.IAuthenticationBuilder)
+     */
+    @Override
+    public Authentication getAuthentication(String jwt, String tenantKey, IAuthenticationBuilder builder)
+	    throws SiteWhereException {
+	String key = (tenantKey != null) ? jwt + "|" + tenantKey : jwt;
+	long now = System.currentTimeMillis();
+	Authentication cached = entries.get(key);
+	if (cached != null) {
+	    HITS.inc();
+	    return cached;
+	}
+
+	// Verify signature and build authentication outside of lock.
+	MISSES.inc();
+	Claims claims = getTokenManagement().getClaimsForToken(jwt);
+	Authentication authentication = builder.build(claims);
+	long expiresAt = now + getMaxAgeMs();
+	if ((claims.getExpiration() != null) && (claims.getExpiration().getTime() < expiresAt)) {
+	    expiresAt = claims.getExpiration().getTime();
+	}
+	entries.putUntil(key, authentication, expiresAt);
+	SIZE.set(entries.size());
+	return authentication;
+    }
+
+    /*
+     * @see com.sitewhere.spi.microservice.security.IVerifiedTokenCache#clear()
+     */
+    @Override
+    public void clear() {
+	entries.clear();
+	SIZE.set(0);
+    }
+
+    public ITokenManagement getTokenManagement() {
+	return tokenManagement;
+    }
+
+    public void setTokenManagement(ITokenManagement tokenManagement) {
+	this.tokenManagement = tokenManagement;
+    }
+
+    public int getMaxEntries() {
+	return entries.getMaxEntries();
+    }
+
+    public void setMaxEntries(int maxEntries) {
+	entries.setMaxEntries(maxEntries);
+    }
+
+    public long getMaxAgeMs() {
+	return entries.getTtlMs();
+    }
+
+    public void setMaxAgeMs(long maxAgeMs) {
+	entries.setTtlMs(maxAgeMs);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.multitenant;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    public void testIncreasesAfterFullWindow() throws Exception {
+	AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+	for (int i = 0; i < 2; i++) {
+	    limit.acquire();
+	    limit.release(true, 100);
+	}
+	assertEquals(3, limit.getLimit());
+    }
+
+    @Test
+    public void testHalvesOnFailure() throws Exception {
+	AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 10);
+	limit.acquire();
+	limit.release(false, 100);
+	assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    public void testHalvesOnSlowOperation() throws Exception {
+	AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 10);
+	limit.acquire();
+	limit.release(true, 100);
+	limit.acquire();
+	limit.release(true, 1000);
+	assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+	AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 2);
+	limit.acquire();
+	limit.release(false, 100);
+	assertEquals(1, limit.getLimit());
+	for (int i = 0; i < 10; i++) {
+	    limit.acquire();
+	    limit.release(true, 100);
+	}
+	assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void testReleaseWithoutAdjustment() throws Exception {
+	AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(3, 1, 10);
+	limit.acquire();
+	assertEquals(1, limit.getRunning());
+	limit.release();
+	assertEquals(0, limit.getRunning());
+	assertEquals(3, limit.getLimit());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.microservice.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import com.sitewhere.rest.model.user.User;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.microservice.security.IVerifiedTokenCache.IAuthenticationBuilder;
+
+public class VerifiedTokenCacheTest {
+
+    /** Username */
+    private static String USERNAME = "dadams";
+
+    /** Token management */
+    private TokenManagement tokens;
+
+    /** Cache being tested */
+    private VerifiedTokenCache cache;
+
+    /** Counts calls to builder */
+    private AtomicInteger builds;
+
+    /** Builder that creates a new authentication for each call */
+    private IAuthenticationBuilder builder;
+
+    @Before
+    public void setup() {
+	tokens = new TokenManagement();
+	cache = new VerifiedTokenCache(tokens);
+	builds = new AtomicInteger();
+	builder = claims -> {
+	    builds.incrementAndGet();
+	    return new UsernamePasswordAuthenticationToken(claims.getSubject(), null);
+	};
+    }
+
+    @Test
+    public void testCachedPerTenant() throws SiteWhereException {
+	String jwt = generateToken(60);
+	Authentication first = cache.getAuthentication(jwt, "tenant1", builder);
+	assertEquals(USERNAME, first.getName());
+	assertSame(first, cache.getAuthentication(jwt, "tenant1", builder));
+	assertNotSame(first, cache.getAuthentication(jwt, "tenant2", builder));
+	assertEquals(2, builds.get());
+    }
+
+    @Test
+    public void testBounded() throws SiteWhereException {
+	cache.setMaxEntries(1);
+	String jwt = generateToken(60);
+	cache.getAuthentication(jwt, "tenant1", builder);
+	cache.getAuthentication(jwt, "tenant2", builder);
+	cache.getAuthentication(jwt, "tenant1", builder);
+	assertEquals(3, builds.get());
+    }
+
+    @Test
+    public void testExpired() throws SiteWhereException {
+	cache.setMaxAgeMs(0);
+	String jwt = generateToken(60);
+	cache.getAuthentication(jwt, null, builder);
+	cache.getAuthentication(jwt, null, builder);
+	assertEquals(2, builds.get());
+    }
+
+    @Test(expected = JwtExpiredException.class)
+    public void testExpiredTokenRejected() throws SiteWhereException {
+	cache.getAuthentication(generateToken(-1), null, builder);
+    }
+
+    protected String generateToken(int expirationInMinutes) throws SiteWhereException {
+	User user = new User();
+	user.setUsername(USERNAME);
+	user.setAuthorities(Arrays.asList("this", "that"));
+	return tokens.generateToken(user, expirationInMinutes);
+    }
+}
@@ -10,7 +10,16 @@ package com.sitewhere.mongodb;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.Document;
 import org.springframework.util.StringUtils;
 
 import com.mongodb.MongoClient;
@@ -24,6 +33,9 @@ import com.mongodb.event.CommandListener;
 import com.mongodb.event.CommandStartedEvent;
 import com.mongodb.event.CommandSucceededEvent;
 import com.sitewhere.configuration.instance.mongodb.MongoConfiguration;
+import com.sitewhere.mongodb.profiling.MongoIndexCoverage;
+import com.sitewhere.mongodb.profiling.MongoQueryProfiler;
+import com.sitewhere.mongodb.profiling.MongoQueryShape;
 import com.sitewhere.server.lifecycle.TenantEngineLifecycleComponent;
 import com.sitewhere.server.lifecycle.parameters.StringComponentParameter;
 import com.sitewhere.spi.SiteWhereException;
@@ -32,6 +44,8 @@ import com.sitewhere.spi.server.lifecycle.ILifecycleComponentParameter;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
+import io.prometheus.client.Histogram;
+
 /**
  * Client used for connecting to and interacting with an MongoDB server.
  * 
@@ -40,6 +54,21 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 public abstract class MongoDbClient extends TenantEngineLifecycleComponent
 	implements IDiscoverableTenantLifecycleComponent, CommandListener {
 
+    /** Default duration (in ms) after which a command is logged as slow */
+    private static final long DEFAULT_SLOW_COMMAND_THRESHOLD_MS = 250;
+
+    /** Default interval (in minutes) between index coverage checks */
+    private static final int DEFAULT_INDEX_COVERAGE_INTERVAL_MINS = 10;
+
+    /** Timer for commands by collection and query shape */
+    private static final Histogram COMMAND_TIMER = TenantEngineLifecycleComponent.createHistogramMetric(
+	    "mongodb_command_duration", "Duration of MongoDB commands in seconds", "collection", "operation",
+	    "shape");
+
+    /** Runs periodic index coverage checks for all clients */
+    private static final ScheduledExecutorService COVERAGE_CHECKER = Executors
+	    .newSingleThreadScheduledExecutor(new CoverageCheckerThreadFactory());
+
     /** MongoDB client */
     private MongoClient client;
 
@@ -52,6 +81,21 @@ public abstract class MongoDbClient extends TenantEngineLifecycleComponent
     /** Database parameter */
     private ILifecycleComponentParameter<String> databaseName;
 
+    /** Tracks query shapes for commands */
+    private MongoQueryProfiler profiler = new MongoQueryProfiler();
+
+    /** Duration after which a command is logged as slow */
+    private long slowCommandThresholdMs = DEFAULT_SLOW_COMMAND_THRESHOLD_MS;
+
+    /** Interval between index coverage checks */
+    private int indexCoverageIntervalMins = DEFAULT_INDEX_COVERAGE_INTERVAL_MINS;
+
+    /** Shapes already reported as not covered by an index */
+    private Set<MongoQueryShape> uncovered = ConcurrentHashMap.newKeySet();
+
+    /** Periodic index coverage check for this client */
+    private ScheduledFuture<?> coverageCheck;
+
     public MongoDbClient(MongoConfiguration configuration) {
 	super(LifecycleComponentType.DataStore);
 	this.configuration = configuration;
@@ -151,6 +195,7 @@ public abstract class MongoDbClient extends TenantEngineLifecycleComponent
      */
     @Override
     public void commandStarted(CommandStartedEvent event) {
+	getProfiler().onStarted(event);
     }
 
     /*
@@ -159,6 +204,17 @@ public abstract class MongoDbClient extends TenantEngineLifecycleComponent
      */
     @Override
     public void commandSucceeded(CommandSucceededEvent event) {
+	MongoQueryShape shape = getProfiler().onSucceeded(event);
+	if (shape == null) {
+	    return;
+	}
+	String filter = "filter=" + shape.getFilterFields() + " sort=" + shape.getSortFields();
+	COMMAND_TIMER.labels(buildLabels(shape.getCollection(), shape.getOperation(), filter))
+		.observe(MongoQueryProfiler.getElapsedSeconds(event));
+	long elapsed = event.getElapsedTime(TimeUnit.MILLISECONDS);
+	if (elapsed > getSlowCommandThresholdMs()) {
+	    getLogger().warn(String.format("Slow MongoDB command (%d ms): %s", elapsed, shape));
+	}
     }
 
     /*
@@ -167,9 +223,29 @@ public abstract class MongoDbClient extends TenantEngineLifecycleComponent
      */
     @Override
     public void commandFailed(CommandFailedEvent event) {
+	getProfiler().onFailed(event);
 	getLogger().warn("MongoDB command failed.", event);
     }
 
+    /**
+     * Compare query shapes observed so far against the indexes defined for each
+     * collection and log shapes that will require a collection scan.
+     */
+    public void checkIndexCoverage() {
+	try {
+	    for (String collection : getProfiler().getObservedCollections()) {
+		List<Document> indexes = MongoIndexCoverage.getIndexes(getDatabase().getCollection(collection));
+		for (MongoQueryShape shape : getProfiler().getObservedShapes(collection)) {
+		    if (!MongoIndexCoverage.isCovered(shape, indexes) && uncovered.add(shape)) {
+			getLogger().warn("MongoDB query not covered by an index: " + shape);
+		    }
+		}
+	    }
+	} catch (Throwable t) {
+	    getLogger().warn("Unable to check MongoDB index coverage.", t);
+	}
+    }
+
     /**
      * Represent an array as a space-delimited string.
      * 
@@ -224,6 +300,8 @@ public abstract class MongoDbClient extends TenantEngineLifecycleComponent
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	getLogger().info("MongoDB client will connect to " + getHostname().getValue() + ":"
 		+ getConfiguration().getPort() + " for database '" + getDatabaseName().getValue() + "'");
+	this.coverageCheck = COVERAGE_CHECKER.scheduleWithFixedDelay(() -> checkIndexCoverage(),
+		getIndexCoverageIntervalMins(), getIndexCoverageIntervalMins(), TimeUnit.MINUTES);
     }
 
     /*
@@ -235,6 +313,9 @@ public abstract class MongoDbClient extends TenantEngineLifecycleComponent
      */
     @Override
     public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (coverageCheck != null) {
+	    coverageCheck.cancel(false);
+	}
 	client.close();
     }
 
@@ -283,4 +364,37 @@ public abstract class MongoDbClient extends TenantEngineLifecycleComponent
     public void setDatabaseName(ILifecycleComponentParameter<String> databaseName) {
 	this.databaseName = databaseName;
     }
+
+    public MongoQueryProfiler getProfiler() {
+	return profiler;
+    }
+
+    public long getSlowCommandThresholdMs() {
+	return slowCommandThresholdMs;
+    }
+
+    public void setSlowCommandThresholdMs(long slowCommandThresholdMs) {
+	this.slowCommandThresholdMs = slowCommandThresholdMs;
+    }
+
+    public int getIndexCoverageIntervalMins() {
+	return indexCoverageIntervalMins;
+    }
+
+    public void setIndexCoverageIntervalMins(int indexCoverageIntervalMins) {
+	this.indexCoverageIntervalMins = indexCoverageIntervalMins;
+    }
+
+    /** Used for naming the shared index coverage thread */
+    private static class CoverageCheckerThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, "MongoDB Index Coverage " + counter.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
 }
\ No newline at end of file
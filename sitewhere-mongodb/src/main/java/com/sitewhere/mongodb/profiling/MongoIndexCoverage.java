@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.mongodb.profiling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+/**
+ * Compares query shapes against index definitions and runs explain plans to
+ * determine whether queries will require a collection scan.
+ * 
+ * @author Derek
+ */
+public class MongoIndexCoverage {
+
+    /** Stage reported by explain for a collection scan */
+    private static final String STAGE_COLLECTION_SCAN = "COLLSCAN";
+
+    /**
+     * Indicates whether a query shape can be served by at least one of the given
+     * indexes. A shape is covered if an index starts with one of the filter
+     * fields or, for unfiltered queries, with the first sort field. Unfiltered,
+     * unsorted queries are always considered covered.
+     * 
+     * @param shape
+     * @param indexes
+     * @return
+     */
+    public static boolean isCovered(MongoQueryShape shape, List<Document> indexes) {
+	if (shape.getFilterFields().isEmpty() && shape.getSortFields().isEmpty()) {
+	    return true;
+	}
+	for (Document index : indexes) {
+	    Document key = (Document) index.get("key");
+	    if ((key == null) || key.isEmpty()) {
+		continue;
+	    }
+	    String first = key.keySet().iterator().next();
+	    if (shape.getFilterFields().isEmpty()) {
+		if (first.equals(shape.getSortFields().get(0))) {
+		    return true;
+		}
+	    } else if (shape.getFilterFields().contains(first)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Get index definitions for a collection.
+     * 
+     * @param collection
+     * @return
+     */
+    public static List<Document> getIndexes(MongoCollection<Document> collection) {
+	return collection.listIndexes().into(new ArrayList<Document>());
+    }
+
+    /**
+     * Run an explain plan for a find and return the winning plan.
+     * 
+     * @param database
+     * @param collection
+     * @param filter
+     * @param sort
+     * @return
+     */
+    public static Document explainFind(MongoDatabase database, String collection, Document filter, Document sort) {
+	Document find = new Document("find", collection).append("filter", filter);
+	if (sort != null) {
+	    find.append("sort", sort);
+	}
+	Document result = database.runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+	Document planner = (Document) result.get("queryPlanner");
+	return (planner != null) ? (Document) planner.get("winningPlan") : null;
+    }
+
+    /**
+     * Indicates whether a plan includes a collection scan at any stage.
+     * 
+     * @param plan
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean hasCollectionScan(Document plan) {
+	if (plan == null) {
+	    return false;
+	}
+	if (STAGE_COLLECTION_SCAN.equals(plan.getString("stage"))) {
+	    return true;
+	}
+	Object input = plan.get("inputStage");
+	if ((input instanceof Document) && hasCollectionScan((Document) input)) {
+	    return true;
+	}
+	Object inputs = plan.get("inputStages");
+	if (inputs instanceof List) {
+	    for (Object stage : (List<Object>) inputs) {
+		if ((stage instanceof Document) && hasCollectionScan((Document) stage)) {
+		    return true;
+		}
+	    }
+	}
+	return false;
+    }
+}
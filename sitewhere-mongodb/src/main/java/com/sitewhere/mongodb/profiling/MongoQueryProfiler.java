@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.mongodb.profiling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+/**
+ * Tracks the shape of commands in flight so that completion events (which do
+ * not carry the original command) can be attributed to a query shape. Also
+ * keeps the set of distinct shapes observed so they can be checked against
+ * index definitions.
+ * 
+ * @author Derek
+ */
+public class MongoQueryProfiler {
+
+    /** Maximum number of distinct shapes retained */
+    private static final int MAX_OBSERVED_SHAPES = 1000;
+
+    /** Shapes for commands in flight indexed by request id */
+    private Map<Integer, MongoQueryShape> inFlight = new ConcurrentHashMap<>();
+
+    /** Distinct shapes observed */
+    private Map<MongoQueryShape, Boolean> observed = new ConcurrentHashMap<>();
+
+    /**
+     * Record start of a command.
+     * 
+     * @param event
+     */
+    public void onStarted(CommandStartedEvent event) {
+	MongoQueryShape shape = MongoQueryShape.fromCommand(event.getCommandName(), event.getCommand());
+	if (shape != null) {
+	    inFlight.put(event.getRequestId(), shape);
+	    if (observed.size() < MAX_OBSERVED_SHAPES) {
+		observed.put(shape, Boolean.TRUE);
+	    }
+	}
+    }
+
+    /**
+     * Get shape for a completed command.
+     * 
+     * @param event
+     * @return
+     */
+    public MongoQueryShape onSucceeded(CommandSucceededEvent event) {
+	return inFlight.remove(event.getRequestId());
+    }
+
+    /**
+     * Get shape for a failed command.
+     * 
+     * @param event
+     * @return
+     */
+    public MongoQueryShape onFailed(CommandFailedEvent event) {
+	return inFlight.remove(event.getRequestId());
+    }
+
+    /**
+     * Get elapsed time for a completed command in seconds.
+     * 
+     * @param event
+     * @return
+     */
+    public static double getElapsedSeconds(CommandSucceededEvent event) {
+	return event.getElapsedTime(TimeUnit.MICROSECONDS) / 1000000.0;
+    }
+
+    /**
+     * Get distinct shapes observed for a collection.
+     * 
+     * @param collection
+     * @return
+     */
+    public List<MongoQueryShape> getObservedShapes(String collection) {
+	List<MongoQueryShape> matches = new ArrayList<>();
+	for (MongoQueryShape shape : observed.keySet()) {
+	    if (shape.getCollection().equals(collection)) {
+		matches.add(shape);
+	    }
+	}
+	return matches;
+    }
+
+    /**
+     * Get names of collections with observed shapes.
+     * 
+     * @return
+     */
+    public List<String> getObservedCollections() {
+	List<String> names = new ArrayList<>();
+	for (MongoQueryShape shape : observed.keySet()) {
+	    if (!names.contains(shape.getCollection())) {
+		names.add(shape.getCollection());
+	    }
+	}
+	return names;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.mongodb.profiling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+/**
+ * Shape of a MongoDB query with values removed. Used to group command timings
+ * and to compare the queries actually issued against the available indexes.
+ * 
+ * @author Derek
+ */
+public class MongoQueryShape {
+
+    /** Collection name */
+    private String collection;
+
+    /** Operation (find, count, aggregate, ...) */
+    private String operation;
+
+    /** Fields referenced in filter (sorted) */
+    private List<String> filterFields;
+
+    /** Fields referenced in sort (in sort order) */
+    private List<String> sortFields;
+
+    public MongoQueryShape(String collection, String operation, List<String> filterFields, List<String> sortFields) {
+	this.collection = collection;
+	this.operation = operation;
+	this.filterFields = filterFields;
+	this.sortFields = sortFields;
+    }
+
+    /**
+     * Compute shape for a command sent to MongoDB. Returns null for commands
+     * that do not query a collection.
+     * 
+     * @param commandName
+     * @param command
+     * @return
+     */
+    public static MongoQueryShape fromCommand(String commandName, BsonDocument command) {
+	BsonValue target = command.get(commandName);
+	if ((target == null) || (!target.isString())) {
+	    return null;
+	}
+	String collection = target.asString().getValue();
+	switch (commandName) {
+	case "find":
+	    return create(collection, commandName, command.get("filter"), command.get("sort"));
+	case "count":
+	case "distinct":
+	    return create(collection, commandName, command.get("query"), null);
+	case "findAndModify":
+	    return create(collection, commandName, command.get("query"), command.get("sort"));
+	case "update":
+	    return create(collection, commandName, firstStatementField(command.get("updates"), "q"), null);
+	case "delete":
+	    return create(collection, commandName, firstStatementField(command.get("deletes"), "q"), null);
+	case "aggregate":
+	    return fromPipeline(collection, commandName, command.get("pipeline"));
+	default:
+	    return null;
+	}
+    }
+
+    /**
+     * Create shape from filter and sort documents.
+     * 
+     * @param collection
+     * @param operation
+     * @param filter
+     * @param sort
+     * @return
+     */
+    protected static MongoQueryShape create(String collection, String operation, BsonValue filter, BsonValue sort) {
+	TreeSet<String> filterFields = new TreeSet<>();
+	if ((filter != null) && (filter.isDocument())) {
+	    addFilterFields(filter.asDocument(), filterFields);
+	}
+	List<String> sortFields = new ArrayList<>();
+	if ((sort != null) && (sort.isDocument())) {
+	    sortFields.addAll(sort.asDocument().keySet());
+	}
+	return new MongoQueryShape(collection, operation, new ArrayList<>(filterFields), sortFields);
+    }
+
+    /**
+     * Create shape from the leading $match and $sort stages of a pipeline.
+     * 
+     * @param collection
+     * @param operation
+     * @param pipeline
+     * @return
+     */
+    protected static MongoQueryShape fromPipeline(String collection, String operation, BsonValue pipeline) {
+	BsonValue match = null;
+	BsonValue sort = null;
+	if ((pipeline != null) && (pipeline.isArray())) {
+	    for (BsonValue stage : pipeline.asArray()) {
+		if (!stage.isDocument()) {
+		    break;
+		}
+		BsonDocument doc = stage.asDocument();
+		if ((match == null) && doc.containsKey("$match")) {
+		    match = doc.get("$match");
+		} else if ((sort == null) && doc.containsKey("$sort")) {
+		    sort = doc.get("$sort");
+		} else {
+		    break;
+		}
+	    }
+	}
+	return create(collection, operation, match, sort);
+    }
+
+    /**
+     * Add field names referenced by a filter, descending into logical operators.
+     * 
+     * @param filter
+     * @param fields
+     */
+    protected static void addFilterFields(BsonDocument filter, TreeSet<String> fields) {
+	for (String key : filter.keySet()) {
+	    if (key.startsWith("$")) {
+		BsonValue nested = filter.get(key);
+		if (nested.isArray()) {
+		    for (BsonValue clause : nested.asArray()) {
+			if (clause.isDocument()) {
+			    addFilterFields(clause.asDocument(), fields);
+			}
+		    }
+		}
+	    } else {
+		fields.add(key);
+	    }
+	}
+    }
+
+    /**
+     * Get a field from the first statement of a batched write command.
+     * 
+     * @param statements
+     * @param field
+     * @return
+     */
+    protected static BsonValue firstStatementField(BsonValue statements, String field) {
+	if ((statements != null) && (statements.isArray())) {
+	    BsonArray array = statements.asArray();
+	    if ((array.size() > 0) && (array.get(0).isDocument())) {
+		return array.get(0).asDocument().get(field);
+	    }
+	}
+	return null;
+    }
+
+    /*
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+	return getOperation() + " " + getCollection() + " filter=" + getFilterFields() + " sort=" + getSortFields();
+    }
+
+    /*
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+	return toString().hashCode();
+    }
+
+    /*
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+	return (obj instanceof MongoQueryShape) && toString().equals(obj.toString());
+    }
+
+    public String getCollection() {
+	return collection;
+    }
+
+    public String getOperation() {
+	return operation;
+    }
+
+    public List<String> getFilterFields() {
+	return Collections.unmodifiableList(filterFields);
+    }
+
+    public List<String> getSortFields() {
+	return Collections.unmodifiableList(sortFields);
+    }
+}
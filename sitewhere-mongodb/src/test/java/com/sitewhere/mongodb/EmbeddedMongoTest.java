@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.mongodb;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+import com.mongodb.MongoClient;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+/**
+ * Base class for tests that run against an embedded MongoDB instance. The
+ * instance is started once per test class.
+ * 
+ * @author Derek
+ */
+public abstract class EmbeddedMongoTest {
+
+    /** Embedded Mongo executable */
+    private static MongodExecutable executable;
+
+    /** Embedded Mongo process */
+    private static MongodProcess process;
+
+    /** Client connected to embedded Mongo */
+    private static MongoClient client;
+
+    @BeforeClass
+    public static void startMongo() throws Exception {
+	int port = Network.getFreeServerPort();
+	IMongodConfig config = new MongodConfigBuilder().version(Version.Main.PRODUCTION)
+		.net(new Net("localhost", port, Network.localhostIsIPv6())).build();
+	executable = MongodStarter.getDefaultInstance().prepare(config);
+	process = executable.start();
+	client = new MongoClient("localhost", port);
+    }
+
+    @AfterClass
+    public static void stopMongo() {
+	if (client != null) {
+	    client.close();
+	}
+	if (process != null) {
+	    process.stop();
+	}
+	if (executable != null) {
+	    executable.stop();
+	}
+    }
+
+    protected static MongoClient getClient() {
+	return client;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.mongodb.profiling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MongoQueryShape} and {@link MongoIndexCoverage}.
+ * 
+ * @author Derek
+ */
+public class MongoQueryShapeTest {
+
+    @Test
+    public void testFindShape() {
+	BsonDocument command = BsonDocument.parse("{ find: 'devices', filter: { dvtp: 'x', crdt: { $gte: 1 } }, "
+		+ "sort: { crdt: -1 }, limit: 100 }");
+	MongoQueryShape shape = MongoQueryShape.fromCommand("find", command);
+	assertEquals("devices", shape.getCollection());
+	assertEquals(Arrays.asList("crdt", "dvtp"), shape.getFilterFields());
+	assertEquals(Arrays.asList("crdt"), shape.getSortFields());
+	assertEquals(shape, MongoQueryShape.fromCommand("find",
+		BsonDocument.parse("{ find: 'devices', filter: { crdt: 5, dvtp: 'y' }, sort: { crdt: -1 } }")));
+    }
+
+    @Test
+    public void testLogicalOperators() {
+	BsonDocument command = BsonDocument
+		.parse("{ count: 'assignments', query: { $or: [ { csid: 1 }, { arid: 2 } ], stat: 'Active' } }");
+	MongoQueryShape shape = MongoQueryShape.fromCommand("count", command);
+	assertEquals(Arrays.asList("arid", "csid", "stat"), shape.getFilterFields());
+    }
+
+    @Test
+    public void testAggregateShape() {
+	BsonDocument command = BsonDocument.parse(
+		"{ aggregate: 'events', pipeline: [ { $match: { asid: 1 } }, { $sort: { evdt: -1 } }, { $limit: 5 } ] }");
+	MongoQueryShape shape = MongoQueryShape.fromCommand("aggregate", command);
+	assertEquals(Arrays.asList("asid"), shape.getFilterFields());
+	assertEquals(Arrays.asList("evdt"), shape.getSortFields());
+    }
+
+    @Test
+    public void testNonQueryCommand() {
+	assertNull(MongoQueryShape.fromCommand("isMaster", BsonDocument.parse("{ isMaster: 1 }")));
+	assertNull(MongoQueryShape.fromCommand("listIndexes", BsonDocument.parse("{ listIndexes: 'devices' }")));
+    }
+
+    @Test
+    public void testCoverage() {
+	Document idIndex = new Document("key", new Document("_id", 1));
+	Document statusIndex = new Document("key", new Document("stat", 1).append("csid", 1));
+	MongoQueryShape byCustomer = new MongoQueryShape("assignments", "find", Arrays.asList("csid"),
+		Arrays.asList("acdt"));
+	MongoQueryShape byStatus = new MongoQueryShape("assignments", "find", Arrays.asList("csid", "stat"),
+		Arrays.asList("acdt"));
+	MongoQueryShape all = new MongoQueryShape("assignments", "find", Collections.emptyList(),
+		Collections.emptyList());
+	MongoQueryShape sorted = new MongoQueryShape("assignments", "find", Collections.emptyList(),
+		Arrays.asList("acdt"));
+
+	assertFalse(MongoIndexCoverage.isCovered(byCustomer, Arrays.asList(idIndex, statusIndex)));
+	assertTrue(MongoIndexCoverage.isCovered(byStatus, Arrays.asList(idIndex, statusIndex)));
+	assertTrue(MongoIndexCoverage.isCovered(all, Arrays.asList(idIndex)));
+	assertFalse(MongoIndexCoverage.isCovered(sorted, Arrays.asList(idIndex)));
+	assertTrue(MongoIndexCoverage.isCovered(sorted,
+		Arrays.asList(idIndex, new Document("key", new Document("acdt", -1)))));
+    }
+}